@@ -300,6 +300,7 @@ public class OGLCanvas<G extends OGLGraphics> extends Canvas
         awt.free();
         if (context != MemoryUtil.NULL)
             GLFW.glfwDestroyWindow(context);
+        system.destroy();
     }
 
     @Override
@@ -111,6 +111,7 @@ public abstract class OGLGraphics implements OGLVersioned
 		protected Integer maxCombinedUniformBlocks;
 		protected Integer maxUniformBufferBindings;
 		protected Integer maxUniformBlockSize;
+		protected Integer uniformBufferOffsetAlignment;
 		protected Integer maxCombinedVertexUniformComponents;
 		protected Integer maxCombinedGeometryUniformComponents;
 		protected Integer maxCombinedFragmentUniformComponents;
@@ -181,6 +182,8 @@ public abstract class OGLGraphics implements OGLVersioned
 		protected Integer maxComputeAtomicCounters;
 		protected Integer maxCombinedComputeUniformComponents;
 		protected Integer maxComputeWorkGroupInvocations;
+		protected int[] maxComputeWorkGroupCount;
+		protected int[] maxComputeWorkGroupSize;
 		protected Integer maxDebugMessageLength;
 		protected Integer maxDebugLoggedMessages;
 		protected Integer maxDebugGroupStackDepth;
@@ -396,6 +399,11 @@ public abstract class OGLGraphics implements OGLVersioned
 			return maxUniformBlockSize;
 		}
 
+		public Integer getUniformBufferOffsetAlignment()
+		{
+			return uniformBufferOffsetAlignment;
+		}
+
 		public Integer getMaxCombinedVertexUniformComponents() 
 		{
 			return maxCombinedVertexUniformComponents;
@@ -671,6 +679,24 @@ public abstract class OGLGraphics implements OGLVersioned
 			return maxComputeWorkGroupInvocations;
 		}
 
+		/**
+		 * @param axis the axis index (0 = x, 1 = y, 2 = z).
+		 * @return the maximum amount of work groups that can be dispatched on an axis.
+		 */
+		public Integer getMaxComputeWorkGroupCount(int axis)
+		{
+			return maxComputeWorkGroupCount != null ? maxComputeWorkGroupCount[axis] : null;
+		}
+
+		/**
+		 * @param axis the axis index (0 = x, 1 = y, 2 = z).
+		 * @return the maximum local work group size on an axis.
+		 */
+		public Integer getMaxComputeWorkGroupSize(int axis)
+		{
+			return maxComputeWorkGroupSize != null ? maxComputeWorkGroupSize[axis] : null;
+		}
+
 		public Integer getMaxDebugMessageLength() 
 		{
 			return maxDebugMessageLength;
@@ -1040,6 +1066,15 @@ public abstract class OGLGraphics implements OGLVersioned
 	 */
 	protected abstract void endFrame(); 
 
+	/**
+	 * Called when the context that this graphics instance renders to is destroyed - 
+	 * releases native memory held by this instance. OpenGL objects go away with the context.
+	 */
+	protected void endContext()
+	{
+		// Do nothing by default.
+	}
+
 	/**
 	 * Checks the version of this graphics implementation against a versioned object,
 	 * and if the object is from a later version, return false.
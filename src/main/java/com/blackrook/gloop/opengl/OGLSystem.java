@@ -164,6 +164,16 @@ public class OGLSystem<G extends OGLGraphics>
 		graphics.endFrame();
 	}
 
+	/**
+	 * Releases the native memory held by this system's graphics instance (like its per-frame scratch memory).
+	 * Call this when the window or canvas that this system renders to is destroyed.
+	 * <p><b>Should NOT be called while a frame is being drawn.</b>
+	 */
+	public void destroy()
+	{
+		graphics.endContext();
+	}
+
 	/**
 	 * Triggers a display refresh, telling the rendering thread to draw a frame.
 	 * If a frame is currently being drawn, this will return false, indicating a dropped frame.
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the 
+ * terms of the GNU Lesser Public License v2.1 which accompanies this 
+ * distribution, and is available at 
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.enums;
+
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL44;
+
+import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.OGLVersioned;
+
+/**
+ * Access flags for mapping buffer ranges.
+ * @author Matthew Tropiano
+ */
+public enum BufferMapFlag implements OGLVersioned
+{
+	/** Mapped range will be read from. */
+	READ(OGLVersion.GL30, GL30.GL_MAP_READ_BIT),
+	/** Mapped range will be written to. */
+	WRITE(OGLVersion.GL30, GL30.GL_MAP_WRITE_BIT),
+	/** Previous contents of the mapped range may be discarded. Cannot be used with {@link #READ}. */
+	INVALIDATE_RANGE(OGLVersion.GL30, GL30.GL_MAP_INVALIDATE_RANGE_BIT),
+	/** Previous contents of the entire buffer may be discarded (orphaned). Cannot be used with {@link #READ}. */
+	INVALIDATE_BUFFER(OGLVersion.GL30, GL30.GL_MAP_INVALIDATE_BUFFER_BIT),
+	/** Modified subranges must be explicitly flushed before unmapping. Requires {@link #WRITE}. */
+	FLUSH_EXPLICIT(OGLVersion.GL30, GL30.GL_MAP_FLUSH_EXPLICIT_BIT),
+	/** OpenGL will not wait for pending operations on the buffer before mapping it. */
+	UNSYNCHRONIZED(OGLVersion.GL30, GL30.GL_MAP_UNSYNCHRONIZED_BIT),
+	/** Buffer may stay mapped while it is used by OpenGL. Buffer must have immutable storage. */
+	PERSISTENT(OGLVersion.GL44, GL44.GL_MAP_PERSISTENT_BIT),
+	/** Persistent mappings are coherent with OpenGL without explicit barriers. Requires {@link #PERSISTENT}. */
+	COHERENT(OGLVersion.GL44, GL44.GL_MAP_COHERENT_BIT);
+	
+	private final OGLVersion version;
+	public final int glValue;
+
+	private BufferMapFlag(OGLVersion version, int gltype) 
+	{
+		this.version = version;
+		this.glValue = gltype;
+	}
+	
+	@Override
+	public OGLVersion getVersion()
+	{
+		return version;
+	}
+
+	@Override
+	public boolean isCore()
+	{
+		return true;
+	}
+	
+	/**
+	 * Combines a set of flags into an OpenGL bit field.
+	 * @param flags the flags to combine.
+	 * @return the resultant bits.
+	 */
+	public static int toBits(BufferMapFlag ... flags)
+	{
+		int out = 0;
+		for (int i = 0; i < flags.length; i++)
+			out |= flags[i].glValue;
+		return out;
+	}
+	
+}
@@ -9,22 +9,59 @@ package com.blackrook.gloop.opengl.enums;
 
 import static org.lwjgl.opengl.GL11.*;
 
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+
+import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.OGLVersioned;
+
 /**
  * Enumeration of DataTypes.
+ * <p> The packed types ({@link #INT_2_10_10_10_REV} and {@link #UNSIGNED_INT_2_10_10_10_REV})
+ * hold all four components of an attribute in one value, so their size is the size of the whole attribute.
  * @author Matthew Tropiano
  */
-public enum DataType
+public enum DataType implements OGLVersioned
 {
-	BYTE(GL_BYTE, 1),
-	UNSIGNED_BYTE(GL_UNSIGNED_BYTE, 1),
-	SHORT(GL_SHORT, 2),
-	UNSIGNED_SHORT(GL_UNSIGNED_SHORT, 2),
-	FLOAT(GL_FLOAT, 4),
-	INTEGER(GL_INT, 4),
-	UNSIGNED_INTEGER(GL_UNSIGNED_INT, 4),
-	DOUBLE(GL_DOUBLE, 8);
+	BYTE(OGLVersion.GL11, GL_BYTE, 1),
+	UNSIGNED_BYTE(OGLVersion.GL11, GL_UNSIGNED_BYTE, 1),
+	SHORT(OGLVersion.GL11, GL_SHORT, 2),
+	UNSIGNED_SHORT(OGLVersion.GL11, GL_UNSIGNED_SHORT, 2),
+	FLOAT(OGLVersion.GL11, GL_FLOAT, 4),
+	INTEGER(OGLVersion.GL11, GL_INT, 4),
+	UNSIGNED_INTEGER(OGLVersion.GL11, GL_UNSIGNED_INT, 4),
+	DOUBLE(OGLVersion.GL11, GL_DOUBLE, 8),
+	/** 16-bit floating point. */
+	HALF_FLOAT(OGLVersion.GL30, GL30.GL_HALF_FLOAT, 2),
+	/** Four signed components packed into 32 bits: 10 bits each for X, Y, and Z, and 2 bits for W. */
+	INT_2_10_10_10_REV(OGLVersion.GL33, GL33.GL_INT_2_10_10_10_REV, 4),
+	/** Four unsigned components packed into 32 bits: 10 bits each for X, Y, and Z, and 2 bits for W. */
+	UNSIGNED_INT_2_10_10_10_REV(OGLVersion.GL33, GL12.GL_UNSIGNED_INT_2_10_10_10_REV, 4);
 	
+	private final OGLVersion version;
 	public final int glValue;
 	public final int size;
-	private DataType(int val, int size) {glValue = val; this.size = size;}
+	private DataType(OGLVersion version, int val, int size) {this.version = version; glValue = val; this.size = size;}
+
+	@Override
+	public OGLVersion getVersion()
+	{
+		return version;
+	}
+
+	@Override
+	public boolean isCore()
+	{
+		return true;
+	}
+
+	/**
+	 * @return true if this type packs all of the components of an attribute into one value, false if not.
+	 */
+	public boolean isPacked()
+	{
+		return this == INT_2_10_10_10_REV || this == UNSIGNED_INT_2_10_10_10_REV;
+	}
+
 }
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.enums;
+
+import org.lwjgl.opengl.GL42;
+import org.lwjgl.opengl.GL43;
+import org.lwjgl.opengl.GL44;
+
+import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.OGLVersioned;
+
+/**
+ * Memory barrier flags, describing how incoherently-written data
+ * (by shader image stores, shader storage buffers, or atomic counters) will be used after the barrier.
+ * @author Matthew Tropiano
+ */
+public enum MemoryBarrierFlag implements OGLVersioned
+{
+	/** Data will be sourced as vertex attributes. */
+	VERTEX_ATTRIB_ARRAY(OGLVersion.GL42, GL42.GL_VERTEX_ATTRIB_ARRAY_BARRIER_BIT),
+	/** Data will be sourced as element indices. */
+	ELEMENT_ARRAY(OGLVersion.GL42, GL42.GL_ELEMENT_ARRAY_BARRIER_BIT),
+	/** Data will be sourced as uniform buffers. */
+	UNIFORM(OGLVersion.GL42, GL42.GL_UNIFORM_BARRIER_BIT),
+	/** Data will be fetched from textures. */
+	TEXTURE_FETCH(OGLVersion.GL42, GL42.GL_TEXTURE_FETCH_BARRIER_BIT),
+	/** Data will be accessed via shader image loads and stores. */
+	SHADER_IMAGE_ACCESS(OGLVersion.GL42, GL42.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT),
+	/** Data will be sourced as indirect draw or dispatch commands. */
+	COMMAND(OGLVersion.GL42, GL42.GL_COMMAND_BARRIER_BIT),
+	/** Data will be read or written via pixel buffer transfers. */
+	PIXEL_BUFFER(OGLVersion.GL42, GL42.GL_PIXEL_BUFFER_BARRIER_BIT),
+	/** Data will be read or written via texture image transfers. */
+	TEXTURE_UPDATE(OGLVersion.GL42, GL42.GL_TEXTURE_UPDATE_BARRIER_BIT),
+	/** Data will be read or written via buffer copies, sub-data calls, or mappings. */
+	BUFFER_UPDATE(OGLVersion.GL42, GL42.GL_BUFFER_UPDATE_BARRIER_BIT),
+	/** Data will be read or written via framebuffer attachments. */
+	FRAMEBUFFER(OGLVersion.GL42, GL42.GL_FRAMEBUFFER_BARRIER_BIT),
+	/** Data will be written via transform feedback. */
+	TRANSFORM_FEEDBACK(OGLVersion.GL42, GL42.GL_TRANSFORM_FEEDBACK_BARRIER_BIT),
+	/** Data will be accessed via atomic counters. */
+	ATOMIC_COUNTER(OGLVersion.GL42, GL42.GL_ATOMIC_COUNTER_BARRIER_BIT),
+	/** Data will be accessed via shader storage blocks. */
+	SHADER_STORAGE(OGLVersion.GL43, GL43.GL_SHADER_STORAGE_BARRIER_BIT),
+	/** Data will be read by the client from persistent mappings. */
+	CLIENT_MAPPED_BUFFER(OGLVersion.GL44, GL44.GL_CLIENT_MAPPED_BUFFER_BARRIER_BIT),
+	/** Data will be written via query buffer results. */
+	QUERY_BUFFER(OGLVersion.GL44, GL44.GL_QUERY_BUFFER_BARRIER_BIT),
+	/** All of the above. */
+	ALL(OGLVersion.GL42, GL42.GL_ALL_BARRIER_BITS);
+	
+	private final OGLVersion version;
+	public final int glValue;
+
+	private MemoryBarrierFlag(OGLVersion version, int gltype) 
+	{
+		this.version = version;
+		this.glValue = gltype;
+	}
+	
+	@Override
+	public OGLVersion getVersion()
+	{
+		return version;
+	}
+
+	@Override
+	public boolean isCore()
+	{
+		return true;
+	}
+	
+	/**
+	 * Combines a set of flags into an OpenGL bit field.
+	 * @param flags the flags to combine.
+	 * @return the resultant bits.
+	 */
+	public static int toBits(MemoryBarrierFlag ... flags)
+	{
+		int out = 0;
+		for (int i = 0; i < flags.length; i++)
+			out |= flags[i].glValue;
+		return out;
+	}
+	
+}
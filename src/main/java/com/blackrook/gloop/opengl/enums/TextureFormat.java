@@ -19,47 +19,50 @@ import com.blackrook.gloop.opengl.OGLVersioned;
 public enum TextureFormat implements OGLVersioned
 {
 	/** Grayscale, No alpha, default bit depth. */
-	LUMINANCE(OGLVersion.GL11, false, GL11.GL_LUMINANCE, false, 1f),
+	LUMINANCE(OGLVersion.GL11, false, GL11.GL_LUMINANCE, GL11.GL_LUMINANCE8, false, 1f),
 	/** Grayscale with alpha, default bit depth. */
-	LUMINANCE_ALPHA(OGLVersion.GL11, false, GL11.GL_LUMINANCE_ALPHA, false, 2f),
+	LUMINANCE_ALPHA(OGLVersion.GL11, false, GL11.GL_LUMINANCE_ALPHA, GL11.GL_LUMINANCE8_ALPHA8, false, 2f),
 	/** White, Alpha only, default bit depth. */
-	INTENSITY(OGLVersion.GL11, false, GL11.GL_INTENSITY, false, 1f),
+	INTENSITY(OGLVersion.GL11, false, GL11.GL_INTENSITY, GL11.GL_INTENSITY8, false, 1f),
 	/** RGB, No alpha, default bit depth. */
-	RGB(OGLVersion.GL11, true, GL11.GL_RGB, false, 3f),
+	RGB(OGLVersion.GL11, true, GL11.GL_RGB, GL11.GL_RGB8, false, 3f),
 	/** RGBA, default bit depth. */
-	RGBA(OGLVersion.GL11, true, GL11.GL_RGBA, false, 4f),
+	RGBA(OGLVersion.GL11, true, GL11.GL_RGBA, GL11.GL_RGBA8, false, 4f),
 	/** RGBA, forced 16-bit. */
-	RGBA4(OGLVersion.GL11, true, GL11.GL_RGB4, false, 2f),
+	RGBA4(OGLVersion.GL11, true, GL11.GL_RGB4, GL11.GL_RGBA4, false, 2f),
 	/** RGBA, forced 16-bit. */
-	RGB5A1(OGLVersion.GL11, true, GL11.GL_RGB5_A1, false, 2f),
+	RGB5A1(OGLVersion.GL11, true, GL11.GL_RGB5_A1, GL11.GL_RGB5_A1, false, 2f),
 	/** RGBA, forced 32-bit. */
-	RGBA8(OGLVersion.GL11, true, GL11.GL_RGB8, false, 4f),
+	RGBA8(OGLVersion.GL11, true, GL11.GL_RGB8, GL11.GL_RGBA8, false, 4f),
 
 	/** Compressed Alpha Only. */
-	COMPRESSED_ALPHA(OGLVersion.GL13, false, GL13.GL_COMPRESSED_ALPHA, true, 1f),
+	COMPRESSED_ALPHA(OGLVersion.GL13, false, GL13.GL_COMPRESSED_ALPHA, 0, true, 1f),
 	/** Compressed Luminance Only. */
-	COMPRESSED_LUMINANCE(OGLVersion.GL13, false, GL13.GL_COMPRESSED_LUMINANCE, true, 1f),
+	COMPRESSED_LUMINANCE(OGLVersion.GL13, false, GL13.GL_COMPRESSED_LUMINANCE, 0, true, 1f),
 	/** Compressed Luminance Alpha Only. */
-	COMPRESSED_LUMINANCE_ALPHA(OGLVersion.GL13, false, GL13.GL_COMPRESSED_LUMINANCE_ALPHA, true, 2f),
+	COMPRESSED_LUMINANCE_ALPHA(OGLVersion.GL13, false, GL13.GL_COMPRESSED_LUMINANCE_ALPHA, 0, true, 2f),
 	/** Compressed Intensity Only. */
-	COMPRESSED_INTENSITY(OGLVersion.GL13, false, GL13.GL_COMPRESSED_INTENSITY, true, 1f),
+	COMPRESSED_INTENSITY(OGLVersion.GL13, false, GL13.GL_COMPRESSED_INTENSITY, 0, true, 1f),
 	/** Compressed RGB Only. */
-	COMPRESSED_RGB(OGLVersion.GL13, true, GL13.GL_COMPRESSED_RGB, true, 3f),
+	COMPRESSED_RGB(OGLVersion.GL13, true, GL13.GL_COMPRESSED_RGB, 0, true, 3f),
 	/** Compressed RGBA Only. */
-	COMPRESSED_RGBA(OGLVersion.GL13, true, GL13.GL_COMPRESSED_RGBA, true, 4f);
+	COMPRESSED_RGBA(OGLVersion.GL13, true, GL13.GL_COMPRESSED_RGBA, 0, true, 4f);
 
 	private final OGLVersion version;
 	private final boolean core;
 	
 	public final int glValue;
+	/** The sized internal format equivalent, for immutable storage, or 0 if there is none. */
+	public final int sizedGlValue;
 	private final boolean compressed;
 	private final float sizeFactor;
 	
-	private TextureFormat(OGLVersion version, boolean core, int id, boolean c, float factor)
+	private TextureFormat(OGLVersion version, boolean core, int id, int sizedId, boolean c, float factor)
 	{
 		this.version = version;
 		this.core = core;
 		this.glValue = id; 
+		this.sizedGlValue = sizedId; 
 		this.compressed = c; 
 		this.sizeFactor = factor;
 	}
@@ -69,6 +72,16 @@ public enum TextureFormat implements OGLVersioned
 		return compressed;
 	}
 	
+	/**
+	 * Checks if this format has a sized equivalent, required for immutable texture storage.
+	 * Generic compressed formats do not.
+	 * @return true if so, false if not.
+	 */
+	public boolean hasSizedFormat()
+	{
+		return sizedGlValue != 0;
+	}
+	
 	public float getSizeFactor()
 	{
 		return sizeFactor;
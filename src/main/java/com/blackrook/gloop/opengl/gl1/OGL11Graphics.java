@@ -52,6 +52,7 @@ import com.blackrook.gloop.opengl.enums.TextureWrapType;
 import com.blackrook.gloop.opengl.exception.GraphicsException;
 import com.blackrook.gloop.opengl.math.Matrix4F;
 import com.blackrook.gloop.opengl.math.MatrixStack;
+import com.blackrook.gloop.opengl.util.NativeArena;
 import com.blackrook.gloop.opengl.util.TextureBuilder;
 import com.blackrook.gloop.opengl.util.TextureUtils;
 
@@ -64,6 +65,8 @@ import static org.lwjgl.opengl.GL11.*;
 public class OGL11Graphics extends OGLGraphics
 {
 	private static final ThreadLocal<Matrix4F> MATRIX = ThreadLocal.withInitial(()->new Matrix4F());
+	/** Initial capacity of the per-frame scratch arena, in bytes. */
+	private static final int FRAME_ARENA_CAPACITY = 1024 * 1024;
 
 	/**
 	 * Information about this context implementation.
@@ -236,23 +239,35 @@ public class OGL11Graphics extends OGLGraphics
 		}
 	}
 	
-	/** Current matrix id. */
-	private Integer currentMatrixId;
+	/** Amount of low matrix ids whose stacks are kept in an array (higher ids are kept in a map). */
+	private static final int DENSE_MATRIX_IDS = 32;
+
+	/** Current matrix id, or -1 for none. */
+	private int currentMatrixId;
 	/** Current matrix stack. */
 	private MatrixStack currentMatrixStack;
-	/** Current matrix stacks per mode. */
-	private Map<Integer, MatrixStack> currentMatrixStacks;
+	/** Current matrix stacks for low matrix ids (or mode ordinals), indexed by id. */
+	private MatrixStack[] currentMatrixStacks;
+	/** Current matrix stacks for the other matrix ids, or null if none were made yet. */
+	private Map<Integer, MatrixStack> sparseMatrixStacks;
 	/** Current bound textures per unit. */
 	private Map<Integer, Map<Integer, OGLTexture>> currentTextures;
+	/** Current texture residency manager. */
+	private OGLTextureResidencyManager textureResidencyManager;
+	/** Per-frame scratch memory. */
+	private NativeArena frameArena;
 	
 	// Create OpenGL 1.1 context.
 	public OGL11Graphics(Options options, boolean core)
 	{
 		super(options, core);
-		this.currentMatrixId = null;
+		this.currentMatrixId = -1;
 		this.currentMatrixStack = null;
-		this.currentMatrixStacks = new TreeMap<>();
+		this.currentMatrixStacks = new MatrixStack[Math.max(DENSE_MATRIX_IDS, MatrixMode.values().length)];
+		this.sparseMatrixStacks = null;
 		this.currentTextures = null;
+		this.textureResidencyManager = null;
+		this.frameArena = null;
 	}
 	
 	@Override
@@ -321,9 +336,9 @@ public class OGL11Graphics extends OGLGraphics
 	}
 	
 	/**
-	 * @return the current matrix mode index.
+	 * @return the current matrix mode index, or -1 if no current matrix.
 	 */
-	protected Integer getCurrentMatrixId()
+	protected int getCurrentMatrixId()
 	{
 		return currentMatrixId;
 	}
@@ -331,11 +346,13 @@ public class OGL11Graphics extends OGLGraphics
 	/**
 	 * Sets the current matrix id.
 	 * @param currentMatrixId the new current matrix id.
+	 * @throws GraphicsException if the id is negative.
 	 */
-	protected void setCurrentMatrixId(Integer currentMatrixId)
+	protected void setCurrentMatrixId(int currentMatrixId)
 	{
+		MatrixStack stack = getCurrentMatrixStack(currentMatrixId);
 		this.currentMatrixId = currentMatrixId;
-		this.currentMatrixStack = resolveCurrentMatrixStack();
+		this.currentMatrixStack = stack;
 	}
 	
 	/**
@@ -343,23 +360,35 @@ public class OGL11Graphics extends OGLGraphics
 	 */
 	protected MatrixStack getCurrentMatrixStack()
 	{
-		if (currentMatrixId == null)
+		if (currentMatrixId < 0)
 			return null;
 		return getCurrentMatrixStack(currentMatrixId);
 	}
 	
 	/**
+	 * Gets a matrix stack, creating it if it does not exist yet.
 	 * @param id the matrix id.
-	 * @return the current matrix stack, or null if no current matrix.
+	 * @return the matrix stack.
+	 * @throws GraphicsException if the id is negative.
 	 */
 	protected MatrixStack getCurrentMatrixStack(int id)
 	{
-		if (currentMatrixStacks == null)
-			currentMatrixStacks = new TreeMap<>();
+		if (id < 0)
+			throw new GraphicsException("Matrix id cannot be negative.");
 		
 		MatrixStack stack;
-		if ((stack = currentMatrixStacks.get(id)) == null)
-			currentMatrixStacks.put(id, (stack = new MatrixStack(64)));
+		if (id < currentMatrixStacks.length)
+		{
+			if ((stack = currentMatrixStacks[id]) == null)
+				currentMatrixStacks[id] = (stack = new MatrixStack(64));
+		}
+		else
+		{
+			if (sparseMatrixStacks == null)
+				sparseMatrixStacks = new TreeMap<>();
+			if ((stack = sparseMatrixStacks.get(id)) == null)
+				sparseMatrixStacks.put(id, stack = new MatrixStack(64));
+		}
 		return stack;
 	}
 	
@@ -386,6 +415,33 @@ public class OGL11Graphics extends OGLGraphics
 	{
 		// Clean up abandoned objects.
 		handleUndeletedObjects(OGLTexture.class, OGLTexture.destroyUndeleted());
+		if (frameArena != null)
+			frameArena.reset();
+	}
+
+	@Override
+	protected void endContext()
+	{
+		super.endContext();
+		if (frameArena != null)
+			frameArena.destroy();
+		frameArena = null;
+	}
+
+	/**
+	 * Gets the per-frame scratch memory arena, for temporary native buffers 
+	 * (uploads, readback destinations, per-draw parameters) that do not need to outlive the current frame.
+	 * The arena is reset at the end of each frame, so buffers allocated from it must not be kept past the frame,
+	 * and its memory is released when the context ends.
+	 * <p> This should only be used from the graphics thread.
+	 * @return the arena.
+	 * @see NativeArena
+	 */
+	public NativeArena getFrameArena()
+	{
+		if (frameArena == null)
+			frameArena = new NativeArena(FRAME_ARENA_CAPACITY);
+		return frameArena;
 	}
 
 	/**
@@ -1493,7 +1549,7 @@ public class OGL11Graphics extends OGLGraphics
 	public void matrixGet(MatrixMode matrixType, float[] outArray)
 	{
 		if (isCore())
-			getCurrentMatrixStack(matrixType.ordinal()).peek().getFloats(outArray);
+			getCurrentMatrixStack(matrixType.ordinal()).get(outArray);
 		else
 			glGetFloatv(matrixType.glReadValue, outArray);
 	}
@@ -1509,7 +1565,7 @@ public class OGL11Graphics extends OGLGraphics
 	public void matrixGet(MatrixMode matrixType, Matrix4F matrix)
 	{
 		if (isCore())
-			matrix.set(getCurrentMatrixStack(matrixType.ordinal()).peek());
+			getCurrentMatrixStack(matrixType.ordinal()).get(matrix);
 		else
 			glGetFloatv(matrixType.glReadValue, matrix.getArray());
 	}
@@ -2212,16 +2268,87 @@ public class OGL11Graphics extends OGLGraphics
 		return new OGLTexture();
 	}
 	
+	/**
+	 * Creates a texture object around a texture name that was already created in OpenGL.
+	 * @param name the texture name.
+	 * @param target the target that the texture was created for, or null if not bound yet.
+	 * @return a new texture object.
+	 */
+	protected OGLTexture wrapTexture(int name, TextureTargetType target)
+	{
+		return new OGLTexture(name, target);
+	}
+	
+	/**
+	 * Records the immutable storage properties of a texture, after its storage was allocated.
+	 * @param texture the texture.
+	 * @param levels the amount of allocated levels.
+	 * @param size the size of the storage in bytes.
+	 */
+	protected void setTextureStorageProperties(OGLTexture texture, int levels, long size)
+	{
+		texture.setStorage(levels, size);
+	}
+	
+	/**
+	 * Records that a texture was attached to or detached from a framebuffer attachment point.
+	 * Attached textures are never evicted by the texture residency manager.
+	 * @param texture the texture.
+	 * @param attached true if attached, false if detached.
+	 */
+	protected void setTextureAttachedState(OGLTexture texture, boolean attached)
+	{
+		texture.addAttachments(attached ? 1 : -1);
+	}
+	
+	/**
+	 * Checks if a texture is in use: bound to a target on any texture unit, or attached to a framebuffer.
+	 * @param texture the texture to check.
+	 * @return true if so, false if not.
+	 */
+	boolean isTextureInUse(OGLTexture texture)
+	{
+		if (texture.isAttached())
+			return true;
+		if (currentTextures == null)
+			return false;
+		for (Map<Integer, OGLTexture> stateMap : currentTextures.values())
+			for (OGLTexture bound : stateMap.values())
+				if (bound == texture)
+					return true;
+		return false;
+	}
+	
 	/**
 	 * Destroys a texture object.
 	 * @param texture the texture to destroy.
 	 */
 	public void destroyTexture(OGLTexture texture)
 	{
+		if (textureResidencyManager != null)
+			textureResidencyManager.onDestroy(texture);
 		destroyObject(texture);
 		checkError();
 	}
 	
+	/**
+	 * Sets the texture residency manager to use for tracking texture binds.
+	 * @param manager the manager to use, or null for no manager.
+	 * @see OGLTextureResidencyManager
+	 */
+	public void setTextureResidencyManager(OGLTextureResidencyManager manager)
+	{
+		this.textureResidencyManager = manager;
+	}
+	
+	/**
+	 * @return the current texture residency manager, or null if none.
+	 */
+	public OGLTextureResidencyManager getTextureResidencyManager()
+	{
+		return textureResidencyManager;
+	}
+	
 	/**
 	 * Gets a texture currently bound to a target. 
 	 * @param target the texture target.
@@ -2238,15 +2365,19 @@ public class OGL11Graphics extends OGLGraphics
 	 * Binds a texture object to the current active texture unit on the specified target.
 	 * This also sets the texture's target identity: if this texture from this point forward
 	 * is bound to any other target type, an exception will be thrown.
+	 * <p> If a texture residency manager is set, evicted textures are reloaded on bind, or substituted with its placeholder.
 	 * @param target the texture target.
 	 * @param texture the texture to bind.
 	 * @throws UnsupportedOperationException if the target type is unavailable in this version.
 	 * @throws GraphicsException if the provided texture was previously bound to a different target.
+	 * @see #setTextureResidencyManager(OGLTextureResidencyManager)
 	 */
 	public void setTexture(TextureTargetType target, OGLTexture texture)
 	{
 		verifyFeatureSupport(target);
 		Objects.requireNonNull(texture);
+		if (textureResidencyManager != null)
+			texture = textureResidencyManager.onBind(target, texture);
 		texture.setUsedTarget(target);
 		glBindTexture(target.glValue, texture.getName());
 		setCurrentActiveTextureState(target.glValue, texture);
@@ -11,12 +11,16 @@ import java.awt.image.BufferedImage;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.function.Function;
 
+import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryStack;
 
 import com.blackrook.gloop.opengl.OGLVersion;
 import com.blackrook.gloop.opengl.enums.ColorFormat;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
 import com.blackrook.gloop.opengl.enums.TextureFormat;
 import com.blackrook.gloop.opengl.enums.TextureMagFilter;
 import com.blackrook.gloop.opengl.enums.TextureMinFilter;
@@ -212,4 +216,71 @@ public class OGL14Graphics extends OGL13Graphics
 		glTexParameteri(target.glValue, GL_GENERATE_MIPMAP, toGLBool(genMipmaps));
 	}
 
+	/**
+	 * Draws several ranges of geometry in one call, using the current bound, enabled coordinate arrays/buffers as data.
+	 * The amount of ranges drawn is the amount of remaining elements in <code>firsts</code>.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param firsts the starting offsets of each range in the bound buffers (in elements).
+	 * @param counts the number of elements to draw in each range.
+	 * @throws GraphicsException if either buffer is not direct, or the buffers do not have the same amount of remaining elements.
+	 */
+	public void drawGeometryArrayMulti(GeometryType geometryType, IntBuffer firsts, IntBuffer counts)
+	{
+		if (!firsts.isDirect() || !counts.isDirect())
+			throw new GraphicsException("Data must be a direct buffer."); 
+		if (firsts.remaining() != counts.remaining())
+			throw new GraphicsException("First and count buffers must have the same amount of remaining elements.");
+		glMultiDrawArrays(geometryType.glValue, firsts, counts);
+		checkError();
+	}
+
+	/**
+	 * Draws several ranges of geometry in one call, using the current bound, enabled coordinate arrays/buffers as data, plus
+	 * an element buffer to describe the ordering.
+	 * The amount of ranges drawn is the amount of remaining elements in <code>counts</code>.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param dataType the data type of the indices in the {@link com.blackrook.gloop.opengl.enums.BufferTargetType#INDICES}-bound buffer (must be an unsigned type).
+	 * @param counts the amount of element indices to interpret in each range.
+	 * @param offsets the starting offsets of each range in the index buffer (in bytes, not elements).
+	 * @throws GraphicsException if the count buffer is not direct, or the buffers do not have the same amount of remaining elements.
+	 */
+	public void drawGeometryElementsMulti(GeometryType geometryType, DataType dataType, IntBuffer counts, PointerBuffer offsets)
+	{
+		if (!counts.isDirect())
+			throw new GraphicsException("Data must be a direct buffer."); 
+		if (counts.remaining() != offsets.remaining())
+			throw new GraphicsException("Count and offset buffers must have the same amount of remaining elements.");
+		glMultiDrawElements(geometryType.glValue, counts, dataType.glValue, offsets);
+		checkError();
+	}
+
+	/**
+	 * Creates a draw batch, which collects draws of bound vertex arrays/buffers that share the same state,
+	 * and submits them in one call.
+	 * @param geometryType the geometry type of all of the draws.
+	 * @param capacity the maximum amount of ranges collected before the batch flushes itself.
+	 * @return a new draw batch.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 * @see #drawGeometryArrayMulti(GeometryType, IntBuffer, IntBuffer)
+	 */
+	public OGLDrawBatch createArrayDrawBatch(GeometryType geometryType, int capacity)
+	{
+		return new OGLDrawBatch(this, geometryType, null, capacity);
+	}
+
+	/**
+	 * Creates a draw batch, which collects element draws of bound vertex arrays/buffers 
+	 * and the bound index buffer that share the same state, and submits them in one call.
+	 * @param geometryType the geometry type of all of the draws.
+	 * @param dataType the data type of the indices in the index buffer (must be an unsigned type).
+	 * @param capacity the maximum amount of ranges collected before the batch flushes itself.
+	 * @return a new draw batch.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 * @see #drawGeometryElementsMulti(GeometryType, DataType, IntBuffer, PointerBuffer)
+	 */
+	public OGLDrawBatch createElementDrawBatch(GeometryType geometryType, DataType dataType, int capacity)
+	{
+		return new OGLDrawBatch(this, geometryType, dataType, capacity);
+	}
+
 }
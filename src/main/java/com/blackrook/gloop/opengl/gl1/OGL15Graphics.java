@@ -13,9 +13,12 @@ import com.blackrook.gloop.opengl.enums.BufferTargetType;
 import com.blackrook.gloop.opengl.enums.CachingHint;
 import com.blackrook.gloop.opengl.enums.DataType;
 import com.blackrook.gloop.opengl.enums.FogCoordinateType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
 import com.blackrook.gloop.opengl.enums.QueryTarget;
 import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.util.BufferUtils;
 import com.blackrook.gloop.opengl.util.GeometryBuilder;
+import com.blackrook.gloop.opengl.util.IndexBuilder;
 
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
@@ -58,6 +61,34 @@ public class OGL15Graphics extends OGL14Graphics
 
 	}
 	
+	/**
+	 * Index builder used for OpenGL 1.5.
+	 */
+	private static class OGL15IndexBuilder extends IndexBuilder.Abstract<OGL15Graphics>
+	{
+		protected OGL15IndexBuilder(OGL15Graphics gl)
+		{
+			super(gl);
+		}
+
+		@Override
+		public OGLBuffer create()
+		{
+			ByteBuffer data = getIndexData();
+			OGLBuffer previous = gl.getBuffer(BufferTargetType.INDICES);
+			OGLBuffer out = gl.createBuffer(); 
+			gl.setBuffer(BufferTargetType.INDICES, out);
+			gl.setBufferData(BufferTargetType.INDICES, CachingHint.STATIC_DRAW, data);
+			if (previous != null)
+				gl.setBuffer(BufferTargetType.INDICES, previous);
+			else
+				gl.unsetBuffer(BufferTargetType.INDICES);
+			BufferUtils.free(data);
+			return out;
+		}
+
+	}
+	
 	/** Current buffer binding map. */
 	private Map<BufferTargetType, OGLBuffer> currentBuffer;
 
@@ -222,6 +253,33 @@ public class OGL15Graphics extends OGL14Graphics
 		return new OGL15GeometryBuilder(this, vertices, attributeSizes);
 	}
 
+	/**
+	 * Creates a new index builder.
+	 * <p> This index builder picks the smallest index data type for the indices added to it, and its
+	 * {@link IndexBuilder#create()} method will bind a new buffer to the {@link BufferTargetType#INDICES} target,
+	 * send the data, restore the previous binding, and return the new object.
+	 * The builder keeps the geometry type, data type, and count to draw the buffer with
+	 * (see {@link #drawGeometryElements(IndexBuilder)}).
+	 * @return the new builder.
+	 */
+	public IndexBuilder createIndexBuilder()
+	{
+		return new OGL15IndexBuilder(this);
+	}
+
+	/**
+	 * Draws geometry using the current bound, enabled coordinate arrays/buffers as data, plus
+	 * the {@link BufferTargetType#INDICES}-bound buffer created by an index builder to describe the ordering,
+	 * using the geometry type, data type, and index count of the builder.
+	 * If the builder made strips, primitive restart must be enabled with its restart index.
+	 * @param builder the index builder that created the bound index buffer.
+	 * @see IndexBuilder#hasRestartIndex()
+	 */
+	public void drawGeometryElements(IndexBuilder builder)
+	{
+		drawGeometryElements(builder.getGeometryType(), builder.getDataType(), builder.getIndexCount(), 0);
+	}
+
 	/**
 	 * Creates a new buffer object.
 	 * @return a new, uninitialized buffer object.
@@ -232,6 +290,16 @@ public class OGL15Graphics extends OGL14Graphics
 		return new OGLBuffer();
 	}
 
+	/**
+	 * Creates a buffer object around a buffer name that was already created in OpenGL.
+	 * @param name the buffer name.
+	 * @return a new buffer object.
+	 */
+	protected OGLBuffer wrapBuffer(int name)
+	{
+		return new OGLBuffer(name);
+	}
+
 	/**
 	 * Destroys a buffer object.
 	 * @param buffer the buffer to destroy.
@@ -36,6 +36,15 @@ public class OGLBuffer extends OGLObject
 		setName(glGenBuffers());
 	}
 	
+	/**
+	 * Creates a buffer object around an existing OpenGL buffer name.
+	 * @param name the buffer name.
+	 */
+	OGLBuffer(int name)
+	{
+		setName(name);
+	}
+	
 	@Override
 	protected void free()
 	{
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl1;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import org.lwjgl.PointerBuffer;
+
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
+
+/**
+ * A collector of draws that share the same state (bound buffers, program, textures, etc.),
+ * which submits them all in one glMultiDrawArrays or glMultiDrawElements call.
+ * <p> Draws are added as ranges of vertices (or indices, for element batches).
+ * If the geometry type is batchable (see {@link GeometryType#isBatchable()}), a range that directly follows
+ * the previous one is merged into it. The batch flushes itself when it is full, and must be
+ * flushed via {@link #flush()} before any state that affects the draws is changed.
+ * <p> Adding draws does not allocate.
+ * @author Matthew Tropiano
+ * @see OGL14Graphics#createArrayDrawBatch(GeometryType, int)
+ * @see OGL14Graphics#createElementDrawBatch(GeometryType, DataType, int)
+ */
+public class OGLDrawBatch
+{
+	private OGL14Graphics gl;
+	private GeometryType geometryType;
+	private DataType dataType;
+
+	/** First vertices (arrays) or first indices (elements) of each range. */
+	private int[] firsts;
+	/** Counts of each range. */
+	private int[] counts;
+	/** Amount of ranges. */
+	private int size;
+	/** Amount of draws added since the last flush. */
+	private int pendingDraws;
+
+	private IntBuffer firstBuffer;
+	private IntBuffer countBuffer;
+	private PointerBuffer offsetBuffer;
+
+	private long flushes;
+	private long draws;
+	private long submittedRanges;
+	private int lastFlushDraws;
+
+	/**
+	 * Creates a new draw batch.
+	 * @param gl the graphics instance.
+	 * @param geometryType the geometry type of all of the draws.
+	 * @param dataType the index data type, or null for an array batch.
+	 * @param capacity the maximum amount of ranges.
+	 */
+	OGLDrawBatch(OGL14Graphics gl, GeometryType geometryType, DataType dataType, int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be 1 or greater.");
+		this.gl = gl;
+		this.geometryType = geometryType;
+		this.dataType = dataType;
+		this.firsts = new int[capacity];
+		this.counts = new int[capacity];
+		this.size = 0;
+		this.pendingDraws = 0;
+		// Not from BufferUtils: batches are not destroyed, so an allocator's memory would never be freed.
+		this.countBuffer = allocateIntBuffer(capacity);
+		if (dataType != null)
+		{
+			this.firstBuffer = null;
+			this.offsetBuffer = PointerBuffer.allocateDirect(capacity);
+		}
+		else
+		{
+			this.firstBuffer = allocateIntBuffer(capacity);
+			this.offsetBuffer = null;
+		}
+		resetStatistics();
+	}
+
+	/**
+	 * @return the geometry type of all of the draws.
+	 */
+	public GeometryType getGeometryType()
+	{
+		return geometryType;
+	}
+
+	/**
+	 * @return the index data type, or null if this is an array batch.
+	 */
+	public DataType getDataType()
+	{
+		return dataType;
+	}
+
+	/**
+	 * @return the maximum amount of ranges collected before this batch flushes itself.
+	 */
+	public int getCapacity()
+	{
+		return counts.length;
+	}
+
+	/**
+	 * @return the amount of draws added since the last flush.
+	 */
+	public int getPendingDrawCount()
+	{
+		return pendingDraws;
+	}
+
+	/**
+	 * Adds a draw.
+	 * If the batch is full, it is flushed first.
+	 * @param first the first vertex (for array batches) or the first index in the index buffer, in indices (for element batches).
+	 * @param count the amount of vertices or indices to draw.
+	 */
+	public void add(int first, int count)
+	{
+		if (count <= 0)
+			return;
+
+		if (size > 0 && geometryType.isBatchable() && firsts[size - 1] + counts[size - 1] == first)
+		{
+			counts[size - 1] += count;
+			pendingDraws++;
+			return;
+		}
+
+		if (size == counts.length)
+			submit();
+		firsts[size] = first;
+		counts[size] = count;
+		size++;
+		pendingDraws++;
+	}
+
+	/**
+	 * Submits all collected draws in one call.
+	 * @return the amount of draws submitted.
+	 */
+	public int flush()
+	{
+		return submit();
+	}
+
+	/**
+	 * Discards all collected draws without submitting them.
+	 */
+	public void clear()
+	{
+		size = 0;
+		pendingDraws = 0;
+	}
+
+	/**
+	 * @return the amount of flushes that submitted at least one draw since the statistics were last reset,
+	 * including the ones done automatically when the batch was full.
+	 */
+	public long getFlushCount()
+	{
+		return flushes;
+	}
+
+	/**
+	 * @return the amount of draws submitted since the statistics were last reset.
+	 */
+	public long getDrawCount()
+	{
+		return draws;
+	}
+
+	/**
+	 * @return the amount of ranges actually submitted since the statistics were last reset (after merging adjacent draws).
+	 */
+	public long getSubmittedRangeCount()
+	{
+		return submittedRanges;
+	}
+
+	/**
+	 * @return the amount of draws merged into the last flush.
+	 */
+	public int getLastFlushDrawCount()
+	{
+		return lastFlushDraws;
+	}
+
+	/**
+	 * @return the average amount of draws merged per flush.
+	 */
+	public double getAverageDrawsPerFlush()
+	{
+		return flushes == 0 ? 0.0 : (double)draws / flushes;
+	}
+
+	/**
+	 * Resets the flush statistics.
+	 */
+	public void resetStatistics()
+	{
+		flushes = 0L;
+		draws = 0L;
+		submittedRanges = 0L;
+		lastFlushDraws = 0;
+	}
+
+	// Allocates a garbage-collected, native-order direct int buffer.
+	private static IntBuffer allocateIntBuffer(int length)
+	{
+		return ByteBuffer.allocateDirect(length * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	// Submits the current ranges and counts the flush, returning the amount of draws submitted.
+	private int submit()
+	{
+		if (size == 0)
+			return 0;
+
+		countBuffer.clear();
+		countBuffer.put(counts, 0, size).flip();
+		if (dataType != null)
+		{
+			offsetBuffer.clear();
+			for (int i = 0; i < size; i++)
+				offsetBuffer.put((long)firsts[i] * dataType.size);
+			offsetBuffer.flip();
+			gl.drawGeometryElementsMulti(geometryType, dataType, countBuffer, offsetBuffer);
+		}
+		else
+		{
+			firstBuffer.clear();
+			firstBuffer.put(firsts, 0, size).flip();
+			gl.drawGeometryArrayMulti(geometryType, firstBuffer, countBuffer);
+		}
+		int out = pendingDraws;
+		flushes++;
+		draws += out;
+		submittedRanges += size;
+		lastFlushDraws = out;
+		size = 0;
+		pendingDraws = 0;
+		return out;
+	}
+
+}
@@ -32,6 +32,12 @@ public class OGLTexture extends OGLObject
 
 	/** The target that this texture was first bound to. */
 	private TextureTargetType usedtarget;
+	/** The amount of levels allocated as immutable storage, or 0 if not immutable. */
+	private int storageLevels;
+	/** The size of the immutable storage in bytes, or 0 if not immutable. */
+	private long storageSize;
+	/** The amount of framebuffer attachment points that this texture is attached to. */
+	private int attachments;
 	
 	/**
 	 * Creates a new blank texture object.
@@ -40,6 +46,23 @@ public class OGLTexture extends OGLObject
 	{
 		setName(glGenTextures());
 		this.usedtarget = null;
+		this.storageLevels = 0;
+		this.storageSize = 0L;
+		this.attachments = 0;
+	}
+	
+	/**
+	 * Creates a texture object around an existing OpenGL texture name.
+	 * @param name the texture name.
+	 * @param target the target that the texture was created for, or null if not bound yet.
+	 */
+	OGLTexture(int name, TextureTargetType target)
+	{
+		setName(name);
+		this.usedtarget = target;
+		this.storageLevels = 0;
+		this.storageSize = 0L;
+		this.attachments = 0;
 	}
 	
 	/**
@@ -64,6 +87,103 @@ public class OGLTexture extends OGLObject
 		return usedtarget;
 	}
 	
+	/**
+	 * Sets the immutable storage properties of this texture.
+	 * @param levels the amount of allocated levels.
+	 * @param size the size of the storage in bytes.
+	 */
+	void setStorage(int levels, long size)
+	{
+		this.storageLevels = levels;
+		this.storageSize = size;
+	}
+	
+	/**
+	 * Checks if this texture has immutable storage, allocated once for all of its levels.
+	 * Immutable storage cannot be resized or reallocated, only have its contents changed.
+	 * @return true if so, false if not.
+	 */
+	public boolean isImmutable()
+	{
+		return storageLevels > 0;
+	}
+	
+	/**
+	 * Gets the amount of mipmap levels allocated for this texture's immutable storage.
+	 * @return the amount of levels, or 0 if this texture does not have immutable storage.
+	 */
+	public int getStorageLevelCount()
+	{
+		return storageLevels;
+	}
+	
+	/**
+	 * Gets the size of this texture's immutable storage, for all levels (and all layers or faces).
+	 * @return the size in bytes, or 0 if this texture does not have immutable storage.
+	 */
+	public long getStorageSize()
+	{
+		return storageSize;
+	}
+	
+	/**
+	 * Adds to the amount of framebuffer attachment points that this texture is attached to.
+	 * @param amount the amount to add (negative to subtract).
+	 */
+	void addAttachments(int amount)
+	{
+		this.attachments = Math.max(0, attachments + amount);
+	}
+	
+	/**
+	 * Checks if this texture is attached to a framebuffer attachment point, as tracked by the graphics instance.
+	 * @return true if so, false if not.
+	 */
+	public boolean isAttached()
+	{
+		return attachments > 0;
+	}
+	
+	/**
+	 * Releases this texture's storage by deleting it in OpenGL and
+	 * generating a new, empty texture name in its place.
+	 * The used target is kept.
+	 * <p> Since this changes the name, texture equality is based on identity, not name.
+	 */
+	void reallocate()
+	{
+		glDeleteTextures(getName());
+		setName(glGenTextures());
+		this.storageLevels = 0;
+		this.storageSize = 0L;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p> This is based on identity, since a texture's name can change (see {@link OGLTextureResidencyManager}).
+	 */
+	@Override
+	public int hashCode()
+	{
+		return System.identityHashCode(this);
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		return this == obj;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p> This is based on identity, since a texture's name can change (see {@link OGLTextureResidencyManager}).
+	 */
+	@Override
+	public boolean equals(OGLObject obj)
+	{
+		return this == obj;
+	}
+	
 	@Override
 	protected void free()
 	{
@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl1;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.blackrook.gloop.opengl.enums.TextureTargetType;
+
+/**
+ * A texture residency manager that keeps the total size of registered textures
+ * under a byte budget by evicting the least recently bound ones.
+ * <p> Evicted textures keep their Java object, but their storage in OpenGL is released.
+ * The next time an evicted texture is bound via {@link OGL11Graphics#setTexture(TextureTargetType, OGLTexture)},
+ * its registered {@link Source} is asked to upload its data again. If the source is not ready yet,
+ * or the per-frame reload limit was reached, the placeholder texture (if any) is bound instead.
+ * <p> Textures bound during the current frame are never evicted, nor are textures that are still
+ * bound to a texture unit or attached to a framebuffer (their OpenGL names are in use).
+ * <p> This must only be used from the graphics thread.
+ * @author Matthew Tropiano
+ * @see OGL11Graphics#setTextureResidencyManager(OGLTextureResidencyManager)
+ */
+public class OGLTextureResidencyManager
+{
+	/**
+	 * A source for texture data, used for re-uploading evicted textures.
+	 */
+	@FunctionalInterface
+	public interface Source
+	{
+		/**
+		 * Checks if this source is ready to upload its data.
+		 * Sources that load data asynchronously (e.g. from a disk cache) should
+		 * start loading on the first call and return false until the data is available.
+		 * @return true if ready, false if not.
+		 */
+		default boolean isReady()
+		{
+			return true;
+		}
+
+		/**
+		 * Uploads the texture data. The texture is bound to the provided target when this is called,
+		 * and is a freshly allocated texture object, so filtering and wrapping need to be set as well.
+		 * @param gl the graphics instance to use.
+		 * @param target the target that the texture is bound to.
+		 */
+		void upload(OGL11Graphics gl, TextureTargetType target);
+	}
+
+	/** The graphics instance. */
+	private OGL11Graphics gl;
+	/** Budget in bytes. */
+	private long budget;
+	/** Resident bytes. */
+	private long residentBytes;
+	/** Texture to bind in place of textures that could not be reloaded. */
+	private OGLTexture placeholder;
+	/** Maximum reloads per frame. */
+	private int maxReloadsPerFrame;
+
+	/** Registered textures. */
+	private Map<OGLTexture, Entry> entries;
+	/** Least recently used. */
+	private Entry head;
+	/** Most recently used. */
+	private Entry tail;
+	/** If true, currently reloading a texture. */
+	private boolean reloading;
+	/** The frame that the reload count was taken in. */
+	private long reloadFrame;
+	/** Reloads this frame. */
+	private int reloadCount;
+
+	private long hits;
+	private long misses;
+	private long pending;
+	private long evictions;
+	private long reloads;
+
+	/**
+	 * Creates a new residency manager.
+	 * @param gl the graphics instance that will use this manager.
+	 * @param budget the byte budget for resident textures.
+	 */
+	public OGLTextureResidencyManager(OGL11Graphics gl, long budget)
+	{
+		this.gl = gl;
+		this.budget = budget;
+		this.residentBytes = 0L;
+		this.placeholder = null;
+		this.maxReloadsPerFrame = Integer.MAX_VALUE;
+		this.entries = new IdentityHashMap<>();
+		this.head = null;
+		this.tail = null;
+		this.reloading = false;
+		this.reloadFrame = -1L;
+		this.reloadCount = 0;
+		resetStatistics();
+	}
+
+	/**
+	 * Registers an already-uploaded texture with this manager.
+	 * This may evict other textures, if the budget is exceeded.
+	 * @param texture the texture to register.
+	 * @param byteSize the amount of bytes that the texture uses in total (all levels).
+	 * @param source the source to use for re-uploading the texture data after eviction.
+	 * @throws IllegalArgumentException if the texture was never bound to a target (and thus contains no data).
+	 */
+	public void register(OGLTexture texture, long byteSize, Source source)
+	{
+		Objects.requireNonNull(texture);
+		Objects.requireNonNull(source);
+		if (texture.getUsedtarget() == null)
+			throw new IllegalArgumentException("Texture was never bound to a target.");
+
+		unregister(texture);
+		Entry entry = new Entry(texture, byteSize, source);
+		entry.lastFrame = gl.currentFrame();
+		entries.put(texture, entry);
+		link(entry);
+		residentBytes += byteSize;
+		enforceBudget();
+	}
+
+	/**
+	 * Removes a texture from this manager. The texture is not destroyed.
+	 * @param texture the texture to remove.
+	 * @return true if it was removed, false if it was not registered.
+	 */
+	public boolean unregister(OGLTexture texture)
+	{
+		Entry entry;
+		if ((entry = entries.remove(texture)) == null)
+			return false;
+		unlink(entry);
+		if (entry.resident)
+			residentBytes -= entry.byteSize;
+		return true;
+	}
+
+	/**
+	 * Checks if a texture is registered with this manager.
+	 * @param texture the texture to check.
+	 * @return true if so, false if not.
+	 */
+	public boolean isRegistered(OGLTexture texture)
+	{
+		return entries.containsKey(texture);
+	}
+
+	/**
+	 * Checks if a texture is resident (not evicted).
+	 * Unregistered textures are always considered resident.
+	 * @param texture the texture to check.
+	 * @return true if so, false if not.
+	 */
+	public boolean isResident(OGLTexture texture)
+	{
+		Entry entry;
+		return (entry = entries.get(texture)) == null || entry.resident;
+	}
+
+	/**
+	 * Evicts a single texture, regardless of when it was last bound.
+	 * Textures that are still bound to a texture unit or attached to a framebuffer are not evicted.
+	 * @param texture the texture to evict.
+	 * @return true if it was evicted, false if it was not registered, already evicted, or in use.
+	 */
+	public boolean evict(OGLTexture texture)
+	{
+		Entry entry;
+		if ((entry = entries.get(texture)) == null || !entry.resident)
+			return false;
+		if (gl.isTextureInUse(texture))
+			return false;
+		evict(entry);
+		return true;
+	}
+
+	/**
+	 * Sets the byte budget and evicts textures, if necessary.
+	 * @param budget the new budget in bytes.
+	 */
+	public void setBudget(long budget)
+	{
+		this.budget = budget;
+		enforceBudget();
+	}
+
+	/**
+	 * @return the byte budget.
+	 */
+	public long getBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * @return the total amount of bytes used by resident registered textures.
+	 */
+	public long getResidentBytes()
+	{
+		return residentBytes;
+	}
+
+	/**
+	 * Sets the texture to bind in place of an evicted texture that could not be reloaded yet.
+	 * This texture should not be registered with this manager.
+	 * @param placeholder the placeholder texture, or null to bind the (empty) evicted texture.
+	 */
+	public void setPlaceholder(OGLTexture placeholder)
+	{
+		this.placeholder = placeholder;
+	}
+
+	/**
+	 * @return the placeholder texture, or null if none.
+	 */
+	public OGLTexture getPlaceholder()
+	{
+		return placeholder;
+	}
+
+	/**
+	 * Sets the maximum amount of texture reloads that can happen per frame.
+	 * Binds past this limit use the placeholder texture.
+	 * @param maxReloadsPerFrame the maximum amount of reloads.
+	 */
+	public void setMaxReloadsPerFrame(int maxReloadsPerFrame)
+	{
+		this.maxReloadsPerFrame = maxReloadsPerFrame;
+	}
+
+	/**
+	 * @return the maximum amount of texture reloads that can happen per frame.
+	 */
+	public int getMaxReloadsPerFrame()
+	{
+		return maxReloadsPerFrame;
+	}
+
+	/**
+	 * @return the amount of binds of registered textures that were resident.
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the amount of binds of registered textures that were evicted.
+	 */
+	public long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the amount of misses that could not be reloaded and used the placeholder.
+	 */
+	public long getPending()
+	{
+		return pending;
+	}
+
+	/**
+	 * @return the amount of evictions.
+	 */
+	public long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * @return the amount of reloads.
+	 */
+	public long getReloads()
+	{
+		return reloads;
+	}
+
+	/**
+	 * Resets the hit/miss/eviction/reload statistics.
+	 */
+	public void resetStatistics()
+	{
+		this.hits = 0L;
+		this.misses = 0L;
+		this.pending = 0L;
+		this.evictions = 0L;
+		this.reloads = 0L;
+	}
+
+	/**
+	 * Called when a texture is about to be bound.
+	 * @param target the texture target.
+	 * @param texture the texture to be bound.
+	 * @return the texture to actually bind.
+	 */
+	OGLTexture onBind(TextureTargetType target, OGLTexture texture)
+	{
+		if (reloading)
+			return texture;
+
+		Entry entry;
+		if ((entry = entries.get(texture)) == null)
+			return texture;
+
+		long frame = gl.currentFrame();
+		if (entry.resident)
+		{
+			hits++;
+			touch(entry, frame);
+			return texture;
+		}
+
+		misses++;
+		if (reloadFrame != frame)
+		{
+			reloadFrame = frame;
+			reloadCount = 0;
+		}
+
+		if (reloadCount >= maxReloadsPerFrame || !entry.source.isReady())
+		{
+			pending++;
+			return placeholder != null ? placeholder : texture;
+		}
+
+		reload(target, entry);
+		reloadCount++;
+		touch(entry, frame);
+		enforceBudget();
+		return texture;
+	}
+
+	/**
+	 * Called when a texture is destroyed.
+	 * @param texture the destroyed texture.
+	 */
+	void onDestroy(OGLTexture texture)
+	{
+		unregister(texture);
+	}
+
+	// Reuploads a texture.
+	private void reload(TextureTargetType target, Entry entry)
+	{
+		OGLTexture previous = gl.getTexture(target);
+		reloading = true;
+		try {
+			gl.setTexture(target, entry.texture);
+			entry.source.upload(gl, target);
+		} finally {
+			if (previous != null)
+				gl.setTexture(target, previous);
+			else
+				gl.unsetTexture(target);
+			reloading = false;
+		}
+		entry.resident = true;
+		residentBytes += entry.byteSize;
+		reloads++;
+	}
+
+	// Evicts textures until under budget.
+	private void enforceBudget()
+	{
+		long frame = gl.currentFrame();
+		Entry entry = head;
+		while (residentBytes > budget && entry != null && entry.lastFrame < frame)
+		{
+			Entry next = entry.next;
+			if (entry.resident && !gl.isTextureInUse(entry.texture))
+				evict(entry);
+			entry = next;
+		}
+	}
+
+	// Evicts a texture.
+	private void evict(Entry entry)
+	{
+		entry.texture.reallocate();
+		entry.resident = false;
+		residentBytes -= entry.byteSize;
+		evictions++;
+	}
+
+	// Moves an entry to the most recently used position.
+	private void touch(Entry entry, long frame)
+	{
+		entry.lastFrame = frame;
+		if (entry != tail)
+		{
+			unlink(entry);
+			link(entry);
+		}
+	}
+
+	// Adds an entry to the tail.
+	private void link(Entry entry)
+	{
+		entry.prev = tail;
+		entry.next = null;
+		if (tail != null)
+			tail.next = entry;
+		else
+			head = entry;
+		tail = entry;
+	}
+
+	// Removes an entry from the list.
+	private void unlink(Entry entry)
+	{
+		if (entry.prev != null)
+			entry.prev.next = entry.next;
+		else
+			head = entry.next;
+		if (entry.next != null)
+			entry.next.prev = entry.prev;
+		else
+			tail = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	/**
+	 * A single residency entry.
+	 */
+	private static class Entry
+	{
+		private OGLTexture texture;
+		private long byteSize;
+		private Source source;
+		private boolean resident;
+		private long lastFrame;
+		private Entry prev;
+		private Entry next;
+
+		private Entry(OGLTexture texture, long byteSize, Source source)
+		{
+			this.texture = texture;
+			this.byteSize = byteSize;
+			this.source = source;
+			this.resident = true;
+			this.lastFrame = -1L;
+			this.prev = null;
+			this.next = null;
+		}
+	}
+
+}
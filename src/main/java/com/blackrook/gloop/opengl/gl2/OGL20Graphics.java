@@ -19,6 +19,7 @@ import com.blackrook.gloop.opengl.gl1.OGL15Graphics;
 import com.blackrook.gloop.opengl.math.Matrix4F;
 import com.blackrook.gloop.opengl.struct.IOUtils;
 import com.blackrook.gloop.opengl.util.ProgramBuilder;
+import com.blackrook.gloop.opengl.util.VertexFormat;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -568,6 +569,41 @@ public class OGL20Graphics extends OGL15Graphics
 		checkError();
 	}
 
+	/**
+	 * Sets a uniform matrix (mat3) value on the currently-bound program.
+	 * The remaining values in the buffer are read, so several matrices can be set on a uniform array at once.
+	 * @param locationId the uniform location.
+	 * @param matrix the buffer of column-major values (9 per matrix).
+	 * @throws GraphicsException if the buffer is not direct.
+	 */
+	public void setProgramUniformMatrix3(int locationId, FloatBuffer matrix)
+	{
+		if (!matrix.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		glUniformMatrix3fv(locationId, false, matrix);
+		checkError();
+	}
+
+	/**
+	 * Sets a uniform matrix (mat3) value on the currently-bound program to the normal matrix of a matrix
+	 * (the inverse transpose of its upper-left 3x3), for transforming normals.
+	 * @param locationId the uniform location.
+	 * @param matrix the source matrix, usually a model or model-view matrix.
+	 * @throws ArithmeticException if the upper-left 3x3 of the matrix is not invertible.
+	 * @see Matrix4F#getNormalMatrix(FloatBuffer)
+	 */
+	public void setProgramUniformNormalMatrix(int locationId, Matrix4F matrix)
+	{
+		try (MemoryStack stack = MemoryStack.stackPush())
+		{
+			FloatBuffer fbuf = stack.mallocFloat(9);
+			matrix.getNormalMatrix(fbuf);
+			fbuf.flip();
+			glUniformMatrix3fv(locationId, false, fbuf);
+		}
+		checkError();
+	}
+
 	/**
 	 * Sets a uniform matrix (mat4) value on the currently-bound program.
 	 * @param locationId the uniform location.
@@ -685,10 +721,44 @@ public class OGL20Graphics extends OGL15Graphics
 	 */
 	public void setVertexAttribBufferPointer(int index, DataType dataType, boolean normalize, int dimensions, int stride, int offset)
 	{
+		verifyFeatureSupport(dataType);
 		glVertexAttribPointer(index, dimensions, dataType.glValue, normalize, stride * dataType.size, offset * dataType.size);
 		checkError();
 	}
 
+	/**
+	 * Sets what positions in the current {@link BufferTargetType#GEOMETRY}-bound buffer are used to draw polygonal information,
+	 * using one attribute of a {@link VertexFormat} (its data type, component count, normalization, offset, and the format's stride).
+	 * @param index the attribute index.
+	 * @param format the vertex format that describes the buffer's layout.
+	 * @param attribute the index of the attribute in the format.
+	 * @throws ArrayIndexOutOfBoundsException if the attribute index is out of range.
+	 * @see #setVertexAttribEnabled(int, boolean)
+	 */
+	public void setVertexAttribBufferPointer(int index, VertexFormat format, int attribute)
+	{
+		setVertexAttribBufferPointer(index, format, attribute, 0L);
+	}
+
+	/**
+	 * Sets what positions in the current {@link BufferTargetType#GEOMETRY}-bound buffer are used to draw polygonal information,
+	 * using one attribute of a {@link VertexFormat}, for vertices that start somewhere past the start of the buffer
+	 * (for example, in a region of a streamed buffer).
+	 * @param index the attribute index.
+	 * @param format the vertex format that describes the buffer's layout.
+	 * @param attribute the index of the attribute in the format.
+	 * @param bufferOffset the offset of the first vertex from the start of the buffer, in bytes.
+	 * @throws ArrayIndexOutOfBoundsException if the attribute index is out of range.
+	 * @see #setVertexAttribEnabled(int, boolean)
+	 */
+	public void setVertexAttribBufferPointer(int index, VertexFormat format, int attribute, long bufferOffset)
+	{
+		VertexFormat.Attribute attrib = format.getAttribute(attribute);
+		verifyFeatureSupport(attrib.getDataType());
+		glVertexAttribPointer(index, attrib.getStoredComponents(), attrib.getDataType().glValue, attrib.isNormalized(), format.getStride(), bufferOffset + attrib.getOffset());
+		checkError();
+	}
+
 	/**
 	 * Creates a supplier that gets the source from a file.
 	 * Assumes system encoding.
@@ -7,11 +7,20 @@
  ******************************************************************************/
 package com.blackrook.gloop.opengl.gl2;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.concurrent.Executor;
 
 import org.lwjgl.system.MemoryStack;
 
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.AccessType;
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.CachingHint;
+import com.blackrook.gloop.opengl.enums.ColorFormat;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.TextureTargetType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
 
 import static org.lwjgl.opengl.GL21.*;
 
@@ -21,6 +30,89 @@ import static org.lwjgl.opengl.GL21.*;
  */
 public class OGL21Graphics extends OGL20Graphics
 {
+	/**
+	 * Texture uploader used for OpenGL 2.1.
+	 * Each staging buffer is orphaned (its storage replaced) before it is mapped, 
+	 * so OpenGL never has to wait for pending uploads from the previous storage.
+	 */
+	private static class OGL21TextureUploader extends OGLTextureUploader
+	{
+		private OGL21TextureUploader(OGL21Graphics gl, int slotSize, int slotCount)
+		{
+			super(gl, slotSize, slotCount);
+		}
+
+		@Override
+		protected ByteBuffer mapSlot(int slot, int size)
+		{
+			gl.setBufferCapacity(BufferTargetType.PIXEL, DataType.UNSIGNED_BYTE, CachingHint.STREAM_DRAW, size);
+			return gl.mapByteBuffer(BufferTargetType.PIXEL, AccessType.WRITE);
+		}
+
+		@Override
+		protected boolean isSlotComplete(int slot)
+		{
+			// Orphaned on map - always reusable.
+			return true;
+		}
+
+		@Override
+		protected void awaitSlot(int slot)
+		{
+			// Orphaned on map - nothing to wait for.
+		}
+
+		@Override
+		protected void fenceSlot(int slot)
+		{
+			// Nothing to do.
+		}
+
+		@Override
+		protected void destroySlot(int slot)
+		{
+			// Nothing to do.
+		}
+	}
+	
+	/**
+	 * Frame reader used for OpenGL 2.1.
+	 * Reads are mapped after the reader's latency has passed, which may wait
+	 * if OpenGL has not finished the read by then.
+	 */
+	private static class OGL21FrameReader extends OGLFrameReader
+	{
+		private OGL21FrameReader(OGL21Graphics gl, int maxWidth, int maxHeight, ColorFormat colorFormat, int slotCount, int latency, Executor executor, Sink sink)
+		{
+			super(gl, maxWidth, maxHeight, colorFormat, slotCount, latency, executor, sink);
+		}
+
+		@Override
+		protected ByteBuffer mapSlot(int slot, int size)
+		{
+			return gl.mapByteBuffer(BufferTargetType.RAW_DATA, AccessType.READ);
+		}
+
+		@Override
+		protected boolean isSlotComplete(int slot)
+		{
+			// No way to tell without waiting.
+			return true;
+		}
+
+		@Override
+		protected void fenceSlot(int slot)
+		{
+			// Nothing to do.
+		}
+
+		@Override
+		protected void destroySlot(int slot)
+		{
+			// Nothing to do.
+		}
+	}
+	
 	public OGL21Graphics(Options options, boolean core)
 	{
 		super(options, core);
@@ -32,6 +124,93 @@ public class OGL21Graphics extends OGL20Graphics
 		return OGLVersion.GL21;
 	}
 	
+	/**
+	 * Sends a subset of data to the current texture bound to the specified target, 
+	 * sourced from the buffer bound to {@link BufferTargetType#PIXEL} instead of client memory.
+	 * The call returns without waiting for the copy to complete.
+	 * @param target the texture target.
+	 * @param colorFormat the pixel storage format of the buffer data.
+	 * @param texlevel the mipmapping level to copy this into (0 is topmost).
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels.
+	 * @param xoffs the texel offset.
+	 * @param yoffs the texel offset.
+	 * @param offset the offset into the bound pixel buffer, in bytes.
+	 * @throws UnsupportedOperationException if any provided type or format is unavailable in this version.
+	 * @throws GraphicsException if the target is not stored two-dimensionally.
+	 */
+	public void setTextureSubDataFromBuffer(TextureTargetType target, ColorFormat colorFormat, int texlevel, int width, int height, int xoffs, int yoffs, long offset)
+	{
+		verifyFeatureSupport(target);
+		verifyFeatureSupport(colorFormat);
+		target.checkStorageDimensions(2);
+		
+		clearError();
+		glTexSubImage2D(
+			target.glValue,
+			texlevel,
+			xoffs,
+			yoffs,
+			width,
+			height,
+			colorFormat.glValue,
+			GL_UNSIGNED_BYTE,
+			offset
+		);
+		checkError();
+	}
+	
+	/**
+	 * Reads from the current-bound frame buffer into the buffer bound to {@link BufferTargetType#RAW_DATA}
+	 * instead of client memory. The call returns without waiting for the read to complete.
+	 * @param colorFormat the color format to write to the buffer.
+	 * @param x the starting screen offset, x-coordinate (0 is left).
+	 * @param y the starting screen offset, y-coordinate (0 is bottom).
+	 * @param width the capture width in pixels.
+	 * @param height the capture height in pixels.
+	 * @param offset the offset into the bound buffer, in bytes.
+	 * @throws UnsupportedOperationException if the provided format is unavailable in this version.
+	 */
+	public void readFrameBufferToBuffer(ColorFormat colorFormat, int x, int y, int width, int height, long offset)
+	{
+		verifyFeatureSupport(colorFormat);
+		clearError();
+		glReadPixels(x, y, width, height, colorFormat.glValue, GL_UNSIGNED_BYTE, offset);
+		checkError();
+	}
+	
+	/**
+	 * Creates an asynchronous frame buffer reader, which reads pixels into a ring of pixel pack buffers
+	 * and hands them to a sink on other threads some frames later.
+	 * <p> In this implementation, reads are mapped once the latency has passed, which may wait if OpenGL is not finished with them.
+	 * @param maxWidth the maximum capture width in pixels.
+	 * @param maxHeight the maximum capture height in pixels.
+	 * @param colorFormat the pixel format to read.
+	 * @param frameCount the amount of frames that can be in progress at once (being read or in the sink).
+	 * @param latency the amount of frames to wait after a capture before its data is mapped.
+	 * @param executor the executor to run the sink on.
+	 * @param sink the sink that consumes the frames.
+	 * @return a new frame reader.
+	 * @throws IllegalArgumentException if a dimension or the frame count is less than 1, or the latency is negative.
+	 */
+	public OGLFrameReader createFrameReader(int maxWidth, int maxHeight, ColorFormat colorFormat, int frameCount, int latency, Executor executor, OGLFrameReader.Sink sink)
+	{
+		return new OGL21FrameReader(this, maxWidth, maxHeight, colorFormat, frameCount, latency, executor, sink);
+	}
+	
+	/**
+	 * Creates an asynchronous texture uploader, which stages texel data in a ring of pixel buffers.
+	 * <p> In this implementation, each staging buffer is orphaned before it is mapped.
+	 * @param stagingSize the size of each staging area in bytes (the largest single upload).
+	 * @param stagingCount the amount of staging areas.
+	 * @return a new texture uploader.
+	 * @throws IllegalArgumentException if the size or count is less than 1.
+	 */
+	public OGLTextureUploader createTextureUploader(int stagingSize, int stagingCount)
+	{
+		return new OGL21TextureUploader(this, stagingSize, stagingCount);
+	}
+	
 	/**
 	 * Sets a uniform matrix (mat2x3) value on the currently-bound shader.
 	 * @param locationId the uniform location.
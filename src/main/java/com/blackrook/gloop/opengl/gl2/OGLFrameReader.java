@@ -0,0 +1,604 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl2;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.CachingHint;
+import com.blackrook.gloop.opengl.enums.ColorFormat;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+
+/**
+ * An asynchronous frame buffer reader, which reads pixels into a ring of pixel pack buffers
+ * and hands them to a {@link Sink} on other threads some frames later, so that reading the
+ * frame buffer does not stall the graphics thread.
+ * The proper way to use this is, per frame:
+ * <ol>
+ * <li>Call {@link #capture(int, int)} (or {@link #capture(int, int, int, int)}) after rendering, to start reading the current read buffer.</li>
+ * <li>Call {@link #poll()} once, to deliver finished reads to the sink and release the ones that the sink is finished with.</li>
+ * </ol>
+ * <p> Sinks receive {@link Frame}s that refer directly to mapped buffer memory. Frame rows are stored bottom-up,
+ * as OpenGL reads them, but can be addressed top-down without copying via {@link Frame#getRowOffset(int)}.
+ * <p> How reads are tracked depends on the implementation that created it.
+ * All pixel data is read as unsigned bytes.
+ * @author Matthew Tropiano
+ * @see OGL21Graphics#createFrameReader(int, int, ColorFormat, int, int, Executor, Sink)
+ */
+public abstract class OGLFrameReader
+{
+	private static final int STATE_FREE = 0;
+	private static final int STATE_READING = 1;
+	private static final int STATE_MAPPED = 2;
+
+	/**
+	 * A consumer of read frames. Called on the reader's executor.
+	 */
+	@FunctionalInterface
+	public interface Sink
+	{
+		/**
+		 * Called when a frame has been read.
+		 * The frame's data is only valid until this method returns.
+		 * @param frame the frame.
+		 * @throws Exception if an error occurs. It is recorded by the reader.
+		 */
+		void accept(Frame frame) throws Exception;
+
+		/**
+		 * Creates a sink that writes each frame's raw pixel data (top-down rows, no row padding) to a separate file.
+		 * @param directory the target directory.
+		 * @param prefix the file name prefix. Files are named <code>prefix + frameIndex + ".raw"</code>.
+		 * @return a new sink.
+		 */
+		static Sink rawFiles(final File directory, final String prefix)
+		{
+			return (frame) ->
+			{
+				try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(directory, prefix + frame.getIndex() + ".raw"))))
+				{
+					frame.writeTo(out);
+				}
+			};
+		}
+
+		/**
+		 * Creates a sink that encodes each frame as a separate PNG file.
+		 * Only RGB, RGBA, BGR and BGRA frames can be encoded.
+		 * @param directory the target directory.
+		 * @param prefix the file name prefix. Files are named <code>prefix + frameIndex + ".png"</code>.
+		 * @return a new sink.
+		 */
+		static Sink pngFiles(final File directory, final String prefix)
+		{
+			return (frame) -> ImageIO.write(frame.toImage(), "png", new File(directory, prefix + frame.getIndex() + ".png"));
+		}
+	}
+
+	/**
+	 * A single read frame.
+	 */
+	public final class Frame
+	{
+		private int slot;
+		private OGLBuffer buffer;
+		private ByteBuffer data;
+		private int state;
+		private long captureFrame;
+
+		private long index;
+		private int width;
+		private int height;
+		private int rowStride;
+
+		private Frame(int slot, OGLBuffer buffer)
+		{
+			this.slot = slot;
+			this.buffer = buffer;
+			this.data = null;
+			this.state = STATE_FREE;
+		}
+
+		/**
+		 * @return the sequence number of this frame (starting from 0, in capture order).
+		 */
+		public long getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * @return the width of the frame in pixels.
+		 */
+		public int getWidth()
+		{
+			return width;
+		}
+
+		/**
+		 * @return the height of the frame in pixels.
+		 */
+		public int getHeight()
+		{
+			return height;
+		}
+
+		/**
+		 * @return the pixel format of the frame data.
+		 */
+		public ColorFormat getColorFormat()
+		{
+			return colorFormat;
+		}
+
+		/**
+		 * @return the amount of bytes per pixel.
+		 */
+		public int getPixelSize()
+		{
+			return pixelSize;
+		}
+
+		/**
+		 * @return the amount of bytes between the starts of two rows (including alignment padding).
+		 */
+		public int getRowStride()
+		{
+			return rowStride;
+		}
+
+		/**
+		 * Gets the mapped frame data. Rows are bottom-up.
+		 * This is only valid during the call to {@link Sink#accept(Frame)}.
+		 * @return the frame data. Do not change its position or limit.
+		 */
+		public ByteBuffer getData()
+		{
+			return data;
+		}
+
+		/**
+		 * Gets the byte offset of a row in the frame data, addressed top-down (row 0 is the top of the image).
+		 * @param row the top-down row index.
+		 * @return the offset of the start of the row.
+		 */
+		public int getRowOffset(int row)
+		{
+			return (height - 1 - row) * rowStride;
+		}
+
+		/**
+		 * Gets a single row of the frame data, addressed top-down (row 0 is the top of the image).
+		 * The returned buffer shares the frame's memory.
+		 * @param row the top-down row index.
+		 * @return a buffer over the row's pixels, not including alignment padding.
+		 */
+		public ByteBuffer getRow(int row)
+		{
+			ByteBuffer out = data.duplicate();
+			int offset = getRowOffset(row);
+			out.limit(offset + width * pixelSize).position(offset);
+			return out.slice();
+		}
+
+		/**
+		 * Writes the frame's pixels to an output stream, top-down, without row padding.
+		 * @param out the output stream.
+		 * @throws IOException if a write error occurs.
+		 */
+		public void writeTo(OutputStream out) throws IOException
+		{
+			byte[] row = new byte[width * pixelSize];
+			ByteBuffer source = data.duplicate();
+			for (int y = 0; y < height; y++)
+			{
+				source.position(getRowOffset(y));
+				source.get(row);
+				out.write(row);
+			}
+		}
+
+		/**
+		 * Converts the frame into a top-down image.
+		 * Only RGB, RGBA, BGR and BGRA frames can be converted.
+		 * @return a new image.
+		 * @throws UnsupportedOperationException if the frame's format cannot be converted.
+		 */
+		public BufferedImage toImage()
+		{
+			boolean alpha;
+			boolean bgr;
+			switch (colorFormat)
+			{
+				case RGB: alpha = false; bgr = false; break;
+				case RGBA: alpha = true; bgr = false; break;
+				case BGR: alpha = false; bgr = true; break;
+				case BGRA: alpha = true; bgr = true; break;
+				default:
+					throw new UnsupportedOperationException("Cannot convert " + colorFormat.name() + " frames to images.");
+			}
+
+			BufferedImage out = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+			int[] argb = new int[width];
+			for (int y = 0; y < height; y++)
+			{
+				int o = getRowOffset(y);
+				for (int x = 0; x < width; x++, o += pixelSize)
+				{
+					int c0 = data.get(o) & 0x0ff;
+					int c1 = data.get(o + 1) & 0x0ff;
+					int c2 = data.get(o + 2) & 0x0ff;
+					int a = alpha ? data.get(o + 3) & 0x0ff : 0x0ff;
+					argb[x] = bgr
+						? (a << 24) | (c2 << 16) | (c1 << 8) | c0
+						: (a << 24) | (c0 << 16) | (c1 << 8) | c2;
+				}
+				out.setRGB(0, y, width, 1, argb, 0, width);
+			}
+			return out;
+		}
+	}
+
+	/** The graphics instance. */
+	protected OGL21Graphics gl;
+	/** The frame slots. */
+	private Frame[] slots;
+	/** The maximum frame width. */
+	private int maxWidth;
+	/** The maximum frame height. */
+	private int maxHeight;
+	/** The pixel format. */
+	private ColorFormat colorFormat;
+	/** The bytes per pixel. */
+	private int pixelSize;
+	/** The amount of frames to wait before mapping a read. */
+	private int latency;
+	/** The executor for the sink. */
+	private Executor executor;
+	/** The sink. */
+	private Sink sink;
+
+	/** Next slot to try. */
+	private int next;
+	/** Next capture sequence. */
+	private long sequence;
+	/** Current frame (incremented by poll). */
+	private long frame;
+	/** Frames released by the sink. */
+	private Queue<Frame> released;
+
+	private long captured;
+	private long dropped;
+	private long delivered;
+	private AtomicLong sinkErrors;
+	private volatile Exception lastSinkError;
+
+	/**
+	 * Creates a new frame reader.
+	 * @param gl the graphics instance.
+	 * @param maxWidth the maximum capture width in pixels.
+	 * @param maxHeight the maximum capture height in pixels.
+	 * @param colorFormat the pixel format to read.
+	 * @param slotCount the amount of frames that can be in progress at once.
+	 * @param latency the amount of frames to wait after a capture before its data is mapped.
+	 * @param executor the executor to run the sink on.
+	 * @param sink the sink that consumes the frames.
+	 * @throws IllegalArgumentException if a dimension or the slot count is less than 1, or the latency is negative.
+	 */
+	protected OGLFrameReader(OGL21Graphics gl, int maxWidth, int maxHeight, ColorFormat colorFormat, int slotCount, int latency, Executor executor, Sink sink)
+	{
+		if (maxWidth < 1 || maxHeight < 1)
+			throw new IllegalArgumentException("Dimensions must be 1 or greater.");
+		if (slotCount < 1)
+			throw new IllegalArgumentException("Frame count must be 1 or greater.");
+		if (latency < 0)
+			throw new IllegalArgumentException("Latency cannot be negative.");
+		this.gl = gl;
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.colorFormat = Objects.requireNonNull(colorFormat);
+		this.pixelSize = getPixelSize(colorFormat);
+		this.latency = latency;
+		this.executor = Objects.requireNonNull(executor);
+		this.sink = Objects.requireNonNull(sink);
+		this.slots = new Frame[slotCount];
+		this.next = 0;
+		this.sequence = 0L;
+		this.frame = 0L;
+		this.released = new ConcurrentLinkedQueue<>();
+		this.sinkErrors = new AtomicLong(0L);
+
+		// Worst-case row padding is (alignment - 1) bytes per row, max alignment is 8.
+		int capacity = (maxWidth * pixelSize + 7) * maxHeight;
+		for (int i = 0; i < slotCount; i++)
+		{
+			OGLBuffer buffer = gl.createBuffer();
+			gl.setBuffer(BufferTargetType.RAW_DATA, buffer);
+			gl.setBufferCapacity(BufferTargetType.RAW_DATA, DataType.UNSIGNED_BYTE, CachingHint.STREAM_READ, capacity);
+			slots[i] = new Frame(i, buffer);
+		}
+		gl.unsetBuffer(BufferTargetType.RAW_DATA);
+		resetStatistics();
+	}
+
+	/**
+	 * @return the pixel format that this reads.
+	 */
+	public ColorFormat getColorFormat()
+	{
+		return colorFormat;
+	}
+
+	/**
+	 * @return the amount of frames waited after a capture before its data is mapped.
+	 */
+	public int getLatency()
+	{
+		return latency;
+	}
+
+	/**
+	 * Starts reading the lower-left corner of the current read buffer.
+	 * Must be called from the graphics thread.
+	 * @param width the capture width in pixels.
+	 * @param height the capture height in pixels.
+	 * @return true if the read was started, false if the frame was dropped because no slot was free.
+	 * @throws IllegalArgumentException if the dimensions are less than 1 or larger than the maximum dimensions.
+	 */
+	public boolean capture(int width, int height)
+	{
+		return capture(0, 0, width, height);
+	}
+
+	/**
+	 * Starts reading a region of the current read buffer.
+	 * Must be called from the graphics thread.
+	 * @param x the starting screen offset, x-coordinate (0 is left).
+	 * @param y the starting screen offset, y-coordinate (0 is bottom).
+	 * @param width the capture width in pixels.
+	 * @param height the capture height in pixels.
+	 * @return true if the read was started, false if the frame was dropped because no slot was free.
+	 * @throws IllegalArgumentException if the dimensions are less than 1 or larger than the maximum dimensions.
+	 */
+	public boolean capture(int x, int y, int width, int height)
+	{
+		if (width < 1 || height < 1 || width > maxWidth || height > maxHeight)
+			throw new IllegalArgumentException("Capture dimensions must be between 1x1 and " + maxWidth + "x" + maxHeight + ".");
+
+		Frame f = null;
+		for (int i = 0; i < slots.length && f == null; i++)
+		{
+			Frame s = slots[(next + i) % slots.length];
+			if (s.state == STATE_FREE)
+				f = s;
+		}
+
+		if (f == null)
+		{
+			dropped++;
+			return false;
+		}
+
+		int alignment = gl.getPixelPackAlignment();
+		int rowBytes = width * pixelSize;
+		f.width = width;
+		f.height = height;
+		f.rowStride = ((rowBytes + alignment - 1) / alignment) * alignment;
+		f.index = sequence++;
+		f.captureFrame = frame;
+
+		gl.setBuffer(BufferTargetType.RAW_DATA, f.buffer);
+		gl.readFrameBufferToBuffer(colorFormat, x, y, width, height, 0L);
+		gl.unsetBuffer(BufferTargetType.RAW_DATA);
+		fenceSlot(f.slot);
+
+		f.state = STATE_READING;
+		next = (f.slot + 1) % slots.length;
+		captured++;
+		return true;
+	}
+
+	/**
+	 * Releases frames that the sink is finished with, and hands finished reads to the sink, in capture order.
+	 * This should be called once per frame, since it also counts frames for the latency.
+	 * Must be called from the graphics thread.
+	 * @return the amount of frames handed to the sink.
+	 */
+	public int poll()
+	{
+		Frame f;
+		while ((f = released.poll()) != null)
+		{
+			gl.setBuffer(BufferTargetType.RAW_DATA, f.buffer);
+			gl.unmapBuffer(BufferTargetType.RAW_DATA);
+			gl.unsetBuffer(BufferTargetType.RAW_DATA);
+			f.state = STATE_FREE;
+		}
+
+		int out = 0;
+		while ((f = nextReading()) != null)
+		{
+			if (frame - f.captureFrame < latency || !isSlotComplete(f.slot))
+				break;
+
+			gl.setBuffer(BufferTargetType.RAW_DATA, f.buffer);
+			f.data = mapSlot(f.slot, f.rowStride * f.height);
+			gl.unsetBuffer(BufferTargetType.RAW_DATA);
+			f.state = STATE_MAPPED;
+			delivered++;
+			out++;
+
+			final Frame delivery = f;
+			executor.execute(() ->
+			{
+				try {
+					sink.accept(delivery);
+				} catch (Exception e) {
+					lastSinkError = e;
+					sinkErrors.incrementAndGet();
+				} finally {
+					delivery.data = null;
+					released.add(delivery);
+				}
+			});
+		}
+
+		// Count the frame after the readiness checks, so a capture waits the full latency.
+		frame++;
+		return out;
+	}
+
+	/**
+	 * @return the amount of frames captured since the statistics were last reset.
+	 */
+	public long getCapturedCount()
+	{
+		return captured;
+	}
+
+	/**
+	 * @return the amount of frames dropped because no slot was free, since the statistics were last reset.
+	 */
+	public long getDroppedCount()
+	{
+		return dropped;
+	}
+
+	/**
+	 * @return the amount of frames handed to the sink since the statistics were last reset.
+	 */
+	public long getDeliveredCount()
+	{
+		return delivered;
+	}
+
+	/**
+	 * @return the amount of exceptions thrown by the sink since the statistics were last reset.
+	 */
+	public long getSinkErrorCount()
+	{
+		return sinkErrors.get();
+	}
+
+	/**
+	 * @return the last exception thrown by the sink, or null if none.
+	 */
+	public Exception getLastSinkError()
+	{
+		return lastSinkError;
+	}
+
+	/**
+	 * Resets the statistics.
+	 */
+	public void resetStatistics()
+	{
+		captured = 0L;
+		dropped = 0L;
+		delivered = 0L;
+		sinkErrors.set(0L);
+		lastSinkError = null;
+	}
+
+	/**
+	 * Destroys this reader's buffers and associated objects.
+	 * The sink must not be running (for example, shut down the executor and await its termination first).
+	 * Must be called from the graphics thread.
+	 */
+	public void destroy()
+	{
+		released.clear();
+		for (int i = 0; i < slots.length; i++)
+		{
+			Frame f = slots[i];
+			if (f.state == STATE_MAPPED)
+			{
+				gl.setBuffer(BufferTargetType.RAW_DATA, f.buffer);
+				gl.unmapBuffer(BufferTargetType.RAW_DATA);
+				gl.unsetBuffer(BufferTargetType.RAW_DATA);
+			}
+			f.data = null;
+			f.state = STATE_FREE;
+			destroySlot(i);
+			gl.destroyBuffer(f.buffer);
+		}
+	}
+
+	/**
+	 * Called to map a slot's buffer for reading. The buffer is bound to {@link BufferTargetType#RAW_DATA}.
+	 * @param slot the slot index.
+	 * @param size the amount of bytes to map.
+	 * @return the mapped memory.
+	 */
+	protected abstract ByteBuffer mapSlot(int slot, int size);
+
+	/**
+	 * Called to check if OpenGL is finished writing to a slot, without waiting.
+	 * @param slot the slot index.
+	 * @return true if so, false if not.
+	 */
+	protected abstract boolean isSlotComplete(int slot);
+
+	/**
+	 * Called after the read command into a slot is issued.
+	 * @param slot the slot index.
+	 */
+	protected abstract void fenceSlot(int slot);
+
+	/**
+	 * Called to destroy any objects associated with a slot.
+	 * @param slot the slot index.
+	 */
+	protected abstract void destroySlot(int slot);
+
+	// Gets the oldest frame that is being read.
+	private Frame nextReading()
+	{
+		Frame out = null;
+		for (int i = 0; i < slots.length; i++)
+		{
+			Frame s = slots[i];
+			if (s.state == STATE_READING && (out == null || s.index < out.index))
+				out = s;
+		}
+		return out;
+	}
+
+	// Gets the amount of bytes per pixel for a format.
+	private static int getPixelSize(ColorFormat colorFormat)
+	{
+		switch (colorFormat)
+		{
+			case RGBA:
+			case BGRA:
+				return 4;
+			case RGB:
+			case BGR:
+				return 3;
+			case LUMINANCE_ALPHA:
+				return 2;
+			default:
+				return 1;
+		}
+	}
+
+}
@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl2;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.CachingHint;
+import com.blackrook.gloop.opengl.enums.ColorFormat;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.TextureTargetType;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.gl1.OGLTexture;
+
+/**
+ * An asynchronous texture uploader, which stages texel data in a ring of pixel buffer objects.
+ * <p> Staging memory is mapped on the graphics thread, filled on any thread (for example, a worker that
+ * decodes images), and then copied to textures on the graphics thread with glTexSubImage calls sourced
+ * from the pixel buffer, so that the copy into OpenGL's memory does not block the graphics thread.
+ * The proper way to use this is:
+ * <ol>
+ * <li>On the graphics thread, call {@link #acquire()} to get a mapped {@link Staging} area.</li>
+ * <li>On any thread, write the texel data into {@link Staging#getData()}, then call
+ * {@link Staging#commit(OGLTexture, TextureTargetType, ColorFormat, int, int, int, int, int)} (or {@link Staging#cancel()}).</li>
+ * <li>On the graphics thread, call {@link #process()} (usually once per frame) to issue the uploads of all committed areas.</li>
+ * </ol>
+ * <p> Staging areas are only reused once OpenGL is finished reading from them.
+ * How this is done depends on the implementation that created it.
+ * All texel data is expected to be unsigned bytes.
+ * @author Matthew Tropiano
+ * @see OGL21Graphics#createTextureUploader(int, int)
+ */
+public abstract class OGLTextureUploader
+{
+	private static final int STATE_FREE = 0;
+	private static final int STATE_MAPPED = 1;
+	private static final int STATE_IN_FLIGHT = 2;
+
+	/**
+	 * A single staging area.
+	 */
+	public final class Staging
+	{
+		private int index;
+		private OGLBuffer buffer;
+		private ByteBuffer data;
+		private int state;
+		private long sequence;
+
+		private volatile boolean committed;
+		private OGLTexture texture;
+		private TextureTargetType target;
+		private ColorFormat colorFormat;
+		private int texlevel;
+		private int width;
+		private int height;
+		private int xoffs;
+		private int yoffs;
+
+		private Staging(int index, OGLBuffer buffer)
+		{
+			this.index = index;
+			this.buffer = buffer;
+			this.data = null;
+			this.state = STATE_FREE;
+			this.sequence = 0L;
+			this.committed = false;
+			this.texture = null;
+		}
+
+		/**
+		 * Gets the mapped staging memory.
+		 * This is only valid between {@link OGLTextureUploader#acquire()} and a commit or cancel.
+		 * @return the writable staging memory.
+		 */
+		public ByteBuffer getData()
+		{
+			return data;
+		}
+
+		/**
+		 * @return the capacity of this staging area in bytes.
+		 */
+		public int getCapacity()
+		{
+			return slotSize;
+		}
+
+		/**
+		 * Commits the written texel data for upload to a two-dimensional texture region on the next {@link OGLTextureUploader#process()}.
+		 * The data must be tightly packed according to the current unpack alignment, starting at byte 0.
+		 * This can be called from any thread.
+		 * @param texture the texture to upload to.
+		 * @param target the texture target to bind the texture to for the upload.
+		 * @param colorFormat the pixel storage format of the staged data.
+		 * @param texlevel the mipmapping level to copy this into (0 is topmost).
+		 * @param width the width of the region in texels.
+		 * @param height the height of the region in texels.
+		 * @param xoffs the texel offset.
+		 * @param yoffs the texel offset.
+		 * @throws IllegalStateException if this area was not acquired, or was already committed.
+		 * @throws IllegalArgumentException if the region would need more data than the staging area can hold.
+		 */
+		public void commit(OGLTexture texture, TextureTargetType target, ColorFormat colorFormat, int texlevel, int width, int height, int xoffs, int yoffs)
+		{
+			Objects.requireNonNull(texture);
+			Objects.requireNonNull(target);
+			if (committed || data == null)
+				throw new IllegalStateException("Staging area is not acquired.");
+			if ((long)width * height * getComponents(colorFormat) > slotSize)
+				throw new IllegalArgumentException("Region is too large for the staging area.");
+			this.texture = texture;
+			this.target = target;
+			this.colorFormat = colorFormat;
+			this.texlevel = texlevel;
+			this.width = width;
+			this.height = height;
+			this.xoffs = xoffs;
+			this.yoffs = yoffs;
+			this.committed = true;
+			pending.add(this);
+		}
+
+		/**
+		 * Releases this area without uploading anything.
+		 * This can be called from any thread.
+		 * @throws IllegalStateException if this area was not acquired, or was already committed.
+		 */
+		public void cancel()
+		{
+			if (committed || data == null)
+				throw new IllegalStateException("Staging area is not acquired.");
+			this.texture = null;
+			this.committed = true;
+			pending.add(this);
+		}
+	}
+
+	/** The graphics instance. */
+	protected OGL21Graphics gl;
+	/** The staging areas. */
+	private Staging[] slots;
+	/** The size of each staging area. */
+	private int slotSize;
+	/** The next area to try. */
+	private int next;
+	/** The next upload sequence number. */
+	private long sequence;
+	/** Committed areas, waiting for processing. */
+	private Queue<Staging> pending;
+
+	private long statsStartNanos;
+	private long uploads;
+	private long bytesUploaded;
+	private long stalls;
+	private long stallNanos;
+	private long unavailable;
+
+	/**
+	 * Creates a new texture uploader.
+	 * @param gl the graphics instance.
+	 * @param slotSize the size of each staging area in bytes.
+	 * @param slotCount the amount of staging areas.
+	 * @throws IllegalArgumentException if the size or count is less than 1.
+	 */
+	protected OGLTextureUploader(OGL21Graphics gl, int slotSize, int slotCount)
+	{
+		if (slotSize < 1)
+			throw new IllegalArgumentException("Staging size must be 1 or greater.");
+		if (slotCount < 1)
+			throw new IllegalArgumentException("Staging count must be 1 or greater.");
+		this.gl = gl;
+		this.slotSize = slotSize;
+		this.slots = new Staging[slotCount];
+		this.next = 0;
+		this.sequence = 0L;
+		this.pending = new ConcurrentLinkedQueue<>();
+		for (int i = 0; i < slotCount; i++)
+		{
+			OGLBuffer buffer = gl.createBuffer();
+			gl.setBuffer(BufferTargetType.PIXEL, buffer);
+			gl.setBufferCapacity(BufferTargetType.PIXEL, DataType.UNSIGNED_BYTE, CachingHint.STREAM_DRAW, slotSize);
+			slots[i] = new Staging(i, buffer);
+		}
+		gl.unsetBuffer(BufferTargetType.PIXEL);
+		resetStatistics();
+	}
+
+	/**
+	 * @return the size of each staging area in bytes.
+	 */
+	public int getStagingSize()
+	{
+		return slotSize;
+	}
+
+	/**
+	 * @return the amount of staging areas.
+	 */
+	public int getStagingCount()
+	{
+		return slots.length;
+	}
+
+	/**
+	 * Acquires and maps a staging area.
+	 * If every area is still being read by OpenGL, this waits for the oldest one (a stall).
+	 * Must be called from the graphics thread.
+	 * @return a mapped staging area, or null if every area is acquired and not yet committed or cancelled.
+	 */
+	public Staging acquire()
+	{
+		Staging out = null;
+		Staging oldest = null;
+		for (int i = 0; i < slots.length && out == null; i++)
+		{
+			Staging s = slots[(next + i) % slots.length];
+			if (s.state == STATE_FREE)
+				out = s;
+			else if (s.state == STATE_IN_FLIGHT)
+			{
+				if (isSlotComplete(s.index))
+					out = s;
+				else if (oldest == null || s.sequence < oldest.sequence)
+					oldest = s;
+			}
+		}
+
+		if (out == null)
+		{
+			if (oldest == null)
+			{
+				unavailable++;
+				return null;
+			}
+			long start = System.nanoTime();
+			awaitSlot(oldest.index);
+			stallNanos += System.nanoTime() - start;
+			stalls++;
+			out = oldest;
+		}
+
+		gl.setBuffer(BufferTargetType.PIXEL, out.buffer);
+		out.data = mapSlot(out.index, slotSize);
+		gl.unsetBuffer(BufferTargetType.PIXEL);
+		out.state = STATE_MAPPED;
+		out.committed = false;
+		next = (out.index + 1) % slots.length;
+		return out;
+	}
+
+	/**
+	 * Issues the uploads of all committed staging areas, and releases cancelled ones.
+	 * The texture of each upload is left bound to its target.
+	 * Must be called from the graphics thread.
+	 * @return the amount of uploads issued.
+	 */
+	public int process()
+	{
+		int out = 0;
+		Staging s;
+		while ((s = pending.poll()) != null)
+		{
+			gl.setBuffer(BufferTargetType.PIXEL, s.buffer);
+			s.data = null;
+			if (!gl.unmapBuffer(BufferTargetType.PIXEL))
+			{
+				// Contents were lost - the upload is skipped.
+				s.texture = null;
+			}
+
+			if (s.texture != null)
+			{
+				gl.setTexture(s.target, s.texture);
+				gl.setTextureSubDataFromBuffer(s.target, s.colorFormat, s.texlevel, s.width, s.height, s.xoffs, s.yoffs, 0L);
+				fenceSlot(s.index);
+				s.state = STATE_IN_FLIGHT;
+				s.sequence = sequence++;
+				uploads++;
+				bytesUploaded += (long)s.width * s.height * getComponents(s.colorFormat);
+				s.texture = null;
+				out++;
+			}
+			else
+			{
+				s.state = STATE_FREE;
+			}
+			gl.unsetBuffer(BufferTargetType.PIXEL);
+		}
+		return out;
+	}
+
+	/**
+	 * @return the amount of uploads issued since the statistics were last reset.
+	 */
+	public long getUploadCount()
+	{
+		return uploads;
+	}
+
+	/**
+	 * @return the amount of bytes uploaded since the statistics were last reset.
+	 */
+	public long getBytesUploaded()
+	{
+		return bytesUploaded;
+	}
+
+	/**
+	 * @return the average upload bandwidth in bytes per second since the statistics were last reset.
+	 */
+	public double getUploadBandwidth()
+	{
+		long nanos = System.nanoTime() - statsStartNanos;
+		return nanos <= 0L ? 0.0 : bytesUploaded * 1000000000.0 / nanos;
+	}
+
+	/**
+	 * @return the amount of times {@link #acquire()} had to wait for OpenGL to finish with a staging area.
+	 */
+	public long getStallCount()
+	{
+		return stalls;
+	}
+
+	/**
+	 * @return the total time spent waiting in {@link #acquire()}, in nanoseconds.
+	 */
+	public long getStallNanos()
+	{
+		return stallNanos;
+	}
+
+	/**
+	 * @return the amount of times {@link #acquire()} returned null because every staging area was acquired.
+	 */
+	public long getUnavailableCount()
+	{
+		return unavailable;
+	}
+
+	/**
+	 * Resets the upload statistics.
+	 */
+	public void resetStatistics()
+	{
+		statsStartNanos = System.nanoTime();
+		uploads = 0L;
+		bytesUploaded = 0L;
+		stalls = 0L;
+		stallNanos = 0L;
+		unavailable = 0L;
+	}
+
+	/**
+	 * Destroys this uploader's buffers and associated objects.
+	 * Uncommitted staging areas become invalid.
+	 * Must be called from the graphics thread.
+	 */
+	public void destroy()
+	{
+		pending.clear();
+		for (int i = 0; i < slots.length; i++)
+		{
+			Staging s = slots[i];
+			if (s.state == STATE_MAPPED)
+			{
+				gl.setBuffer(BufferTargetType.PIXEL, s.buffer);
+				gl.unmapBuffer(BufferTargetType.PIXEL);
+				gl.unsetBuffer(BufferTargetType.PIXEL);
+			}
+			s.data = null;
+			destroySlot(i);
+			gl.destroyBuffer(s.buffer);
+		}
+	}
+
+	/**
+	 * Called to map a staging area's buffer for writing. The buffer is bound to {@link BufferTargetType#PIXEL}.
+	 * @param slot the staging area index.
+	 * @param size the size of the buffer.
+	 * @return the mapped memory.
+	 */
+	protected abstract ByteBuffer mapSlot(int slot, int size);
+
+	/**
+	 * Called to check if OpenGL is finished reading from a staging area, without waiting.
+	 * @param slot the staging area index.
+	 * @return true if so, false if not.
+	 */
+	protected abstract boolean isSlotComplete(int slot);
+
+	/**
+	 * Called to wait until OpenGL is finished reading from a staging area.
+	 * @param slot the staging area index.
+	 */
+	protected abstract void awaitSlot(int slot);
+
+	/**
+	 * Called after the upload command from a staging area is issued.
+	 * @param slot the staging area index.
+	 */
+	protected abstract void fenceSlot(int slot);
+
+	/**
+	 * Called to destroy any objects associated with a staging area.
+	 * @param slot the staging area index.
+	 */
+	protected abstract void destroySlot(int slot);
+
+	// Gets the amount of byte components per texel for a format.
+	private static int getComponents(ColorFormat colorFormat)
+	{
+		switch (colorFormat)
+		{
+			case RGBA:
+			case BGRA:
+				return 4;
+			case RGB:
+			case BGR:
+				return 3;
+			case LUMINANCE_ALPHA:
+				return 2;
+			default:
+				return 1;
+		}
+	}
+
+}
@@ -14,9 +14,13 @@ import com.blackrook.gloop.opengl.math.Matrix4F;
 import com.blackrook.gloop.opengl.math.MatrixStack;
 import com.blackrook.gloop.opengl.util.GeometryBuilder;
 import com.blackrook.gloop.opengl.util.ProgramBuilder;
+import com.blackrook.gloop.opengl.util.VertexFormat;
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.AccessType;
 import com.blackrook.gloop.opengl.enums.AttachPoint;
+import com.blackrook.gloop.opengl.enums.BufferMapFlag;
 import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.CachingHint;
 import com.blackrook.gloop.opengl.enums.DataType;
 import com.blackrook.gloop.opengl.enums.FeedbackBufferType;
 import com.blackrook.gloop.opengl.enums.GeometryType;
@@ -33,7 +37,13 @@ import com.blackrook.gloop.opengl.gl1.OGLBuffer;
 import com.blackrook.gloop.opengl.gl1.OGLQuery;
 import com.blackrook.gloop.opengl.gl1.OGLTexture;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -135,14 +145,124 @@ public class OGL30Graphics extends OGL21Graphics
 		
 	}
 	
+	/**
+	 * Stream buffer used for OpenGL 3.0.
+	 * Each region is mapped via glMapBufferRange, unsynchronized, and the whole buffer
+	 * is orphaned (invalidated) when writing wraps around to the first region.
+	 * The buffer previously bound to the target is bound again after mapping and unmapping.
+	 */
+	private static class OGL30StreamBuffer extends OGLStreamBuffer
+	{
+		private OGL30Graphics gl;
+		private ByteBuffer mapped;
+		
+		private OGL30StreamBuffer(OGL30Graphics gl, BufferTargetType type, OGLBuffer buffer, int regionSize, int regionCount)
+		{
+			super(type, buffer, regionSize, regionCount);
+			this.gl = gl;
+			this.mapped = null;
+		}
+
+		@Override
+		protected ByteBuffer beginRegion()
+		{
+			int access = GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT;
+			access |= region == 0 ? GL_MAP_INVALIDATE_BUFFER_BIT : GL_MAP_INVALIDATE_RANGE_BIT;
+			OGLBuffer previous = gl.getBuffer(type);
+			gl.setBuffer(type, buffer);
+			try {
+				gl.clearError();
+				mapped = glMapBufferRange(type.glValue, getOffset(), regionSize, access, mapped);
+				gl.checkError();
+			} finally {
+				restoreBuffer(previous);
+			}
+			if (mapped == null)
+				throw new GraphicsException("Could not map stream buffer region.");
+			mapped.order(ByteOrder.nativeOrder());
+			return mapped;
+		}
+
+		@Override
+		protected void endRegion()
+		{
+			OGLBuffer previous = gl.getBuffer(type);
+			gl.setBuffer(type, buffer);
+			try {
+				gl.unmapBuffer(type);
+			} finally {
+				restoreBuffer(previous);
+			}
+		}
+		
+		// Binds the previously bound buffer again.
+		private void restoreBuffer(OGLBuffer previous)
+		{
+			if (previous != null)
+				gl.setBuffer(type, previous);
+			else
+				gl.unsetBuffer(type);
+		}
+
+		@Override
+		protected void advanceRegion()
+		{
+			// Nothing to do - orphaning keeps the GPU from reading overwritten data.
+		}
+
+		@Override
+		public void destroy()
+		{
+			gl.destroyBuffer(buffer);
+		}
+	}
+	
+	/**
+	 * The last matrix stack values uploaded to a uniform location.
+	 */
+	private static class MatrixUniform
+	{
+		/** The program uploaded to, or null if unknown. */
+		private OGLProgram program;
+		/** Matrix id, or left matrix id of a product. */
+		private int leftId;
+		/** Right matrix id of a product, or -1 for a single matrix. */
+		private int rightId;
+		/** Version of the left matrix. */
+		private long leftVersion;
+		/** Version of the right matrix. */
+		private long rightVersion;
+		/** The product matrix. */
+		private Matrix4F product;
+		
+		private MatrixUniform()
+		{
+			this.program = null;
+			this.leftId = -1;
+			this.rightId = -1;
+			this.leftVersion = -1L;
+			this.rightVersion = -1L;
+			this.product = new Matrix4F();
+		}
+	}
+	
+	/** Highest uniform location + 1 that matrix uploads are tracked for. */
+	private static final int MAX_MATRIX_UNIFORM_LOCATIONS = 1024;
+	
 	private boolean conditionalRenderActive;
 	private boolean transformFeedbackActive;
+	/** Last matrix stack uploads per uniform location. */
+	private MatrixUniform[] matrixUniforms;
+	/** Currently bound framebuffer, or null for the default one. */
+	private OGLFramebuffer currentFramebuffer;
 	
 	public OGL30Graphics(Options options, boolean core)
 	{
 		super(options, core);
 		conditionalRenderActive = false;
 		transformFeedbackActive = false;
+		matrixUniforms = new MatrixUniform[16];
+		currentFramebuffer = null;
 	}
 
 	@Override
@@ -236,6 +356,7 @@ public class OGL30Graphics extends OGL21Graphics
 	 * <p> Use this if you want matrix stack functionality in a core profile.
 	 * @param id the new current matrix id.
 	 * @throws UnsupportedOperationException if this profile is not core OpenGL.
+	 * @throws GraphicsException if the id is negative.
 	 */
 	public void matrixId(int id)
 	{
@@ -256,7 +377,7 @@ public class OGL30Graphics extends OGL21Graphics
 	{
 		if (!isCore())
 			throw new UnsupportedOperationException("Matrix ids are not available in the non-core implementation.");
-		getCurrentMatrixStack(matrixId).peek().getFloats(outArray);
+		getCurrentMatrixStack(matrixId).get(outArray);
 	}
 
 	/**
@@ -270,7 +391,7 @@ public class OGL30Graphics extends OGL21Graphics
 	{
 		if (!isCore())
 			throw new UnsupportedOperationException("Matrix ids are not available in the non-core implementation.");
-		matrix.set(getCurrentMatrixStack(matrixId).peek());
+		getCurrentMatrixStack(matrixId).get(matrix);
 	}
 
 	/**
@@ -292,6 +413,8 @@ public class OGL30Graphics extends OGL21Graphics
 
 	/**
 	 * Sets a uniform matrix (mat4) value on the currently-bound program using a matrix in the matrix stack.
+	 * <p> The matrix is not uploaded again if it has not changed since it was last uploaded to this location
+	 * in the bound program.
 	 * @param locationId the uniform location.
 	 * @param matrixId the matrix stack id.
 	 */
@@ -299,7 +422,100 @@ public class OGL30Graphics extends OGL21Graphics
 	{
 		if (!isCore())
 			throw new UnsupportedOperationException("Matrix ids are not available in the non-core implementation.");
-		setProgramUniformMatrix4(locationId, getCurrentMatrixStack(matrixId).peek());
+		
+		MatrixStack stack = getCurrentMatrixStack(matrixId);
+		MatrixUniform uniform = getMatrixUniform(locationId);
+		if (uniform == null)
+		{
+			Matrix4F matrix = new Matrix4F();
+			stack.get(matrix);
+			setProgramUniformMatrix4(locationId, matrix);
+			return;
+		}
+		
+		OGLProgram program = getProgram();
+		if (program != null && uniform.program == program && uniform.leftId == matrixId && uniform.rightId == -1 && uniform.leftVersion == stack.getVersion())
+			return;
+		
+		stack.get(uniform.product);
+		setProgramUniformMatrix4(locationId, uniform.product);
+		uniform.program = program;
+		uniform.leftId = matrixId;
+		uniform.rightId = -1;
+		uniform.leftVersion = stack.getVersion();
+	}
+
+	/**
+	 * Sets a uniform matrix (mat4) value on the currently-bound program using the product of two matrices in the matrix stack
+	 * (for example, the projection matrix times the modelview matrix).
+	 * <p> The product is only made again if either matrix has changed since it was last made for this location,
+	 * and it is not uploaded again if it has not changed since it was last uploaded to this location in the bound program.
+	 * @param locationId the uniform location.
+	 * @param leftMatrixId the matrix stack id of the left matrix.
+	 * @param rightMatrixId the matrix stack id of the right matrix.
+	 */
+	public void setProgramUniformMatrix4(int locationId, int leftMatrixId, int rightMatrixId)
+	{
+		if (!isCore())
+			throw new UnsupportedOperationException("Matrix ids are not available in the non-core implementation.");
+		
+		MatrixStack left = getCurrentMatrixStack(leftMatrixId);
+		MatrixStack right = getCurrentMatrixStack(rightMatrixId);
+		MatrixUniform uniform = getMatrixUniform(locationId);
+		if (uniform == null)
+		{
+			Matrix4F product = new Matrix4F();
+			left.get(product);
+			right.multiplyInto(product);
+			setProgramUniformMatrix4(locationId, product);
+			return;
+		}
+		
+		OGLProgram program = getProgram();
+		if (uniform.leftId != leftMatrixId || uniform.rightId != rightMatrixId || uniform.leftVersion != left.getVersion() || uniform.rightVersion != right.getVersion())
+		{
+			left.get(uniform.product);
+			right.multiplyInto(uniform.product);
+			uniform.leftId = leftMatrixId;
+			uniform.rightId = rightMatrixId;
+			uniform.leftVersion = left.getVersion();
+			uniform.rightVersion = right.getVersion();
+		}
+		else if (program != null && uniform.program == program)
+		{
+			return;
+		}
+		
+		setProgramUniformMatrix4(locationId, uniform.product);
+		uniform.program = program;
+	}
+
+	@Override
+	public void setProgramUniformMatrix4(int locationId, float[] matrix)
+	{
+		forgetMatrixUniform(locationId);
+		super.setProgramUniformMatrix4(locationId, matrix);
+	}
+
+	@Override
+	public void setProgramUniformMatrix4(int locationId, float[][] matrix)
+	{
+		forgetMatrixUniform(locationId);
+		super.setProgramUniformMatrix4(locationId, matrix);
+	}
+
+	@Override
+	public void linkProgram(OGLProgram program)
+	{
+		forgetMatrixUniforms(program);
+		super.linkProgram(program);
+	}
+
+	@Override
+	protected void refreshProgramLinkStatusAndUniforms(OGLProgram program)
+	{
+		forgetMatrixUniforms(program);
+		super.refreshProgramLinkStatusAndUniforms(program);
 	}
 
 	/**
@@ -420,6 +636,32 @@ public class OGL30Graphics extends OGL21Graphics
 		return out;
 	}
 	
+	/**
+	 * Creates a vertex array state object, which maintains the state of bound
+	 * vertex attributes and bound buffer targets.
+	 * This uses a {@link VertexFormat} that describes the buffer's layout
+	 * to set the pointers used by the array state (attribute indices match the format's). 
+	 * @param buffer the buffer that holds the vertex data.
+	 * @param format the vertex format of the buffer's data.
+	 * @return the new object.
+	 */
+	public OGLVertexArrayState createVertexArrayState(OGLBuffer buffer, VertexFormat format)
+	{
+		OGLVertexArrayState out = createVertexArrayState();
+		setVertexArrayState(out);
+		setBuffer(BufferTargetType.GEOMETRY, buffer);
+
+		for (int i = 0; i < format.getAttributeCount(); i++)
+		{
+			setVertexAttribEnabled(i, true);
+			setVertexAttribBufferPointer(i, format, i);
+		}
+		
+		unsetBuffer(BufferTargetType.GEOMETRY);
+		unsetVertexArrayState();
+		return out;
+	}
+	
 	/**
 	 * Creates a vertex array state object, which maintains the state of bound
 	 * vertex attributes and bound buffer targets.
@@ -447,6 +689,7 @@ public class OGL30Graphics extends OGL21Graphics
 	 * <ul>
 	 * <li> {@link #setVertexAttribEnabled(int, boolean)}
 	 * <li> {@link #setVertexAttribBufferPointer(int, DataType, boolean, int, int, int)}
+	 * <li> {@link #setVertexAttribBufferPointer(int, VertexFormat, int)}
 	 * </ul>
 	 * @param state the state to set.
 	 */
@@ -493,6 +736,16 @@ public class OGL30Graphics extends OGL21Graphics
 		return new OGLRenderbuffer();
 	}
 
+	/**
+	 * Creates a render buffer object around a render buffer name that was already created in OpenGL.
+	 * @param name the render buffer name.
+	 * @return a new render buffer object.
+	 */
+	protected OGLRenderbuffer wrapRenderbuffer(int name)
+	{
+		return new OGLRenderbuffer(name);
+	}
+
 	/**
 	 * Destroys a render buffer.
 	 * @param renderBuffer the render buffer to destroy.
@@ -547,12 +800,26 @@ public class OGL30Graphics extends OGL21Graphics
 		return new OGLFramebuffer();
 	}
 
+	/**
+	 * Creates a framebuffer object around a framebuffer name that was already created in OpenGL.
+	 * @param name the framebuffer name.
+	 * @return a new framebuffer object.
+	 */
+	protected OGLFramebuffer wrapFramebuffer(int name)
+	{
+		return new OGLFramebuffer(name);
+	}
+
 	/**
 	 * Destroys a framebuffer.
 	 * @param frameBuffer the framebuffer to destroy.
 	 */
 	public void destroyFramebuffer(OGLFramebuffer frameBuffer)
 	{
+		for (AttachPoint attachPoint : AttachPoint.values())
+			setFramebufferTextureAttachment(frameBuffer, attachPoint, null);
+		if (currentFramebuffer == frameBuffer)
+			currentFramebuffer = null;
 		destroyObject(frameBuffer);
 		checkError();
 	}
@@ -566,6 +833,7 @@ public class OGL30Graphics extends OGL21Graphics
 		Objects.requireNonNull(framebuffer);
 		glBindFramebuffer(GL_FRAMEBUFFER, framebuffer.getName());
 		checkError();
+		currentFramebuffer = framebuffer;
 	}
 
 	/**
@@ -575,7 +843,16 @@ public class OGL30Graphics extends OGL21Graphics
 	 */
 	public void checkFramebufferStatus()
 	{
-		int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+		verifyFramebufferStatus(glCheckFramebufferStatus(GL_FRAMEBUFFER));
+	}
+
+	/**
+	 * Throws an exception for a framebuffer status that is not complete.
+	 * @param status the status returned from a framebuffer status check.
+	 * @throws GraphicsException if the status is not {@link org.lwjgl.opengl.GL30#GL_FRAMEBUFFER_COMPLETE}.
+	 */
+	protected void verifyFramebufferStatus(int status)
+	{
 		String errorString = null;
 		if (status != GL_FRAMEBUFFER_COMPLETE) 
 		{
@@ -607,6 +884,24 @@ public class OGL30Graphics extends OGL21Graphics
 		}
 	}
 
+	/**
+	 * Records the texture attached to a framebuffer's attachment point,
+	 * so that textures in use as render targets are known to the texture residency manager.
+	 * @param framebuffer the framebuffer, or null for the default framebuffer (not tracked).
+	 * @param attachPoint the attachment point.
+	 * @param texture the attached texture, or null if the attachment point was detached or replaced with a render buffer.
+	 */
+	protected void setFramebufferTextureAttachment(OGLFramebuffer framebuffer, AttachPoint attachPoint, OGLTexture texture)
+	{
+		if (framebuffer == null)
+			return;
+		OGLTexture previous = framebuffer.setTextureAttachment(attachPoint, texture);
+		if (previous != null)
+			setTextureAttachedState(previous, false);
+		if (texture != null)
+			setTextureAttachedState(texture, true);
+	}
+
 	/**
 	 * Attaches a texture to this frame buffer for rendering directly to a texture.
 	 * @param attachPoint the attachment source point.
@@ -616,6 +911,7 @@ public class OGL30Graphics extends OGL21Graphics
 	{
 		glFramebufferTexture2D(GL_FRAMEBUFFER, attachPoint.glVal, GL_TEXTURE_2D, texture.getName(), 0);
 		checkError();
+		setFramebufferTextureAttachment(currentFramebuffer, attachPoint, texture);
 	}
 
 	/**
@@ -626,6 +922,7 @@ public class OGL30Graphics extends OGL21Graphics
 	{
 		glFramebufferTexture2D(GL_FRAMEBUFFER, attachPoint.glVal, GL_TEXTURE_2D, 0, 0);
 		checkError();
+		setFramebufferTextureAttachment(currentFramebuffer, attachPoint, null);
 	}
 
 	/**
@@ -637,6 +934,7 @@ public class OGL30Graphics extends OGL21Graphics
 	{
 		glFramebufferRenderbuffer(GL_FRAMEBUFFER, attachPoint.glVal, GL_RENDERBUFFER, renderBuffer.getName());
 		checkError();
+		setFramebufferTextureAttachment(currentFramebuffer, attachPoint, null);
 	}
 
 	/**
@@ -657,6 +955,7 @@ public class OGL30Graphics extends OGL21Graphics
 	{
 		glBindFramebuffer(GL_FRAMEBUFFER, 0);
 		checkError();
+		currentFramebuffer = null;
 	}
 
 	/**
@@ -689,6 +988,219 @@ public class OGL30Graphics extends OGL21Graphics
 		checkError();
 	}
 	
+	/**
+	 * Maps a range of the internal data of the current buffer to a local buffer for
+	 * quick modification/read. 
+	 * <p>
+	 * Unlike {@link #mapByteBuffer(BufferTargetType, AccessType)}, only the range is mapped, and
+	 * the flags can be used to avoid implicit synchronization:
+	 * {@link BufferMapFlag#INVALIDATE_RANGE} and {@link BufferMapFlag#INVALIDATE_BUFFER} discard
+	 * the previous contents, {@link BufferMapFlag#UNSYNCHRONIZED} skips waiting on pending operations,
+	 * and {@link BufferMapFlag#FLUSH_EXPLICIT} requires written subranges to be flushed via
+	 * {@link #flushMappedBufferRange(BufferTargetType, long, long)}.
+	 * </p>
+	 * The buffer must be unmapped via {@link #unmapBuffer(BufferTargetType)}.
+	 * @param type the binding target type.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use, in native byte order.
+	 * @throws UnsupportedOperationException if the provided target type or flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 */
+	public ByteBuffer mapByteBufferRange(BufferTargetType type, long offset, long length, BufferMapFlag ... flags)
+	{
+		verifyFeatureSupport(type);
+		for (int i = 0; i < flags.length; i++)
+			verifyFeatureSupport(flags[i]);
+		clearError();
+		ByteBuffer out = glMapBufferRange(type.glValue, offset, length, BufferMapFlag.toBits(flags));
+		checkError();
+		if (out == null)
+			throw new GraphicsException("Buffer range could not be mapped.");
+		return out.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Maps a range of the internal data of the current buffer to a local buffer for
+	 * quick modification/read.
+	 * @param type the binding target type.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use.
+	 * @throws UnsupportedOperationException if the provided target type or flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 * @see #mapByteBufferRange(BufferTargetType, long, long, BufferMapFlag...)
+	 */
+	public ShortBuffer mapShortBufferRange(BufferTargetType type, long offset, long length, BufferMapFlag ... flags)
+	{
+		return mapByteBufferRange(type, offset, length, flags).asShortBuffer();
+	}
+
+	/**
+	 * Maps a range of the internal data of the current buffer to a local buffer for
+	 * quick modification/read.
+	 * @param type the binding target type.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use.
+	 * @throws UnsupportedOperationException if the provided target type or flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 * @see #mapByteBufferRange(BufferTargetType, long, long, BufferMapFlag...)
+	 */
+	public IntBuffer mapIntBufferRange(BufferTargetType type, long offset, long length, BufferMapFlag ... flags)
+	{
+		return mapByteBufferRange(type, offset, length, flags).asIntBuffer();
+	}
+
+	/**
+	 * Maps a range of the internal data of the current buffer to a local buffer for
+	 * quick modification/read.
+	 * @param type the binding target type.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use.
+	 * @throws UnsupportedOperationException if the provided target type or flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 * @see #mapByteBufferRange(BufferTargetType, long, long, BufferMapFlag...)
+	 */
+	public LongBuffer mapLongBufferRange(BufferTargetType type, long offset, long length, BufferMapFlag ... flags)
+	{
+		return mapByteBufferRange(type, offset, length, flags).asLongBuffer();
+	}
+
+	/**
+	 * Maps a range of the internal data of the current buffer to a local buffer for
+	 * quick modification/read.
+	 * @param type the binding target type.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use.
+	 * @throws UnsupportedOperationException if the provided target type or flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 * @see #mapByteBufferRange(BufferTargetType, long, long, BufferMapFlag...)
+	 */
+	public FloatBuffer mapFloatBufferRange(BufferTargetType type, long offset, long length, BufferMapFlag ... flags)
+	{
+		return mapByteBufferRange(type, offset, length, flags).asFloatBuffer();
+	}
+
+	/**
+	 * Maps a range of the internal data of the current buffer to a local buffer for
+	 * quick modification/read.
+	 * @param type the binding target type.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use.
+	 * @throws UnsupportedOperationException if the provided target type or flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 * @see #mapByteBufferRange(BufferTargetType, long, long, BufferMapFlag...)
+	 */
+	public DoubleBuffer mapDoubleBufferRange(BufferTargetType type, long offset, long length, BufferMapFlag ... flags)
+	{
+		return mapByteBufferRange(type, offset, length, flags).asDoubleBuffer();
+	}
+
+	/**
+	 * Flushes a subrange of a buffer range mapped with {@link BufferMapFlag#FLUSH_EXPLICIT},
+	 * signaling to OpenGL that the subrange was modified.
+	 * @param type the binding target type.
+	 * @param offset the offset into the mapped range (not the buffer), in bytes.
+	 * @param length the length of the subrange, in bytes.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 */
+	public void flushMappedBufferRange(BufferTargetType type, long offset, long length)
+	{
+		verifyFeatureSupport(type);
+		clearError();
+		glFlushMappedBufferRange(type.glValue, offset, length);
+		checkError();
+	}
+
+	/**
+	 * Orphans the storage of the current buffer and maps the new storage for writing.
+	 * OpenGL keeps the old storage alive until pending commands that use it are finished,
+	 * so this never waits on the GPU. This is useful for data that is completely refilled 
+	 * every frame. The buffer must be unmapped via {@link #unmapBuffer(BufferTargetType)} after it is filled.
+	 * @param type the binding target type.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param length the new length of the buffer, in bytes.
+	 * @return a writable buffer of the new storage, in native byte order.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 * @throws GraphicsException if the buffer could not be mapped.
+	 */
+	public ByteBuffer mapOrphanedBuffer(BufferTargetType type, CachingHint cachingHint, long length)
+	{
+		verifyFeatureSupport(type);
+		clearError();
+		glBufferData(type.glValue, length, cachingHint.glValue);
+		checkError();
+		return mapByteBufferRange(type, 0L, length, BufferMapFlag.WRITE, BufferMapFlag.INVALIDATE_BUFFER);
+	}
+
+	/**
+	 * Orphans the storage of the current buffer and refills it with new data.
+	 * OpenGL keeps the old storage alive until pending commands that use it are finished,
+	 * so this never waits on the GPU. 
+	 * @param type the binding target type.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param data the data to send. Its remaining bytes become the new length of the buffer.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 * @throws GraphicsException if the buffer could not be mapped.
+	 */
+	public void setOrphanedBufferData(BufferTargetType type, CachingHint cachingHint, ByteBuffer data)
+	{
+		int position = data.position();
+		mapOrphanedBuffer(type, cachingHint, data.remaining()).put(data);
+		data.position(position);
+		unmapBuffer(type);
+	}
+
+	/**
+	 * Creates a stream buffer for data that changes every frame.
+	 * <p> In this implementation, the buffer is orphaned when it wraps around to the first region
+	 * and each region is mapped separately via glMapBufferRange.
+	 * <p> Region sizes for {@link BufferTargetType#UNIFORM} buffers should be multiples of the uniform buffer offset alignment.
+	 * @param type the target type that the buffer will be bound to.
+	 * @param regionSize the size of a single region in bytes.
+	 * @param regionCount the amount of regions (usually the amount of frames in flight, plus one).
+	 * @return a new stream buffer.
+	 * @throws IllegalArgumentException if regionSize or regionCount is less than 1, or the total size is larger than {@link Integer#MAX_VALUE}.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 * @throws GraphicsException if the buffer could not be created.
+	 */
+	public OGLStreamBuffer createStreamBuffer(BufferTargetType type, int regionSize, int regionCount)
+	{
+		if (regionSize < 1)
+			throw new IllegalArgumentException("Region size must be 1 or greater.");
+		if (regionCount < 1)
+			throw new IllegalArgumentException("Region count must be 1 or greater.");
+		long size = (long)regionSize * regionCount;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Total stream buffer size (region size x region count) is too large: " + size);
+		
+		OGLBuffer previous = getBuffer(type);
+		OGLBuffer buffer = createBuffer();
+		try {
+			setBuffer(type, buffer);
+			setBufferCapacity(type, DataType.BYTE, CachingHint.STREAM_DRAW, (int)size);
+		} catch (Exception e) {
+			destroyBuffer(buffer);
+			throw e;
+		} finally {
+			if (previous != null)
+				setBuffer(type, previous);
+			else
+				unsetBuffer(type);
+		}
+		return new OGL30StreamBuffer(this, type, buffer, regionSize, regionCount);
+	}
+	
 	/**
 	 * Starts a transform feedback.
 	 * Requires batch calling for draw, an attached geometry program, 
@@ -723,4 +1235,33 @@ public class OGL30Graphics extends OGL21Graphics
 		transformFeedbackActive = false;
 	}
 	
+	// Gets the matrix upload record for a uniform location, or null if the location is not tracked.
+	private MatrixUniform getMatrixUniform(int locationId)
+	{
+		if (locationId < 0 || locationId >= MAX_MATRIX_UNIFORM_LOCATIONS)
+			return null;
+		if (locationId >= matrixUniforms.length)
+			matrixUniforms = Arrays.copyOf(matrixUniforms, Math.min(MAX_MATRIX_UNIFORM_LOCATIONS, Math.max(locationId + 1, matrixUniforms.length * 2)));
+		
+		MatrixUniform out;
+		if ((out = matrixUniforms[locationId]) == null)
+			matrixUniforms[locationId] = (out = new MatrixUniform());
+		return out;
+	}
+	
+	// Flags all of a program's matrix uploads as unknown (linking resets its uniforms).
+	private void forgetMatrixUniforms(OGLProgram program)
+	{
+		for (int i = 0; i < matrixUniforms.length; i++)
+			if (matrixUniforms[i] != null && matrixUniforms[i].program == program)
+				matrixUniforms[i].program = null;
+	}
+	
+	// Flags a uniform location's matrix upload as unknown.
+	private void forgetMatrixUniform(int locationId)
+	{
+		if (locationId >= 0 && locationId < matrixUniforms.length && matrixUniforms[locationId] != null)
+			matrixUniforms[locationId].program = null;
+	}
+	
 }
@@ -8,8 +8,13 @@
 package com.blackrook.gloop.opengl.gl3;
 
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
 import com.blackrook.gloop.opengl.enums.DataType;
 import com.blackrook.gloop.opengl.enums.GeometryType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.gl2.OGLProgram;
+import com.blackrook.gloop.opengl.util.UniformBlockLayout;
 
 import static org.lwjgl.opengl.GL31.*;
 
@@ -36,6 +41,7 @@ public class OGL31Graphics extends OGL30Graphics
 			this.maxCombinedUniformBlocks = getInt(GL_MAX_COMBINED_UNIFORM_BLOCKS);
 			this.maxUniformBufferBindings = getInt(GL_MAX_UNIFORM_BUFFER_BINDINGS);
 			this.maxUniformBlockSize = getInt(GL_MAX_UNIFORM_BLOCK_SIZE);
+			this.uniformBufferOffsetAlignment = getInt(GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
 			this.maxCombinedVertexUniformComponents = getInt(GL_MAX_COMBINED_VERTEX_UNIFORM_COMPONENTS);
 			this.maxCombinedGeometryUniformComponents = getInt(GL_MAX_COMBINED_GEOMETRY_UNIFORM_COMPONENTS);
 			this.maxCombinedFragmentUniformComponents = getInt(GL_MAX_COMBINED_FRAGMENT_UNIFORM_COMPONENTS);
@@ -59,6 +65,30 @@ public class OGL31Graphics extends OGL30Graphics
 		return new Info31();
 	}
 	
+	/**
+	 * Sets if primitive restart is enabled. If so, the primitive restart index in element
+	 * indices ends the current primitive and starts a new one, for drawing several strips or fans in one call.
+	 * @param enabled true to enable, false to disable.
+	 * @see #setPrimitiveRestartIndex(int)
+	 */
+	public void setPrimitiveRestartEnabled(boolean enabled)
+	{
+		setFlag(GL_PRIMITIVE_RESTART, enabled);
+	}
+	
+	/**
+	 * Sets the primitive restart index.
+	 * This is usually the largest value of the index data type (for example, <code>0xffff</code> for unsigned shorts).
+	 * @param index the index value that restarts primitives.
+	 * @see #setPrimitiveRestartEnabled(boolean)
+	 * @see com.blackrook.gloop.opengl.util.IndexBuilder#getRestartIndex()
+	 */
+	public void setPrimitiveRestartIndex(int index)
+	{
+		glPrimitiveRestartIndex(index);
+		checkError();
+	}
+	
 	/**
 	 * Draws geometry using the current bound, enabled coordinate arrays/buffers as data.
 	 * @param geometryType the geometry type - tells how to interpret the data.
@@ -127,4 +157,139 @@ public class OGL31Graphics extends OGL30Graphics
 		checkError();
 	}
 
+	/**
+	 * Copies data from the buffer bound to one target to the buffer bound to another, on the GPU.
+	 * If the same buffer is bound to both targets, the ranges must not overlap.
+	 * @param readType the binding target of the source buffer (usually {@link BufferTargetType#COPY_READ}).
+	 * @param writeType the binding target of the destination buffer (usually {@link BufferTargetType#COPY_WRITE}).
+	 * @param readOffset the offset into the source buffer, in bytes.
+	 * @param writeOffset the offset into the destination buffer, in bytes.
+	 * @param size the amount of bytes to copy.
+	 * @throws UnsupportedOperationException if the provided target types are unavailable in this version.
+	 */
+	public void copyBufferSubData(BufferTargetType readType, BufferTargetType writeType, long readOffset, long writeOffset, long size)
+	{
+		verifyFeatureSupport(readType);
+		verifyFeatureSupport(writeType);
+		clearError();
+		glCopyBufferSubData(readType.glValue, writeType.glValue, readOffset, writeOffset, size);
+		checkError();
+	}
+
+	/**
+	 * Gets the index of a named uniform block in a program.
+	 * @param program the program to inspect.
+	 * @param blockName the name of the uniform block.
+	 * @return the block index, or -1 if no such block is active in the program.
+	 * @throws GraphicsException if the program is not linked.
+	 */
+	public int getProgramUniformBlockIndex(OGLProgram program, String blockName)
+	{
+		if (!program.isLinked())
+			throw new GraphicsException("Program is not linked.");
+		int out = glGetUniformBlockIndex(program.getName(), blockName);
+		checkError();
+		return out == GL_INVALID_INDEX ? -1 : out;
+	}
+	
+	/**
+	 * Gets the minimum size in bytes of a buffer range bound to a uniform block in a program.
+	 * This can be compared with {@link UniformBlockLayout#getSize()} to check a layout against a shader.
+	 * @param program the program to inspect.
+	 * @param blockIndex the block index.
+	 * @return the block data size in bytes.
+	 * @see #getProgramUniformBlockIndex(OGLProgram, String)
+	 */
+	public int getProgramUniformBlockSize(OGLProgram program, int blockIndex)
+	{
+		int out = glGetActiveUniformBlocki(program.getName(), blockIndex, GL_UNIFORM_BLOCK_DATA_SIZE);
+		checkError();
+		return out;
+	}
+	
+	/**
+	 * Assigns a uniform block in a program to a uniform buffer binding point.
+	 * @param program the program.
+	 * @param blockIndex the block index.
+	 * @param bindingIndex the binding point index.
+	 * @throws GraphicsException if the binding index is greater than or equal to the maximum uniform buffer bindings.
+	 * @see #getProgramUniformBlockIndex(OGLProgram, String)
+	 * @see #setBufferBase(BufferTargetType, int, OGLBuffer)
+	 */
+	public void setProgramUniformBlockBinding(OGLProgram program, int blockIndex, int bindingIndex)
+	{
+		if (bindingIndex >= getInfo().getMaxUniformBufferBindings())
+			throw new GraphicsException("Binding index cannot be greater than or equal to " + getInfo().getMaxUniformBufferBindings());
+		glUniformBlockBinding(program.getName(), blockIndex, bindingIndex);
+		checkError();
+	}
+	
+	/**
+	 * Binds a whole buffer to an indexed binding point of a target
+	 * ({@link BufferTargetType#UNIFORM}, {@link BufferTargetType#TRANSFORM_FEEDBACK}, and later, atomic counter and shader storage targets).
+	 * This also binds the buffer to the target itself.
+	 * @param type the buffer target type.
+	 * @param index the binding point index.
+	 * @param buffer the buffer to bind.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 */
+	public void setBufferBase(BufferTargetType type, int index, OGLBuffer buffer)
+	{
+		verifyFeatureSupport(type);
+		clearError();
+		glBindBufferBase(type.glValue, index, buffer.getName());
+		checkError();
+		setCurrentBufferState(type, buffer);
+	}
+	
+	/**
+	 * Binds a range of a buffer to an indexed binding point of a target.
+	 * This also binds the buffer to the target itself.
+	 * For {@link BufferTargetType#UNIFORM}, the offset must be a multiple of the uniform buffer offset alignment.
+	 * @param type the buffer target type.
+	 * @param index the binding point index.
+	 * @param buffer the buffer to bind.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param size the size of the range, in bytes.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 * @see Info#getUniformBufferOffsetAlignment()
+	 */
+	public void setBufferRange(BufferTargetType type, int index, OGLBuffer buffer, long offset, long size)
+	{
+		verifyFeatureSupport(type);
+		clearError();
+		glBindBufferRange(type.glValue, index, buffer.getName(), offset, size);
+		checkError();
+		setCurrentBufferState(type, buffer);
+	}
+	
+	/**
+	 * Unbinds a buffer from an indexed binding point of a target.
+	 * @param type the buffer target type.
+	 * @param index the binding point index.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 */
+	public void unsetBufferBase(BufferTargetType type, int index)
+	{
+		verifyFeatureSupport(type);
+		glBindBufferBase(type.glValue, index, 0);
+		checkError();
+		setCurrentBufferState(type, null);
+	}
+	
+	/**
+	 * Creates a ring of uniform data, for per-frame and per-draw uniform blocks.
+	 * Blocks are allocated from the current frame's region at offsets aligned to the uniform buffer offset alignment.
+	 * @param frameSize the size of a single frame's region in bytes (rounded up to the alignment).
+	 * @param frames the amount of frame regions (usually the amount of frames in flight, plus one).
+	 * @return a new uniform buffer ring.
+	 * @throws IllegalArgumentException if frameSize or frames is less than 1.
+	 * @throws GraphicsException if the buffer could not be created.
+	 * @see #createStreamBuffer(BufferTargetType, int, int)
+	 */
+	public OGLUniformBufferRing createUniformBufferRing(int frameSize, int frames)
+	{
+		return new OGLUniformBufferRing(this, frameSize, frames);
+	}
+
 }
@@ -7,8 +7,20 @@
  ******************************************************************************/
 package com.blackrook.gloop.opengl.gl3;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.BufferMapFlag;
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.ColorFormat;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
 import com.blackrook.gloop.opengl.enums.SyncResultType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl2.OGLFrameReader;
+import com.blackrook.gloop.opengl.gl2.OGLTextureUploader;
+import com.blackrook.gloop.opengl.util.DrawIndirectCommandBuffer;
 
 import static org.lwjgl.opengl.GL32.*;
 
@@ -19,6 +31,126 @@ import static org.lwjgl.opengl.GL32.*;
  */
 public class OGL32Graphics extends OGL31Graphics
 {
+	/**
+	 * Texture uploader used for OpenGL 3.2.
+	 * A fence is placed after each upload, and a staging buffer is only mapped 
+	 * again (unsynchronized) once its fence is signaled.
+	 */
+	private static class OGL32TextureUploader extends OGLTextureUploader
+	{
+		/** Timeout for a single wait on a staging area's fence. */
+		private static final long WAIT_TIMEOUT_NANOS = 1000000L;
+		
+		private OGL32Graphics gl;
+		private OGLSync[] fences;
+		
+		private OGL32TextureUploader(OGL32Graphics gl, int slotSize, int slotCount)
+		{
+			super(gl, slotSize, slotCount);
+			this.gl = gl;
+			this.fences = new OGLSync[slotCount];
+		}
+
+		@Override
+		protected ByteBuffer mapSlot(int slot, int size)
+		{
+			releaseFence(slot);
+			return gl.mapByteBufferRange(BufferTargetType.PIXEL, 0L, size, 
+				BufferMapFlag.WRITE, BufferMapFlag.INVALIDATE_BUFFER, BufferMapFlag.UNSYNCHRONIZED
+			);
+		}
+
+		@Override
+		protected boolean isSlotComplete(int slot)
+		{
+			return fences[slot] == null 
+				|| gl.awaitClentFlushedCommandsSync(fences[slot], 0L) != SyncResultType.TIMEOUT_EXPIRED;
+		}
+
+		@Override
+		protected void awaitSlot(int slot)
+		{
+			if (fences[slot] == null)
+				return;
+			SyncResultType result;
+			while ((result = gl.awaitClentFlushedCommandsSync(fences[slot], WAIT_TIMEOUT_NANOS)) == SyncResultType.TIMEOUT_EXPIRED) ;
+			if (result == SyncResultType.WAIT_FAILED)
+				throw new GraphicsException("Wait on texture staging fence failed.");
+		}
+
+		@Override
+		protected void fenceSlot(int slot)
+		{
+			releaseFence(slot);
+			fences[slot] = gl.createFenceSync();
+		}
+
+		@Override
+		protected void destroySlot(int slot)
+		{
+			releaseFence(slot);
+		}
+		
+		private void releaseFence(int slot)
+		{
+			if (fences[slot] != null)
+				gl.destroySync(fences[slot]);
+			fences[slot] = null;
+		}
+	}
+	
+	/**
+	 * Frame reader used for OpenGL 3.2.
+	 * A fence is placed after each read, and a read is only mapped once its fence is signaled,
+	 * so mapping never waits.
+	 */
+	private static class OGL32FrameReader extends OGLFrameReader
+	{
+		private OGL32Graphics gl;
+		private OGLSync[] fences;
+		
+		private OGL32FrameReader(OGL32Graphics gl, int maxWidth, int maxHeight, ColorFormat colorFormat, int slotCount, int latency, Executor executor, Sink sink)
+		{
+			super(gl, maxWidth, maxHeight, colorFormat, slotCount, latency, executor, sink);
+			this.gl = gl;
+			this.fences = new OGLSync[slotCount];
+		}
+
+		@Override
+		protected ByteBuffer mapSlot(int slot, int size)
+		{
+			releaseFence(slot);
+			return gl.mapByteBufferRange(BufferTargetType.RAW_DATA, 0L, size, BufferMapFlag.READ);
+		}
+
+		@Override
+		protected boolean isSlotComplete(int slot)
+		{
+			return fences[slot] == null 
+				|| gl.awaitClentFlushedCommandsSync(fences[slot], 0L) != SyncResultType.TIMEOUT_EXPIRED;
+		}
+
+		@Override
+		protected void fenceSlot(int slot)
+		{
+			releaseFence(slot);
+			fences[slot] = gl.createFenceSync();
+		}
+
+		@Override
+		protected void destroySlot(int slot)
+		{
+			releaseFence(slot);
+		}
+		
+		private void releaseFence(int slot)
+		{
+			if (fences[slot] != null)
+				gl.destroySync(fences[slot]);
+			fences[slot] = null;
+		}
+	}
+	
 	protected class Info32 extends Info31
 	{
 		protected Info32()
@@ -67,6 +199,118 @@ public class OGL32Graphics extends OGL31Graphics
 		glGetMultisamplefv(GL_SAMPLE_POSITION, sampleIndex, outArray);
 	}
 
+	/**
+	 * Draws geometry using the current bound, enabled coordinate arrays/buffers as data, plus
+	 * an element buffer to describe the ordering, adding a constant to each index before fetching vertices.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param dataType the data type of the indices in the {@link BufferTargetType#INDICES}-bound buffer (must be an unsigned type).
+	 * @param count the amount of element indices to interpret in the {@link BufferTargetType#INDICES}-bound buffer.
+	 * @param offset the starting offset in the index buffer (in elements).
+	 * @param baseVertex the constant to add to each index.
+	 */
+	public void drawGeometryElementsBaseVertex(GeometryType geometryType, DataType dataType, int count, int offset, int baseVertex)
+	{
+		glDrawElementsBaseVertex(geometryType.glValue, count, dataType.glValue, (long)dataType.size * offset, baseVertex);
+		checkError();
+	}
+	
+	/**
+	 * Draws a list of array commands using the current bound, enabled coordinate arrays/buffers as data.
+	 * <p> In this version, the commands are unpacked and drawn with glMultiDrawArrays, so they cannot use instancing.
+	 * Later versions draw them directly from a {@link BufferTargetType#DRAW_INDIRECT} buffer.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param commands the commands to draw.
+	 * @throws GraphicsException if the command buffer does not hold arrays commands, or uses instancing.
+	 */
+	public void multiDrawArraysIndirect(GeometryType geometryType, DrawIndirectCommandBuffer commands)
+	{
+		checkIndirectCommands(commands, DrawIndirectCommandBuffer.Type.ARRAYS);
+		if (commands.unpack(0) == 0)
+			return;
+		glMultiDrawArrays(geometryType.glValue, commands.getUnpackedFirsts(), commands.getUnpackedCounts());
+		checkError();
+	}
+	
+	/**
+	 * Draws a list of element commands using the current bound, enabled coordinate arrays/buffers as data, 
+	 * plus the {@link BufferTargetType#INDICES}-bound buffer to describe the ordering.
+	 * <p> In this version, the commands are unpacked and drawn with glMultiDrawElementsBaseVertex, so they cannot use instancing.
+	 * Later versions draw them directly from a {@link BufferTargetType#DRAW_INDIRECT} buffer.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param dataType the data type of the indices in the {@link BufferTargetType#INDICES}-bound buffer (must be an unsigned type).
+	 * @param commands the commands to draw.
+	 * @throws GraphicsException if the command buffer does not hold elements commands, or uses instancing.
+	 */
+	public void multiDrawElementsIndirect(GeometryType geometryType, DataType dataType, DrawIndirectCommandBuffer commands)
+	{
+		checkIndirectCommands(commands, DrawIndirectCommandBuffer.Type.ELEMENTS);
+		if (commands.unpack(dataType.size) == 0)
+			return;
+		glMultiDrawElementsBaseVertex(geometryType.glValue, commands.getUnpackedCounts(), dataType.glValue, commands.getUnpackedOffsets(), commands.getUnpackedFirsts());
+		checkError();
+	}
+	
+	// Checks if a command buffer can be drawn without indirect drawing.
+	private void checkIndirectCommands(DrawIndirectCommandBuffer commands, DrawIndirectCommandBuffer.Type type)
+	{
+		if (commands.getType() != type)
+			throw new GraphicsException("Command buffer does not hold " + type.name().toLowerCase() + " commands.");
+		if (commands.isInstanced())
+			throw new GraphicsException("Instanced commands require OpenGL 4.3 or higher.");
+	}
+	
+	/**
+	 * Creates an asynchronous frame buffer reader, which reads pixels into a ring of pixel pack buffers
+	 * and hands them to a sink on other threads some frames later.
+	 * <p> In this implementation, a fence is placed after each read, and a read is only mapped
+	 * once the latency has passed and its fence is signaled.
+	 * @param maxWidth the maximum capture width in pixels.
+	 * @param maxHeight the maximum capture height in pixels.
+	 * @param colorFormat the pixel format to read.
+	 * @param frameCount the amount of frames that can be in progress at once (being read or in the sink).
+	 * @param latency the amount of frames to wait after a capture before its data is mapped.
+	 * @param executor the executor to run the sink on.
+	 * @param sink the sink that consumes the frames.
+	 * @return a new frame reader.
+	 * @throws IllegalArgumentException if a dimension or the frame count is less than 1, or the latency is negative.
+	 */
+	@Override
+	public OGLFrameReader createFrameReader(int maxWidth, int maxHeight, ColorFormat colorFormat, int frameCount, int latency, Executor executor, OGLFrameReader.Sink sink)
+	{
+		return new OGL32FrameReader(this, maxWidth, maxHeight, colorFormat, frameCount, latency, executor, sink);
+	}
+	
+	/**
+	 * Creates an asynchronous texture uploader, which stages texel data in a ring of pixel buffers.
+	 * <p> In this implementation, a fence is placed after each upload, and a staging buffer is only 
+	 * reused once OpenGL has signaled that it is finished reading from it.
+	 * @param stagingSize the size of each staging area in bytes (the largest single upload).
+	 * @param stagingCount the amount of staging areas.
+	 * @return a new texture uploader.
+	 * @throws IllegalArgumentException if the size or count is less than 1.
+	 */
+	@Override
+	public OGLTextureUploader createTextureUploader(int stagingSize, int stagingCount)
+	{
+		return new OGL32TextureUploader(this, stagingSize, stagingCount);
+	}
+	
+	/**
+	 * Creates a geometry pool, which sub-allocates the vertex and index data of many meshes 
+	 * from one vertex buffer and one index buffer.
+	 * @param vertexStride the size of a single vertex in bytes.
+	 * @param vertexCapacity the initial capacity of the pool in vertices.
+	 * @param indexType the data type of the indices (must be an unsigned type).
+	 * @param indexCapacity the initial capacity of the pool in indices.
+	 * @return a new geometry pool.
+	 * @throws IllegalArgumentException if the stride is less than 1, or a capacity is negative.
+	 * @throws GraphicsException if the buffers could not be created.
+	 */
+	public OGLGeometryPool createGeometryPool(int vertexStride, int vertexCapacity, DataType indexType, int indexCapacity)
+	{
+		return new OGLGeometryPool(this, vertexStride, vertexCapacity, indexType, indexCapacity);
+	}
+	
 	/**
 	 * Creates a new fence synching object for OPENGL Sync operations.
 	 * @return a new OGLSync object.
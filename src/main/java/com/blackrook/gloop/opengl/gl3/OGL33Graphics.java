@@ -14,6 +14,7 @@ import com.blackrook.gloop.opengl.enums.QueryTarget;
 import com.blackrook.gloop.opengl.enums.TextureMagFilter;
 import com.blackrook.gloop.opengl.enums.TextureMinFilter;
 import com.blackrook.gloop.opengl.enums.TextureWrapType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
 import com.blackrook.gloop.opengl.gl1.OGLQuery;
 
 import java.nio.FloatBuffer;
@@ -215,4 +216,41 @@ public class OGL33Graphics extends OGL32Graphics
 		glSamplerParameteri(sampler.getName(), GL_TEXTURE_COMPARE_FUNC, func.glValue);
 	}
 	
+	/**
+	 * Sets the rate at which a vertex attribute advances during instanced draws.
+	 * A divisor of 0 advances the attribute once per vertex (the default), and a divisor of N advances it
+	 * once every N instances, so per-instance data (transforms, colors) can be read from a buffer instead of uniforms.
+	 * @param index the attribute index.
+	 * @param divisor the amount of instances per attribute element, or 0 for per-vertex.
+	 * @throws IllegalArgumentException if divisor is less than 0.
+	 * @see OGL31Graphics#drawGeometryArrayInstanced(com.blackrook.gloop.opengl.enums.GeometryType, int, int, int)
+	 */
+	public void setVertexAttribDivisor(int index, int divisor)
+	{
+		if (divisor < 0)
+			throw new IllegalArgumentException("Divisor cannot be less than 0.");
+		glVertexAttribDivisor(index, divisor);
+		checkError();
+	}
+
+	/**
+	 * Creates a streamed buffer of per-instance attributes for instanced draws.
+	 * Each instance can have a transform (read as a <code>mat4</code> over four consecutive attribute slots), 
+	 * a color (read as a normalized <code>vec4</code>), and a set of custom float components.
+	 * @param transform if true, each instance has a transform matrix.
+	 * @param color if true, each instance has a color.
+	 * @param customComponents the amount of custom float components per instance (0 to 4).
+	 * @param capacity the starting amount of instances that fit in a frame's region (grows as needed).
+	 * @param frames the amount of frame regions (usually the amount of frames in flight, plus one).
+	 * @return a new instance buffer.
+	 * @throws IllegalArgumentException if the instance has no attributes, customComponents is out of range, 
+	 * 		or capacity or frames is less than 1.
+	 * @throws GraphicsException if the buffer could not be created.
+	 * @see #createStreamBuffer(com.blackrook.gloop.opengl.enums.BufferTargetType, int, int)
+	 */
+	public OGLInstanceBuffer createInstanceBuffer(boolean transform, boolean color, int customComponents, int capacity, int frames)
+	{
+		return new OGLInstanceBuffer(this, transform, color, customComponents, capacity, frames);
+	}
+
 }
@@ -7,7 +7,12 @@
  ******************************************************************************/
 package com.blackrook.gloop.opengl.gl3;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import com.blackrook.gloop.opengl.OGLObject;
+import com.blackrook.gloop.opengl.enums.AttachPoint;
+import com.blackrook.gloop.opengl.gl1.OGLTexture;
 
 import static org.lwjgl.opengl.GL30.*;
 
@@ -29,12 +34,47 @@ public class OGLFramebuffer extends OGLObject
 		UNDELETED_LENGTH = 0;
 	}
 
+	/** Textures attached to this framebuffer, as tracked by the graphics instance. */
+	private Map<AttachPoint, OGLTexture> textureAttachments;
+	
 	/**
 	 * Constructs a new FrameBuffer object.
 	 */
 	OGLFramebuffer()
 	{
 		setName(glGenFramebuffers());
+		this.textureAttachments = new EnumMap<>(AttachPoint.class);
+	}
+
+	/**
+	 * Creates a framebuffer object around an existing OpenGL framebuffer name.
+	 * @param name the framebuffer name.
+	 */
+	OGLFramebuffer(int name)
+	{
+		setName(name);
+		this.textureAttachments = new EnumMap<>(AttachPoint.class);
+	}
+
+	/**
+	 * Sets the texture attached to an attachment point.
+	 * @param attachPoint the attachment point.
+	 * @param texture the attached texture, or null for no texture.
+	 * @return the texture previously attached to the attachment point, or null if none.
+	 */
+	OGLTexture setTextureAttachment(AttachPoint attachPoint, OGLTexture texture)
+	{
+		return texture != null ? textureAttachments.put(attachPoint, texture) : textureAttachments.remove(attachPoint);
+	}
+
+	/**
+	 * Gets the texture attached to an attachment point, as tracked by the graphics instance.
+	 * @param attachPoint the attachment point.
+	 * @return the attached texture, or null if none.
+	 */
+	public OGLTexture getTextureAttachment(AttachPoint attachPoint)
+	{
+		return textureAttachments.get(attachPoint);
 	}
 
 	@Override
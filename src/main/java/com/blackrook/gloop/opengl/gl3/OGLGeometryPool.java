@@ -0,0 +1,498 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl3;
+
+import java.nio.ByteBuffer;
+
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.CachingHint;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.util.BufferRangeAllocator;
+
+/**
+ * A pool that sub-allocates the vertex and index data of many small meshes from
+ * one large vertex buffer and one large index buffer, so that they can be drawn
+ * without switching buffers or vertex array states.
+ * <p> All meshes in a pool share the same vertex layout. Vertex attribute pointers should
+ * be set up once against {@link #getVertexBuffer()} at offset 0, and {@link #getIndexBuffer()}
+ * bound as the {@link BufferTargetType#INDICES} buffer. Each mesh is then drawn with its base vertex
+ * and first index via {@link #draw(Mesh, GeometryType)}.
+ * <p> When the pool runs out of contiguous space, it is defragmented or grown automatically.
+ * Neither changes the buffer objects, so vertex array states that refer to them stay valid.
+ * <p> Data is written and moved through the {@link BufferTargetType#COPY_READ} and {@link BufferTargetType#COPY_WRITE}
+ * targets. The buffers previously bound to them are bound again afterward.
+ * @author Matthew Tropiano
+ * @see OGL32Graphics#createGeometryPool(int, int, DataType, int)
+ */
+public class OGLGeometryPool
+{
+	/**
+	 * A handle to a single mesh in a pool.
+	 * The offsets in a handle may change if the pool is defragmented.
+	 */
+	public static class Mesh
+	{
+		private OGLGeometryPool pool;
+		private BufferRangeAllocator.Range vertexRange;
+		private BufferRangeAllocator.Range indexRange;
+		private int vertexCount;
+		private int indexCount;
+
+		private Mesh(OGLGeometryPool pool, BufferRangeAllocator.Range vertexRange, BufferRangeAllocator.Range indexRange, int vertexCount, int indexCount)
+		{
+			this.pool = pool;
+			this.vertexRange = vertexRange;
+			this.indexRange = indexRange;
+			this.vertexCount = vertexCount;
+			this.indexCount = indexCount;
+		}
+
+		/**
+		 * @return the pool that this mesh belongs to.
+		 */
+		public OGLGeometryPool getPool()
+		{
+			return pool;
+		}
+
+		/**
+		 * @return the index of this mesh's first vertex in the vertex buffer.
+		 */
+		public int getBaseVertex()
+		{
+			return (int)(vertexRange.getOffset() / pool.vertexStride);
+		}
+
+		/**
+		 * @return the offset of this mesh's first index in the index buffer, in indices.
+		 */
+		public int getFirstIndex()
+		{
+			return indexRange != null ? (int)(indexRange.getOffset() / pool.indexType.size) : 0;
+		}
+
+		/**
+		 * @return the offset of this mesh's vertex data in the vertex buffer, in bytes.
+		 */
+		public long getVertexOffset()
+		{
+			return vertexRange.getOffset();
+		}
+
+		/**
+		 * @return the offset of this mesh's index data in the index buffer, in bytes.
+		 */
+		public long getIndexOffset()
+		{
+			return indexRange != null ? indexRange.getOffset() : 0L;
+		}
+
+		/**
+		 * @return the amount of vertices in this mesh.
+		 */
+		public int getVertexCount()
+		{
+			return vertexCount;
+		}
+
+		/**
+		 * @return the amount of indices in this mesh.
+		 */
+		public int getIndexCount()
+		{
+			return indexCount;
+		}
+
+		/**
+		 * @return true if this mesh is still allocated in its pool, false if not.
+		 */
+		public boolean isAllocated()
+		{
+			return vertexRange.isAllocated();
+		}
+	}
+
+	private OGL32Graphics gl;
+	private int vertexStride;
+	private DataType indexType;
+	private OGLBuffer vertexBuffer;
+	private OGLBuffer indexBuffer;
+	private BufferRangeAllocator vertexAllocator;
+	private BufferRangeAllocator indexAllocator;
+	private int meshCount;
+
+	/**
+	 * Creates a new geometry pool.
+	 * @param gl the graphics instance.
+	 * @param vertexStride the size of a single vertex in bytes.
+	 * @param vertexCapacity the initial capacity of the pool in vertices.
+	 * @param indexType the data type of the indices.
+	 * @param indexCapacity the initial capacity of the pool in indices.
+	 */
+	OGLGeometryPool(OGL32Graphics gl, int vertexStride, int vertexCapacity, DataType indexType, int indexCapacity)
+	{
+		if (vertexStride < 1)
+			throw new IllegalArgumentException("Vertex stride must be 1 or greater.");
+		if (vertexCapacity < 0 || indexCapacity < 0)
+			throw new IllegalArgumentException("Capacity cannot be negative.");
+		switch (indexType)
+		{
+			case UNSIGNED_BYTE:
+			case UNSIGNED_SHORT:
+			case UNSIGNED_INTEGER:
+				break;
+			default:
+				throw new IllegalArgumentException("Index type must be an unsigned type.");
+		}
+
+		this.gl = gl;
+		this.vertexStride = vertexStride;
+		this.indexType = indexType;
+		this.vertexAllocator = new BufferRangeAllocator((long)vertexCapacity * vertexStride, vertexStride);
+		this.indexAllocator = new BufferRangeAllocator((long)indexCapacity * indexType.size, indexType.size);
+		this.meshCount = 0;
+
+		this.vertexBuffer = createBuffer((int)vertexAllocator.getCapacity());
+		try {
+			this.indexBuffer = createBuffer((int)indexAllocator.getCapacity());
+		} catch (Exception e) {
+			gl.destroyBuffer(vertexBuffer);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the buffer that holds the vertex data of all meshes.
+	 */
+	public OGLBuffer getVertexBuffer()
+	{
+		return vertexBuffer;
+	}
+
+	/**
+	 * @return the buffer that holds the index data of all meshes.
+	 */
+	public OGLBuffer getIndexBuffer()
+	{
+		return indexBuffer;
+	}
+
+	/**
+	 * @return the size of a single vertex in bytes.
+	 */
+	public int getVertexStride()
+	{
+		return vertexStride;
+	}
+
+	/**
+	 * @return the index data type.
+	 */
+	public DataType getIndexType()
+	{
+		return indexType;
+	}
+
+	/**
+	 * @return the amount of allocated meshes.
+	 */
+	public int getMeshCount()
+	{
+		return meshCount;
+	}
+
+	/**
+	 * @return the vertex capacity of this pool, in vertices.
+	 */
+	public int getVertexCapacity()
+	{
+		return (int)(vertexAllocator.getCapacity() / vertexStride);
+	}
+
+	/**
+	 * @return the amount of allocated vertices.
+	 */
+	public int getVertexUsed()
+	{
+		return (int)(vertexAllocator.getUsed() / vertexStride);
+	}
+
+	/**
+	 * @return the index capacity of this pool, in indices.
+	 */
+	public int getIndexCapacity()
+	{
+		return (int)(indexAllocator.getCapacity() / indexType.size);
+	}
+
+	/**
+	 * @return the amount of allocated indices.
+	 */
+	public int getIndexUsed()
+	{
+		return (int)(indexAllocator.getUsed() / indexType.size);
+	}
+
+	/**
+	 * Allocates space for a mesh.
+	 * If there is no contiguous space for it, the pool is defragmented, or grown if there still isn't enough space.
+	 * @param vertexCount the amount of vertices.
+	 * @param indexCount the amount of indices (can be 0 for non-indexed meshes).
+	 * @return a new mesh handle.
+	 * @throws IllegalArgumentException if vertexCount is less than 1 or indexCount is negative.
+	 * @throws GraphicsException if the pool could not be grown.
+	 */
+	public Mesh allocate(int vertexCount, int indexCount)
+	{
+		if (vertexCount < 1)
+			throw new IllegalArgumentException("Vertex count must be 1 or greater.");
+		if (indexCount < 0)
+			throw new IllegalArgumentException("Index count cannot be negative.");
+
+		BufferRangeAllocator.Range vertexRange = allocate(vertexAllocator, vertexBuffer, (long)vertexCount * vertexStride);
+		BufferRangeAllocator.Range indexRange = null;
+		if (indexCount > 0)
+		{
+			try {
+				indexRange = allocate(indexAllocator, indexBuffer, (long)indexCount * indexType.size);
+			} catch (Exception e) {
+				vertexAllocator.free(vertexRange);
+				throw e;
+			}
+		}
+		meshCount++;
+		return new Mesh(this, vertexRange, indexRange, vertexCount, indexCount);
+	}
+
+	/**
+	 * Frees a mesh's space in this pool.
+	 * @param mesh the mesh to free.
+	 * @throws IllegalArgumentException if the mesh is not from this pool, or already freed.
+	 */
+	public void free(Mesh mesh)
+	{
+		verifyMesh(mesh);
+		vertexAllocator.free(mesh.vertexRange);
+		if (mesh.indexRange != null)
+			indexAllocator.free(mesh.indexRange);
+		meshCount--;
+	}
+
+	/**
+	 * Sets a mesh's vertex data.
+	 * @param mesh the mesh.
+	 * @param data the vertex data. Only up to the mesh's vertex count worth of bytes is used.
+	 * @throws IllegalArgumentException if the mesh is not from this pool, or already freed.
+	 * @throws GraphicsException if the data is not a direct buffer.
+	 */
+	public void setVertexData(Mesh mesh, ByteBuffer data)
+	{
+		verifyMesh(mesh);
+		setData(vertexBuffer, mesh.vertexRange.getOffset(), (long)mesh.vertexCount * vertexStride, data);
+	}
+
+	/**
+	 * Sets a mesh's index data. Indices are relative to the mesh's first vertex.
+	 * @param mesh the mesh.
+	 * @param data the index data. Only up to the mesh's index count worth of bytes is used.
+	 * @throws IllegalArgumentException if the mesh is not from this pool, or already freed.
+	 * @throws GraphicsException if the data is not a direct buffer.
+	 */
+	public void setIndexData(Mesh mesh, ByteBuffer data)
+	{
+		verifyMesh(mesh);
+		if (mesh.indexRange == null)
+			return;
+		setData(indexBuffer, mesh.indexRange.getOffset(), (long)mesh.indexCount * indexType.size, data);
+	}
+
+	/**
+	 * Draws a mesh. The pool's buffers must be bound (usually via a vertex array state).
+	 * Meshes with indices are drawn with their base vertex, meshes without indices are drawn as arrays.
+	 * @param mesh the mesh to draw.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 */
+	public void draw(Mesh mesh, GeometryType geometryType)
+	{
+		if (mesh.indexRange != null)
+			gl.drawGeometryElementsBaseVertex(geometryType, indexType, mesh.indexCount, mesh.getFirstIndex(), mesh.getBaseVertex());
+		else
+			gl.drawGeometryArray(geometryType, mesh.getBaseVertex(), mesh.vertexCount);
+	}
+
+	/**
+	 * Compacts all mesh data to the start of both buffers, so that all free space is contiguous.
+	 * This updates the offsets of all affected mesh handles.
+	 * @throws GraphicsException if the temporary copy buffer could not be created.
+	 */
+	public void defragment()
+	{
+		defragment(vertexAllocator, vertexBuffer);
+		defragment(indexAllocator, indexBuffer);
+	}
+
+	/**
+	 * Destroys this pool's buffers. All mesh handles become invalid.
+	 */
+	public void destroy()
+	{
+		gl.destroyBuffer(vertexBuffer);
+		gl.destroyBuffer(indexBuffer);
+		meshCount = 0;
+	}
+
+	// Verifies a mesh.
+	private void verifyMesh(Mesh mesh)
+	{
+		if (mesh.pool != this)
+			throw new IllegalArgumentException("Mesh is not from this pool.");
+		if (!mesh.isAllocated())
+			throw new IllegalArgumentException("Mesh was already freed.");
+	}
+
+	// Allocates a range, defragmenting or growing if necessary.
+	private BufferRangeAllocator.Range allocate(BufferRangeAllocator allocator, OGLBuffer buffer, long size)
+	{
+		BufferRangeAllocator.Range out;
+		if ((out = allocator.allocate(size)) != null)
+			return out;
+
+		size = allocator.align(size);
+		if (allocator.getFree() >= size)
+		{
+			defragment(allocator, buffer);
+		}
+		else
+		{
+			long capacity = allocator.getCapacity();
+			grow(allocator, buffer, Math.max(capacity * 2, capacity + size));
+		}
+
+		if ((out = allocator.allocate(size)) == null)
+			throw new GraphicsException("Could not allocate geometry pool space.");
+		return out;
+	}
+
+	// Defragments a buffer.
+	private void defragment(BufferRangeAllocator allocator, OGLBuffer buffer)
+	{
+		if (allocator.getFragmentation() == 0.0)
+			return;
+
+		OGLBuffer temp = copyToTemp(buffer, allocator.getCapacity());
+		OGLBuffer previousRead = gl.getBuffer(BufferTargetType.COPY_READ);
+		OGLBuffer previousWrite = gl.getBuffer(BufferTargetType.COPY_WRITE);
+		try {
+			gl.setBuffer(BufferTargetType.COPY_READ, temp);
+			gl.setBuffer(BufferTargetType.COPY_WRITE, buffer);
+			allocator.compact((sourceOffset, targetOffset, size) ->
+				gl.copyBufferSubData(BufferTargetType.COPY_READ, BufferTargetType.COPY_WRITE, sourceOffset, targetOffset, size)
+			);
+		} finally {
+			restoreBuffer(BufferTargetType.COPY_READ, previousRead);
+			restoreBuffer(BufferTargetType.COPY_WRITE, previousWrite);
+			gl.destroyBuffer(temp);
+		}
+	}
+
+	// Grows a buffer, keeping its contents.
+	private void grow(BufferRangeAllocator allocator, OGLBuffer buffer, long newCapacity)
+	{
+		if (newCapacity > Integer.MAX_VALUE)
+			throw new GraphicsException("Geometry pool cannot grow past " + Integer.MAX_VALUE + " bytes.");
+
+		long capacity = allocator.getCapacity();
+		OGLBuffer temp = copyToTemp(buffer, capacity);
+		OGLBuffer previousRead = gl.getBuffer(BufferTargetType.COPY_READ);
+		OGLBuffer previousWrite = gl.getBuffer(BufferTargetType.COPY_WRITE);
+		try {
+			gl.setBuffer(BufferTargetType.COPY_WRITE, buffer);
+			gl.setBufferCapacity(BufferTargetType.COPY_WRITE, DataType.BYTE, CachingHint.STATIC_DRAW, (int)newCapacity);
+			if (capacity > 0)
+			{
+				gl.setBuffer(BufferTargetType.COPY_READ, temp);
+				gl.copyBufferSubData(BufferTargetType.COPY_READ, BufferTargetType.COPY_WRITE, 0L, 0L, capacity);
+			}
+			allocator.grow(newCapacity);
+		} finally {
+			restoreBuffer(BufferTargetType.COPY_READ, previousRead);
+			restoreBuffer(BufferTargetType.COPY_WRITE, previousWrite);
+			gl.destroyBuffer(temp);
+		}
+	}
+
+	// Creates a buffer of a specific size.
+	private OGLBuffer createBuffer(int size)
+	{
+		OGLBuffer previousWrite = gl.getBuffer(BufferTargetType.COPY_WRITE);
+		OGLBuffer out = gl.createBuffer();
+		try {
+			gl.setBuffer(BufferTargetType.COPY_WRITE, out);
+			gl.setBufferCapacity(BufferTargetType.COPY_WRITE, DataType.BYTE, CachingHint.STATIC_DRAW, size);
+		} catch (Exception e) {
+			gl.destroyBuffer(out);
+			throw e;
+		} finally {
+			restoreBuffer(BufferTargetType.COPY_WRITE, previousWrite);
+		}
+		return out;
+	}
+
+	// Copies a buffer's contents to a new temporary buffer.
+	private OGLBuffer copyToTemp(OGLBuffer buffer, long size)
+	{
+		OGLBuffer previousRead = gl.getBuffer(BufferTargetType.COPY_READ);
+		OGLBuffer previousWrite = gl.getBuffer(BufferTargetType.COPY_WRITE);
+		OGLBuffer out = gl.createBuffer();
+		try {
+			gl.setBuffer(BufferTargetType.COPY_WRITE, out);
+			gl.setBufferCapacity(BufferTargetType.COPY_WRITE, DataType.BYTE, CachingHint.STREAM_COPY, (int)size);
+			if (size > 0)
+			{
+				gl.setBuffer(BufferTargetType.COPY_READ, buffer);
+				gl.copyBufferSubData(BufferTargetType.COPY_READ, BufferTargetType.COPY_WRITE, 0L, 0L, size);
+			}
+		} catch (Exception e) {
+			gl.destroyBuffer(out);
+			throw e;
+		} finally {
+			restoreBuffer(BufferTargetType.COPY_READ, previousRead);
+			restoreBuffer(BufferTargetType.COPY_WRITE, previousWrite);
+		}
+		return out;
+	}
+
+	// Sets buffer data.
+	private void setData(OGLBuffer buffer, long offset, long length, ByteBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		ByteBuffer slice = data.duplicate();
+		slice.limit(slice.position() + (int)Math.min(length, slice.remaining()));
+		OGLBuffer previousWrite = gl.getBuffer(BufferTargetType.COPY_WRITE);
+		try {
+			gl.setBuffer(BufferTargetType.COPY_WRITE, buffer);
+			gl.setBufferSubData(BufferTargetType.COPY_WRITE, (int)offset, slice);
+		} finally {
+			restoreBuffer(BufferTargetType.COPY_WRITE, previousWrite);
+		}
+	}
+
+	// Binds a previously bound buffer to a target again, or unbinds the target if there was none.
+	private void restoreBuffer(BufferTargetType type, OGLBuffer previous)
+	{
+		if (previous != null)
+			gl.setBuffer(type, previous);
+		else
+			gl.unsetBuffer(type);
+	}
+
+}
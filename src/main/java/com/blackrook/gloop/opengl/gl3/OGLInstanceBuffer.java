@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl3;
+
+import java.nio.ByteBuffer;
+
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.math.Matrix4F;
+import com.blackrook.gloop.opengl.math.MatrixBatch;
+import com.blackrook.gloop.opengl.util.BufferUtils;
+import com.blackrook.gloop.opengl.util.VertexFormat;
+
+/**
+ * A streamed buffer of per-instance vertex attributes, for drawing many instances of the same geometry in one call.
+ * Each instance can have a transform, a color, and a set of custom float components, interleaved in that order.
+ * <p> Attributes are bound to consecutive attribute slots, starting at the slot passed to {@link #bind(int)}:
+ * the transform takes four slots (one per matrix column, read as a <code>mat4</code>), the color takes one
+ * (normalized unsigned bytes, read as a <code>vec4</code>), and the custom components take one.
+ * All of them advance once per instance.
+ * <pre>
+ * layout(location = 4) in mat4 instanceTransform; // locations 4 to 7
+ * layout(location = 8) in vec4 instanceColor;
+ * </pre>
+ * <p> The proper way to use this is, per frame:
+ * <ol>
+ * <li>Call {@link #begin(int)} with the amount of instances to write.</li>
+ * <li>Write the instances via the <code>put</code> methods, then call {@link #end()}.</li>
+ * <li>Bind the geometry's own attributes, call {@link #bind(int)}, and draw with an instanced draw call.</li>
+ * <li>Call {@link #unbind(int)}, if other geometry that does not use instancing is drawn with these slots.</li>
+ * <li>Call {@link #advance()} after the draw commands.</li>
+ * </ol>
+ * <p> The buffer grows (to at least double its size) only when a frame needs more instances than it holds,
+ * so a steady amount of instances never reallocates.
+ * @author Matthew Tropiano
+ * @see OGL33Graphics#createInstanceBuffer(boolean, boolean, int, int, int)
+ */
+public class OGLInstanceBuffer
+{
+	/** Amount of attribute slots used by a transform. */
+	private static final int TRANSFORM_SLOTS = 4;
+
+	private OGL33Graphics gl;
+	private OGLStreamBuffer stream;
+	private int frames;
+	private VertexFormat format;
+	private int transformAttribute;
+	private int colorAttribute;
+	private int customAttribute;
+	private int capacity;
+	private ByteBuffer data;
+	private int instanceCount;
+
+	/**
+	 * Creates a new instance buffer.
+	 * @param gl the graphics instance.
+	 * @param transform if true, each instance has a transform matrix.
+	 * @param color if true, each instance has a color.
+	 * @param customComponents the amount of custom float components per instance (0 to 4).
+	 * @param capacity the starting amount of instances in a frame's region.
+	 * @param frames the amount of frame regions.
+	 */
+	OGLInstanceBuffer(OGL33Graphics gl, boolean transform, boolean color, int customComponents, int capacity, int frames)
+	{
+		if (customComponents < 0 || customComponents > 4)
+			throw new IllegalArgumentException("Custom components must be from 0 to 4.");
+		if (!transform && !color && customComponents == 0)
+			throw new IllegalArgumentException("Instances need at least one attribute.");
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be 1 or greater.");
+		if (frames < 1)
+			throw new IllegalArgumentException("Frame count must be 1 or greater.");
+
+		VertexFormat.Builder builder = VertexFormat.builder();
+		int attribute = 0;
+		this.transformAttribute = -1;
+		this.colorAttribute = -1;
+		this.customAttribute = -1;
+		if (transform)
+		{
+			for (int i = 0; i < TRANSFORM_SLOTS; i++)
+				builder.add(VertexFormat.Encoding.FLOAT, 4);
+			this.transformAttribute = attribute;
+			attribute += TRANSFORM_SLOTS;
+		}
+		if (color)
+		{
+			builder.add(VertexFormat.Encoding.NORMALIZED_UNSIGNED_BYTE, 4);
+			this.colorAttribute = attribute++;
+		}
+		if (customComponents > 0)
+		{
+			builder.add(VertexFormat.Encoding.FLOAT, customComponents);
+			this.customAttribute = attribute++;
+		}
+
+		this.gl = gl;
+		this.format = builder.build();
+		this.frames = frames;
+		this.capacity = capacity;
+		this.stream = gl.createStreamBuffer(BufferTargetType.GEOMETRY, capacity * format.getStride(), frames);
+		this.data = null;
+		this.instanceCount = 0;
+	}
+
+	/**
+	 * @return the layout of a single instance.
+	 */
+	public VertexFormat getFormat()
+	{
+		return format;
+	}
+
+	/**
+	 * @return the size of a single instance, in bytes.
+	 */
+	public int getStride()
+	{
+		return format.getStride();
+	}
+
+	/**
+	 * @return the amount of attribute slots used by a single instance.
+	 */
+	public int getAttributeSlots()
+	{
+		return format.getAttributeCount();
+	}
+
+	/**
+	 * @return the amount of instances that fit in a frame's region without growing the buffer.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the amount of instances in the current frame, set via {@link #begin(int)}.
+	 */
+	public int getInstanceCount()
+	{
+		return instanceCount;
+	}
+
+	/**
+	 * @return the underlying buffer.
+	 */
+	public OGLBuffer getBuffer()
+	{
+		return stream.getBuffer();
+	}
+
+	/**
+	 * Starts writing the instances of the current frame.
+	 * If the amount of instances does not fit, the buffer is replaced with one of at least double the size.
+	 * @param instanceCount the amount of instances to write.
+	 * @throws IllegalArgumentException if instanceCount is less than 0.
+	 * @throws IllegalStateException if the region is already being written to.
+	 */
+	public void begin(int instanceCount)
+	{
+		if (instanceCount < 0)
+			throw new IllegalArgumentException("Instance count cannot be less than 0.");
+		if (data != null)
+			throw new IllegalStateException("Instances are already being written to.");
+		if (instanceCount > capacity)
+			grow(instanceCount);
+		this.data = stream.begin();
+		this.instanceCount = instanceCount;
+	}
+
+	/**
+	 * Writes the transform of one instance.
+	 * @param instance the instance index.
+	 * @param matrix the transform matrix.
+	 * @throws IllegalStateException if the instances do not have transforms, or are not being written to.
+	 * @throws IndexOutOfBoundsException if the instance index is out of range.
+	 */
+	public void putTransform(int instance, Matrix4F matrix)
+	{
+		putTransforms(instance, matrix.getArray(), 0, 1);
+	}
+
+	/**
+	 * Writes the transforms of a run of instances.
+	 * @param firstInstance the index of the first instance to write to.
+	 * @param matrices the source matrices.
+	 * @param offset the starting offset into the source array.
+	 * @param count the amount of instances to write.
+	 * @throws IllegalStateException if the instances do not have transforms, or are not being written to.
+	 * @throws IndexOutOfBoundsException if the instance range is out of range.
+	 */
+	public void putTransforms(int firstInstance, Matrix4F[] matrices, int offset, int count)
+	{
+		checkWrite(transformAttribute, "transforms", firstInstance, count);
+		int stride = format.getStride();
+		int out = firstInstance * stride + format.getAttribute(transformAttribute).getOffset();
+		for (int i = 0; i < count; i++, out += stride)
+			BufferUtils.putFloats(data, out, 0, matrices[offset + i].getArray(), 0, 16, 1);
+	}
+
+	/**
+	 * Writes the transforms of a run of instances from packed matrix data.
+	 * @param firstInstance the index of the first instance to write to.
+	 * @param matrices the source matrices, 16 floats each in column-major order.
+	 * @param offset the starting offset into the source array, in floats.
+	 * @param count the amount of instances to write.
+	 * @throws IllegalStateException if the instances do not have transforms, or are not being written to.
+	 * @throws IndexOutOfBoundsException if the instance range is out of range.
+	 */
+	public void putTransforms(int firstInstance, float[] matrices, int offset, int count)
+	{
+		checkWrite(transformAttribute, "transforms", firstInstance, count);
+		int stride = format.getStride();
+		int out = firstInstance * stride + format.getAttribute(transformAttribute).getOffset();
+		BufferUtils.putFloats(data, out, stride, matrices, offset, 16, count);
+	}
+
+	/**
+	 * Writes the transforms of a run of instances straight from a batch of matrices.
+	 * @param firstInstance the index of the first instance to write to.
+	 * @param matrices the source matrix batch.
+	 * @param start the index of the first matrix in the batch.
+	 * @param count the amount of instances to write.
+	 * @throws IllegalStateException if the instances do not have transforms, or are not being written to.
+	 * @throws IndexOutOfBoundsException if the instance range or matrix range is out of range.
+	 */
+	public void putTransforms(int firstInstance, MatrixBatch matrices, int start, int count)
+	{
+		checkWrite(transformAttribute, "transforms", firstInstance, count);
+		int stride = format.getStride();
+		matrices.put(start, count, data, firstInstance * stride + format.getAttribute(transformAttribute).getOffset(), stride);
+	}
+
+	/**
+	 * Writes the color of one instance.
+	 * @param instance the instance index.
+	 * @param red the red component (0 to 1).
+	 * @param green the green component (0 to 1).
+	 * @param blue the blue component (0 to 1).
+	 * @param alpha the alpha component (0 to 1).
+	 * @throws IllegalStateException if the instances do not have colors, or are not being written to.
+	 * @throws IndexOutOfBoundsException if the instance index is out of range.
+	 */
+	public void putColor(int instance, float red, float green, float blue, float alpha)
+	{
+		checkWrite(colorAttribute, "colors", instance, 1);
+		int out = instance * format.getStride() + format.getAttribute(colorAttribute).getOffset();
+		data.put(out, (byte)BufferUtils.toUnsignedNormalized(red, 0xff));
+		data.put(out + 1, (byte)BufferUtils.toUnsignedNormalized(green, 0xff));
+		data.put(out + 2, (byte)BufferUtils.toUnsignedNormalized(blue, 0xff));
+		data.put(out + 3, (byte)BufferUtils.toUnsignedNormalized(alpha, 0xff));
+	}
+
+	/**
+	 * Writes the colors of a run of instances.
+	 * @param firstInstance the index of the first instance to write to.
+	 * @param colors the source colors, 4 floats (RGBA, 0 to 1) per instance.
+	 * @param offset the starting offset into the source array, in floats.
+	 * @param count the amount of instances to write.
+	 * @throws IllegalStateException if the instances do not have colors, or are not being written to.
+	 * @throws IndexOutOfBoundsException if the instance range is out of range.
+	 */
+	public void putColors(int firstInstance, float[] colors, int offset, int count)
+	{
+		checkWrite(colorAttribute, "colors", firstInstance, count);
+		format.put(data, colorAttribute, firstInstance, colors, offset, count);
+	}
+
+	/**
+	 * Writes the custom components of a run of instances.
+	 * @param firstInstance the index of the first instance to write to.
+	 * @param values the source values, tightly packed, with the amount of custom components per instance.
+	 * @param offset the starting offset into the source array, in floats.
+	 * @param count the amount of instances to write.
+	 * @throws IllegalStateException if the instances do not have custom components, or are not being written to.
+	 * @throws IndexOutOfBoundsException if the instance range is out of range.
+	 */
+	public void putCustom(int firstInstance, float[] values, int offset, int count)
+	{
+		checkWrite(customAttribute, "custom components", firstInstance, count);
+		format.put(data, customAttribute, firstInstance, values, offset, count);
+	}
+
+	/**
+	 * Finishes writing the instances of the current frame.
+	 * @throws IllegalStateException if the region is not being written to.
+	 */
+	public void end()
+	{
+		stream.end();
+		data = null;
+	}
+
+	/**
+	 * Binds the current frame's instances to consecutive vertex attribute slots, enables them,
+	 * and sets them to advance once per instance.
+	 * @param firstAttribute the first attribute slot.
+	 * @return the next attribute slot after the ones used by this buffer.
+	 * @see #getAttributeSlots()
+	 */
+	public int bind(int firstAttribute)
+	{
+		gl.setBuffer(BufferTargetType.GEOMETRY, stream.getBuffer());
+		long offset = stream.getOffset();
+		int slots = format.getAttributeCount();
+		for (int i = 0; i < slots; i++)
+		{
+			gl.setVertexAttribEnabled(firstAttribute + i, true);
+			gl.setVertexAttribBufferPointer(firstAttribute + i, format, i, offset);
+			gl.setVertexAttribDivisor(firstAttribute + i, 1);
+		}
+		return firstAttribute + slots;
+	}
+
+	/**
+	 * Disables the vertex attribute slots used by this buffer and sets them back to advancing once per vertex.
+	 * @param firstAttribute the first attribute slot, as passed to {@link #bind(int)}.
+	 */
+	public void unbind(int firstAttribute)
+	{
+		int slots = format.getAttributeCount();
+		for (int i = 0; i < slots; i++)
+		{
+			gl.setVertexAttribDivisor(firstAttribute + i, 0);
+			gl.setVertexAttribEnabled(firstAttribute + i, false);
+		}
+	}
+
+	/**
+	 * Marks the end of the commands that use the current frame's region, and moves to the next region.
+	 * @throws IllegalStateException if the region is still being written to.
+	 */
+	public void advance()
+	{
+		stream.advance();
+	}
+
+	/**
+	 * Destroys this buffer.
+	 */
+	public void destroy()
+	{
+		stream.destroy();
+	}
+
+	// Replaces the stream with a bigger one.
+	private void grow(int instanceCount)
+	{
+		int newCapacity = Math.max(instanceCount, capacity * 2);
+		OGLStreamBuffer newStream = gl.createStreamBuffer(BufferTargetType.GEOMETRY, newCapacity * format.getStride(), frames);
+		stream.destroy();
+		stream = newStream;
+		capacity = newCapacity;
+	}
+
+	// Exception if an attribute cannot be written.
+	private void checkWrite(int attribute, String name, int firstInstance, int count)
+	{
+		if (attribute < 0)
+			throw new IllegalStateException("Instances do not have " + name + ".");
+		if (data == null)
+			throw new IllegalStateException("Instances are not being written to.");
+		if (firstInstance < 0 || count < 0 || firstInstance + count > instanceCount)
+			throw new IndexOutOfBoundsException("Instances " + firstInstance + " to " + (firstInstance + count) + " are out of range.");
+	}
+
+}
@@ -36,6 +36,15 @@ public class OGLRenderbuffer extends OGLObject
 		setName(glGenRenderbuffers());
 	}
 
+	/**
+	 * Constructs a RenderBuffer object around an existing OpenGL render buffer name.
+	 * @param name the render buffer name.
+	 */
+	OGLRenderbuffer(int name)
+	{
+		setName(name);
+	}
+
 	@Override
 	protected void free()
 	{
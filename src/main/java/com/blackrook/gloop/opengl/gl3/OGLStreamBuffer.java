@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl3;
+
+import java.nio.ByteBuffer;
+
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+
+/**
+ * A streaming buffer for data that changes every frame, like dynamic vertex data or uniform blocks.
+ * <p> The buffer is split into a set of equally-sized regions, and each frame writes to the next region,
+ * so that the region being written to is never in use by commands still pending on the GPU.
+ * The proper way to use this is:
+ * <ol>
+ * <li>Call {@link #begin()} to get the writable data of the current region.</li>
+ * <li>Write the data, then call {@link #end()}.</li>
+ * <li>Issue draw commands that use the buffer, at {@link #getOffset()}.</li>
+ * <li>Call {@link #advance()} after the draw commands (usually once at the end of the frame).</li>
+ * </ol>
+ * <p> How this is done depends on the implementation that created it.
+ * @author Matthew Tropiano
+ * @see OGL30Graphics#createStreamBuffer(BufferTargetType, int, int)
+ */
+public abstract class OGLStreamBuffer
+{
+	/** The target type that this buffer is bound to. */
+	protected BufferTargetType type;
+	/** The underlying buffer. */
+	protected OGLBuffer buffer;
+	/** The size of a single region in bytes. */
+	protected int regionSize;
+	/** The amount of regions. */
+	protected int regionCount;
+	/** The current region index. */
+	protected int region;
+	/** If true, a region is being written to. */
+	protected boolean writing;
+
+	/**
+	 * Creates a new stream buffer.
+	 * @param type the target type that this buffer will be bound to.
+	 * @param buffer the underlying buffer.
+	 * @param regionSize the size of a single region in bytes.
+	 * @param regionCount the amount of regions.
+	 */
+	protected OGLStreamBuffer(BufferTargetType type, OGLBuffer buffer, int regionSize, int regionCount)
+	{
+		this.type = type;
+		this.buffer = buffer;
+		this.regionSize = regionSize;
+		this.regionCount = regionCount;
+		this.region = 0;
+		this.writing = false;
+	}
+
+	/**
+	 * @return the target type that this buffer is bound to.
+	 */
+	public BufferTargetType getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return the underlying buffer object, for binding to vertex attributes or uniform blocks.
+	 */
+	public OGLBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * @return the size of a single region in bytes.
+	 */
+	public int getRegionSize()
+	{
+		return regionSize;
+	}
+
+	/**
+	 * @return the amount of regions in this buffer.
+	 */
+	public int getRegionCount()
+	{
+		return regionCount;
+	}
+
+	/**
+	 * @return the index of the current region.
+	 */
+	public int getRegion()
+	{
+		return region;
+	}
+
+	/**
+	 * Gets the offset in bytes of the current region from the start of the buffer.
+	 * This is the offset to use for vertex attribute pointers or buffer range bindings.
+	 * @return the offset in bytes.
+	 */
+	public long getOffset()
+	{
+		return (long)region * regionSize;
+	}
+
+	/**
+	 * Starts writing to the current region.
+	 * This may wait until the GPU is finished reading from the region.
+	 * The returned buffer has its position at 0 and its limit at the region size, in native byte order.
+	 * @return the writable data of the current region.
+	 * @throws IllegalStateException if a region is already being written to.
+	 */
+	public ByteBuffer begin()
+	{
+		if (writing)
+			throw new IllegalStateException("A region is already being written to.");
+		ByteBuffer out = beginRegion();
+		writing = true;
+		return out;
+	}
+
+	/**
+	 * Finishes writing to the current region.
+	 * The region's data is not valid for reading by OpenGL until this is called.
+	 * @throws IllegalStateException if a region is not being written to.
+	 */
+	public void end()
+	{
+		if (!writing)
+			throw new IllegalStateException("A region is not being written to.");
+		endRegion();
+		writing = false;
+	}
+
+	/**
+	 * Marks the end of the commands that use the current region, and moves to the next region.
+	 * @throws IllegalStateException if a region is still being written to.
+	 */
+	public void advance()
+	{
+		if (writing)
+			throw new IllegalStateException("A region is still being written to.");
+		advanceRegion();
+		region = (region + 1) % regionCount;
+	}
+
+	/**
+	 * Called to wait on and map the current region.
+	 * @return the writable data of the current region.
+	 */
+	protected abstract ByteBuffer beginRegion();
+
+	/**
+	 * Called to finish writing the current region.
+	 */
+	protected abstract void endRegion();
+
+	/**
+	 * Called before moving to the next region.
+	 */
+	protected abstract void advanceRegion();
+
+	/**
+	 * Destroys this buffer and its associated objects.
+	 * Must be called from the graphics thread.
+	 */
+	public abstract void destroy();
+
+}
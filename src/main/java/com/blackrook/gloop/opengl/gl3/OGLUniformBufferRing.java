@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.gl3;
+
+import java.nio.ByteBuffer;
+
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+
+/**
+ * A ring of uniform buffer data, split into per-frame regions.
+ * Uniform blocks are allocated from the current frame's region, aligned
+ * to the implementation's uniform buffer offset alignment, and bound to binding points as buffer ranges.
+ * <p> The proper way to use this is, per frame:
+ * <ol>
+ * <li>Call {@link #begin()} to get the writable data of the current frame's region.</li>
+ * <li>For each block, call {@link #allocate(int)} and write the block at the returned offset
+ * (for example, via a {@link com.blackrook.gloop.opengl.util.UniformBlockWriter}).</li>
+ * <li>Call {@link #end()}.</li>
+ * <li>For each draw, call {@link #bind(int, int, int)} with the block's offset and size, then draw.</li>
+ * <li>Call {@link #advance()} after the draw commands.</li>
+ * </ol>
+ * @author Matthew Tropiano
+ * @see OGL31Graphics#createUniformBufferRing(int, int)
+ */
+public class OGLUniformBufferRing
+{
+	private OGL31Graphics gl;
+	private OGLStreamBuffer stream;
+	private int alignment;
+	private ByteBuffer data;
+	private int position;
+
+	/**
+	 * Creates a new uniform buffer ring.
+	 * @param gl the graphics instance.
+	 * @param frameSize the size of a single frame's region in bytes.
+	 * @param frames the amount of frame regions.
+	 */
+	OGLUniformBufferRing(OGL31Graphics gl, int frameSize, int frames)
+	{
+		if (frameSize < 1)
+			throw new IllegalArgumentException("Frame size must be 1 or greater.");
+		Integer alignment = gl.getInfo().getUniformBufferOffsetAlignment();
+		this.gl = gl;
+		this.alignment = alignment != null && alignment > 0 ? alignment : 256;
+		this.stream = gl.createStreamBuffer(BufferTargetType.UNIFORM, align(frameSize), frames);
+		this.data = null;
+		this.position = 0;
+	}
+
+	/**
+	 * @return the underlying buffer.
+	 */
+	public OGLBuffer getBuffer()
+	{
+		return stream.getBuffer();
+	}
+
+	/**
+	 * @return the offset alignment of allocated blocks, in bytes.
+	 */
+	public int getAlignment()
+	{
+		return alignment;
+	}
+
+	/**
+	 * @return the size of a single frame's region in bytes.
+	 */
+	public int getFrameSize()
+	{
+		return stream.getRegionSize();
+	}
+
+	/**
+	 * @return the amount of bytes allocated in the current frame's region, including alignment padding.
+	 */
+	public int getUsed()
+	{
+		return position;
+	}
+
+	/**
+	 * Starts writing the current frame's region.
+	 * @return the writable data of the region. Offsets returned by {@link #allocate(int)} are relative to this buffer.
+	 * @throws IllegalStateException if the region is already being written to.
+	 */
+	public ByteBuffer begin()
+	{
+		data = stream.begin();
+		position = 0;
+		return data;
+	}
+
+	/**
+	 * Allocates space for a block in the current frame's region.
+	 * @param size the size of the block in bytes.
+	 * @return the offset of the block in the buffer returned by {@link #begin()}.
+	 * @throws GraphicsException if the region has no more room for the block.
+	 */
+	public int allocate(int size)
+	{
+		int offset = align(position);
+		if (offset + size > stream.getRegionSize())
+			throw new GraphicsException("Uniform buffer ring region is full.");
+		position = offset + size;
+		return offset;
+	}
+
+	/**
+	 * Finishes writing the current frame's region.
+	 * @throws IllegalStateException if the region is not being written to.
+	 */
+	public void end()
+	{
+		stream.end();
+		data = null;
+	}
+
+	/**
+	 * Binds an allocated block to a uniform buffer binding point.
+	 * @param bindingIndex the binding point index.
+	 * @param offset the block offset, returned from {@link #allocate(int)}.
+	 * @param size the size of the block in bytes.
+	 */
+	public void bind(int bindingIndex, int offset, int size)
+	{
+		gl.setBufferRange(BufferTargetType.UNIFORM, bindingIndex, stream.getBuffer(), stream.getOffset() + offset, size);
+	}
+
+	/**
+	 * Marks the end of the commands that use the current frame's region, and moves to the next region.
+	 * @throws IllegalStateException if the region is still being written to.
+	 */
+	public void advance()
+	{
+		stream.advance();
+	}
+
+	/**
+	 * Destroys this ring's buffer.
+	 */
+	public void destroy()
+	{
+		stream.destroy();
+	}
+
+	// Rounds up to the offset alignment.
+	private int align(int value)
+	{
+		int r = value % alignment;
+		return r == 0 ? value : value + (alignment - r);
+	}
+
+}
@@ -8,9 +8,24 @@
 package com.blackrook.gloop.opengl.gl4;
 
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.ColorFormat;
+import com.blackrook.gloop.opengl.enums.MemoryBarrierFlag;
+import com.blackrook.gloop.opengl.enums.TextureFormat;
+import com.blackrook.gloop.opengl.enums.TextureTargetType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.gl1.OGLTexture;
+import com.blackrook.gloop.opengl.util.TextureBuilder;
+import com.blackrook.gloop.opengl.util.TextureUtils;
 
 import static org.lwjgl.opengl.GL42.*;
 
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Function;
+
 
 /**
  * OpenGL 4.2 Graphics Implementation.
@@ -40,6 +55,97 @@ public class OGL42Graphics extends OGL41Graphics
 		}
 	}
 	
+	/**
+	 * Texture builder used for OpenGL 4.2.
+	 * Textures with sized formats and no border are given immutable storage for all levels at once,
+	 * and each level is sent as a sub-image.
+	 */
+	private static class OGL42TextureBuilder extends TextureBuilder.Abstract<OGL42Graphics>
+	{
+		protected OGL42TextureBuilder(OGL42Graphics gl)
+		{
+			super(gl);
+		}
+	
+		@Override
+		public OGLTexture create()
+		{
+			OGLTexture out = gl.createTexture();
+			try {
+				
+				if (imageLevels.isEmpty())
+					throw new GraphicsException("No data to store for texture.");
+				
+				gl.setTexture(targetType, out);
+				
+				ByteOrder nativeByteOrder = ByteOrder.nativeOrder();
+				Function<BufferedImage, ByteBuffer> dataFunc = nativeByteOrder == ByteOrder.LITTLE_ENDIAN 
+					? TextureUtils::getBGRAByteData
+					: TextureUtils::getRGBAByteData
+				;
+				Function<BufferedImage[], ByteBuffer> dataArrayFunc = nativeByteOrder == ByteOrder.LITTLE_ENDIAN 
+					? TextureUtils::getBGRAByteData
+					: TextureUtils::getRGBAByteData
+				;
+				ColorFormat colorFormat = nativeByteOrder == ByteOrder.LITTLE_ENDIAN
+					? ColorFormat.BGRA
+					: ColorFormat.RGBA
+				;
+				TextureFormat textureFormat = compressed ? TextureFormat.COMPRESSED_RGBA : TextureFormat.RGBA;
+				
+				if (textureFormat.hasSizedFormat() && border == 0)
+				{
+					gl.setTextureFiltering(targetType, minFilter, magFilter, anisotropy);
+					storeImmutable(gl, dataFunc, dataArrayFunc, colorFormat, textureFormat);
+					if (autoGenerateMipMaps)
+						gl.generateMipmaps(targetType);
+				}
+				else
+				{
+					gl.setTextureFiltering(targetType, minFilter, magFilter, anisotropy, autoGenerateMipMaps);
+					switch (targetType)
+					{
+						case TEXTURE_1D:
+							store1D(gl, dataFunc, colorFormat, textureFormat);
+							break;
+
+						case TEXTURE_2D:
+						case TEXTURE_RECTANGLE:
+							store2D(gl, dataFunc, colorFormat, textureFormat);
+							break;
+
+						case TEXTURE_CUBE:
+							storeCube(gl, dataFunc, colorFormat, textureFormat);
+							break;
+						
+						case TEXTURE_1D_ARRAY:
+							store1DArray(gl, dataArrayFunc, colorFormat, textureFormat);
+							break;
+						
+						case TEXTURE_3D:
+							store3D(gl, dataArrayFunc, colorFormat, textureFormat);
+							break;
+						
+						case TEXTURE_2D_ARRAY:
+							store2DArray(gl, dataArrayFunc, colorFormat, textureFormat);
+							break;
+						
+						default:
+							throw new GraphicsException("Unsupported texture target: " + targetType.name());
+					}
+				}
+				
+			} catch (Exception e) {
+				gl.destroyTexture(out);
+				throw e;
+			} finally {
+				gl.unsetTexture(targetType);
+			}
+			
+			return out;
+		}
+	}
+	
 	public OGL42Graphics(Options options, boolean core)
 	{
 		super(options, core);
@@ -57,4 +163,212 @@ public class OGL42Graphics extends OGL41Graphics
 		return new Info42();
 	}
 	
+	/**
+	 * Binds a whole buffer to an atomic counter buffer binding point.
+	 * @param index the binding point index.
+	 * @param buffer the buffer to bind.
+	 * @throws GraphicsException if the binding index is negative, or greater than or equal to the maximum atomic counter buffer bindings.
+	 */
+	public void setAtomicCounterBuffer(int index, OGLBuffer buffer)
+	{
+		checkAtomicCounterBufferIndex(index);
+		setBufferBase(BufferTargetType.ATOMIC_COUNTER, index, buffer);
+	}
+	
+	/**
+	 * Binds a range of a buffer to an atomic counter buffer binding point.
+	 * @param index the binding point index.
+	 * @param buffer the buffer to bind.
+	 * @param offset the offset into the buffer, in bytes (must be a multiple of 4).
+	 * @param size the size of the range, in bytes.
+	 * @throws GraphicsException if the binding index is negative, or greater than or equal to the maximum atomic counter buffer bindings.
+	 */
+	public void setAtomicCounterBuffer(int index, OGLBuffer buffer, long offset, long size)
+	{
+		checkAtomicCounterBufferIndex(index);
+		setBufferRange(BufferTargetType.ATOMIC_COUNTER, index, buffer, offset, size);
+	}
+	
+	/**
+	 * Unbinds a buffer from an atomic counter buffer binding point.
+	 * @param index the binding point index.
+	 */
+	public void unsetAtomicCounterBuffer(int index)
+	{
+		unsetBufferBase(BufferTargetType.ATOMIC_COUNTER, index);
+	}
+	
+	/**
+	 * Inserts a memory barrier, which orders memory transactions that were issued 
+	 * before it (via image stores, atomic counters, or shader storage) against the 
+	 * commands issued after it, for the provided types of access.
+	 * @param flags the types of access that need to see previously written data.
+	 * @throws UnsupportedOperationException if a provided flag is unavailable in this version.
+	 */
+	public void setMemoryBarrier(MemoryBarrierFlag ... flags)
+	{
+		for (int i = 0; i < flags.length; i++)
+			verifyFeatureSupport(flags[i]);
+		glMemoryBarrier(MemoryBarrierFlag.toBits(flags));
+		checkError();
+	}
+	
+	/**
+	 * Creates a texture builder.
+	 * <p> This texture builder aids in building texture objects, and its
+	 * {@link TextureBuilder#create()} method will bind a new texture to its required target,
+	 * allocate immutable storage for all of its levels and send the data (if the format allows it), 
+	 * set the filtering and build mipmaps, unbind the target, and return the new object.
+	 * @return a new texture builder.
+	 */
+	@Override
+	public TextureBuilder createTextureBuilder()
+	{
+		return new OGL42TextureBuilder(this);
+	}
+	
+	/**
+	 * Allocates immutable storage for all levels of the current texture bound to the specified target,
+	 * which must be stored one-dimensionally.
+	 * The storage cannot be resized or reallocated afterward - only its contents can be changed (via setTextureSubData()).
+	 * @param target the texture target.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @throws UnsupportedOperationException if the provided target or format is unavailable in this version.
+	 * @throws GraphicsException if the format has no sized equivalent, if the size or level count is invalid,
+	 * 		or if the target is not stored one-dimensionally.
+	 * @see OGLTexture#getStorageLevelCount()
+	 * @see OGLTexture#getStorageSize()
+	 */
+	public void setTextureStorage(TextureTargetType target, TextureFormat format, int levels, int width)
+	{
+		checkTextureStorage(target, format, levels, 1);
+		if (width < 1 || width > getInfo().getMaxTextureSize())
+			throw new GraphicsException("Texture width is invalid. Maximum width is "+ getInfo().getMaxTextureSize() + " pixels.");
+		clearError();
+		glTexStorage1D(target.glValue, levels, format.sizedGlValue, width);
+		checkError();
+		recordTextureStorage(getTexture(target), target, format, levels, width, 1, 1);
+	}
+	
+	/**
+	 * Allocates immutable storage for all levels of the current texture bound to the specified target,
+	 * which must be stored two-dimensionally.
+	 * The storage cannot be resized or reallocated afterward - only its contents can be changed (via setTextureSubData()).
+	 * @param target the texture target.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels (or layers, for one-dimensional array textures).
+	 * @throws UnsupportedOperationException if the provided target or format is unavailable in this version.
+	 * @throws GraphicsException if the format has no sized equivalent, if the size or level count is invalid,
+	 * 		or if the target is not stored two-dimensionally.
+	 * @see OGLTexture#getStorageLevelCount()
+	 * @see OGLTexture#getStorageSize()
+	 */
+	public void setTextureStorage(TextureTargetType target, TextureFormat format, int levels, int width, int height)
+	{
+		checkTextureStorage(target, format, levels, 2);
+		if (width < 1 || height < 1 || width > getInfo().getMaxTextureSize() || height > getInfo().getMaxTextureSize())
+			throw new GraphicsException("Texture size is invalid. Maximum size is " + getInfo().getMaxTextureSize() + " pixels.");
+		clearError();
+		glTexStorage2D(target.glValue, levels, format.sizedGlValue, width, height);
+		checkError();
+		recordTextureStorage(getTexture(target), target, format, levels, width, height, 1);
+	}
+	
+	/**
+	 * Allocates immutable storage for all levels of the current texture bound to the specified target,
+	 * which must be stored three-dimensionally.
+	 * The storage cannot be resized or reallocated afterward - only its contents can be changed (via setTextureSubData()).
+	 * @param target the texture target.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels.
+	 * @param depth the texture depth in texels (or layers, for two-dimensional array textures).
+	 * @throws UnsupportedOperationException if the provided target or format is unavailable in this version.
+	 * @throws GraphicsException if the format has no sized equivalent, if the size or level count is invalid,
+	 * 		or if the target is not stored three-dimensionally.
+	 * @see OGLTexture#getStorageLevelCount()
+	 * @see OGLTexture#getStorageSize()
+	 */
+	public void setTextureStorage(TextureTargetType target, TextureFormat format, int levels, int width, int height, int depth)
+	{
+		checkTextureStorage(target, format, levels, 3);
+		if (width < 1 || height < 1 || depth < 1 || width > getInfo().getMaxTextureSize() || height > getInfo().getMaxTextureSize() || depth > getInfo().getMaxTextureSize())
+			throw new GraphicsException("Texture size is invalid. Maximum size is " + getInfo().getMaxTextureSize() + " pixels.");
+		clearError();
+		glTexStorage3D(target.glValue, levels, format.sizedGlValue, width, height, depth);
+		checkError();
+		recordTextureStorage(getTexture(target), target, format, levels, width, height, depth);
+	}
+	
+	/**
+	 * Calculates the size of immutable texture storage for all levels, in bytes.
+	 * Array layers and cube map faces are not reduced between levels.
+	 * @param target the texture target.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels (or layers, for one-dimensional array textures), 1 if unused.
+	 * @param depth the texture depth in texels (or layers, for two-dimensional array textures), 1 if unused.
+	 * @return the size in bytes.
+	 */
+	protected static long getTextureStorageSize(TextureTargetType target, TextureFormat format, int levels, int width, int height, int depth)
+	{
+		boolean heightLayers = target == TextureTargetType.TEXTURE_1D_ARRAY;
+		boolean depthLayers = target == TextureTargetType.TEXTURE_2D_ARRAY;
+		long texels = 0L;
+		for (int i = 0; i < levels; i++)
+		{
+			long w = Math.max(1, width >> i);
+			long h = heightLayers ? height : Math.max(1, height >> i);
+			long d = depthLayers ? depth : Math.max(1, depth >> i);
+			texels += w * h * d;
+		}
+		if (target == TextureTargetType.TEXTURE_CUBE)
+			texels *= 6;
+		return (long)Math.ceil(texels * (double)format.getSizeFactor());
+	}
+	
+	/**
+	 * Records the immutable storage properties of a texture after its storage was allocated.
+	 * @param texture the texture, or null to record nothing.
+	 * @param target the texture target.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels (or layers), 1 if unused.
+	 * @param depth the texture depth in texels (or layers), 1 if unused.
+	 */
+	protected void recordTextureStorage(OGLTexture texture, TextureTargetType target, TextureFormat format, int levels, int width, int height, int depth)
+	{
+		if (texture == null)
+			return;
+		setTextureStorageProperties(texture, levels, getTextureStorageSize(target, format, levels, width, height, depth));
+	}
+	
+	// Checks the parameters for texture storage allocation.
+	private void checkTextureStorage(TextureTargetType target, TextureFormat format, int levels, int dimensions)
+	{
+		verifyFeatureSupport(target);
+		verifyFeatureSupport(format);
+		target.checkStorageDimensions(dimensions);
+		if (!format.hasSizedFormat())
+			throw new GraphicsException("Texture format " + format.name() + " cannot be used for immutable storage.");
+		if (levels < 1)
+			throw new GraphicsException("Texture storage must have at least one level.");
+	}
+	
+	// Checks an atomic counter buffer binding index.
+	private void checkAtomicCounterBufferIndex(int index)
+	{
+		if (index < 0)
+			throw new GraphicsException("Binding index cannot be negative.");
+		if (index >= getInfo().getMaxAtomicCounterBufferBindings())
+			throw new GraphicsException("Binding index cannot be greater than or equal to " + getInfo().getMaxAtomicCounterBufferBindings());
+	}
+	
 }
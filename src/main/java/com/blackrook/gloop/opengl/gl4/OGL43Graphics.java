@@ -8,6 +8,9 @@
 package com.blackrook.gloop.opengl.gl4;
 
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.CachingHint;
+import com.blackrook.gloop.opengl.enums.DataType;
 import com.blackrook.gloop.opengl.enums.DebugSeverity;
 import com.blackrook.gloop.opengl.enums.DebugControlSeverity;
 import com.blackrook.gloop.opengl.enums.DebugControlSource;
@@ -15,6 +18,10 @@ import com.blackrook.gloop.opengl.enums.DebugControlType;
 import com.blackrook.gloop.opengl.enums.DebugMessageSource;
 import com.blackrook.gloop.opengl.enums.DebugSource;
 import com.blackrook.gloop.opengl.enums.DebugType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.util.DrawIndirectCommandBuffer;
 
 import static org.lwjgl.opengl.GL43.*;
 
@@ -48,6 +55,13 @@ public class OGL43Graphics extends OGL42Graphics
 			this.maxComputeAtomicCounters = getInt(GL_MAX_COMPUTE_ATOMIC_COUNTERS);
 			this.maxCombinedComputeUniformComponents = getInt(GL_MAX_COMBINED_COMPUTE_UNIFORM_COMPONENTS);
 			this.maxComputeWorkGroupInvocations = getInt(GL_MAX_COMPUTE_WORK_GROUP_INVOCATIONS);
+			this.maxComputeWorkGroupCount = new int[3];
+			this.maxComputeWorkGroupSize = new int[3];
+			for (int i = 0; i < 3; i++)
+			{
+				this.maxComputeWorkGroupCount[i] = glGetIntegeri(GL_MAX_COMPUTE_WORK_GROUP_COUNT, i);
+				this.maxComputeWorkGroupSize[i] = glGetIntegeri(GL_MAX_COMPUTE_WORK_GROUP_SIZE, i);
+			}
 			this.maxDebugMessageLength = getInt(GL_MAX_DEBUG_MESSAGE_LENGTH);
 			this.maxDebugLoggedMessages = getInt(GL_MAX_DEBUG_LOGGED_MESSAGES);
 			this.maxDebugGroupStackDepth = getInt(GL_MAX_DEBUG_GROUP_STACK_DEPTH);
@@ -170,6 +184,176 @@ public class OGL43Graphics extends OGL42Graphics
 		return out;
 	}
 	
+	/**
+	 * Binds a whole buffer to a shader storage buffer binding point.
+	 * @param index the binding point index.
+	 * @param buffer the buffer to bind.
+	 * @throws GraphicsException if the binding index is negative, or greater than or equal to the maximum shader storage buffer bindings.
+	 */
+	public void setShaderStorageBuffer(int index, OGLBuffer buffer)
+	{
+		checkShaderStorageBufferIndex(index);
+		setBufferBase(BufferTargetType.SHADER_STORAGE, index, buffer);
+	}
+	
+	/**
+	 * Binds a range of a buffer to a shader storage buffer binding point.
+	 * @param index the binding point index.
+	 * @param buffer the buffer to bind.
+	 * @param offset the offset into the buffer, in bytes (must be a multiple of the shader storage buffer offset alignment).
+	 * @param size the size of the range, in bytes.
+	 * @throws GraphicsException if the binding index is negative, or greater than or equal to the maximum shader storage buffer bindings.
+	 * @see Info#getShaderStorageBufferOffsetAlignment()
+	 */
+	public void setShaderStorageBuffer(int index, OGLBuffer buffer, long offset, long size)
+	{
+		checkShaderStorageBufferIndex(index);
+		setBufferRange(BufferTargetType.SHADER_STORAGE, index, buffer, offset, size);
+	}
+	
+	/**
+	 * Unbinds a buffer from a shader storage buffer binding point.
+	 * @param index the binding point index.
+	 */
+	public void unsetShaderStorageBuffer(int index)
+	{
+		unsetBufferBase(BufferTargetType.SHADER_STORAGE, index);
+	}
+	
+	/**
+	 * Dispatches compute work groups using the currently bound compute program.
+	 * Results written to buffers or images are not visible to subsequent commands 
+	 * until a memory barrier is set for the corresponding access.
+	 * @param groupsX the amount of work groups on the X axis.
+	 * @param groupsY the amount of work groups on the Y axis.
+	 * @param groupsZ the amount of work groups on the Z axis.
+	 * @throws GraphicsException if a group count is less than 1 or exceeds the maximum work group count on its axis.
+	 * @see #setMemoryBarrier(com.blackrook.gloop.opengl.enums.MemoryBarrierFlag...)
+	 */
+	public void dispatchCompute(int groupsX, int groupsY, int groupsZ)
+	{
+		checkWorkGroupCount(0, groupsX);
+		checkWorkGroupCount(1, groupsY);
+		checkWorkGroupCount(2, groupsZ);
+		glDispatchCompute(groupsX, groupsY, groupsZ);
+		checkError();
+	}
+	
+	/**
+	 * Dispatches compute work groups using the currently bound compute program, reading the
+	 * group counts (three unsigned ints) from the buffer bound to {@link BufferTargetType#DISPATCH_INDIRECT}.
+	 * If the counts were written by a previous compute dispatch, set a 
+	 * {@link com.blackrook.gloop.opengl.enums.MemoryBarrierFlag#COMMAND} barrier first.
+	 * @param offset the offset into the bound buffer, in bytes (must be a multiple of 4).
+	 * @throws GraphicsException if the offset is negative or not a multiple of 4.
+	 */
+	public void dispatchComputeIndirect(long offset)
+	{
+		if (offset < 0 || (offset & 3) != 0)
+			throw new GraphicsException("Offset must be a non-negative multiple of 4.");
+		glDispatchComputeIndirect(offset);
+		checkError();
+	}
+	
+	/**
+	 * Draws a list of array commands using the current bound, enabled coordinate arrays/buffers as data.
+	 * The commands are uploaded to the buffer bound to {@link BufferTargetType#DRAW_INDIRECT} (replacing its contents),
+	 * and drawn from it in one call.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param commands the commands to draw.
+	 * @throws GraphicsException if the command buffer does not hold arrays commands, or no buffer is bound to {@link BufferTargetType#DRAW_INDIRECT}.
+	 */
+	@Override
+	public void multiDrawArraysIndirect(GeometryType geometryType, DrawIndirectCommandBuffer commands)
+	{
+		if (commands.getType() != DrawIndirectCommandBuffer.Type.ARRAYS)
+			throw new GraphicsException("Command buffer does not hold arrays commands.");
+		if (commands.getCommandCount() == 0)
+			return;
+		uploadIndirectCommands(commands);
+		multiDrawArraysIndirect(geometryType, 0L, commands.getCommandCount());
+	}
+	
+	/**
+	 * Draws a list of array commands using the current bound, enabled coordinate arrays/buffers as data,
+	 * reading tightly-packed commands from the buffer bound to {@link BufferTargetType#DRAW_INDIRECT}.
+	 * If the commands were written by a previous compute dispatch, set a 
+	 * {@link com.blackrook.gloop.opengl.enums.MemoryBarrierFlag#COMMAND} barrier first.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param offset the offset into the bound buffer of the first command, in bytes (must be a multiple of 4).
+	 * @param drawCount the amount of commands to draw.
+	 */
+	public void multiDrawArraysIndirect(GeometryType geometryType, long offset, int drawCount)
+	{
+		glMultiDrawArraysIndirect(geometryType.glValue, offset, drawCount, 0);
+		checkError();
+	}
+	
+	/**
+	 * Draws a list of element commands using the current bound, enabled coordinate arrays/buffers as data, 
+	 * plus the {@link BufferTargetType#INDICES}-bound buffer to describe the ordering.
+	 * The commands are uploaded to the buffer bound to {@link BufferTargetType#DRAW_INDIRECT} (replacing its contents),
+	 * and drawn from it in one call.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param dataType the data type of the indices in the {@link BufferTargetType#INDICES}-bound buffer (must be an unsigned type).
+	 * @param commands the commands to draw.
+	 * @throws GraphicsException if the command buffer does not hold elements commands, or no buffer is bound to {@link BufferTargetType#DRAW_INDIRECT}.
+	 */
+	@Override
+	public void multiDrawElementsIndirect(GeometryType geometryType, DataType dataType, DrawIndirectCommandBuffer commands)
+	{
+		if (commands.getType() != DrawIndirectCommandBuffer.Type.ELEMENTS)
+			throw new GraphicsException("Command buffer does not hold elements commands.");
+		if (commands.getCommandCount() == 0)
+			return;
+		uploadIndirectCommands(commands);
+		multiDrawElementsIndirect(geometryType, dataType, 0L, commands.getCommandCount());
+	}
+	
+	/**
+	 * Draws a list of element commands using the current bound, enabled coordinate arrays/buffers as data, 
+	 * plus the {@link BufferTargetType#INDICES}-bound buffer to describe the ordering, reading 
+	 * tightly-packed commands from the buffer bound to {@link BufferTargetType#DRAW_INDIRECT}.
+	 * If the commands were written by a previous compute dispatch, set a 
+	 * {@link com.blackrook.gloop.opengl.enums.MemoryBarrierFlag#COMMAND} barrier first.
+	 * @param geometryType the geometry type - tells how to interpret the data.
+	 * @param dataType the data type of the indices in the {@link BufferTargetType#INDICES}-bound buffer (must be an unsigned type).
+	 * @param offset the offset into the bound buffer of the first command, in bytes (must be a multiple of 4).
+	 * @param drawCount the amount of commands to draw.
+	 */
+	public void multiDrawElementsIndirect(GeometryType geometryType, DataType dataType, long offset, int drawCount)
+	{
+		glMultiDrawElementsIndirect(geometryType.glValue, dataType.glValue, offset, drawCount, 0);
+		checkError();
+	}
+	
+	// Uploads a command list to the bound draw indirect buffer.
+	private void uploadIndirectCommands(DrawIndirectCommandBuffer commands)
+	{
+		if (getBuffer(BufferTargetType.DRAW_INDIRECT) == null)
+			throw new GraphicsException("No buffer is bound to " + BufferTargetType.DRAW_INDIRECT.name() + ".");
+		setBufferData(BufferTargetType.DRAW_INDIRECT, CachingHint.STREAM_DRAW, commands.getBuffer());
+	}
+	
+	// Checks a shader storage buffer binding index.
+	private void checkShaderStorageBufferIndex(int index)
+	{
+		if (index < 0)
+			throw new GraphicsException("Binding index cannot be negative.");
+		if (index >= getInfo().getMaxShaderStorageBufferBindings())
+			throw new GraphicsException("Binding index cannot be greater than or equal to " + getInfo().getMaxShaderStorageBufferBindings());
+	}
+	
+	// Checks a work group count.
+	private void checkWorkGroupCount(int axis, int count)
+	{
+		if (count < 1)
+			throw new GraphicsException("Work group count must be 1 or greater.");
+		Integer max = getInfo().getMaxComputeWorkGroupCount(axis);
+		if (max != null && max > 0 && count > max)
+			throw new GraphicsException("Work group count cannot be greater than " + max);
+	}
+	
 	// TODO: Finish.
 
 	/**
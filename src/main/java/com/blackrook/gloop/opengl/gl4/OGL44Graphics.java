@@ -8,9 +8,18 @@
 package com.blackrook.gloop.opengl.gl4;
 
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.SyncResultType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.gl3.OGLStreamBuffer;
+import com.blackrook.gloop.opengl.gl3.OGLSync;
 
 import static org.lwjgl.opengl.GL44.*;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 
 /**
  * OpenGL 4.4 Graphics Implementation.
@@ -27,6 +36,92 @@ public class OGL44Graphics extends OGL43Graphics
 		}
 	}
 	
+	/**
+	 * Stream buffer used for OpenGL 4.4.
+	 * The buffer has immutable storage that is persistently and coherently mapped once,
+	 * and each region is guarded by a fence that is waited on before the region is written to again.
+	 * Waits flush pending commands and give up (with an exception) after a bounded amount of time.
+	 */
+	private static class OGL44StreamBuffer extends OGLStreamBuffer
+	{
+		/** Timeout for a single wait on a region's fence. */
+		private static final long WAIT_TIMEOUT_NANOS = 1000000L;
+		/** Total timeout for waiting on a region's fence before giving up. */
+		private static final long MAX_WAIT_NANOS = 5000000000L;
+		
+		private OGL44Graphics gl;
+		private ByteBuffer[] slices;
+		private OGLSync[] fences;
+		
+		private OGL44StreamBuffer(OGL44Graphics gl, BufferTargetType type, OGLBuffer buffer, int regionSize, int regionCount, ByteBuffer mapped)
+		{
+			super(type, buffer, regionSize, regionCount);
+			this.gl = gl;
+			this.slices = new ByteBuffer[regionCount];
+			this.fences = new OGLSync[regionCount];
+			for (int i = 0; i < regionCount; i++)
+			{
+				mapped.limit((i + 1) * regionSize).position(i * regionSize);
+				slices[i] = mapped.slice().order(ByteOrder.nativeOrder());
+			}
+			mapped.clear();
+		}
+
+		@Override
+		protected ByteBuffer beginRegion()
+		{
+			OGLSync fence;
+			if ((fence = fences[region]) != null)
+			{
+				SyncResultType result = gl.awaitClentFlushedCommandsSync(fence, WAIT_TIMEOUT_NANOS);
+				for (long waited = WAIT_TIMEOUT_NANOS; result == SyncResultType.TIMEOUT_EXPIRED && waited < MAX_WAIT_NANOS; waited += WAIT_TIMEOUT_NANOS)
+					result = gl.awaitClentFlushedCommandsSync(fence, WAIT_TIMEOUT_NANOS);
+				if (result == SyncResultType.TIMEOUT_EXPIRED)
+					throw new GraphicsException("Timed out waiting on stream buffer region fence.");
+				gl.destroySync(fence);
+				fences[region] = null;
+				if (result == SyncResultType.WAIT_FAILED)
+					throw new GraphicsException("Wait on stream buffer region fence failed.");
+			}
+			ByteBuffer out = slices[region];
+			out.clear();
+			return out;
+		}
+
+		@Override
+		protected void endRegion()
+		{
+			// Nothing to do - mapping is coherent.
+		}
+
+		@Override
+		protected void advanceRegion()
+		{
+			if (fences[region] != null)
+				gl.destroySync(fences[region]);
+			fences[region] = gl.createFenceSync();
+		}
+
+		@Override
+		public void destroy()
+		{
+			for (int i = 0; i < fences.length; i++)
+			{
+				if (fences[i] != null)
+					gl.destroySync(fences[i]);
+				fences[i] = null;
+			}
+			OGLBuffer previous = gl.getBuffer(type);
+			gl.setBuffer(type, buffer);
+			gl.unmapBuffer(type);
+			if (previous != null && previous != buffer)
+				gl.setBuffer(type, previous);
+			else
+				gl.unsetBuffer(type);
+			gl.destroyBuffer(buffer);
+		}
+	}
+	
 	public OGL44Graphics(Options options, boolean core)
 	{
 		super(options, core);
@@ -44,6 +139,56 @@ public class OGL44Graphics extends OGL43Graphics
 		return new Info44();
 	}
 	
+	/**
+	 * Creates a stream buffer for data that changes every frame.
+	 * <p> In this implementation, the buffer is created with immutable storage (glBufferStorage) and
+	 * persistently, coherently mapped for its whole lifetime. Writes go directly to the mapped memory,
+	 * and each region is guarded by a fence sync object, so only regions still in use by the GPU will be waited on.
+	 * <p> Region sizes for {@link BufferTargetType#UNIFORM} buffers should be multiples of the uniform buffer offset alignment.
+	 * @param type the target type that the buffer will be bound to.
+	 * @param regionSize the size of a single region in bytes.
+	 * @param regionCount the amount of regions (usually the amount of frames in flight, plus one).
+	 * @return a new stream buffer.
+	 * @throws IllegalArgumentException if regionSize or regionCount is less than 1, or the total size is larger than {@link Integer#MAX_VALUE}.
+	 * @throws UnsupportedOperationException if the provided target type is unavailable in this version.
+	 * @throws GraphicsException if the buffer could not be created or mapped.
+	 */
+	@Override
+	public OGLStreamBuffer createStreamBuffer(BufferTargetType type, int regionSize, int regionCount)
+	{
+		if (regionSize < 1)
+			throw new IllegalArgumentException("Region size must be 1 or greater.");
+		if (regionCount < 1)
+			throw new IllegalArgumentException("Region count must be 1 or greater.");
+
+		int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+		long size = (long)regionSize * regionCount;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Total stream buffer size (region size x region count) is too large to map: " + size);
+		
+		OGLBuffer previous = getBuffer(type);
+		OGLBuffer buffer = createBuffer();
+		try {
+			setBuffer(type, buffer);
+			clearError();
+			glBufferStorage(type.glValue, size, flags);
+			checkError();
+			ByteBuffer mapped = glMapBufferRange(type.glValue, 0L, size, flags);
+			checkError();
+			if (mapped == null)
+				throw new GraphicsException("Could not map stream buffer.");
+			return new OGL44StreamBuffer(this, type, buffer, regionSize, regionCount, mapped);
+		} catch (Exception e) {
+			destroyBuffer(buffer);
+			throw e;
+		} finally {
+			if (previous != null)
+				setBuffer(type, previous);
+			else
+				unsetBuffer(type);
+		}
+	}
+	
 	// TODO: Finish.
 
 }
@@ -8,12 +8,47 @@
 package com.blackrook.gloop.opengl.gl4;
 
 import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.AttachPoint;
+import com.blackrook.gloop.opengl.enums.BufferMapFlag;
+import com.blackrook.gloop.opengl.enums.CachingHint;
+import com.blackrook.gloop.opengl.enums.ColorFormat;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.RenderbufferFormat;
+import com.blackrook.gloop.opengl.enums.TextureFormat;
+import com.blackrook.gloop.opengl.enums.TextureMagFilter;
+import com.blackrook.gloop.opengl.enums.TextureMinFilter;
+import com.blackrook.gloop.opengl.enums.TextureTargetType;
+import com.blackrook.gloop.opengl.enums.TextureWrapType;
+import com.blackrook.gloop.opengl.exception.GraphicsException;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+import com.blackrook.gloop.opengl.gl1.OGLTexture;
+import com.blackrook.gloop.opengl.gl3.OGLFramebuffer;
+import com.blackrook.gloop.opengl.gl3.OGLRenderbuffer;
+import com.blackrook.gloop.opengl.util.BufferUtils;
+import com.blackrook.gloop.opengl.util.GeometryBuilder;
+import com.blackrook.gloop.opengl.util.IndexBuilder;
+import com.blackrook.gloop.opengl.util.TextureBuilder;
+import com.blackrook.gloop.opengl.util.TextureUtils;
 
 import static org.lwjgl.opengl.GL45.*;
 
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.function.Function;
+
 
 /**
  * OpenGL 4.5 Graphics Implementation.
+ * <p> This version adds Direct State Access: buffers, textures, render buffers, and framebuffers can be
+ * modified by object instead of by binding target, which leaves the current bindings untouched.
+ * All objects created by this implementation are created via <code>glCreate*</code>, so they can be used
+ * with these methods right away.
  * @author Matthew Tropiano
  */
 public class OGL45Graphics extends OGL44Graphics
@@ -27,6 +62,277 @@ public class OGL45Graphics extends OGL44Graphics
 			this.maxCombinedClipAndCullDistances = getInt(GL_MAX_COMBINED_CLIP_AND_CULL_DISTANCES);
 		}
 	}
+
+	/**
+	 * Geometry builder used for OpenGL 4.5.
+	 * The data is sent to the new buffer directly, without binding it.
+	 */
+	private static class OGL45GeometryBuilder extends GeometryBuilder.Abstract<OGL45Graphics>
+	{
+		protected OGL45GeometryBuilder(OGL45Graphics gl, int vertices, int ... attributeSizes)
+		{
+			super(gl, vertices, attributeSizes);
+		}
+
+		@Override
+		public OGLBuffer create()
+		{
+			OGLBuffer out = gl.createBuffer();
+			try {
+				gl.setBufferData(out, CachingHint.STATIC_DRAW, buffer);
+			} catch (Exception e) {
+				gl.destroyBuffer(out);
+				throw e;
+			}
+			return out;
+		}
+
+	}
+
+	/**
+	 * Index builder used for OpenGL 4.5.
+	 * The buffer is created and filled directly, without binding it.
+	 */
+	private static class OGL45IndexBuilder extends IndexBuilder.Abstract<OGL45Graphics>
+	{
+		protected OGL45IndexBuilder(OGL45Graphics gl)
+		{
+			super(gl);
+		}
+
+		@Override
+		public OGLBuffer create()
+		{
+			ByteBuffer data = getIndexData();
+			OGLBuffer out = gl.createBuffer();
+			try {
+				gl.setBufferData(out, CachingHint.STATIC_DRAW, data);
+			} catch (Exception e) {
+				gl.destroyBuffer(out);
+				throw e;
+			} finally {
+				BufferUtils.free(data);
+			}
+			return out;
+		}
+
+	}
+
+	/**
+	 * Texture builder used for OpenGL 4.5.
+	 * Textures with sized formats and no border are given immutable storage for all levels at once, like in OpenGL 4.2,
+	 * and are filled directly, without binding them.
+	 * Formats that cannot have immutable storage (generic compressed formats) or textures with borders have no
+	 * direct state access equivalent, so they are stored per level through their binding target,
+	 * and the texture previously bound to the target is bound again afterward.
+	 */
+	private static class OGL45TextureBuilder extends TextureBuilder.Abstract<OGL45Graphics>
+	{
+		protected OGL45TextureBuilder(OGL45Graphics gl)
+		{
+			super(gl);
+		}
+
+		@Override
+		public OGLTexture create()
+		{
+			if (imageLevels.isEmpty())
+				throw new GraphicsException("No data to store for texture.");
+
+			ByteOrder nativeByteOrder = ByteOrder.nativeOrder();
+			Function<BufferedImage, ByteBuffer> dataFunc = nativeByteOrder == ByteOrder.LITTLE_ENDIAN
+				? TextureUtils::getBGRAByteData
+				: TextureUtils::getRGBAByteData
+			;
+			Function<BufferedImage[], ByteBuffer> dataArrayFunc = nativeByteOrder == ByteOrder.LITTLE_ENDIAN
+				? TextureUtils::getBGRAByteData
+				: TextureUtils::getRGBAByteData
+			;
+			ColorFormat colorFormat = nativeByteOrder == ByteOrder.LITTLE_ENDIAN
+				? ColorFormat.BGRA
+				: ColorFormat.RGBA
+			;
+			TextureFormat textureFormat = compressed ? TextureFormat.COMPRESSED_RGBA : TextureFormat.RGBA;
+
+			if (!textureFormat.hasSizedFormat() || border != 0)
+				return createBound(dataFunc, dataArrayFunc, colorFormat, textureFormat);
+
+			OGLTexture out = gl.createTexture(targetType);
+			try {
+
+				gl.setTextureFiltering(out, minFilter, magFilter, anisotropy);
+
+				BufferedImage top = imageLevels.get(0)[0];
+				int width = top.getWidth();
+				int height = top.getHeight();
+				int layers = imageLevels.get(0).length;
+				int i = 0;
+				switch (targetType)
+				{
+					case TEXTURE_1D:
+					{
+						gl.setTextureWrapping(out, wrapS);
+						gl.setTextureStorage(out, textureFormat, getStorageLevelCount(width, 1, 1), width);
+						for (BufferedImage[] imageArray : imageLevels)
+						{
+							ByteBuffer data = dataFunc.apply(imageArray[0]);
+							gl.setTextureSubData(out, data, colorFormat, i, imageArray[0].getWidth(), 0);
+							BufferUtils.free(data);
+							i++;
+						}
+						break;
+					}
+
+					case TEXTURE_2D:
+					case TEXTURE_RECTANGLE:
+					{
+						gl.setTextureWrapping(out, wrapS, wrapT);
+						gl.setTextureStorage(out, textureFormat, getStorageLevelCount(width, height, 1), width, height);
+						for (BufferedImage[] imageArray : imageLevels)
+						{
+							ByteBuffer data = dataFunc.apply(imageArray[0]);
+							gl.setTextureSubData(out, data, colorFormat, i, imageArray[0].getWidth(), imageArray[0].getHeight(), 0, 0);
+							BufferUtils.free(data);
+							i++;
+						}
+						break;
+					}
+
+					case TEXTURE_CUBE:
+					{
+						// Cube map faces are layers 0 to 5 of the texture object.
+						gl.setTextureWrapping(out, wrapS, wrapT, wrapR);
+						gl.setTextureStorage(out, textureFormat, getStorageLevelCount(width, height, 1), width, height);
+						for (BufferedImage[] imageArray : imageLevels)
+						{
+							if (imageArray.length < 6)
+								throw new GraphicsException("Texture target is " + targetType.name() + ", and provided image array is less than 6 elements.");
+							for (int x = 0; x < 6; x++)
+							{
+								ByteBuffer data = dataFunc.apply(imageArray[x]);
+								gl.setTextureSubData(out, data, colorFormat, i, imageArray[x].getWidth(), imageArray[x].getHeight(), 1, 0, 0, x);
+								BufferUtils.free(data);
+							}
+							i++;
+						}
+						break;
+					}
+
+					case TEXTURE_1D_ARRAY:
+					{
+						gl.setTextureWrapping(out, wrapS);
+						gl.setTextureStorage(out, textureFormat, getStorageLevelCount(width, 1, 1), width, layers);
+						for (BufferedImage[] imageArray : imageLevels)
+						{
+							ByteBuffer data = dataArrayFunc.apply(imageArray);
+							gl.setTextureSubData(out, data, colorFormat, i, imageArray[0].getWidth(), imageArray.length, 0, 0);
+							BufferUtils.free(data);
+							i++;
+						}
+						break;
+					}
+
+					case TEXTURE_2D_ARRAY:
+					case TEXTURE_3D:
+					{
+						if (targetType == TextureTargetType.TEXTURE_3D)
+							gl.setTextureWrapping(out, wrapS, wrapT, wrapR);
+						else
+							gl.setTextureWrapping(out, wrapS, wrapT);
+						int levels = targetType == TextureTargetType.TEXTURE_3D
+							? getStorageLevelCount(width, height, layers)
+							: getStorageLevelCount(width, height, 1)
+						;
+						gl.setTextureStorage(out, textureFormat, levels, width, height, layers);
+						for (BufferedImage[] imageArray : imageLevels)
+						{
+							ByteBuffer data = dataArrayFunc.apply(imageArray);
+							gl.setTextureSubData(out, data, colorFormat, i, imageArray[0].getWidth(), imageArray[0].getHeight(), imageArray.length, 0, 0, 0);
+							BufferUtils.free(data);
+							i++;
+						}
+						break;
+					}
+
+					default:
+						throw new GraphicsException("Unsupported texture target: " + targetType.name());
+				}
+
+				if (autoGenerateMipMaps)
+					gl.generateMipmaps(out);
+
+			} catch (Exception e) {
+				gl.destroyTexture(out);
+				throw e;
+			}
+
+			return out;
+		}
+
+		// Builds the texture through its binding target, restoring the previous binding.
+		private OGLTexture createBound(
+			Function<BufferedImage, ByteBuffer> dataFunc,
+			Function<BufferedImage[], ByteBuffer> dataArrayFunc,
+			ColorFormat colorFormat,
+			TextureFormat textureFormat
+		){
+			OGLTexture previous = gl.getTexture(targetType);
+			OGLTexture out = gl.createTexture(targetType);
+			try {
+
+				gl.setTexture(targetType, out);
+				gl.setTextureFiltering(targetType, minFilter, magFilter, anisotropy);
+
+				switch (targetType)
+				{
+					case TEXTURE_1D:
+						store1D(gl, dataFunc, colorFormat, textureFormat);
+						break;
+
+					case TEXTURE_2D:
+					case TEXTURE_RECTANGLE:
+						store2D(gl, dataFunc, colorFormat, textureFormat);
+						break;
+
+					case TEXTURE_CUBE:
+						storeCube(gl, dataFunc, colorFormat, textureFormat);
+						break;
+
+					case TEXTURE_1D_ARRAY:
+						store1DArray(gl, dataArrayFunc, colorFormat, textureFormat);
+						break;
+
+					case TEXTURE_3D:
+						store3D(gl, dataArrayFunc, colorFormat, textureFormat);
+						break;
+
+					case TEXTURE_2D_ARRAY:
+						store2DArray(gl, dataArrayFunc, colorFormat, textureFormat);
+						break;
+
+					default:
+						throw new GraphicsException("Unsupported texture target: " + targetType.name());
+				}
+
+				if (autoGenerateMipMaps)
+					gl.generateMipmaps(out);
+
+			} catch (Exception e) {
+				gl.destroyTexture(out);
+				throw e;
+			} finally {
+				if (previous != null)
+					gl.setTexture(targetType, previous);
+				else
+					gl.unsetTexture(targetType);
+			}
+
+			return out;
+		}
+	}
+
+	/** Texture parameter for anisotropic filtering (core in OpenGL 4.6, EXT_texture_filter_anisotropic before that). */
+	private static final int GL_TEXTURE_MAX_ANISOTROPY = 0x084FE;
 	
 	public OGL45Graphics(Options options, boolean core)
 	{
@@ -44,7 +350,718 @@ public class OGL45Graphics extends OGL44Graphics
 	{
 		return new Info45();
 	}
-	
-	// TODO: Finish.
+
+	/**
+	 * Creates a geometry builder.
+	 * <p> This geometry builder aids in building geometry buffer objects, and its
+	 * {@link GeometryBuilder#create()} method will create a new buffer object and
+	 * send the data to it directly, without binding it, and return the new object.
+	 * @param vertices the number of individual vertices or attribute sets.
+	 * @param attributeSizes the list of attribute sizes in components.
+	 * @return the new builder.
+	 */
+	@Override
+	public GeometryBuilder createGeometryBuilder(int vertices, int ... attributeSizes)
+	{
+		return new OGL45GeometryBuilder(this, vertices, attributeSizes);
+	}
+
+	/**
+	 * Creates an index builder.
+	 * <p> This index builder picks the smallest index data type for the indices added to it, and its
+	 * {@link IndexBuilder#create()} method will create a new buffer object and
+	 * send the data to it directly, without binding it, and return the new object.
+	 * @return the new builder.
+	 */
+	@Override
+	public IndexBuilder createIndexBuilder()
+	{
+		return new OGL45IndexBuilder(this);
+	}
+
+	/**
+	 * Creates a texture builder.
+	 * <p> This texture builder aids in building texture objects, and its
+	 * {@link TextureBuilder#create()} method will create a new texture, send the data, set the filtering
+	 * and build mipmaps without binding it, and return the new object.
+	 * <p> Textures with sized formats and no border are always given <b>immutable storage</b> (as of OpenGL 4.2),
+	 * so their size, format, and amount of levels cannot be changed after creation:
+	 * their levels can only be updated via the <code>setTextureSubData(...)</code> methods, not respecified via
+	 * <code>setTextureData(...)</code>. Generic compressed textures and textures with borders have mutable storage,
+	 * and are built through their target: the texture previously bound to that target is bound again afterward.
+	 * @return a new texture builder.
+	 */
+	@Override
+	public TextureBuilder createTextureBuilder()
+	{
+		return new OGL45TextureBuilder(this);
+	}
+
+	/**
+	 * Creates a new buffer object.
+	 * The buffer is created in OpenGL right away, so it can be used with the methods that take a buffer object.
+	 * @return a new, uninitialized buffer object.
+	 * @throws GraphicsException if the object could not be created.
+	 */
+	@Override
+	public OGLBuffer createBuffer()
+	{
+		return wrapBuffer(glCreateBuffers());
+	}
+
+	/**
+	 * Sets the capacity of a buffer (sends no data).
+	 * @param buffer the buffer.
+	 * @param dataType the data type.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param elements the amount of elements of the data type.
+	 */
+	public void setBufferCapacity(OGLBuffer buffer, DataType dataType, CachingHint cachingHint, int elements)
+	{
+		clearError();
+		glNamedBufferData(buffer.getName(), (long)elements * dataType.size, cachingHint.glValue);
+		checkError();
+	}
+
+	/**
+	 * Sets the data of a buffer.
+	 * @param buffer the buffer.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferData(OGLBuffer buffer, CachingHint cachingHint, ByteBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferData(buffer.getName(), data, cachingHint.glValue);
+		checkError();
+	}
+
+	/**
+	 * Sets the data of a buffer.
+	 * @param buffer the buffer.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferData(OGLBuffer buffer, CachingHint cachingHint, ShortBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferData(buffer.getName(), data, cachingHint.glValue);
+		checkError();
+	}
+
+	/**
+	 * Sets the data of a buffer.
+	 * @param buffer the buffer.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferData(OGLBuffer buffer, CachingHint cachingHint, IntBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferData(buffer.getName(), data, cachingHint.glValue);
+		checkError();
+	}
+
+	/**
+	 * Sets the data of a buffer.
+	 * @param buffer the buffer.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferData(OGLBuffer buffer, CachingHint cachingHint, FloatBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferData(buffer.getName(), data, cachingHint.glValue);
+		checkError();
+	}
+
+	/**
+	 * Sets the data of a buffer.
+	 * @param buffer the buffer.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferData(OGLBuffer buffer, CachingHint cachingHint, LongBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferData(buffer.getName(), data, cachingHint.glValue);
+		checkError();
+	}
+
+	/**
+	 * Sets the data of a buffer.
+	 * @param buffer the buffer.
+	 * @param cachingHint the caching hint on this buffer's data.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferData(OGLBuffer buffer, CachingHint cachingHint, DoubleBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferData(buffer.getName(), data, cachingHint.glValue);
+		checkError();
+	}
+
+	/**
+	 * Sets a subsection of data in a buffer.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer to copy, in bytes.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferSubData(OGLBuffer buffer, long offset, ByteBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferSubData(buffer.getName(), offset, data);
+		checkError();
+	}
+
+	/**
+	 * Sets a subsection of data in a buffer.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer to copy, in bytes.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferSubData(OGLBuffer buffer, long offset, ShortBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferSubData(buffer.getName(), offset, data);
+		checkError();
+	}
+
+	/**
+	 * Sets a subsection of data in a buffer.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer to copy, in bytes.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferSubData(OGLBuffer buffer, long offset, IntBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferSubData(buffer.getName(), offset, data);
+		checkError();
+	}
+
+	/**
+	 * Sets a subsection of data in a buffer.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer to copy, in bytes.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferSubData(OGLBuffer buffer, long offset, FloatBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferSubData(buffer.getName(), offset, data);
+		checkError();
+	}
+
+	/**
+	 * Sets a subsection of data in a buffer.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer to copy, in bytes.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferSubData(OGLBuffer buffer, long offset, LongBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferSubData(buffer.getName(), offset, data);
+		checkError();
+	}
+
+	/**
+	 * Sets a subsection of data in a buffer.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer to copy, in bytes.
+	 * @param data the data to send.
+	 * @throws GraphicsException if the buffer provided is not direct.
+	 */
+	public void setBufferSubData(OGLBuffer buffer, long offset, DoubleBuffer data)
+	{
+		if (!data.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glNamedBufferSubData(buffer.getName(), offset, data);
+		checkError();
+	}
+
+	/**
+	 * Copies data from one buffer to another.
+	 * @param readBuffer the buffer to copy from.
+	 * @param writeBuffer the buffer to copy to.
+	 * @param readOffset the offset into the source buffer, in bytes.
+	 * @param writeOffset the offset into the destination buffer, in bytes.
+	 * @param size the amount of bytes to copy.
+	 */
+	public void copyBufferSubData(OGLBuffer readBuffer, OGLBuffer writeBuffer, long readOffset, long writeOffset, long size)
+	{
+		clearError();
+		glCopyNamedBufferSubData(readBuffer.getName(), writeBuffer.getName(), readOffset, writeOffset, size);
+		checkError();
+	}
+
+	/**
+	 * Maps a range of the internal data of a buffer to a local buffer for
+	 * quick modification/read.
+	 * The buffer must be unmapped via {@link #unmapBuffer(OGLBuffer)}.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use, in native byte order.
+	 * @throws UnsupportedOperationException if the provided flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 * @see #mapByteBufferRange(com.blackrook.gloop.opengl.enums.BufferTargetType, long, long, BufferMapFlag...)
+	 */
+	public ByteBuffer mapByteBufferRange(OGLBuffer buffer, long offset, long length, BufferMapFlag ... flags)
+	{
+		for (int i = 0; i < flags.length; i++)
+			verifyFeatureSupport(flags[i]);
+		clearError();
+		ByteBuffer out = glMapNamedBufferRange(buffer.getName(), offset, length, BufferMapFlag.toBits(flags));
+		checkError();
+		if (out == null)
+			throw new GraphicsException("Buffer range could not be mapped.");
+		return out.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Maps a range of the internal data of a buffer to a local buffer for
+	 * quick modification/read.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the buffer, in bytes.
+	 * @param length the length of the range to map, in bytes.
+	 * @param flags the access flags for the mapping.
+	 * @return a buffer suitable for application use.
+	 * @throws UnsupportedOperationException if the provided flags are unavailable in this version.
+	 * @throws GraphicsException if the range could not be mapped.
+	 * @see #mapByteBufferRange(OGLBuffer, long, long, BufferMapFlag...)
+	 */
+	public FloatBuffer mapFloatBufferRange(OGLBuffer buffer, long offset, long length, BufferMapFlag ... flags)
+	{
+		return mapByteBufferRange(buffer, offset, length, flags).asFloatBuffer();
+	}
+
+	/**
+	 * Flushes a written subrange of a buffer that was mapped with {@link BufferMapFlag#FLUSH_EXPLICIT}.
+	 * @param buffer the buffer.
+	 * @param offset the offset into the mapped range, in bytes.
+	 * @param length the length of the subrange, in bytes.
+	 */
+	public void flushMappedBufferRange(OGLBuffer buffer, long offset, long length)
+	{
+		clearError();
+		glFlushMappedNamedBufferRange(buffer.getName(), offset, length);
+		checkError();
+	}
+
+	/**
+	 * Unmaps a buffer after it was mapped.
+	 * @param buffer the buffer.
+	 * @return true if unmapped successfully, false if the data store contents became corrupt while mapped.
+	 */
+	public boolean unmapBuffer(OGLBuffer buffer)
+	{
+		return glUnmapNamedBuffer(buffer.getName());
+	}
+
+	/**
+	 * Creates a new texture object for a specific target.
+	 * The texture is created in OpenGL right away, so it can be used with the methods that take a texture object,
+	 * and it can only be bound to the provided target.
+	 * @param target the texture target.
+	 * @return a new, uninitialized texture object.
+	 * @throws UnsupportedOperationException if the target type is unavailable in this version.
+	 * @throws GraphicsException if the object could not be created.
+	 */
+	public OGLTexture createTexture(TextureTargetType target)
+	{
+		verifyFeatureSupport(target);
+		return wrapTexture(glCreateTextures(target.glValue), target);
+	}
+
+	/**
+	 * Sets the filtering for a texture.
+	 * Assumes an anisotropy value of <code>1.0f</code> (not set if not supported).
+	 * @param texture the texture.
+	 * @param minFilter the minification filter.
+	 * @param magFilter the magnification filter.
+	 */
+	public void setTextureFiltering(OGLTexture texture, TextureMinFilter minFilter, TextureMagFilter magFilter)
+	{
+		setTextureFiltering(texture, minFilter, magFilter, 1.0f);
+	}
+
+	/**
+	 * Sets the filtering for a texture.
+	 * If anisotropic filtering is unsupported, the anisotropy filtering constant is ignored.
+	 * @param texture the texture.
+	 * @param minFilter the minification filter.
+	 * @param magFilter the magnification filter.
+	 * @param anisotropy the anisotropic filtering (2.0 or greater to enable, 1.0 is "off").
+	 */
+	public void setTextureFiltering(OGLTexture texture, TextureMinFilter minFilter, TextureMagFilter magFilter, float anisotropy)
+	{
+		glTextureParameteri(texture.getName(), GL_TEXTURE_MAG_FILTER, magFilter.glid);
+		glTextureParameteri(texture.getName(), GL_TEXTURE_MIN_FILTER, minFilter.glid);
+
+		if (getInfo().supportsTextureAnisotropy())
+		{
+			anisotropy = Math.max(1.0f, Math.min(getInfo().getMaxTextureAnisotropy(), anisotropy));
+			glTextureParameterf(texture.getName(), GL_TEXTURE_MAX_ANISOTROPY, anisotropy);
+		}
+	}
+
+	/**
+	 * Sets the wrapping for a texture.
+	 * @param texture the texture.
+	 * @param wrapS the wrapping mode, S-axis.
+	 * @throws UnsupportedOperationException if the provided type is unavailable in this version.
+	 * @throws GraphicsException if the texture's target is not a one-dimensionally-sampled target.
+	 */
+	public void setTextureWrapping(OGLTexture texture, TextureWrapType wrapS)
+	{
+		verifyFeatureSupport(wrapS);
+		if (texture.getUsedtarget() != null)
+			texture.getUsedtarget().checkSampleDimensions(1);
+		glTextureParameteri(texture.getName(), GL_TEXTURE_WRAP_S, wrapS.glValue);
+	}
+
+	/**
+	 * Sets the wrapping for a texture.
+	 * @param texture the texture.
+	 * @param wrapS the wrapping mode, S-axis.
+	 * @param wrapT the wrapping mode, T-axis.
+	 * @throws UnsupportedOperationException if any provided type is unavailable in this version.
+	 * @throws GraphicsException if the texture's target is not a two-dimensionally-sampled target.
+	 */
+	public void setTextureWrapping(OGLTexture texture, TextureWrapType wrapS, TextureWrapType wrapT)
+	{
+		verifyFeatureSupport(wrapS);
+		verifyFeatureSupport(wrapT);
+		if (texture.getUsedtarget() != null)
+			texture.getUsedtarget().checkSampleDimensions(2);
+		glTextureParameteri(texture.getName(), GL_TEXTURE_WRAP_S, wrapS.glValue);
+		glTextureParameteri(texture.getName(), GL_TEXTURE_WRAP_T, wrapT.glValue);
+	}
+
+	/**
+	 * Sets the wrapping for a texture.
+	 * @param texture the texture.
+	 * @param wrapS the wrapping mode, S-axis.
+	 * @param wrapT the wrapping mode, T-axis.
+	 * @param wrapR the wrapping mode, R-axis.
+	 * @throws UnsupportedOperationException if any provided type is unavailable in this version.
+	 * @throws GraphicsException if the texture's target is not a three-dimensionally-sampled target.
+	 */
+	public void setTextureWrapping(OGLTexture texture, TextureWrapType wrapS, TextureWrapType wrapT, TextureWrapType wrapR)
+	{
+		verifyFeatureSupport(wrapS);
+		verifyFeatureSupport(wrapT);
+		verifyFeatureSupport(wrapR);
+		if (texture.getUsedtarget() != null)
+			texture.getUsedtarget().checkSampleDimensions(3);
+		glTextureParameteri(texture.getName(), GL_TEXTURE_WRAP_S, wrapS.glValue);
+		glTextureParameteri(texture.getName(), GL_TEXTURE_WRAP_T, wrapT.glValue);
+		glTextureParameteri(texture.getName(), GL_TEXTURE_WRAP_R, wrapR.glValue);
+	}
+
+	/**
+	 * Allocates immutable storage for all levels of a one-dimensionally-stored texture.
+	 * The storage cannot be resized or reallocated afterward - only its contents can be changed.
+	 * @param texture the texture.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @throws UnsupportedOperationException if the provided format is unavailable in this version.
+	 * @throws GraphicsException if the format has no sized equivalent, if the size or level count is invalid,
+	 * 		or if the texture's target is not stored one-dimensionally.
+	 */
+	public void setTextureStorage(OGLTexture texture, TextureFormat format, int levels, int width)
+	{
+		checkTextureStorage(texture, format, levels, 1);
+		if (width < 1 || width > getInfo().getMaxTextureSize())
+			throw new GraphicsException("Texture width is invalid. Maximum width is "+ getInfo().getMaxTextureSize() + " pixels.");
+		clearError();
+		glTextureStorage1D(texture.getName(), levels, format.sizedGlValue, width);
+		checkError();
+		recordTextureStorage(texture, texture.getUsedtarget() != null ? texture.getUsedtarget() : TextureTargetType.TEXTURE_1D, format, levels, width, 1, 1);
+	}
+
+	/**
+	 * Allocates immutable storage for all levels of a two-dimensionally-stored texture.
+	 * The storage cannot be resized or reallocated afterward - only its contents can be changed.
+	 * @param texture the texture.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels (or layers, for one-dimensional array textures).
+	 * @throws UnsupportedOperationException if the provided format is unavailable in this version.
+	 * @throws GraphicsException if the format has no sized equivalent, if the size or level count is invalid,
+	 * 		or if the texture's target is not stored two-dimensionally.
+	 */
+	public void setTextureStorage(OGLTexture texture, TextureFormat format, int levels, int width, int height)
+	{
+		checkTextureStorage(texture, format, levels, 2);
+		if (width < 1 || height < 1 || width > getInfo().getMaxTextureSize() || height > getInfo().getMaxTextureSize())
+			throw new GraphicsException("Texture size is invalid. Maximum size is " + getInfo().getMaxTextureSize() + " pixels.");
+		clearError();
+		glTextureStorage2D(texture.getName(), levels, format.sizedGlValue, width, height);
+		checkError();
+		recordTextureStorage(texture, texture.getUsedtarget() != null ? texture.getUsedtarget() : TextureTargetType.TEXTURE_2D, format, levels, width, height, 1);
+	}
+
+	/**
+	 * Allocates immutable storage for all levels of a three-dimensionally-stored texture.
+	 * The storage cannot be resized or reallocated afterward - only its contents can be changed.
+	 * @param texture the texture.
+	 * @param format the internal format.
+	 * @param levels the amount of mipmap levels.
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels.
+	 * @param depth the texture depth in texels (or layers, for two-dimensional array textures).
+	 * @throws UnsupportedOperationException if the provided format is unavailable in this version.
+	 * @throws GraphicsException if the format has no sized equivalent, if the size or level count is invalid,
+	 * 		or if the texture's target is not stored three-dimensionally.
+	 */
+	public void setTextureStorage(OGLTexture texture, TextureFormat format, int levels, int width, int height, int depth)
+	{
+		checkTextureStorage(texture, format, levels, 3);
+		if (width < 1 || height < 1 || depth < 1 || width > getInfo().getMaxTextureSize() || height > getInfo().getMaxTextureSize() || depth > getInfo().getMaxTextureSize())
+			throw new GraphicsException("Texture size is invalid. Maximum size is " + getInfo().getMaxTextureSize() + " pixels.");
+		clearError();
+		glTextureStorage3D(texture.getName(), levels, format.sizedGlValue, width, height, depth);
+		checkError();
+		recordTextureStorage(texture, texture.getUsedtarget() != null ? texture.getUsedtarget() : TextureTargetType.TEXTURE_3D, format, levels, width, height, depth);
+	}
+
+	/**
+	 * Sends a subset of data to a one-dimensionally-stored texture.
+	 * @param texture the texture.
+	 * @param imageData the image to send.
+	 * @param colorFormat the pixel storage format of the buffer data.
+	 * @param texlevel the mipmapping level to copy this into (0 is topmost).
+	 * @param width the width in texels.
+	 * @param xoffs the texel offset.
+	 * @throws UnsupportedOperationException if the provided format is unavailable in this version.
+	 * @throws GraphicsException if the buffer provided is not direct, or if the texture's target is not stored one-dimensionally.
+	 */
+	public void setTextureSubData(OGLTexture texture, ByteBuffer imageData, ColorFormat colorFormat, int texlevel, int width, int xoffs)
+	{
+		verifyFeatureSupport(colorFormat);
+		if (texture.getUsedtarget() != null)
+			texture.getUsedtarget().checkStorageDimensions(1);
+		if (!imageData.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glTextureSubImage1D(texture.getName(), texlevel, xoffs, width, colorFormat.glValue, GL_UNSIGNED_BYTE, imageData);
+		checkError();
+	}
+
+	/**
+	 * Sends a subset of data to a two-dimensionally-stored texture.
+	 * @param texture the texture.
+	 * @param imageData the image to send.
+	 * @param colorFormat the pixel storage format of the buffer data.
+	 * @param texlevel the mipmapping level to copy this into (0 is topmost).
+	 * @param width the width in texels.
+	 * @param height the height in texels.
+	 * @param xoffs the texel offset.
+	 * @param yoffs the texel offset.
+	 * @throws UnsupportedOperationException if the provided format is unavailable in this version.
+	 * @throws GraphicsException if the buffer provided is not direct, or if the texture's target is not stored two-dimensionally.
+	 */
+	public void setTextureSubData(OGLTexture texture, ByteBuffer imageData, ColorFormat colorFormat, int texlevel, int width, int height, int xoffs, int yoffs)
+	{
+		verifyFeatureSupport(colorFormat);
+		if (texture.getUsedtarget() != null)
+			texture.getUsedtarget().checkStorageDimensions(2);
+		if (!imageData.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glTextureSubImage2D(texture.getName(), texlevel, xoffs, yoffs, width, height, colorFormat.glValue, GL_UNSIGNED_BYTE, imageData);
+		checkError();
+	}
+
+	/**
+	 * Sends a subset of data to a three-dimensionally-stored texture.
+	 * For cube map textures, the z-offset is the face index (in {@link TextureCubeFace} order).
+	 * @param texture the texture.
+	 * @param imageData the image to send.
+	 * @param colorFormat the pixel storage format of the buffer data.
+	 * @param texlevel the mipmapping level to copy this into (0 is topmost).
+	 * @param width the width in texels.
+	 * @param height the height in texels.
+	 * @param depth the depth in texels.
+	 * @param xoffs the texel offset.
+	 * @param yoffs the texel offset.
+	 * @param zoffs the texel offset.
+	 * @throws UnsupportedOperationException if the provided format is unavailable in this version.
+	 * @throws GraphicsException if the buffer provided is not direct, or if the texture's target is not stored three-dimensionally.
+	 */
+	public void setTextureSubData(OGLTexture texture, ByteBuffer imageData, ColorFormat colorFormat, int texlevel, int width, int height, int depth, int xoffs, int yoffs, int zoffs)
+	{
+		verifyFeatureSupport(colorFormat);
+		if (texture.getUsedtarget() != null && texture.getUsedtarget() != TextureTargetType.TEXTURE_CUBE)
+			texture.getUsedtarget().checkStorageDimensions(3);
+		if (!imageData.isDirect())
+			throw new GraphicsException("Data must be a direct buffer.");
+		clearError();
+		glTextureSubImage3D(texture.getName(), texlevel, xoffs, yoffs, zoffs, width, height, depth, colorFormat.glValue, GL_UNSIGNED_BYTE, imageData);
+		checkError();
+	}
+
+	/**
+	 * Generates mipmaps for a texture from its topmost level.
+	 * @param texture the texture.
+	 */
+	public void generateMipmaps(OGLTexture texture)
+	{
+		clearError();
+		glGenerateTextureMipmap(texture.getName());
+		checkError();
+	}
+
+	/**
+	 * Creates a new render buffer object.
+	 * The render buffer is created in OpenGL right away, so it can be used with the methods that take a render buffer object.
+	 * @return a new, uninitialized render buffer object.
+	 */
+	@Override
+	public OGLRenderbuffer createRenderbuffer()
+	{
+		return wrapRenderbuffer(glCreateRenderbuffers());
+	}
+
+	/**
+	 * Sets a render buffer's internal format and size.
+	 * @param renderBuffer the render buffer.
+	 * @param format the buffer format.
+	 * @param width the width in pixel data.
+	 * @param height the height in pixel data.
+	 */
+	public void setRenderbufferSize(OGLRenderbuffer renderBuffer, RenderbufferFormat format, int width, int height)
+	{
+		if (width < 1 || height < 1)
+			throw new GraphicsException("Render buffer size cannot be less than 1 in any dimension.");
+		glNamedRenderbufferStorage(renderBuffer.getName(), format.glid, width, height);
+		checkError();
+	}
+
+	/**
+	 * Creates a new framebuffer object.
+	 * The framebuffer is created in OpenGL right away, so it can be used with the methods that take a framebuffer object.
+	 * @return a new, uninitialized framebuffer object.
+	 * @throws GraphicsException if the object could not be created.
+	 */
+	@Override
+	public OGLFramebuffer createFramebuffer()
+	{
+		return wrapFramebuffer(glCreateFramebuffers());
+	}
+
+	/**
+	 * Tests for frame buffer completeness on a framebuffer.
+	 * If incomplete, this throws an exception.
+	 * @param framebuffer the framebuffer.
+	 * @throws GraphicsException if the framebuffer is incomplete.
+	 */
+	public void checkFramebufferStatus(OGLFramebuffer framebuffer)
+	{
+		verifyFramebufferStatus(glCheckNamedFramebufferStatus(framebuffer.getName(), GL_FRAMEBUFFER));
+	}
+
+	/**
+	 * Attaches a texture level to a framebuffer for rendering directly to a texture.
+	 * If the texture is a three-dimensional, array, or cube map texture, all of its layers are attached.
+	 * @param framebuffer the framebuffer.
+	 * @param attachPoint the attachment source point.
+	 * @param texture the texture to attach.
+	 * @param level the mipmap level to attach (0 is topmost).
+	 */
+	public void attachFramebufferTexture(OGLFramebuffer framebuffer, AttachPoint attachPoint, OGLTexture texture, int level)
+	{
+		glNamedFramebufferTexture(framebuffer.getName(), attachPoint.glVal, texture.getName(), level);
+		checkError();
+		setFramebufferTextureAttachment(framebuffer, attachPoint, texture);
+	}
+
+	/**
+	 * Detaches a texture from a framebuffer.
+	 * @param framebuffer the framebuffer.
+	 * @param attachPoint the attachment source point.
+	 */
+	public void detachFramebufferTexture(OGLFramebuffer framebuffer, AttachPoint attachPoint)
+	{
+		glNamedFramebufferTexture(framebuffer.getName(), attachPoint.glVal, 0, 0);
+		checkError();
+		setFramebufferTextureAttachment(framebuffer, attachPoint, null);
+	}
+
+	/**
+	 * Attaches a render buffer to a framebuffer.
+	 * @param framebuffer the framebuffer.
+	 * @param attachPoint the attachment source point.
+	 * @param renderBuffer the render buffer to attach.
+	 */
+	public void attachFramebufferRenderbuffer(OGLFramebuffer framebuffer, AttachPoint attachPoint, OGLRenderbuffer renderBuffer)
+	{
+		glNamedFramebufferRenderbuffer(framebuffer.getName(), attachPoint.glVal, GL_RENDERBUFFER, renderBuffer.getName());
+		checkError();
+		setFramebufferTextureAttachment(framebuffer, attachPoint, null);
+	}
+
+	/**
+	 * Detaches a render buffer from a framebuffer.
+	 * @param framebuffer the framebuffer.
+	 * @param attachPoint the attachment source point.
+	 */
+	public void detachFramebufferRenderbuffer(OGLFramebuffer framebuffer, AttachPoint attachPoint)
+	{
+		glNamedFramebufferRenderbuffer(framebuffer.getName(), attachPoint.glVal, GL_RENDERBUFFER, 0);
+		checkError();
+	}
+
+	// Checks the parameters for texture storage allocation.
+	private void checkTextureStorage(OGLTexture texture, TextureFormat format, int levels, int dimensions)
+	{
+		verifyFeatureSupport(format);
+		if (!format.hasSizedFormat())
+			throw new GraphicsException("Texture format " + format.name() + " cannot be used for immutable storage.");
+		if (levels < 1)
+			throw new GraphicsException("Texture storage must have at least one level.");
+		if (texture.getUsedtarget() != null)
+			texture.getUsedtarget().checkStorageDimensions(dimensions);
+	}
 
 }
@@ -0,0 +1,964 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounding volume hierarchy over a set of axis-aligned boxes (primitives),
+ * for finding the primitives visible in a {@link Frustum} or hit by a ray without testing all of them.
+ * <p>
+ * Primitives are set via {@link #setBox(int, float, float, float, float, float, float)} and the like,
+ * then the hierarchy is built once via {@link #build()}, using binned surface area heuristic splits.
+ * Large builds are split across threads on the common fork-join pool.
+ * When primitives move afterward, only the nodes above them are updated via {@link #refit()}, which is
+ * much cheaper than a rebuild, but the hierarchy will get less efficient if they move far.
+ * <p>
+ * All of the hierarchy is kept in flat arrays, indexed by node, and not in node objects.
+ * <p>
+ * Queries do not allocate: they share one traversal stack held by the hierarchy.
+ * Because of that, only one query may run on a hierarchy at a time, and a {@link RayTest} must not query
+ * the hierarchy that calls it. To query from several threads at once, give each thread its own hierarchy.
+ * @author Matthew Tropiano
+ */
+public class BoundingVolumeHierarchy
+{
+	/** Default maximum amount of primitives in a leaf node. */
+	public static final int DEFAULT_MAX_LEAF_SIZE = 4;
+
+	/** Amount of bins per axis for split evaluation. */
+	private static final int BINS = 16;
+	/** Amount of primitives a subtree needs before its build is forked to another thread. */
+	private static final int PARALLEL_BUILD_THRESHOLD = 4096;
+
+	/** Amount of primitives. */
+	private int primitiveCount;
+	/** Primitive bounds, 6 per primitive (minX, minY, minZ, maxX, maxY, maxZ). */
+	private float[] primitiveBounds;
+	/** Primitive indices, ordered so that each node's primitives are contiguous. */
+	private int[] primitiveIndices;
+	/** Leaf node of each primitive. */
+	private int[] primitiveLeaf;
+
+	/** Amount of nodes. */
+	private int nodeCount;
+	/** Node bounds, 6 per node (minX, minY, minZ, maxX, maxY, maxZ). */
+	private float[] nodeBounds;
+	/** Node first child (the second is right after it), or -1 for leaves. */
+	private int[] nodeChild;
+	/** Node parent, or -1 for the root. */
+	private int[] nodeParent;
+	/** Node start into the primitive indices. */
+	private int[] nodeStart;
+	/** Node amount of primitives. */
+	private int[] nodeSize;
+
+	/** Leaves that need a refit. */
+	private int[] dirtyLeaves;
+	/** Amount of leaves that need a refit. */
+	private int dirtyCount;
+	/** Flags for leaves that need a refit. */
+	private boolean[] leafDirty;
+	/** If true, every node needs a refit. */
+	private boolean dirtyAll;
+
+	/** Traversal stack shared by queries. */
+	private int[] queryStack;
+
+	/** Maximum primitives per leaf. */
+	private int maxLeafSize;
+	/** If true, the hierarchy is built. */
+	private boolean built;
+	/** Time of the last build. */
+	private long buildTimeNanos;
+	/** Time of the last refit. */
+	private long refitTimeNanos;
+
+	/**
+	 * Creates a new, empty bounding volume hierarchy.
+	 */
+	public BoundingVolumeHierarchy()
+	{
+		this(64);
+	}
+
+	/**
+	 * Creates a new, empty bounding volume hierarchy.
+	 * @param capacity the starting amount of primitives to hold.
+	 */
+	public BoundingVolumeHierarchy(int capacity)
+	{
+		capacity = Math.max(1, capacity);
+		this.primitiveCount = 0;
+		this.primitiveBounds = new float[capacity * 6];
+		this.primitiveIndices = new int[capacity];
+		this.primitiveLeaf = new int[capacity];
+		this.nodeCount = 0;
+		this.nodeBounds = new float[0];
+		this.nodeChild = new int[0];
+		this.nodeParent = new int[0];
+		this.nodeStart = new int[0];
+		this.nodeSize = new int[0];
+		this.dirtyLeaves = new int[0];
+		this.dirtyCount = 0;
+		this.leafDirty = new boolean[0];
+		this.dirtyAll = false;
+		this.queryStack = new int[128];
+		this.maxLeafSize = DEFAULT_MAX_LEAF_SIZE;
+		this.built = false;
+		this.buildTimeNanos = 0L;
+		this.refitTimeNanos = 0L;
+	}
+
+	/**
+	 * @return the amount of primitives.
+	 */
+	public int getPrimitiveCount()
+	{
+		return primitiveCount;
+	}
+
+	/**
+	 * Sets the amount of primitives. New primitives start as empty boxes at the origin.
+	 * The hierarchy must be built again after this is changed.
+	 * @param count the new amount of primitives.
+	 * @throws IllegalArgumentException if count is less than 0.
+	 */
+	public void setPrimitiveCount(int count)
+	{
+		if (count < 0)
+			throw new IllegalArgumentException("Count cannot be less than 0.");
+		if (count == primitiveCount)
+			return;
+		ensurePrimitiveCapacity(count);
+		if (count > primitiveCount)
+			Arrays.fill(primitiveBounds, primitiveCount * 6, count * 6, 0f);
+		primitiveCount = count;
+		built = false;
+	}
+
+	/**
+	 * @return the maximum amount of primitives in a leaf node.
+	 */
+	public int getMaxLeafSize()
+	{
+		return maxLeafSize;
+	}
+
+	/**
+	 * Sets the maximum amount of primitives in a leaf node. Takes effect on the next build.
+	 * @param maxLeafSize the new maximum.
+	 * @throws IllegalArgumentException if maxLeafSize is less than 1.
+	 */
+	public void setMaxLeafSize(int maxLeafSize)
+	{
+		if (maxLeafSize < 1)
+			throw new IllegalArgumentException("Leaf size cannot be less than 1.");
+		this.maxLeafSize = maxLeafSize;
+	}
+
+	/**
+	 * @return the amount of nodes in the built hierarchy, or 0 if not built.
+	 */
+	public int getNodeCount()
+	{
+		return built ? nodeCount : 0;
+	}
+
+	/**
+	 * @return true if the hierarchy is built, false if not.
+	 */
+	public boolean isBuilt()
+	{
+		return built;
+	}
+
+	/**
+	 * @return the length of time that the last build took, in nanoseconds.
+	 */
+	public long getBuildTimeNanos()
+	{
+		return buildTimeNanos;
+	}
+
+	/**
+	 * @return the length of time that the last refit took, in nanoseconds.
+	 */
+	public long getRefitTimeNanos()
+	{
+		return refitTimeNanos;
+	}
+
+	/**
+	 * Sets a primitive's bounds. If the hierarchy is built, the primitive is flagged for the next {@link #refit()}.
+	 * @param index the primitive index.
+	 * @param minX the minimum x-coordinate.
+	 * @param minY the minimum y-coordinate.
+	 * @param minZ the minimum z-coordinate.
+	 * @param maxX the maximum x-coordinate.
+	 * @param maxY the maximum y-coordinate.
+	 * @param maxZ the maximum z-coordinate.
+	 * @throws ArrayIndexOutOfBoundsException if the index is out of range.
+	 */
+	public void setBox(int index, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		if (index < 0 || index >= primitiveCount)
+			throw new ArrayIndexOutOfBoundsException("Primitive index out of range: " + index);
+		int b = index * 6;
+		primitiveBounds[b]     = minX;
+		primitiveBounds[b + 1] = minY;
+		primitiveBounds[b + 2] = minZ;
+		primitiveBounds[b + 3] = maxX;
+		primitiveBounds[b + 4] = maxY;
+		primitiveBounds[b + 5] = maxZ;
+		if (built && !dirtyAll)
+		{
+			int leaf = primitiveLeaf[index];
+			if (!leafDirty[leaf])
+			{
+				leafDirty[leaf] = true;
+				dirtyLeaves[dirtyCount++] = leaf;
+			}
+		}
+	}
+
+	/**
+	 * Sets a primitive's bounds to the box around a sphere.
+	 * If the hierarchy is built, the primitive is flagged for the next {@link #refit()}.
+	 * @param index the primitive index.
+	 * @param x the sphere's center, x-coordinate.
+	 * @param y the sphere's center, y-coordinate.
+	 * @param z the sphere's center, z-coordinate.
+	 * @param radius the sphere's radius.
+	 * @throws ArrayIndexOutOfBoundsException if the index is out of range.
+	 */
+	public void setSphere(int index, float x, float y, float z, float radius)
+	{
+		setBox(index, x - radius, y - radius, z - radius, x + radius, y + radius, z + radius);
+	}
+
+	/**
+	 * Sets all primitives' bounds from separate per-component arrays.
+	 * If the amount of primitives is unchanged and the hierarchy is built, all of it is flagged for the next {@link #refit()}.
+	 * Otherwise, it must be built again.
+	 * @param minX the minimum x-coordinates.
+	 * @param minY the minimum y-coordinates.
+	 * @param minZ the minimum z-coordinates.
+	 * @param maxX the maximum x-coordinates.
+	 * @param maxY the maximum y-coordinates.
+	 * @param maxZ the maximum z-coordinates.
+	 * @param count the amount of primitives.
+	 * @throws ArrayIndexOutOfBoundsException if an array is too small.
+	 */
+	public void setBoxes(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int count)
+	{
+		setPrimitiveCount(count);
+		float[] pb = primitiveBounds;
+		for (int i = 0, b = 0; i < count; i++, b += 6)
+		{
+			pb[b]     = minX[i];
+			pb[b + 1] = minY[i];
+			pb[b + 2] = minZ[i];
+			pb[b + 3] = maxX[i];
+			pb[b + 4] = maxY[i];
+			pb[b + 5] = maxZ[i];
+		}
+		dirtyAll = built;
+	}
+
+	/**
+	 * Sets all primitives' bounds to the boxes around spheres, from separate per-component arrays.
+	 * If the amount of primitives is unchanged and the hierarchy is built, all of it is flagged for the next {@link #refit()}.
+	 * Otherwise, it must be built again.
+	 * @param x the sphere centers, x-coordinates.
+	 * @param y the sphere centers, y-coordinates.
+	 * @param z the sphere centers, z-coordinates.
+	 * @param radius the sphere radii.
+	 * @param count the amount of primitives.
+	 * @throws ArrayIndexOutOfBoundsException if an array is too small.
+	 */
+	public void setSpheres(float[] x, float[] y, float[] z, float[] radius, int count)
+	{
+		setPrimitiveCount(count);
+		float[] pb = primitiveBounds;
+		for (int i = 0, b = 0; i < count; i++, b += 6)
+		{
+			float r = radius[i];
+			pb[b]     = x[i] - r;
+			pb[b + 1] = y[i] - r;
+			pb[b + 2] = z[i] - r;
+			pb[b + 3] = x[i] + r;
+			pb[b + 4] = y[i] + r;
+			pb[b + 5] = z[i] + r;
+		}
+		dirtyAll = built;
+	}
+
+	/**
+	 * Gets a primitive's bounds.
+	 * @param index the primitive index.
+	 * @param out the output array for minX, minY, minZ, maxX, maxY, and maxZ.
+	 * @throws ArrayIndexOutOfBoundsException if the index is out of range or <code>out.length &lt; 6</code>.
+	 */
+	public void getBox(int index, float[] out)
+	{
+		if (index < 0 || index >= primitiveCount)
+			throw new ArrayIndexOutOfBoundsException("Primitive index out of range: " + index);
+		System.arraycopy(primitiveBounds, index * 6, out, 0, 6);
+	}
+
+	/**
+	 * Builds the hierarchy from the current primitives.
+	 */
+	public void build()
+	{
+		long startNanos = System.nanoTime();
+		int count = primitiveCount;
+		ensureNodeCapacity(Math.max(1, count * 2 - 1));
+
+		float[] centroids = new float[count * 3];
+		float[] pb = primitiveBounds;
+		for (int i = 0; i < count; i++)
+		{
+			primitiveIndices[i] = i;
+			centroids[i * 3]     = (pb[i * 6]     + pb[i * 6 + 3]) * 0.5f;
+			centroids[i * 3 + 1] = (pb[i * 6 + 1] + pb[i * 6 + 4]) * 0.5f;
+			centroids[i * 3 + 2] = (pb[i * 6 + 2] + pb[i * 6 + 5]) * 0.5f;
+		}
+
+		AtomicInteger nodeCounter = new AtomicInteger(1);
+		nodeParent[0] = -1;
+		BuildTask root = new BuildTask(centroids, nodeCounter, 0, 0, count);
+		if (count >= PARALLEL_BUILD_THRESHOLD)
+			ForkJoinPool.commonPool().invoke(root);
+		else
+			root.compute();
+
+		nodeCount = nodeCounter.get();
+		Arrays.fill(leafDirty, 0, nodeCount, false);
+		dirtyCount = 0;
+		dirtyAll = false;
+		built = true;
+		buildTimeNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Updates the bounds of the nodes above the primitives that changed since the last build or refit.
+	 * @throws IllegalStateException if the hierarchy is not built.
+	 */
+	public void refit()
+	{
+		checkBuilt();
+		long startNanos = System.nanoTime();
+		if (dirtyAll || dirtyCount > nodeCount / 4)
+		{
+			// Children always come after their parents, so go backwards.
+			for (int node = nodeCount - 1; node >= 0; node--)
+				updateNodeBounds(node);
+			Arrays.fill(leafDirty, 0, nodeCount, false);
+		}
+		else
+		{
+			for (int i = 0; i < dirtyCount; i++)
+			{
+				int node = dirtyLeaves[i];
+				leafDirty[node] = false;
+				updateNodeBounds(node);
+				// Stop going up when a parent's bounds don't change.
+				while ((node = nodeParent[node]) >= 0 && updateNodeBounds(node));
+			}
+		}
+		dirtyCount = 0;
+		dirtyAll = false;
+		refitTimeNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Finds the primitives that are inside or touching a frustum, and writes the results to a visibility bitset,
+	 * where primitive <code>i</code> is visible if bit <code>(i &amp; 63)</code> of word <code>(i &gt;&gt; 6)</code> is set
+	 * (see {@link Frustum#isVisible(long[], int)}).
+	 * @param frustum the frustum to test against.
+	 * @param visibility the output bitset, which must have at least <code>(getPrimitiveCount() + 63) / 64</code> words.
+	 * @return the amount of visible primitives.
+	 * @throws IllegalStateException if the hierarchy is not built.
+	 * @throws ArrayIndexOutOfBoundsException if the visibility bitset is too small.
+	 */
+	public int queryFrustum(Frustum frustum, long[] visibility)
+	{
+		checkBuilt();
+		float[] planes = frustum.getPlanes();
+		Arrays.fill(visibility, 0, (primitiveCount + 63) >> 6, 0L);
+		if (primitiveCount == 0)
+			return 0;
+
+		int visible = 0;
+		// Each entry is a node and the mask of planes that it is not yet known to be inside of.
+		int[] stack = queryStack;
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = 0x3f;
+		while (top > 0)
+		{
+			int mask = stack[--top];
+			int node = stack[--top];
+			if ((mask = testBox(planes, nodeBounds, node * 6, mask)) < 0)
+				continue;
+
+			int start = nodeStart[node];
+			int end = start + nodeSize[node];
+			if (mask == 0)
+			{
+				for (int i = start; i < end; i++)
+				{
+					int prim = primitiveIndices[i];
+					visibility[prim >> 6] |= 1L << prim;
+				}
+				visible += end - start;
+			}
+			else if (nodeChild[node] < 0)
+			{
+				for (int i = start; i < end; i++)
+				{
+					int prim = primitiveIndices[i];
+					if (testBox(planes, primitiveBounds, prim * 6, mask) >= 0)
+					{
+						visibility[prim >> 6] |= 1L << prim;
+						visible++;
+					}
+				}
+			}
+			else
+			{
+				if (top + 4 > stack.length)
+					stack = queryStack = Arrays.copyOf(stack, stack.length * 2);
+				int child = nodeChild[node];
+				stack[top++] = child;
+				stack[top++] = mask;
+				stack[top++] = child + 1;
+				stack[top++] = mask;
+			}
+		}
+		return visible;
+	}
+
+	/**
+	 * Finds the nearest primitive box hit by a ray.
+	 * @param originX the ray origin, x-coordinate.
+	 * @param originY the ray origin, y-coordinate.
+	 * @param originZ the ray origin, z-coordinate.
+	 * @param directionX the ray direction, x-component.
+	 * @param directionY the ray direction, y-component.
+	 * @param directionZ the ray direction, z-component.
+	 * @param maxDistance the maximum distance along the ray, in direction lengths.
+	 * @param hitDistance if not null, the distance to the hit is set in the first element (if there is a hit).
+	 * @return the index of the nearest primitive hit, or -1 if none.
+	 * @throws IllegalStateException if the hierarchy is not built.
+	 */
+	public int raycast(float originX, float originY, float originZ, float directionX, float directionY, float directionZ, float maxDistance, float[] hitDistance)
+	{
+		return raycast(originX, originY, originZ, directionX, directionY, directionZ, maxDistance, null, hitDistance);
+	}
+
+	/**
+	 * Finds the nearest primitive hit by a ray, using a test on each primitive whose box is hit.
+	 * @param originX the ray origin, x-coordinate.
+	 * @param originY the ray origin, y-coordinate.
+	 * @param originZ the ray origin, z-coordinate.
+	 * @param directionX the ray direction, x-component.
+	 * @param directionY the ray direction, y-component.
+	 * @param directionZ the ray direction, z-component.
+	 * @param maxDistance the maximum distance along the ray, in direction lengths.
+	 * @param test the test for the primitives, or null to use the primitive boxes.
+	 * @param hitDistance if not null, the distance to the hit is set in the first element (if there is a hit).
+	 * @return the index of the nearest primitive hit, or -1 if none.
+	 * @throws IllegalStateException if the hierarchy is not built.
+	 */
+	public int raycast(float originX, float originY, float originZ, float directionX, float directionY, float directionZ, float maxDistance, RayTest test, float[] hitDistance)
+	{
+		checkBuilt();
+		if (primitiveCount == 0)
+			return -1;
+
+		float invX = 1f / directionX;
+		float invY = 1f / directionY;
+		float invZ = 1f / directionZ;
+
+		int hit = -1;
+		float nearest = maxDistance;
+		int[] stack = queryStack;
+		int top = 0;
+		if (rayBox(nodeBounds, 0, originX, originY, originZ, invX, invY, invZ, nearest) <= nearest)
+			stack[top++] = 0;
+		while (top > 0)
+		{
+			int node = stack[--top];
+			// Check again: a nearer hit may have been found since this was pushed.
+			if (!(rayBox(nodeBounds, node * 6, originX, originY, originZ, invX, invY, invZ, nearest) <= nearest))
+				continue;
+
+			int child = nodeChild[node];
+			if (child < 0)
+			{
+				int start = nodeStart[node];
+				int end = start + nodeSize[node];
+				for (int i = start; i < end; i++)
+				{
+					int prim = primitiveIndices[i];
+					float t = rayBox(primitiveBounds, prim * 6, originX, originY, originZ, invX, invY, invZ, nearest);
+					if (!(t <= nearest))
+						continue;
+					if (test != null)
+						t = test.intersect(prim, originX, originY, originZ, directionX, directionY, directionZ, nearest);
+					if (t >= 0f && t <= nearest)
+					{
+						nearest = t;
+						hit = prim;
+					}
+				}
+			}
+			else
+			{
+				float t0 = rayBox(nodeBounds, child * 6, originX, originY, originZ, invX, invY, invZ, nearest);
+				float t1 = rayBox(nodeBounds, (child + 1) * 6, originX, originY, originZ, invX, invY, invZ, nearest);
+				if (top + 2 > stack.length)
+					stack = queryStack = Arrays.copyOf(stack, stack.length * 2);
+				// Push the nearer child last, so that it is visited first.
+				if (t0 <= t1)
+				{
+					if (t1 <= nearest)
+						stack[top++] = child + 1;
+					if (t0 <= nearest)
+						stack[top++] = child;
+				}
+				else
+				{
+					if (t0 <= nearest)
+						stack[top++] = child;
+					if (t1 <= nearest)
+						stack[top++] = child + 1;
+				}
+			}
+		}
+
+		if (hit >= 0 && hitDistance != null)
+			hitDistance[0] = nearest;
+		return hit;
+	}
+
+	// Exception if not built.
+	private void checkBuilt()
+	{
+		if (!built)
+			throw new IllegalStateException("Hierarchy is not built.");
+	}
+
+	// Grows the primitive arrays.
+	private void ensurePrimitiveCapacity(int count)
+	{
+		if (count <= primitiveIndices.length)
+			return;
+		int capacity = Math.max(count, primitiveIndices.length * 2);
+		primitiveBounds = Arrays.copyOf(primitiveBounds, capacity * 6);
+		primitiveIndices = Arrays.copyOf(primitiveIndices, capacity);
+		primitiveLeaf = Arrays.copyOf(primitiveLeaf, capacity);
+	}
+
+	// Grows the node arrays.
+	private void ensureNodeCapacity(int count)
+	{
+		if (count <= nodeChild.length)
+			return;
+		nodeBounds = new float[count * 6];
+		nodeChild = new int[count];
+		nodeParent = new int[count];
+		nodeStart = new int[count];
+		nodeSize = new int[count];
+		dirtyLeaves = new int[count];
+		leafDirty = new boolean[count];
+	}
+
+	// Sets a node's bounds from its children or primitives. Returns true if they changed.
+	private boolean updateNodeBounds(int node)
+	{
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		int child = nodeChild[node];
+		if (child < 0)
+		{
+			int start = nodeStart[node];
+			int end = start + nodeSize[node];
+			for (int i = start; i < end; i++)
+			{
+				int b = primitiveIndices[i] * 6;
+				minX = Math.min(minX, primitiveBounds[b]);
+				minY = Math.min(minY, primitiveBounds[b + 1]);
+				minZ = Math.min(minZ, primitiveBounds[b + 2]);
+				maxX = Math.max(maxX, primitiveBounds[b + 3]);
+				maxY = Math.max(maxY, primitiveBounds[b + 4]);
+				maxZ = Math.max(maxZ, primitiveBounds[b + 5]);
+			}
+		}
+		else
+		{
+			int b0 = child * 6;
+			int b1 = b0 + 6;
+			minX = Math.min(nodeBounds[b0],     nodeBounds[b1]);
+			minY = Math.min(nodeBounds[b0 + 1], nodeBounds[b1 + 1]);
+			minZ = Math.min(nodeBounds[b0 + 2], nodeBounds[b1 + 2]);
+			maxX = Math.max(nodeBounds[b0 + 3], nodeBounds[b1 + 3]);
+			maxY = Math.max(nodeBounds[b0 + 4], nodeBounds[b1 + 4]);
+			maxZ = Math.max(nodeBounds[b0 + 5], nodeBounds[b1 + 5]);
+		}
+
+		int b = node * 6;
+		if (nodeBounds[b] == minX && nodeBounds[b + 1] == minY && nodeBounds[b + 2] == minZ
+			&& nodeBounds[b + 3] == maxX && nodeBounds[b + 4] == maxY && nodeBounds[b + 5] == maxZ)
+			return false;
+		nodeBounds[b]     = minX;
+		nodeBounds[b + 1] = minY;
+		nodeBounds[b + 2] = minZ;
+		nodeBounds[b + 3] = maxX;
+		nodeBounds[b + 4] = maxY;
+		nodeBounds[b + 5] = maxZ;
+		return true;
+	}
+
+	// Tests a box against frustum planes in a mask. Returns -1 if outside, or the mask of planes that it is not fully inside of.
+	private static int testBox(float[] planes, float[] bounds, int b, int mask)
+	{
+		float cx = (bounds[b] + bounds[b + 3]) * 0.5f, ex = (bounds[b + 3] - bounds[b]) * 0.5f;
+		float cy = (bounds[b + 1] + bounds[b + 4]) * 0.5f, ey = (bounds[b + 4] - bounds[b + 1]) * 0.5f;
+		float cz = (bounds[b + 2] + bounds[b + 5]) * 0.5f, ez = (bounds[b + 5] - bounds[b + 2]) * 0.5f;
+		int out = mask;
+		for (int p = 0; p < 6; p++)
+		{
+			if ((mask & (1 << p)) == 0)
+				continue;
+			float a = planes[p * 4], bb = planes[p * 4 + 1], c = planes[p * 4 + 2];
+			float distance = a*cx + bb*cy + c*cz + planes[p * 4 + 3];
+			float radius = Math.abs(a)*ex + Math.abs(bb)*ey + Math.abs(c)*ez;
+			if (distance < -radius)
+				return -1;
+			if (distance >= radius)
+				out &= ~(1 << p);
+		}
+		return out;
+	}
+
+	// Gets the entry distance of a ray into a box, or NaN if it misses or enters past the max distance.
+	private static float rayBox(float[] bounds, int b, float ox, float oy, float oz, float invX, float invY, float invZ, float maxDistance)
+	{
+		float near = 0f;
+		float far = maxDistance;
+		float t0, t1;
+
+		t0 = (bounds[b] - ox) * invX;
+		t1 = (bounds[b + 3] - ox) * invX;
+		if (t0 > t1) { float t = t0; t0 = t1; t1 = t; }
+		// Comparisons are written so that NaN (a ray in the slab's plane) is ignored.
+		if (t0 > near) near = t0;
+		if (t1 < far) far = t1;
+
+		t0 = (bounds[b + 1] - oy) * invY;
+		t1 = (bounds[b + 4] - oy) * invY;
+		if (t0 > t1) { float t = t0; t0 = t1; t1 = t; }
+		if (t0 > near) near = t0;
+		if (t1 < far) far = t1;
+
+		t0 = (bounds[b + 2] - oz) * invZ;
+		t1 = (bounds[b + 5] - oz) * invZ;
+		if (t0 > t1) { float t = t0; t0 = t1; t1 = t; }
+		if (t0 > near) near = t0;
+		if (t1 < far) far = t1;
+
+		return near <= far ? near : Float.NaN;
+	}
+
+	/**
+	 * Builds a subtree, forking large child subtrees onto the pool.
+	 */
+	private class BuildTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 3212806452467436012L;
+
+		private final float[] centroids;
+		private final AtomicInteger nodeCounter;
+		private final int node;
+		private final int start;
+		private final int end;
+
+		/** Bin bounds, 6 per bin, per axis. */
+		private final float[] binBounds;
+		/** Bin counts per axis. */
+		private final int[] binCounts;
+		/** Right-side sweep areas. */
+		private final float[] rightAreas;
+
+		private BuildTask(float[] centroids, AtomicInteger nodeCounter, int node, int start, int end)
+		{
+			this.centroids = centroids;
+			this.nodeCounter = nodeCounter;
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.binBounds = new float[3 * BINS * 6];
+			this.binCounts = new int[3 * BINS];
+			this.rightAreas = new float[BINS];
+		}
+
+		@Override
+		protected void compute()
+		{
+			List<BuildTask> forked = null;
+			int[] stack = new int[3 * 64];
+			int top = 0;
+			stack[top++] = node;
+			stack[top++] = start;
+			stack[top++] = end;
+			while (top > 0)
+			{
+				int e = stack[--top];
+				int s = stack[--top];
+				int n = stack[--top];
+				int mid = split(n, s, e);
+				if (mid < 0)
+					continue;
+
+				int child = nodeChild[n];
+				if (top + 6 > stack.length)
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				for (int c = 0; c < 2; c++)
+				{
+					int cs = c == 0 ? s : mid;
+					int ce = c == 0 ? mid : e;
+					if (ce - cs >= PARALLEL_BUILD_THRESHOLD && e - s >= PARALLEL_BUILD_THRESHOLD * 2)
+					{
+						if (forked == null)
+							forked = new ArrayList<>();
+						BuildTask task = new BuildTask(centroids, nodeCounter, child + c, cs, ce);
+						task.fork();
+						forked.add(task);
+					}
+					else
+					{
+						stack[top++] = child + c;
+						stack[top++] = cs;
+						stack[top++] = ce;
+					}
+				}
+			}
+			if (forked != null)
+				for (BuildTask task : forked)
+					task.join();
+		}
+
+		// Sets up a node, and splits it if needed. Returns the start of the second child, or -1 for a leaf.
+		private int split(int n, int s, int e)
+		{
+			float[] pb = primitiveBounds;
+			int[] indices = primitiveIndices;
+
+			nodeStart[n] = s;
+			nodeSize[n] = e - s;
+			nodeChild[n] = -1;
+
+			float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+			float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+			float cMinX = Float.POSITIVE_INFINITY, cMinY = Float.POSITIVE_INFINITY, cMinZ = Float.POSITIVE_INFINITY;
+			float cMaxX = Float.NEGATIVE_INFINITY, cMaxY = Float.NEGATIVE_INFINITY, cMaxZ = Float.NEGATIVE_INFINITY;
+			for (int i = s; i < e; i++)
+			{
+				int p = indices[i];
+				int b = p * 6;
+				minX = Math.min(minX, pb[b]);
+				minY = Math.min(minY, pb[b + 1]);
+				minZ = Math.min(minZ, pb[b + 2]);
+				maxX = Math.max(maxX, pb[b + 3]);
+				maxY = Math.max(maxY, pb[b + 4]);
+				maxZ = Math.max(maxZ, pb[b + 5]);
+				float cx = centroids[p * 3], cy = centroids[p * 3 + 1], cz = centroids[p * 3 + 2];
+				cMinX = Math.min(cMinX, cx);
+				cMinY = Math.min(cMinY, cy);
+				cMinZ = Math.min(cMinZ, cz);
+				cMaxX = Math.max(cMaxX, cx);
+				cMaxY = Math.max(cMaxY, cy);
+				cMaxZ = Math.max(cMaxZ, cz);
+			}
+			int nb = n * 6;
+			nodeBounds[nb]     = minX;
+			nodeBounds[nb + 1] = minY;
+			nodeBounds[nb + 2] = minZ;
+			nodeBounds[nb + 3] = maxX;
+			nodeBounds[nb + 4] = maxY;
+			nodeBounds[nb + 5] = maxZ;
+
+			int count = e - s;
+			if (count <= maxLeafSize)
+			{
+				for (int i = s; i < e; i++)
+					primitiveLeaf[indices[i]] = n;
+				return -1;
+			}
+
+			float[] cMin = {cMinX, cMinY, cMinZ};
+			float[] cScale = new float[3];
+			for (int axis = 0; axis < 3; axis++)
+			{
+				float extent = (axis == 0 ? cMaxX : axis == 1 ? cMaxY : cMaxZ) - cMin[axis];
+				// Scaled a little under BINS so that the max centroid lands in the last bin.
+				cScale[axis] = extent > 0f ? (BINS * 0.9999f) / extent : 0f;
+			}
+
+			// Bin primitives on all three axes at once.
+			float[] bins = binBounds;
+			int[] counts = binCounts;
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < bins.length; i += 6)
+			{
+				bins[i] = bins[i + 1] = bins[i + 2] = Float.POSITIVE_INFINITY;
+				bins[i + 3] = bins[i + 4] = bins[i + 5] = Float.NEGATIVE_INFINITY;
+			}
+			for (int i = s; i < e; i++)
+			{
+				int p = indices[i];
+				int b = p * 6;
+				for (int axis = 0; axis < 3; axis++)
+				{
+					if (cScale[axis] == 0f)
+						continue;
+					int bin = axis * BINS + Math.min(BINS - 1, (int)((centroids[p * 3 + axis] - cMin[axis]) * cScale[axis]));
+					counts[bin]++;
+					int bb = bin * 6;
+					bins[bb]     = Math.min(bins[bb],     pb[b]);
+					bins[bb + 1] = Math.min(bins[bb + 1], pb[b + 1]);
+					bins[bb + 2] = Math.min(bins[bb + 2], pb[b + 2]);
+					bins[bb + 3] = Math.max(bins[bb + 3], pb[b + 3]);
+					bins[bb + 4] = Math.max(bins[bb + 4], pb[b + 4]);
+					bins[bb + 5] = Math.max(bins[bb + 5], pb[b + 5]);
+				}
+			}
+
+			// Sweep the split planes between bins for the lowest (left area * left count + right area * right count).
+			int bestAxis = -1;
+			int bestSplit = 0;
+			float bestCost = Float.POSITIVE_INFINITY;
+			for (int axis = 0; axis < 3; axis++)
+			{
+				if (cScale[axis] == 0f)
+					continue;
+				int first = axis * BINS;
+
+				float rMinX = Float.POSITIVE_INFINITY, rMinY = Float.POSITIVE_INFINITY, rMinZ = Float.POSITIVE_INFINITY;
+				float rMaxX = Float.NEGATIVE_INFINITY, rMaxY = Float.NEGATIVE_INFINITY, rMaxZ = Float.NEGATIVE_INFINITY;
+				for (int i = BINS - 1; i > 0; i--)
+				{
+					int bb = (first + i) * 6;
+					rMinX = Math.min(rMinX, bins[bb]);
+					rMinY = Math.min(rMinY, bins[bb + 1]);
+					rMinZ = Math.min(rMinZ, bins[bb + 2]);
+					rMaxX = Math.max(rMaxX, bins[bb + 3]);
+					rMaxY = Math.max(rMaxY, bins[bb + 4]);
+					rMaxZ = Math.max(rMaxZ, bins[bb + 5]);
+					rightAreas[i] = area(rMinX, rMinY, rMinZ, rMaxX, rMaxY, rMaxZ);
+				}
+
+				float lMinX = Float.POSITIVE_INFINITY, lMinY = Float.POSITIVE_INFINITY, lMinZ = Float.POSITIVE_INFINITY;
+				float lMaxX = Float.NEGATIVE_INFINITY, lMaxY = Float.NEGATIVE_INFINITY, lMaxZ = Float.NEGATIVE_INFINITY;
+				int leftCount = 0;
+				for (int i = 0; i < BINS - 1; i++)
+				{
+					int bb = (first + i) * 6;
+					lMinX = Math.min(lMinX, bins[bb]);
+					lMinY = Math.min(lMinY, bins[bb + 1]);
+					lMinZ = Math.min(lMinZ, bins[bb + 2]);
+					lMaxX = Math.max(lMaxX, bins[bb + 3]);
+					lMaxY = Math.max(lMaxY, bins[bb + 4]);
+					lMaxZ = Math.max(lMaxZ, bins[bb + 5]);
+					leftCount += counts[first + i];
+					if (leftCount == 0 || leftCount == count)
+						continue;
+					float cost = area(lMinX, lMinY, lMinZ, lMaxX, lMaxY, lMaxZ) * leftCount + rightAreas[i + 1] * (count - leftCount);
+					if (cost < bestCost)
+					{
+						bestCost = cost;
+						bestAxis = axis;
+						bestSplit = i + 1;
+					}
+				}
+			}
+
+			int mid;
+			if (bestAxis < 0)
+			{
+				// All centroids are in the same place: split down the middle.
+				mid = s + count / 2;
+			}
+			else
+			{
+				int i = s;
+				int j = e - 1;
+				while (i <= j)
+				{
+					int p = indices[i];
+					if ((int)((centroids[p * 3 + bestAxis] - cMin[bestAxis]) * cScale[bestAxis]) < bestSplit)
+						i++;
+					else
+					{
+						indices[i] = indices[j];
+						indices[j--] = p;
+					}
+				}
+				mid = i;
+				if (mid == s || mid == e)
+					mid = s + count / 2;
+			}
+
+			int child = nodeCounter.getAndAdd(2);
+			nodeChild[n] = child;
+			nodeParent[child] = n;
+			nodeParent[child + 1] = n;
+			return mid;
+		}
+
+	}
+
+	// Gets half of the surface area of a box.
+	private static float area(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		float x = maxX - minX, y = maxY - minY, z = maxZ - minZ;
+		return x*y + y*z + z*x;
+	}
+
+	/**
+	 * A test of a ray against a single primitive.
+	 * It must not query the hierarchy that calls it.
+	 */
+	@FunctionalInterface
+	public interface RayTest
+	{
+		/**
+		 * Tests a ray against a primitive.
+		 * @param index the primitive index.
+		 * @param originX the ray origin, x-coordinate.
+		 * @param originY the ray origin, y-coordinate.
+		 * @param originZ the ray origin, z-coordinate.
+		 * @param directionX the ray direction, x-component.
+		 * @param directionY the ray direction, y-component.
+		 * @param directionZ the ray direction, z-component.
+		 * @param maxDistance the maximum distance along the ray, in direction lengths.
+		 * @return the distance to the hit, in direction lengths, or a negative value or NaN if there is no hit.
+		 */
+		float intersect(int index, float originX, float originY, float originZ, float directionX, float directionY, float directionZ, float maxDistance);
+	}
+
+}
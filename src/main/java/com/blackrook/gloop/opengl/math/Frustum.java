@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.util.stream.IntStream;
+
+/**
+ * A view frustum, as six planes extracted from a projection x view matrix, for visibility tests.
+ * <p>
+ * Single bounds are tested via {@link #testSphere(float, float, float, float)} and
+ * {@link #testBox(float, float, float, float, float, float)}. Many bounds are tested at once via
+ * {@link #cullSpheres(float[], float[], float[], float[], int, int, long[])} and
+ * {@link #cullBoxes(float[], float[], float[], float[], float[], float[], int, int, long[])}, which read
+ * bounds from separate arrays per component and write the results into a bitset of <code>long</code> words,
+ * where object <code>i</code> is visible if bit <code>(i &amp; 63)</code> of word <code>(i &gt;&gt; 6)</code> is set
+ * (see {@link #isVisible(long[], int)}, or {@link java.util.BitSet#valueOf(long[])}).
+ * <p>
+ * Batches of more objects than the parallel threshold (see {@link #setParallelThreshold(int)})
+ * are split into blocks and tested on the common fork-join pool.
+ * <p>
+ * Tests are conservative: bounds that are near a frustum corner may be reported as visible when they are not.
+ * @author Matthew Tropiano
+ */
+public class Frustum
+{
+	/** Left plane index. */
+	public static final int PLANE_LEFT = 0;
+	/** Right plane index. */
+	public static final int PLANE_RIGHT = 1;
+	/** Bottom plane index. */
+	public static final int PLANE_BOTTOM = 2;
+	/** Top plane index. */
+	public static final int PLANE_TOP = 3;
+	/** Near plane index. */
+	public static final int PLANE_NEAR = 4;
+	/** Far plane index. */
+	public static final int PLANE_FAR = 5;
+
+	/** Default amount of objects for splitting batches across threads. */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 32768;
+
+	/** Amount of objects tested together in a single block (a multiple of 64). */
+	private static final int BLOCK_SIZE = 4096;
+
+	/** Planes (a, b, c, d), normalized, with normals pointing inward. */
+	private float[] planes;
+	/** Scratch matrix for combining projection and view. */
+	private Matrix4F combined;
+	/** Amount of objects before splitting batches. */
+	private int parallelThreshold;
+
+	/**
+	 * Creates a new frustum that contains nothing, until it is set.
+	 */
+	public Frustum()
+	{
+		this.planes = new float[24];
+		this.combined = new Matrix4F();
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+		for (int p = 0; p < 6; p++)
+			planes[p * 4 + 3] = -1f;
+	}
+
+	/**
+	 * @return the amount of objects that a batch needs before it is split across threads, or 0 for never.
+	 */
+	public int getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the amount of objects that a batch needs before it is split across threads.
+	 * @param parallelThreshold the threshold, or 0 to never split batches.
+	 * @throws IllegalArgumentException if parallelThreshold is less than 0.
+	 */
+	public void setParallelThreshold(int parallelThreshold)
+	{
+		if (parallelThreshold < 0)
+			throw new IllegalArgumentException("Threshold cannot be less than 0.");
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Sets this frustum from a combined projection x view (or projection x view x model) matrix.
+	 * Bounds tested against this frustum are in the space that the matrix transforms from.
+	 * @param viewProjection the combined matrix.
+	 */
+	public void set(Matrix4F viewProjection)
+	{
+		float[] m = viewProjection.getArray();
+		// Clip-space planes are the 4th row plus or minus each other row.
+		for (int p = 0; p < 6; p++)
+		{
+			int row = p >> 1;
+			float sign = (p & 1) == 0 ? 1f : -1f;
+			float a = m[3]  + sign * m[row];
+			float b = m[7]  + sign * m[row + 4];
+			float c = m[11] + sign * m[row + 8];
+			float d = m[15] + sign * m[row + 12];
+			float length = (float)Math.sqrt(a*a + b*b + c*c);
+			if (length > 0f)
+			{
+				a /= length;
+				b /= length;
+				c /= length;
+				d /= length;
+			}
+			planes[p * 4]     = a;
+			planes[p * 4 + 1] = b;
+			planes[p * 4 + 2] = c;
+			planes[p * 4 + 3] = d;
+		}
+	}
+
+	/**
+	 * Sets this frustum from separate projection and view matrices.
+	 * @param projection the projection matrix.
+	 * @param view the view (or model-view) matrix.
+	 */
+	public void set(Matrix4F projection, Matrix4F view)
+	{
+		projection.copyTo(combined);
+		combined.multiplyRight(view);
+		set(combined);
+	}
+
+	/**
+	 * Gets one of the planes of this frustum, normalized, with its normal pointing inward.
+	 * @param plane the plane index (see the <code>PLANE_</code> constants).
+	 * @param out the output array for the plane's a, b, c, and d values (<code>ax + by + cz + d = 0</code>).
+	 * @throws ArrayIndexOutOfBoundsException if the plane index is out of range or <code>out.length &lt; 4</code>.
+	 */
+	public void getPlane(int plane, float[] out)
+	{
+		if (plane < 0 || plane >= 6)
+			throw new ArrayIndexOutOfBoundsException("Plane index out of range: " + plane);
+		System.arraycopy(planes, plane * 4, out, 0, 4);
+	}
+
+	/**
+	 * Gets all planes of this frustum, 4 values each, in <code>PLANE_</code> order.
+	 * This is the frustum's own array, not a copy, so it must not be changed.
+	 * @return the plane array.
+	 */
+	float[] getPlanes()
+	{
+		return planes;
+	}
+
+	/**
+	 * Tests if a point is inside this frustum.
+	 * @param x the point, x-coordinate.
+	 * @param y the point, y-coordinate.
+	 * @param z the point, z-coordinate.
+	 * @return true if inside, false if not.
+	 */
+	public boolean testPoint(float x, float y, float z)
+	{
+		return testSphere(x, y, z, 0f);
+	}
+
+	/**
+	 * Tests if a sphere is inside or touching this frustum.
+	 * @param x the sphere's center, x-coordinate.
+	 * @param y the sphere's center, y-coordinate.
+	 * @param z the sphere's center, z-coordinate.
+	 * @param radius the sphere's radius.
+	 * @return true if possibly visible, false if not.
+	 */
+	public boolean testSphere(float x, float y, float z, float radius)
+	{
+		float[] p = planes;
+		for (int i = 0; i < 24; i += 4)
+			if (p[i]*x + p[i+1]*y + p[i+2]*z + p[i+3] < -radius)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Tests if an axis-aligned box is inside or touching this frustum.
+	 * @param minX the box's minimum x-coordinate.
+	 * @param minY the box's minimum y-coordinate.
+	 * @param minZ the box's minimum z-coordinate.
+	 * @param maxX the box's maximum x-coordinate.
+	 * @param maxY the box's maximum y-coordinate.
+	 * @param maxZ the box's maximum z-coordinate.
+	 * @return true if possibly visible, false if not.
+	 */
+	public boolean testBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		float cx = (minX + maxX) * 0.5f, ex = (maxX - minX) * 0.5f;
+		float cy = (minY + maxY) * 0.5f, ey = (maxY - minY) * 0.5f;
+		float cz = (minZ + maxZ) * 0.5f, ez = (maxZ - minZ) * 0.5f;
+		float[] p = planes;
+		for (int i = 0; i < 24; i += 4)
+		{
+			float a = p[i], b = p[i+1], c = p[i+2];
+			if (a*cx + b*cy + c*cz + p[i+3] < -(Math.abs(a)*ex + Math.abs(b)*ey + Math.abs(c)*ez))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tests a batch of spheres against this frustum, and writes the results to a visibility bitset.
+	 * Only the bits in the tested range are changed.
+	 * @param x the sphere centers, x-coordinates.
+	 * @param y the sphere centers, y-coordinates.
+	 * @param z the sphere centers, z-coordinates.
+	 * @param radius the sphere radii.
+	 * @param start the index of the first sphere.
+	 * @param count the amount of spheres.
+	 * @param visibility the output bitset, which must have at least <code>(start + count + 63) / 64</code> words.
+	 * @return the amount of visible spheres.
+	 * @throws ArrayIndexOutOfBoundsException if an array is too small.
+	 */
+	public int cullSpheres(float[] x, float[] y, float[] z, float[] radius, int start, int count, long[] visibility)
+	{
+		return run(start, count, (lo, hi) -> cullSpheresBlock(x, y, z, radius, lo, hi, visibility));
+	}
+
+	/**
+	 * Tests a batch of axis-aligned boxes against this frustum, and writes the results to a visibility bitset.
+	 * Only the bits in the tested range are changed.
+	 * @param minX the box minimum x-coordinates.
+	 * @param minY the box minimum y-coordinates.
+	 * @param minZ the box minimum z-coordinates.
+	 * @param maxX the box maximum x-coordinates.
+	 * @param maxY the box maximum y-coordinates.
+	 * @param maxZ the box maximum z-coordinates.
+	 * @param start the index of the first box.
+	 * @param count the amount of boxes.
+	 * @param visibility the output bitset, which must have at least <code>(start + count + 63) / 64</code> words.
+	 * @return the amount of visible boxes.
+	 * @throws ArrayIndexOutOfBoundsException if an array is too small.
+	 */
+	public int cullBoxes(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int start, int count, long[] visibility)
+	{
+		return run(start, count, (lo, hi) -> cullBoxesBlock(minX, minY, minZ, maxX, maxY, maxZ, lo, hi, visibility));
+	}
+
+	/**
+	 * Checks a bit in a visibility bitset.
+	 * @param visibility the bitset.
+	 * @param index the object index.
+	 * @return true if the object's bit is set, false if not.
+	 */
+	public static boolean isVisible(long[] visibility, int index)
+	{
+		return (visibility[index >> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Creates a new visibility bitset big enough for an amount of objects.
+	 * @param count the amount of objects.
+	 * @return a new, cleared bitset.
+	 */
+	public static long[] createVisibilitySet(int count)
+	{
+		return new long[(count + 63) >> 6];
+	}
+
+	// Runs a test on a range, split into blocks aligned to bitset words, in parallel if past the threshold.
+	private int run(int start, int count, BlockTest test)
+	{
+		if (count <= 0)
+			return 0;
+		int end = start + count;
+		int firstBlock = start / BLOCK_SIZE;
+		int lastBlock = (end - 1) / BLOCK_SIZE;
+		if (parallelThreshold > 0 && count >= parallelThreshold)
+		{
+			return IntStream.rangeClosed(firstBlock, lastBlock).parallel().map((block) ->
+				test.apply(Math.max(start, block * BLOCK_SIZE), Math.min(end, (block + 1) * BLOCK_SIZE))
+			).sum();
+		}
+		else
+		{
+			int visible = 0;
+			for (int block = firstBlock; block <= lastBlock; block++)
+				visible += test.apply(Math.max(start, block * BLOCK_SIZE), Math.min(end, (block + 1) * BLOCK_SIZE));
+			return visible;
+		}
+	}
+
+	// Tests spheres [lo, hi).
+	private int cullSpheresBlock(float[] x, float[] y, float[] z, float[] radius, int lo, int hi, long[] visibility)
+	{
+		float[] p = planes;
+		float a0 = p[0],  b0 = p[1],  c0 = p[2],  d0 = p[3];
+		float a1 = p[4],  b1 = p[5],  c1 = p[6],  d1 = p[7];
+		float a2 = p[8],  b2 = p[9],  c2 = p[10], d2 = p[11];
+		float a3 = p[12], b3 = p[13], c3 = p[14], d3 = p[15];
+		float a4 = p[16], b4 = p[17], c4 = p[18], d4 = p[19];
+		float a5 = p[20], b5 = p[21], c5 = p[22], d5 = p[23];
+
+		int visible = 0;
+		int i = lo;
+		while (i < hi)
+		{
+			int word = i >> 6;
+			int wordEnd = Math.min(hi, (word + 1) << 6);
+			long bits = 0L;
+			long mask = 0L;
+			for (; i < wordEnd; i++)
+			{
+				float px = x[i], py = y[i], pz = z[i], r = -radius[i];
+				// Branch-free: all six distances must be at least -radius.
+				boolean in = a0*px + b0*py + c0*pz + d0 >= r
+					& a1*px + b1*py + c1*pz + d1 >= r
+					& a2*px + b2*py + c2*pz + d2 >= r
+					& a3*px + b3*py + c3*pz + d3 >= r
+					& a4*px + b4*py + c4*pz + d4 >= r
+					& a5*px + b5*py + c5*pz + d5 >= r;
+				long bit = 1L << i;
+				mask |= bit;
+				if (in)
+					bits |= bit;
+			}
+			visibility[word] = (visibility[word] & ~mask) | bits;
+			visible += Long.bitCount(bits);
+		}
+		return visible;
+	}
+
+	// Tests boxes [lo, hi).
+	private int cullBoxesBlock(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int lo, int hi, long[] visibility)
+	{
+		float[] p = planes;
+		float a0 = p[0],  b0 = p[1],  c0 = p[2],  d0 = p[3];
+		float a1 = p[4],  b1 = p[5],  c1 = p[6],  d1 = p[7];
+		float a2 = p[8],  b2 = p[9],  c2 = p[10], d2 = p[11];
+		float a3 = p[12], b3 = p[13], c3 = p[14], d3 = p[15];
+		float a4 = p[16], b4 = p[17], c4 = p[18], d4 = p[19];
+		float a5 = p[20], b5 = p[21], c5 = p[22], d5 = p[23];
+		float ua0 = Math.abs(a0), ub0 = Math.abs(b0), uc0 = Math.abs(c0);
+		float ua1 = Math.abs(a1), ub1 = Math.abs(b1), uc1 = Math.abs(c1);
+		float ua2 = Math.abs(a2), ub2 = Math.abs(b2), uc2 = Math.abs(c2);
+		float ua3 = Math.abs(a3), ub3 = Math.abs(b3), uc3 = Math.abs(c3);
+		float ua4 = Math.abs(a4), ub4 = Math.abs(b4), uc4 = Math.abs(c4);
+		float ua5 = Math.abs(a5), ub5 = Math.abs(b5), uc5 = Math.abs(c5);
+
+		int visible = 0;
+		int i = lo;
+		while (i < hi)
+		{
+			int word = i >> 6;
+			int wordEnd = Math.min(hi, (word + 1) << 6);
+			long bits = 0L;
+			long mask = 0L;
+			for (; i < wordEnd; i++)
+			{
+				float cx = (minX[i] + maxX[i]) * 0.5f, ex = (maxX[i] - minX[i]) * 0.5f;
+				float cy = (minY[i] + maxY[i]) * 0.5f, ey = (maxY[i] - minY[i]) * 0.5f;
+				float cz = (minZ[i] + maxZ[i]) * 0.5f, ez = (maxZ[i] - minZ[i]) * 0.5f;
+				// Branch-free: each center distance must be at least the negated box extent along the plane normal.
+				boolean in = a0*cx + b0*cy + c0*cz + d0 >= -(ua0*ex + ub0*ey + uc0*ez)
+					& a1*cx + b1*cy + c1*cz + d1 >= -(ua1*ex + ub1*ey + uc1*ez)
+					& a2*cx + b2*cy + c2*cz + d2 >= -(ua2*ex + ub2*ey + uc2*ez)
+					& a3*cx + b3*cy + c3*cz + d3 >= -(ua3*ex + ub3*ey + uc3*ez)
+					& a4*cx + b4*cy + c4*cz + d4 >= -(ua4*ex + ub4*ey + uc4*ez)
+					& a5*cx + b5*cy + c5*cz + d5 >= -(ua5*ex + ub5*ey + uc5*ez);
+				long bit = 1L << i;
+				mask |= bit;
+				if (in)
+					bits |= bit;
+			}
+			visibility[word] = (visibility[word] & ~mask) | bits;
+			visible += Long.bitCount(bits);
+		}
+		return visible;
+	}
+
+	/**
+	 * A test on a range of objects.
+	 */
+	@FunctionalInterface
+	private interface BlockTest
+	{
+		int apply(int lo, int hi);
+	}
+
+}
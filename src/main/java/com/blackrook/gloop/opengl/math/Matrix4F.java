@@ -7,6 +7,9 @@
  ******************************************************************************/
 package com.blackrook.gloop.opengl.math;
 
+import java.nio.BufferOverflowException;
+import java.nio.FloatBuffer;
+
 /**
  * This is a 4x4 Matrix object that stores floats.
  * 
@@ -99,7 +102,7 @@ public class Matrix4F
 	 */
 	public void setRotation(float degX, float degY, float degZ)
 	{
-		reset().rotateX(degX).rotateY(degY).rotateZ(degZ);
+		rotationArray(matrixArray, degX, degY, degZ);
 	}
 
 	/**
@@ -263,10 +266,9 @@ public class Matrix4F
 	 */
 	public Matrix4F translate(float x, float y, float z)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		translateArray(c.scratchB, x, y, z);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		float[] m = matrixArray;
+		for (int i = 0; i < 4; i++)
+			m[i+12] = m[i]*x + m[i+4]*y + m[i+8]*z + m[i+12];
 		return this;
 	}
 	
@@ -277,10 +279,10 @@ public class Matrix4F
 	 */
 	public Matrix4F rotateX(float degrees)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		rotationXArray(c.scratchB, degrees);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		double rads = degToRad(degrees);
+		float cos = (float)Math.cos(rads);
+		float sin = (float)Math.sin(rads);
+		rotateColumns(matrixArray, 4, 8, cos, sin);
 		return this;
 	}
 	
@@ -291,10 +293,10 @@ public class Matrix4F
 	 */
 	public Matrix4F rotateY(float degrees)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		rotationYArray(c.scratchB, degrees);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		double rads = degToRad(degrees);
+		float cos = (float)Math.cos(rads);
+		float sin = (float)Math.sin(rads);
+		rotateColumns(matrixArray, 8, 0, cos, sin);
 		return this;
 	}
 	
@@ -305,10 +307,10 @@ public class Matrix4F
 	 */
 	public Matrix4F rotateZ(float degrees)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		rotationZArray(c.scratchB, degrees);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		double rads = degToRad(degrees);
+		float cos = (float)Math.cos(rads);
+		float sin = (float)Math.sin(rads);
+		rotateColumns(matrixArray, 0, 4, cos, sin);
 		return this;
 	}
 	
@@ -321,10 +323,13 @@ public class Matrix4F
 	 */
 	public Matrix4F scale(float scaleX, float scaleY, float scaleZ)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		scaleArray(c.scratchB, scaleX, scaleY, scaleZ);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		float[] m = matrixArray;
+		for (int i = 0; i < 4; i++)
+		{
+			m[i]   = m[i]*scaleX;
+			m[i+4] = m[i+4]*scaleY;
+			m[i+8] = m[i+8]*scaleZ;
+		}
 		return this;
 	}
 	
@@ -345,10 +350,9 @@ public class Matrix4F
 	 */
 	public Matrix4F shear(float shear)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		shearArray(c.scratchB, shear);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		float[] m = matrixArray;
+		for (int i = 0; i < 4; i++)
+			m[i+4] = m[i]*shear + m[i+4];
 		return this;
 	}
 	
@@ -367,10 +371,7 @@ public class Matrix4F
 	 */
 	public Matrix4F lookAt(float eyeX, float eyeY, float eyeZ, float centerX, float centerY, float centerZ, float upX, float upY, float upZ)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		lookAtArray(c.scratchB, eyeX, eyeY, eyeZ, centerX, centerY, centerZ, upX, upY, upZ);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		multiplyLookAtArray(matrixArray, eyeX, eyeY, eyeZ, centerX, centerY, centerZ, upX, upY, upZ);
 		return this;
 	}
 
@@ -384,10 +385,7 @@ public class Matrix4F
 	 */
 	public Matrix4F perspective(float fov, float aspect, float zNear, float zFar)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		perspectiveArray(c.scratchB, fov, aspect, zNear, zFar);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		multiplyPerspectiveArray(matrixArray, fov, aspect, zNear, zFar);
 		return this;
 	}
 	
@@ -403,10 +401,7 @@ public class Matrix4F
 	 */
 	public Matrix4F frustum(float left, float right, float bottom, float top, float zNear, float zFar)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		frustumArray(c.scratchB, left, right, bottom, top, zNear, zFar);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		multiplyFrustumArray(matrixArray, left, right, bottom, top, zNear, zFar);
 		return this;
 	}
 	
@@ -422,10 +417,7 @@ public class Matrix4F
 	 */
 	public Matrix4F ortho(float left, float right, float bottom, float top, float zNear, float zFar)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		orthoArray(c.scratchB, left, right, bottom, top, zNear, zFar);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		multiplyOrthoArray(matrixArray, left, right, bottom, top, zNear, zFar);
 		return this;
 	}
 	
@@ -442,10 +434,7 @@ public class Matrix4F
 	 */
 	public Matrix4F aspectOrtho(float aspect, float left, float right, float bottom, float top, float zNear, float zFar)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		aspectOrthoArray(c.scratchB, aspect, left, right, bottom, top, zNear, zFar);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		multiplyAspectOrthoArray(matrixArray, aspect, left, right, bottom, top, zNear, zFar);
 		return this;
 	}
 	
@@ -456,10 +445,18 @@ public class Matrix4F
 	 */
 	public void multiplyRight(Matrix4F matrix)
 	{
-		Cache c = Cache.LOCAL.get();
-		getFloats(c.scratchA);
-		matrix.getFloats(c.scratchB);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		multiplyRight(matrix.matrixArray);
+	}
+	
+	/**
+	 * Multiplies this matrix with another.
+	 * <pre>this x m</pre>
+	 * @param values the column-major values of the multiplicand matrix.
+	 * @throws ArrayIndexOutOfBoundsException if <code>values.length &lt; 16</code>.
+	 */
+	public void multiplyRight(float[] values)
+	{
+		multiplyRightArray(matrixArray, values);
 	}
 	
 	/**
@@ -469,12 +466,158 @@ public class Matrix4F
 	 */
 	public void multiplyLeft(Matrix4F matrix)
 	{
-		Cache c = Cache.LOCAL.get();
-		matrix.getFloats(c.scratchA);
-		getFloats(c.scratchB);
-		multiplyArray(c.scratchA, c.scratchB, matrixArray);
+		multiplyLeft(matrix.matrixArray);
 	}
 	
+	/**
+	 * Multiplies this matrix with another.
+	 * <pre>m x this</pre>
+	 * @param values the column-major values of the multiplicand matrix.
+	 * @throws ArrayIndexOutOfBoundsException if <code>values.length &lt; 16</code>.
+	 */
+	public void multiplyLeft(float[] values)
+	{
+		multiplyLeftArray(values, matrixArray);
+	}
+	
+	/**
+	 * Inverts this matrix.
+	 * @return itself, to chain commands.
+	 * @throws ArithmeticException if this matrix is not invertible (its determinant is 0). This matrix is left unchanged.
+	 */
+	public Matrix4F invert()
+	{
+		invertArray(matrixArray, matrixArray);
+		return this;
+	}
+
+	/**
+	 * Gets the inverse of this matrix.
+	 * @param out the output matrix (can be this matrix).
+	 * @throws ArithmeticException if this matrix is not invertible (its determinant is 0). The output is left unchanged.
+	 */
+	public void getInverse(Matrix4F out)
+	{
+		invertArray(matrixArray, out.matrixArray);
+	}
+
+	/**
+	 * Inverts this matrix, assuming that it is only made of rotations, scales along its axes, and a translation
+	 * (no shear or projection, and a bottom row of <code>0, 0, 0, 1</code>), like most model and view matrices.
+	 * This is much cheaper than {@link #invert()}, but the result is wrong for any other kind of matrix.
+	 * @return itself, to chain commands.
+	 * @throws ArithmeticException if an axis has a scale of 0. This matrix is left unchanged.
+	 */
+	public Matrix4F invertAffine()
+	{
+		affineInvertArray(matrixArray, matrixArray);
+		return this;
+	}
+
+	/**
+	 * Gets the inverse of this matrix, assuming that it is only made of rotations, scales along its axes, and a translation.
+	 * @param out the output matrix (can be this matrix).
+	 * @throws ArithmeticException if an axis has a scale of 0. The output is left unchanged.
+	 * @see #invertAffine()
+	 */
+	public void getAffineInverse(Matrix4F out)
+	{
+		affineInvertArray(matrixArray, out.matrixArray);
+	}
+
+	/**
+	 * Transposes this matrix.
+	 * @return itself, to chain commands.
+	 */
+	public Matrix4F transpose()
+	{
+		transposeArray(matrixArray, matrixArray);
+		return this;
+	}
+
+	/**
+	 * Gets the transpose of this matrix.
+	 * @param out the output matrix (can be this matrix).
+	 */
+	public void getTranspose(Matrix4F out)
+	{
+		transposeArray(matrixArray, out.matrixArray);
+	}
+
+	/**
+	 * Gets the normal matrix of this matrix: the inverse transpose of its upper-left 3x3,
+	 * for transforming normals by a model or model-view matrix that may have non-uniform scaling.
+	 * Equivalent to <code>getNormalMatrix(out, 0)</code>.
+	 * @param out the output array, 9 values in column-major order (a <code>mat3</code>).
+	 * @throws ArithmeticException if the upper-left 3x3 is not invertible.
+	 * @throws ArrayIndexOutOfBoundsException if <code>out.length &lt; 9</code>.
+	 */
+	public void getNormalMatrix(float[] out)
+	{
+		getNormalMatrix(out, 0);
+	}
+
+	/**
+	 * Gets the normal matrix of this matrix: the inverse transpose of its upper-left 3x3.
+	 * @param out the output array, 9 values in column-major order (a <code>mat3</code>).
+	 * @param offset the starting offset into the output array.
+	 * @throws ArithmeticException if the upper-left 3x3 is not invertible.
+	 * @throws ArrayIndexOutOfBoundsException if <code>offset + 9 &gt; out.length</code>.
+	 * @see #getNormalMatrix(float[])
+	 */
+	public void getNormalMatrix(float[] out, int offset)
+	{
+		float[] m = matrixArray;
+		float c0 = m[5]*m[10] - m[6]*m[9];
+		float c1 = m[6]*m[8]  - m[4]*m[10];
+		float c2 = m[4]*m[9]  - m[5]*m[8];
+		float det = m[0]*c0 + m[1]*c1 + m[2]*c2;
+		if (det == 0f)
+			throw new ArithmeticException("Matrix is not invertible.");
+		float invDet = 1f / det;
+		// Cofactors of the 3x3, over the determinant.
+		out[offset]     = c0 * invDet;
+		out[offset + 1] = c1 * invDet;
+		out[offset + 2] = c2 * invDet;
+		out[offset + 3] = (m[2]*m[9]  - m[1]*m[10]) * invDet;
+		out[offset + 4] = (m[0]*m[10] - m[2]*m[8])  * invDet;
+		out[offset + 5] = (m[1]*m[8]  - m[0]*m[9])  * invDet;
+		out[offset + 6] = (m[1]*m[6]  - m[2]*m[5])  * invDet;
+		out[offset + 7] = (m[2]*m[4]  - m[0]*m[6])  * invDet;
+		out[offset + 8] = (m[0]*m[5]  - m[1]*m[4])  * invDet;
+	}
+
+	/**
+	 * Gets the normal matrix of this matrix: the inverse transpose of its upper-left 3x3.
+	 * The values are put at the buffer's current position, and the position is advanced by 9.
+	 * @param out the output buffer, 9 values in column-major order (a <code>mat3</code>).
+	 * @throws ArithmeticException if the upper-left 3x3 is not invertible.
+	 * @throws BufferOverflowException if the buffer has less than 9 floats remaining.
+	 * @see #getNormalMatrix(float[])
+	 */
+	public void getNormalMatrix(FloatBuffer out)
+	{
+		if (out.remaining() < 9)
+			throw new BufferOverflowException();
+		float[] m = matrixArray;
+		float c0 = m[5]*m[10] - m[6]*m[9];
+		float c1 = m[6]*m[8]  - m[4]*m[10];
+		float c2 = m[4]*m[9]  - m[5]*m[8];
+		float det = m[0]*c0 + m[1]*c1 + m[2]*c2;
+		if (det == 0f)
+			throw new ArithmeticException("Matrix is not invertible.");
+		float invDet = 1f / det;
+		out.put(c0 * invDet);
+		out.put(c1 * invDet);
+		out.put(c2 * invDet);
+		out.put((m[2]*m[9]  - m[1]*m[10]) * invDet);
+		out.put((m[0]*m[10] - m[2]*m[8])  * invDet);
+		out.put((m[1]*m[8]  - m[0]*m[9])  * invDet);
+		out.put((m[1]*m[6]  - m[2]*m[5])  * invDet);
+		out.put((m[2]*m[4]  - m[0]*m[6])  * invDet);
+		out.put((m[0]*m[5]  - m[1]*m[4])  * invDet);
+	}
+
 	/**
 	 * @return a reference to the float array that makes up this matrix.
 	 */
@@ -541,6 +684,37 @@ public class Matrix4F
 		out[14] = z;
 	}
 
+	// Set rotation (X, then Y, then Z).
+	private static void rotationArray(float[] out, float degX, float degY, float degZ)
+	{
+		double radX = degToRad(degX);
+		double radY = degToRad(degY);
+		double radZ = degToRad(degZ);
+		float cx = (float)Math.cos(radX);
+		float sx = (float)Math.sin(radX);
+		float cy = (float)Math.cos(radY);
+		float sy = (float)Math.sin(radY);
+		float cz = (float)Math.cos(radZ);
+		float sz = (float)Math.sin(radZ);
+		float sxsy = sx*sy;
+		float cxsy = cx*sy;
+
+		out[0] = cy*cz;
+		out[1] = sxsy*cz + cx*sz;
+		out[2] = -cxsy*cz + sx*sz;
+		out[3] = 0f;
+		out[4] = -cy*sz;
+		out[5] = -sxsy*sz + cx*cz;
+		out[6] = cxsy*sz + sx*cz;
+		out[7] = 0f;
+		out[8] = sy;
+		out[9] = -sx*cy;
+		out[10] = cx*cy;
+		out[11] = 0f;
+		out[12] = out[13] = out[14] = 0f;
+		out[15] = 1f;
+	}
+
 	// Rotate X.
 	private static void rotationXArray(float[] out, float degrees)
 	{
@@ -587,8 +761,27 @@ public class Matrix4F
 		out[4] = shear;
 	}
 
+	// Multiplies an axis rotation into a matrix, in place. Only the two columns on the rotation plane change.
+	private static void rotateColumns(float[] m, int p, int q, float cos, float sin)
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			float mp = m[p+i];
+			float mq = m[q+i];
+			m[p+i] = mp*cos + mq*sin;
+			m[q+i] = mp*-sin + mq*cos;
+		}
+	}
+
 	// Set "look at."
 	private static void lookAtArray(float[] out, float eyeX, float eyeY, float eyeZ, float centerX, float centerY, float centerZ, float upX, float upY, float upZ)
+	{
+		identityArray(out);
+		multiplyLookAtArray(out, eyeX, eyeY, eyeZ, centerX, centerY, centerZ, upX, upY, upZ);
+	}
+
+	// Multiplies a "look at" matrix into a matrix, in place.
+	private static void multiplyLookAtArray(float[] m, float eyeX, float eyeY, float eyeZ, float centerX, float centerY, float centerZ, float upX, float upY, float upZ)
 	{
 		double fx = centerX - eyeX;
 		double fy = centerY - eyeY;
@@ -615,20 +808,30 @@ public class Matrix4F
 		uy = sz*fx - sx*fz;
 		uz = sx*fy - sy*fx;
 		
-		out[0] = (float)sx;
-		out[1] = (float)sy;
-		out[2] = (float)sz;
-		out[3] = (float)-getVectorDotProduct(eyeX, eyeY, eyeZ, sx, sy, sz);
-		out[4] = (float)ux;
-		out[5] = (float)uy;
-		out[6] = (float)uz;
-		out[7] = (float)-getVectorDotProduct(eyeX, eyeY, eyeZ, ux, uy, uz);
-		out[8] = (float)-fx;
-		out[9] = (float)-fy;
-		out[10] = (float)-fz;
-		out[11] = (float)-getVectorDotProduct(eyeX, eyeY, eyeZ, fx, fy, fz);
-		out[12] = out[13] = out[14] = 0.0f;
-		out[15] = 1.0f;
+		float b0 = (float)sx;
+		float b1 = (float)sy;
+		float b2 = (float)sz;
+		float b3 = (float)-getVectorDotProduct(eyeX, eyeY, eyeZ, sx, sy, sz);
+		float b4 = (float)ux;
+		float b5 = (float)uy;
+		float b6 = (float)uz;
+		float b7 = (float)-getVectorDotProduct(eyeX, eyeY, eyeZ, ux, uy, uz);
+		float b8 = (float)-fx;
+		float b9 = (float)-fy;
+		float b10 = (float)-fz;
+		float b11 = (float)-getVectorDotProduct(eyeX, eyeY, eyeZ, fx, fy, fz);
+
+		// Last column is (0, 0, 0, 1), so it stays the same.
+		for (int i = 0; i < 4; i++)
+		{
+			float r0 = m[i];
+			float r1 = m[i+4];
+			float r2 = m[i+8];
+			float r3 = m[i+12];
+			m[i]   = r0*b0 + r1*b1 + r2*b2  + r3*b3;
+			m[i+4] = r0*b4 + r1*b5 + r2*b6  + r3*b7;
+			m[i+8] = r0*b8 + r1*b9 + r2*b10 + r3*b11;
+		}
 	}
 
 	// Set perspective.
@@ -667,6 +870,54 @@ public class Matrix4F
 		out[15] = 0f;
 	}
 
+	// Multiplies a perspective projection into a matrix, in place.
+	private static void multiplyPerspectiveArray(float[] m, float fov, float aspect, float zNear, float zFar)
+	{
+		double halfangle = degToRad(fov) / 2;
+		float fpn = zFar+zNear;
+		float nmf = zNear-zFar;
+		double cothalffov = Math.cos(halfangle)/Math.sin(halfangle);
+		float sx = (float)(cothalffov / aspect);
+		float sy = (float)cothalffov;
+		float sz = fpn / nmf;
+		float tz = (2*zFar*zNear) / nmf;
+
+		for (int i = 0; i < 4; i++)
+		{
+			float c2 = m[i+8];
+			m[i]    = m[i]*sx;
+			m[i+4]  = m[i+4]*sy;
+			m[i+8]  = c2*sz - m[i+12];
+			m[i+12] = c2*tz;
+		}
+	}
+
+	// Multiplies a frustum projection into a matrix, in place.
+	private static void multiplyFrustumArray(float[] m, float left, float right, float bottom, float top, float zNear, float zFar)
+	{
+		float rml = right - left;
+		float tmb = top - bottom;
+		float fmn = zFar - zNear;
+		float n2 = zNear + zNear;
+		float sx = n2 / rml;
+		float sy = n2 / tmb;
+		float ox = (right+left) / rml;
+		float oy = (top+bottom) / tmb;
+		float sz = -(zFar+zNear) / fmn;
+		float tz = (-2f*zNear*zFar) / fmn;
+
+		for (int i = 0; i < 4; i++)
+		{
+			float c0 = m[i];
+			float c1 = m[i+4];
+			float c2 = m[i+8];
+			m[i]    = c0*sx;
+			m[i+4]  = c1*sy;
+			m[i+8]  = c0*ox + c1*oy + c2*sz - m[i+12];
+			m[i+12] = c2*tz;
+		}
+	}
+
 	// Set ortho.
 	private static void orthoArray(float[] out, float left, float right, float bottom, float top, float zNear, float zFar)
 	{
@@ -683,8 +934,40 @@ public class Matrix4F
 		out[14] = -((zFar+zNear) / fmn);
 	}
 
+	// Multiplies an orthographic projection into a matrix, in place.
+	private static void multiplyOrthoArray(float[] m, float left, float right, float bottom, float top, float zNear, float zFar)
+	{
+		float rml = right - left;
+		float tmb = top - bottom;
+		float fmn = zFar - zNear;
+		float sx = 2f / rml;
+		float sy = 2f / tmb;
+		float sz = -2f / fmn;
+		float tx = -((right+left) / rml);
+		float ty = -((top+bottom) / tmb);
+		float tz = -((zFar+zNear) / fmn);
+
+		for (int i = 0; i < 4; i++)
+		{
+			float c0 = m[i];
+			float c1 = m[i+4];
+			float c2 = m[i+8];
+			m[i]    = c0*sx;
+			m[i+4]  = c1*sy;
+			m[i+8]  = c2*sz;
+			m[i+12] = c0*tx + c1*ty + c2*tz + m[i+12];
+		}
+	}
+
 	// Set aspect ortho.
 	private static void aspectOrthoArray(float[] out, float targetAspect, float left, float right, float bottom, float top, float near, float far)
+	{
+		identityArray(out);
+		multiplyAspectOrthoArray(out, targetAspect, left, right, bottom, top, near, far);
+	}
+
+	// Multiplies an aspect-corrected orthographic projection into a matrix, in place.
+	private static void multiplyAspectOrthoArray(float[] m, float targetAspect, float left, float right, float bottom, float top, float near, float far)
 	{
 		float viewWidth = Math.max(left, right) - Math.min(left, right);
 		float viewHeight = Math.max(bottom, top) - Math.min(bottom, top);
@@ -705,18 +988,136 @@ public class Matrix4F
 			bottom = bottom - heightDiff;
 		}
 		
-		orthoArray(out, left, right, bottom, top, near, far);
+		multiplyOrthoArray(m, left, right, bottom, top, near, far);
+	}
+	
+	// Inverts a matrix by cofactors. The input and output can be the same.
+	private static void invertArray(float[] m, float[] out)
+	{
+		double m0 = m[0],   m1 = m[1],   m2 = m[2],   m3 = m[3];
+		double m4 = m[4],   m5 = m[5],   m6 = m[6],   m7 = m[7];
+		double m8 = m[8],   m9 = m[9],   m10 = m[10], m11 = m[11];
+		double m12 = m[12], m13 = m[13], m14 = m[14], m15 = m[15];
+
+		// 2x2 sub-determinants of the bottom two rows and the top two rows.
+		double s0 = m0*m5 - m4*m1;
+		double s1 = m0*m9 - m8*m1;
+		double s2 = m0*m13 - m12*m1;
+		double s3 = m4*m9 - m8*m5;
+		double s4 = m4*m13 - m12*m5;
+		double s5 = m8*m13 - m12*m9;
+		double c5 = m10*m15 - m14*m11;
+		double c4 = m6*m15 - m14*m7;
+		double c3 = m6*m11 - m10*m7;
+		double c2 = m2*m15 - m14*m3;
+		double c1 = m2*m11 - m10*m3;
+		double c0 = m2*m7 - m6*m3;
+
+		double det = s0*c5 - s1*c4 + s2*c3 + s3*c2 - s4*c1 + s5*c0;
+		if (det == 0.0)
+			throw new ArithmeticException("Matrix is not invertible.");
+		double invDet = 1.0 / det;
+
+		out[0]  = (float)(( m5*c5 - m9*c4 + m13*c3) * invDet);
+		out[1]  = (float)((-m1*c5 + m9*c2 - m13*c1) * invDet);
+		out[2]  = (float)(( m1*c4 - m5*c2 + m13*c0) * invDet);
+		out[3]  = (float)((-m1*c3 + m5*c1 - m9*c0)  * invDet);
+		out[4]  = (float)((-m4*c5 + m8*c4 - m12*c3) * invDet);
+		out[5]  = (float)(( m0*c5 - m8*c2 + m12*c1) * invDet);
+		out[6]  = (float)((-m0*c4 + m4*c2 - m12*c0) * invDet);
+		out[7]  = (float)(( m0*c3 - m4*c1 + m8*c0)  * invDet);
+		out[8]  = (float)(( m7*s5 - m11*s4 + m15*s3) * invDet);
+		out[9]  = (float)((-m3*s5 + m11*s2 - m15*s1) * invDet);
+		out[10] = (float)(( m3*s4 - m7*s2 + m15*s0)  * invDet);
+		out[11] = (float)((-m3*s3 + m7*s1 - m11*s0)  * invDet);
+		out[12] = (float)((-m6*s5 + m10*s4 - m14*s3) * invDet);
+		out[13] = (float)(( m2*s5 - m10*s2 + m14*s1) * invDet);
+		out[14] = (float)((-m2*s4 + m6*s2 - m14*s0)  * invDet);
+		out[15] = (float)(( m2*s3 - m6*s1 + m10*s0)  * invDet);
+	}
+
+	// Inverts a rotation, axis scale, and translation matrix. The input and output can be the same.
+	// The upper 3x3 has orthogonal columns, so its inverse is its transpose with each row divided by that axis' squared length.
+	private static void affineInvertArray(float[] m, float[] out)
+	{
+		float lx = m[0]*m[0] + m[1]*m[1] + m[2]*m[2];
+		float ly = m[4]*m[4] + m[5]*m[5] + m[6]*m[6];
+		float lz = m[8]*m[8] + m[9]*m[9] + m[10]*m[10];
+		if (lx == 0f || ly == 0f || lz == 0f)
+			throw new ArithmeticException("Matrix is not invertible.");
+		lx = 1f / lx;
+		ly = 1f / ly;
+		lz = 1f / lz;
+
+		float r0 = m[0]*lx, r4 = m[1]*lx, r8 = m[2]*lx;
+		float r1 = m[4]*ly, r5 = m[5]*ly, r9 = m[6]*ly;
+		float r2 = m[8]*lz, r6 = m[9]*lz, r10 = m[10]*lz;
+		float tx = m[12], ty = m[13], tz = m[14];
+
+		out[0] = r0;  out[1] = r1;  out[2] = r2;   out[3] = 0f;
+		out[4] = r4;  out[5] = r5;  out[6] = r6;   out[7] = 0f;
+		out[8] = r8;  out[9] = r9;  out[10] = r10; out[11] = 0f;
+		out[12] = -(r0*tx + r4*ty + r8*tz);
+		out[13] = -(r1*tx + r5*ty + r9*tz);
+		out[14] = -(r2*tx + r6*ty + r10*tz);
+		out[15] = 1f;
+	}
+
+	// Transposes a matrix. The input and output can be the same.
+	private static void transposeArray(float[] m, float[] out)
+	{
+		float t;
+		out[0] = m[0];
+		out[5] = m[5];
+		out[10] = m[10];
+		out[15] = m[15];
+		t = m[1];  out[1] = m[4];   out[4] = t;
+		t = m[2];  out[2] = m[8];   out[8] = t;
+		t = m[3];  out[3] = m[12];  out[12] = t;
+		t = m[6];  out[6] = m[9];   out[9] = t;
+		t = m[7];  out[7] = m[13];  out[13] = t;
+		t = m[11]; out[11] = m[14]; out[14] = t;
+	}
+
+	// Multiplies two matrices, a = a x b. The multiplicand is read up front, so a and b can be the same.
+	private static void multiplyRightArray(float[] a, float[] b)
+	{
+		float b0 = b[0],   b1 = b[1],   b2 = b[2],   b3 = b[3];
+		float b4 = b[4],   b5 = b[5],   b6 = b[6],   b7 = b[7];
+		float b8 = b[8],   b9 = b[9],   b10 = b[10], b11 = b[11];
+		float b12 = b[12], b13 = b[13], b14 = b[14], b15 = b[15];
+		// Each row of the result only depends on the same row of a.
+		for (int i = 0; i < 4; i++)
+		{
+			float r0 = a[i];
+			float r1 = a[i+4];
+			float r2 = a[i+8];
+			float r3 = a[i+12];
+			a[i]    = r0*b0  + r1*b1  + r2*b2  + r3*b3;
+			a[i+4]  = r0*b4  + r1*b5  + r2*b6  + r3*b7;
+			a[i+8]  = r0*b8  + r1*b9  + r2*b10 + r3*b11;
+			a[i+12] = r0*b12 + r1*b13 + r2*b14 + r3*b15;
+		}
 	}
 	
-	// Multiplies two matrices.
-	private static void multiplyArray(float[] a, float[] b, float[] out)
+	// Multiplies two matrices, b = a x b. The multiplier is read up front, so a and b can be the same.
+	private static void multiplyLeftArray(float[] a, float[] b)
 	{
-		for(int i = 0; i < 4; i++)
+		float a0 = a[0],   a1 = a[1],   a2 = a[2],   a3 = a[3];
+		float a4 = a[4],   a5 = a[5],   a6 = a[6],   a7 = a[7];
+		float a8 = a[8],   a9 = a[9],   a10 = a[10], a11 = a[11];
+		float a12 = a[12], a13 = a[13], a14 = a[14], a15 = a[15];
+		// Each column of the result only depends on the same column of b.
+		for (int j = 0; j < 16; j += 4)
 		{
-			out[i]    = a[i]*b[0]  + a[i+4]*b[1]  + a[i+8]*b[2]  + a[i+12]*b[3];
-			out[i+4]  = a[i]*b[4]  + a[i+4]*b[5]  + a[i+8]*b[6]  + a[i+12]*b[7];
-			out[i+8]  = a[i]*b[8]  + a[i+4]*b[9]  + a[i+8]*b[10] + a[i+12]*b[11];
-			out[i+12] = a[i]*b[12] + a[i+4]*b[13] + a[i+8]*b[14] + a[i+12]*b[15];
+			float c0 = b[j];
+			float c1 = b[j+1];
+			float c2 = b[j+2];
+			float c3 = b[j+3];
+			b[j]   = a0*c0 + a4*c1 + a8*c2  + a12*c3;
+			b[j+1] = a1*c0 + a5*c1 + a9*c2  + a13*c3;
+			b[j+2] = a2*c0 + a6*c1 + a10*c2 + a14*c3;
+			b[j+3] = a3*c0 + a7*c1 + a11*c2 + a15*c3;
 		}
 	}
 	
@@ -769,19 +1170,4 @@ public class Matrix4F
 		return v1x * v2x + v1y * v2y + v1z * v2z;
 	}
 
-	private static class Cache
-	{
-		private static final ThreadLocal<Cache> LOCAL = ThreadLocal.withInitial(()->new Cache());
-		
-		private float[] scratchA;
-		private float[] scratchB;
-
-		private Cache()
-		{
-			scratchA = new float[16];
-			scratchB = new float[16];
-		}
-		
-	}
-	
 }
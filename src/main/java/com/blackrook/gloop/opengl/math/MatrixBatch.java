@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * A batch of 4x4 float matrices, stored back-to-back in a single float array,
+ * so that operations on many matrices are simple loops over one flat array instead of over separate objects,
+ * and the whole batch can be copied into a buffer in one go.
+ * <p>
+ * Each matrix is 16 floats in column-major order, like {@link Matrix4F}. The value of cell <code>c</code>
+ * of matrix <code>i</code> is at <code>getArray()[i * 16 + c]</code>.
+ * <p>
+ * Operations over more matrices than the parallel threshold (see {@link #setParallelThreshold(int)})
+ * are split into blocks and run on the common fork-join pool.
+ * <p>
+ * This class is not thread-safe, but separate ranges of matrices may be written from separate threads.
+ * @author Matthew Tropiano
+ */
+public class MatrixBatch
+{
+	/** Default amount of matrices for splitting operations across threads. */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
+
+	/** Amount of matrices processed together in a single block. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/** Matrix cells, 16 per matrix. */
+	private float[] data;
+	/** Amount of matrices. */
+	private int capacity;
+	/** Amount of matrices before splitting operations. */
+	private int parallelThreshold;
+
+	/**
+	 * Constructs a new batch of matrices, all set to zero.
+	 * @param capacity the amount of matrices.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 */
+	public MatrixBatch(int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be 1 or greater.");
+		this.data = new float[capacity * 16];
+		this.capacity = capacity;
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	}
+
+	/**
+	 * @return the amount of matrices in this batch.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return a reference to the float array that makes up this batch (see class description for layout).
+	 */
+	public float[] getArray()
+	{
+		return data;
+	}
+
+	/**
+	 * @return the amount of matrices that an operation needs before it is split across threads, or 0 for never.
+	 */
+	public int getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the amount of matrices that an operation needs before it is split across threads.
+	 * @param parallelThreshold the threshold, or 0 to never split operations.
+	 * @throws IllegalArgumentException if parallelThreshold is less than 0.
+	 */
+	public void setParallelThreshold(int parallelThreshold)
+	{
+		if (parallelThreshold < 0)
+			throw new IllegalArgumentException("Threshold cannot be less than 0.");
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Sets one matrix in this batch.
+	 * @param index the matrix index.
+	 * @param matrix the source matrix.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public void set(int index, Matrix4F matrix)
+	{
+		checkRange(index, 1);
+		System.arraycopy(matrix.getArray(), 0, data, index * 16, 16);
+	}
+
+	/**
+	 * Gets one matrix in this batch.
+	 * @param index the matrix index.
+	 * @param out the output matrix.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public void get(int index, Matrix4F out)
+	{
+		checkRange(index, 1);
+		System.arraycopy(data, index * 16, out.getArray(), 0, 16);
+	}
+
+	/**
+	 * Sets a run of matrices to the identity matrix.
+	 * @param start the index of the first matrix.
+	 * @param count the amount of matrices.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public void setIdentity(int start, int count)
+	{
+		checkRange(start, count);
+		for (int i = start * 16, end = (start + count) * 16; i < end; i += 16)
+			System.arraycopy(Matrix4F.IDENTITY, 0, data, i, 16);
+	}
+
+	/**
+	 * Sets a run of matrices to translation, rotation, and scale transforms,
+	 * equivalent to <code>translate x rotate x scale</code> for each matrix.
+	 * @param start the index of the first matrix.
+	 * @param count the amount of matrices.
+	 * @param translations the translations, 3 floats (x, y, z) per matrix, starting at 0.
+	 * @param rotations the rotations as unit quaternions, 4 floats (x, y, z, w) per matrix, starting at 0.
+	 * @param scales the scales, 3 floats (x, y, z) per matrix, starting at 0, or null for no scaling.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds, or the source arrays are too small.
+	 */
+	public void setTRS(int start, int count, float[] translations, float[] rotations, float[] scales)
+	{
+		checkRange(start, count);
+		run(start, count, (blockStart, blockCount) -> trsBlock(blockStart, blockCount, start, translations, rotations, scales));
+	}
+
+	/**
+	 * Multiplies two runs of matrices, per matrix, and stores the results in this batch.
+	 * <pre>this[start + i] = a[aStart + i] x b[bStart + i]</pre>
+	 * The source batches can be this batch, as long as each source range is either the same as or does not overlap the output range.
+	 * @param a the multiplier batch.
+	 * @param aStart the index of the first matrix in the multiplier batch.
+	 * @param b the multiplicand batch.
+	 * @param bStart the index of the first matrix in the multiplicand batch.
+	 * @param start the index of the first matrix in this batch.
+	 * @param count the amount of matrices.
+	 * @throws IndexOutOfBoundsException if a range is out of bounds.
+	 */
+	public void multiply(MatrixBatch a, int aStart, MatrixBatch b, int bStart, int start, int count)
+	{
+		a.checkRange(aStart, count);
+		b.checkRange(bStart, count);
+		checkRange(start, count);
+		run(start, count, (blockStart, blockCount) ->
+		{
+			int offset = blockStart - start;
+			multiplyBlock(a.data, (aStart + offset) * 16, b.data, (bStart + offset) * 16, data, blockStart * 16, blockCount);
+		});
+	}
+
+	/**
+	 * Multiplies a single matrix by a run of matrices in this batch, in place.
+	 * Useful for applying a parent or view transform to many model matrices.
+	 * <pre>this[start + i] = matrix x this[start + i]</pre>
+	 * @param matrix the multiplier matrix.
+	 * @param start the index of the first matrix.
+	 * @param count the amount of matrices.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public void multiplyLeft(Matrix4F matrix, int start, int count)
+	{
+		checkRange(start, count);
+		float[] m = matrix.getArray().clone();
+		run(start, count, (blockStart, blockCount) -> multiplyLeftBlock(m, blockStart, blockCount));
+	}
+
+	/**
+	 * Multiplies a run of matrices in this batch by a single matrix, in place.
+	 * Useful for applying a local offset to many matrices.
+	 * <pre>this[start + i] = this[start + i] x matrix</pre>
+	 * @param matrix the multiplicand matrix.
+	 * @param start the index of the first matrix.
+	 * @param count the amount of matrices.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 */
+	public void multiplyRight(Matrix4F matrix, int start, int count)
+	{
+		checkRange(start, count);
+		float[] m = matrix.getArray().clone();
+		run(start, count, (blockStart, blockCount) -> multiplyRightBlock(m, blockStart, blockCount));
+	}
+
+	/**
+	 * Writes a run of matrices into a float buffer, 16 floats per matrix in column-major order,
+	 * such as for uploading a uniform array. The buffer's position is advanced past the written floats.
+	 * @param start the index of the first matrix.
+	 * @param count the amount of matrices.
+	 * @param out the output buffer.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds.
+	 * @throws BufferOverflowException if the buffer does not have enough room.
+	 */
+	public void getFloats(int start, int count, FloatBuffer out)
+	{
+		checkRange(start, count);
+		out.put(data, start * 16, count * 16);
+	}
+
+	/**
+	 * Writes a run of matrices into a byte buffer of interleaved data, 16 floats per matrix in column-major order,
+	 * such as the transforms in a buffer of per-instance attributes. The buffer's position is not changed.
+	 * @param start the index of the first matrix.
+	 * @param count the amount of matrices.
+	 * @param out the output buffer (must be in native byte order for OpenGL to read it).
+	 * @param offset the byte offset of the first matrix.
+	 * @param stride the distance in bytes between each matrix.
+	 * @throws IndexOutOfBoundsException if the range is out of bounds, or the output buffer is too small.
+	 */
+	public void put(int start, int count, ByteBuffer out, int offset, int stride)
+	{
+		checkRange(start, count);
+		run(start, count, (blockStart, blockCount) ->
+		{
+			int o = offset + (blockStart - start) * stride;
+			for (int i = blockStart * 16, end = (blockStart + blockCount) * 16; i < end; i += 16, o += stride)
+				for (int c = 0; c < 16; c++)
+					out.putFloat(o + c * 4, data[i + c]);
+		});
+	}
+
+	// Runs an operation on a range, split into blocks, in parallel if past the threshold.
+	private void run(int start, int count, BlockOperation operation)
+	{
+		if (parallelThreshold > 0 && count >= parallelThreshold)
+		{
+			int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			IntStream.range(0, blocks).parallel().forEach((block) ->
+			{
+				int blockStart = start + block * BLOCK_SIZE;
+				operation.accept(blockStart, Math.min(BLOCK_SIZE, start + count - blockStart));
+			});
+		}
+		else
+		{
+			for (int blockStart = start; blockStart < start + count; blockStart += BLOCK_SIZE)
+				operation.accept(blockStart, Math.min(BLOCK_SIZE, start + count - blockStart));
+		}
+	}
+
+	// Composes translate x rotate x scale for a block.
+	private void trsBlock(int blockStart, int blockCount, int start, float[] translations, float[] rotations, float[] scales)
+	{
+		for (int i = 0; i < blockCount; i++)
+		{
+			int o = (blockStart + i) * 16;
+			int src = blockStart + i - start;
+			float qx = rotations[src * 4];
+			float qy = rotations[src * 4 + 1];
+			float qz = rotations[src * 4 + 2];
+			float qw = rotations[src * 4 + 3];
+			float sx = 1f, sy = 1f, sz = 1f;
+			if (scales != null)
+			{
+				sx = scales[src * 3];
+				sy = scales[src * 3 + 1];
+				sz = scales[src * 3 + 2];
+			}
+
+			float xx = qx * qx, yy = qy * qy, zz = qz * qz;
+			float xy = qx * qy, xz = qx * qz, yz = qy * qz;
+			float wx = qw * qx, wy = qw * qy, wz = qw * qz;
+
+			data[o]      = (1f - 2f * (yy + zz)) * sx;
+			data[o + 1]  = 2f * (xy + wz) * sx;
+			data[o + 2]  = 2f * (xz - wy) * sx;
+			data[o + 3]  = 0f;
+			data[o + 4]  = 2f * (xy - wz) * sy;
+			data[o + 5]  = (1f - 2f * (xx + zz)) * sy;
+			data[o + 6]  = 2f * (yz + wx) * sy;
+			data[o + 7]  = 0f;
+			data[o + 8]  = 2f * (xz + wy) * sz;
+			data[o + 9]  = 2f * (yz - wx) * sz;
+			data[o + 10] = (1f - 2f * (xx + yy)) * sz;
+			data[o + 11] = 0f;
+			data[o + 12] = translations[src * 3];
+			data[o + 13] = translations[src * 3 + 1];
+			data[o + 14] = translations[src * 3 + 2];
+			data[o + 15] = 1f;
+		}
+	}
+
+	// Multiplies a single matrix by a block of this batch, in place. Each column only depends on the same column.
+	private void multiplyLeftBlock(float[] m, int blockStart, int blockCount)
+	{
+		float m0 = m[0],   m1 = m[1],   m2 = m[2],   m3 = m[3];
+		float m4 = m[4],   m5 = m[5],   m6 = m[6],   m7 = m[7];
+		float m8 = m[8],   m9 = m[9],   m10 = m[10], m11 = m[11];
+		float m12 = m[12], m13 = m[13], m14 = m[14], m15 = m[15];
+		for (int j = blockStart * 16, end = (blockStart + blockCount) * 16; j < end; j += 4)
+		{
+			float c0 = data[j];
+			float c1 = data[j+1];
+			float c2 = data[j+2];
+			float c3 = data[j+3];
+			data[j]   = m0*c0 + m4*c1 + m8*c2  + m12*c3;
+			data[j+1] = m1*c0 + m5*c1 + m9*c2  + m13*c3;
+			data[j+2] = m2*c0 + m6*c1 + m10*c2 + m14*c3;
+			data[j+3] = m3*c0 + m7*c1 + m11*c2 + m15*c3;
+		}
+	}
+
+	// Multiplies a block of this batch by a single matrix, in place. Each row only depends on the same row.
+	private void multiplyRightBlock(float[] m, int blockStart, int blockCount)
+	{
+		float m0 = m[0],   m1 = m[1],   m2 = m[2],   m3 = m[3];
+		float m4 = m[4],   m5 = m[5],   m6 = m[6],   m7 = m[7];
+		float m8 = m[8],   m9 = m[9],   m10 = m[10], m11 = m[11];
+		float m12 = m[12], m13 = m[13], m14 = m[14], m15 = m[15];
+		for (int o = blockStart * 16, end = (blockStart + blockCount) * 16; o < end; o += 16)
+		{
+			for (int i = o; i < o + 4; i++)
+			{
+				float r0 = data[i];
+				float r1 = data[i+4];
+				float r2 = data[i+8];
+				float r3 = data[i+12];
+				data[i]    = r0*m0  + r1*m1  + r2*m2  + r3*m3;
+				data[i+4]  = r0*m4  + r1*m5  + r2*m6  + r3*m7;
+				data[i+8]  = r0*m8  + r1*m9  + r2*m10 + r3*m11;
+				data[i+12] = r0*m12 + r1*m13 + r2*m14 + r3*m15;
+			}
+		}
+	}
+
+	// Multiplies a block of matrices, out = a x b, per matrix.
+	// The multiplier is held in locals and the result is written a column at a time, so out can be the same as a or b.
+	private static void multiplyBlock(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int count)
+	{
+		for (int n = 0; n < count; n++, aOffset += 16, bOffset += 16, outOffset += 16)
+		{
+			float a0 = a[aOffset],      a1 = a[aOffset + 1],   a2 = a[aOffset + 2],   a3 = a[aOffset + 3];
+			float a4 = a[aOffset + 4],  a5 = a[aOffset + 5],   a6 = a[aOffset + 6],   a7 = a[aOffset + 7];
+			float a8 = a[aOffset + 8],  a9 = a[aOffset + 9],   a10 = a[aOffset + 10], a11 = a[aOffset + 11];
+			float a12 = a[aOffset + 12], a13 = a[aOffset + 13], a14 = a[aOffset + 14], a15 = a[aOffset + 15];
+			for (int j = 0; j < 16; j += 4)
+			{
+				float c0 = b[bOffset + j];
+				float c1 = b[bOffset + j + 1];
+				float c2 = b[bOffset + j + 2];
+				float c3 = b[bOffset + j + 3];
+				out[outOffset + j]     = a0*c0 + a4*c1 + a8*c2  + a12*c3;
+				out[outOffset + j + 1] = a1*c0 + a5*c1 + a9*c2  + a13*c3;
+				out[outOffset + j + 2] = a2*c0 + a6*c1 + a10*c2 + a14*c3;
+				out[outOffset + j + 3] = a3*c0 + a7*c1 + a11*c2 + a15*c3;
+			}
+		}
+	}
+
+	// Exception if a range is out of bounds.
+	private void checkRange(int start, int count)
+	{
+		if (start < 0 || count < 0 || start + count > capacity)
+			throw new IndexOutOfBoundsException("Matrix range [" + start + ", " + (start + count) + ") is out of range: [0, " + capacity + ")");
+	}
+
+	/**
+	 * An operation on a block of matrices.
+	 */
+	@FunctionalInterface
+	private interface BlockOperation
+	{
+		void accept(int blockStart, int blockCount);
+	}
+
+}
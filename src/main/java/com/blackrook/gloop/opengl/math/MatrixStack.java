@@ -7,18 +7,47 @@
  ******************************************************************************/
 package com.blackrook.gloop.opengl.math;
 
+import java.util.Arrays;
+
 /**
  * A matrix stack for the core implementations.
+ * <p>
+ * Pushing does not copy anything: pushed levels share the topmost matrix until it is first changed,
+ * and only then is it saved into a flat array of the levels below. Popping a level that was not changed
+ * does not copy anything, either.
+ * <p>
+ * The stack also keeps a version for the topmost matrix's values (see {@link #getVersion()}),
+ * so that matrices made from it only need to be made again when it changes.
+ * <p>
+ * The matrix returned by {@link #peek()} and the other methods is the topmost matrix itself, and it may
+ * be changed directly: the version is checked against the values, and a pushed level that is changed
+ * this way is saved from the values it had when pushed.
  * @author Matthew Tropiano
  */
 public class MatrixStack
 {
-	private static final ThreadLocal<Matrix4F> MATRIX = ThreadLocal.withInitial(()->new Matrix4F());
-
-	/** The stack. */
-	private Matrix4F[] stack;
-	/** The top index. */
-	private int top;
+	/** Saved matrices, column-major, 16 floats each. */
+	private float[] saved;
+	/** Amount of stack levels that each saved matrix fills. */
+	private int[] savedLevels;
+	/** Version of each saved matrix. */
+	private long[] savedVersions;
+	/** Amount of saved matrices. */
+	private int savedCount;
+	/** Amount of stack levels filled by the saved matrices. */
+	private int savedDepth;
+	/** The topmost matrix. */
+	private Matrix4F top;
+	/** Amount of stack levels that the topmost matrix fills (more than one if pushed and not changed since). */
+	private int topLevels;
+	/** The maximum amount of levels. */
+	private int depth;
+	/** Version of the topmost matrix's values. */
+	private long version;
+	/** The topmost matrix's values as of its version (and when pushed, while shared with pushed levels). */
+	private float[] versioned;
+	/** Last version given out. */
+	private long lastVersion;
 	
 	/**
 	 * Creates a new matrix stack.
@@ -27,24 +56,33 @@ public class MatrixStack
 	 */
 	public MatrixStack(int depth)
 	{
-		this.top = 0;
-		this.stack = new Matrix4F[depth];
-		for (int i = 0; i < this.stack.length; i++)
-			this.stack[i] = new Matrix4F();
-		identity();
+		this.saved = new float[depth * 16];
+		this.savedLevels = new int[depth];
+		this.savedVersions = new long[depth];
+		this.savedCount = 0;
+		this.savedDepth = 0;
+		this.top = new Matrix4F();
+		this.topLevels = 1;
+		this.depth = depth;
+		this.version = 0L;
+		this.lastVersion = 0L;
+		this.top.setIdentity();
+		this.versioned = Arrays.copyOf(top.getArray(), 16);
 	}
 	
 	/**
 	 * Pushes a copy of the topmost matrix onto the stack.
+	 * The copy is not made until the topmost matrix is changed.
 	 * @return the topmost matrix.
 	 * @throws ArrayIndexOutOfBoundsException if there's no more room to push a new matrix.
 	 */
 	public Matrix4F push()
 	{
-		// If an exception occurs, top is not incremented.
-		stack[top + 1].set(stack[top]);
-		top++;
-		return stack[top];
+		if (savedDepth + topLevels >= depth)
+			throw new ArrayIndexOutOfBoundsException("Matrix stack overflow.");
+		getVersion();
+		topLevels++;
+		return top;
 	}
 	
 	/**
@@ -54,10 +92,25 @@ public class MatrixStack
 	 */
 	public Matrix4F pop()
 	{
-		// If an exception occurs, top is not decremented.
-		Matrix4F out = stack[top - 1];
-		top--;
-		return out;
+		if (topLevels > 1)
+		{
+			// Not changed by this stack since the push, but maybe directly.
+			if (!Arrays.equals(top.getArray(), versioned))
+				System.arraycopy(versioned, 0, top.getArray(), 0, 16);
+			topLevels--;
+		}
+		else
+		{
+			if (savedCount == 0)
+				throw new ArrayIndexOutOfBoundsException("Matrix stack underflow.");
+			savedCount--;
+			System.arraycopy(saved, savedCount * 16, top.getArray(), 0, 16);
+			System.arraycopy(saved, savedCount * 16, versioned, 0, 16);
+			topLevels = savedLevels[savedCount];
+			savedDepth -= topLevels;
+			version = savedVersions[savedCount];
+		}
+		return top;
 	}
 	
 	/**
@@ -65,7 +118,62 @@ public class MatrixStack
 	 */
 	public Matrix4F peek()
 	{
-		return stack[top];
+		return top;
+	}
+	
+	/**
+	 * Copies the topmost matrix into another matrix.
+	 * @param out the output matrix.
+	 */
+	public void get(Matrix4F out)
+	{
+		top.copyTo(out);
+	}
+	
+	/**
+	 * Copies the topmost matrix's values into an array, in column-major order.
+	 * @param out the output array.
+	 * @throws ArrayIndexOutOfBoundsException if <code>out.length &lt; 16</code>.
+	 */
+	public void get(float[] out)
+	{
+		top.getFloats(out);
+	}
+	
+	/**
+	 * Multiplies a matrix with the topmost matrix, without changing this stack.
+	 * <pre>matrix x top</pre>
+	 * @param matrix the matrix to multiply, which is set to the product.
+	 */
+	public void multiplyInto(Matrix4F matrix)
+	{
+		matrix.multiplyRight(top);
+	}
+	
+	/**
+	 * @return the amount of levels on this stack (starts at 1).
+	 */
+	public int getLevels()
+	{
+		return savedDepth + topLevels;
+	}
+	
+	/**
+	 * Gets the version of the topmost matrix's values.
+	 * This changes whenever the topmost matrix changes, and is restored when popping back to a previous matrix,
+	 * so if two calls return the same version, the topmost matrix has the same values.
+	 * @return the version.
+	 */
+	public long getVersion()
+	{
+		if (!Arrays.equals(top.getArray(), versioned))
+		{
+			// Changed since the version was last read, through this stack or directly.
+			unshare();
+			version = ++lastVersion;
+			System.arraycopy(top.getArray(), 0, versioned, 0, 16);
+		}
+		return version;
 	}
 	
 	/**
@@ -75,8 +183,9 @@ public class MatrixStack
 	 */
 	public Matrix4F set(float[] values)
 	{
-		peek().set(values);
-		return peek();
+		Matrix4F out = write();
+		out.set(values);
+		return out;
 	}
 	
 	/**
@@ -86,8 +195,9 @@ public class MatrixStack
 	 */
 	public Matrix4F set(Matrix4F matrix)
 	{
-		peek().set(matrix);
-		return peek();
+		Matrix4F out = write();
+		out.set(matrix);
+		return out;
 	}
 	
 	/**
@@ -96,8 +206,9 @@ public class MatrixStack
 	 */
 	public Matrix4F identity()
 	{
-		peek().setIdentity();
-		return peek();
+		Matrix4F out = write();
+		out.setIdentity();
+		return out;
 	}
 	
 	/**
@@ -107,10 +218,9 @@ public class MatrixStack
 	 */
 	public Matrix4F multiply(float[] values)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.set(values);
-		peek().multiplyRight(matrix);
-		return peek();
+		Matrix4F out = write();
+		out.multiplyRight(values);
+		return out;
 	}
 	
 	/**
@@ -120,8 +230,9 @@ public class MatrixStack
 	 */
 	public Matrix4F multiply(Matrix4F matrix)
 	{
-		peek().multiplyRight(matrix);
-		return peek();
+		Matrix4F out = write();
+		out.multiplyRight(matrix);
+		return out;
 	}
 	
 	/**
@@ -134,9 +245,7 @@ public class MatrixStack
 	 */
 	public Matrix4F translate(float x, float y, float z)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setTranslation(x, y, z);
-		return multiply(matrix);
+		return write().translate(x, y, z);
 	}
 
 	/**
@@ -147,9 +256,7 @@ public class MatrixStack
 	 */
 	public Matrix4F rotateX(float degrees)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setRotateX(degrees);
-		return multiply(matrix);
+		return write().rotateX(degrees);
 	}
 
 	/**
@@ -160,9 +267,7 @@ public class MatrixStack
 	 */
 	public Matrix4F rotateY(float degrees)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setRotateY(degrees);
-		return multiply(matrix);
+		return write().rotateY(degrees);
 	}
 
 	/**
@@ -173,9 +278,7 @@ public class MatrixStack
 	 */
 	public Matrix4F rotateZ(float degrees)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setRotateZ(degrees);
-		return multiply(matrix);
+		return write().rotateZ(degrees);
 	}
 
 	/**
@@ -189,9 +292,7 @@ public class MatrixStack
 	 */
 	public Matrix4F scale(float x, float y, float z)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setScale(x, y, z);
-		return multiply(matrix);
+		return write().scale(x, y, z);
 	}
 
 	/**
@@ -205,9 +306,7 @@ public class MatrixStack
 	 */
 	public Matrix4F perspective(float fov, float aspect, float near, float far)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setPerspective(fov, aspect, near, far);
-		return multiply(matrix);
+		return write().perspective(fov, aspect, near, far);
 	}
 
 	/**
@@ -223,9 +322,7 @@ public class MatrixStack
 	 */
 	public Matrix4F frustum(float left, float right, float bottom, float top, float near, float far)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setFrustum(left, right, bottom, top, near, far);
-		return multiply(matrix);
+		return write().frustum(left, right, bottom, top, near, far);
 	}
 
 	/**
@@ -241,9 +338,7 @@ public class MatrixStack
 	 */
 	public Matrix4F ortho(float left, float right, float bottom, float top, float near, float far)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setOrtho(left, right, bottom, top, near, far);
-		return multiply(matrix);
+		return write().ortho(left, right, bottom, top, near, far);
 	}
 
 	/**
@@ -260,9 +355,7 @@ public class MatrixStack
 	 */
 	public Matrix4F aspectOrtho(float targetAspect, float left, float right, float bottom, float top, float near, float far)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setAspectOrtho(targetAspect, left, right, bottom, top, near, far);
-		return multiply(matrix);
+		return write().aspectOrtho(targetAspect, left, right, bottom, top, near, far);
 	}
 
 	/**
@@ -281,9 +374,30 @@ public class MatrixStack
 	 */
 	public Matrix4F lookAt(float eyeX, float eyeY, float eyeZ, float centerX, float centerY, float centerZ, float upX, float upY, float upZ)
 	{
-		Matrix4F matrix = MATRIX.get();
-		matrix.setLookAt(eyeX, eyeY, eyeZ, centerX, centerY, centerZ, upX, upY, upZ);
-		return multiply(matrix);
+		return write().lookAt(eyeX, eyeY, eyeZ, centerX, centerY, centerZ, upX, upY, upZ);
+	}
+
+	// Saves the topmost matrix if it is shared with pushed levels, before changing it.
+	// The changed values get a new version when the version is next read.
+	private Matrix4F write()
+	{
+		unshare();
+		return top;
+	}
+
+	// Saves the pushed levels' values if they share the topmost matrix.
+	// While shared, the versioned values are the values when pushed, even if the topmost matrix was changed directly.
+	private void unshare()
+	{
+		if (topLevels > 1)
+		{
+			System.arraycopy(versioned, 0, saved, savedCount * 16, 16);
+			savedLevels[savedCount] = topLevels - 1;
+			savedVersions[savedCount] = version;
+			savedDepth += topLevels - 1;
+			savedCount++;
+			topLevels = 1;
+		}
 	}
 
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.node;
+
+import com.blackrook.gloop.opengl.OGLGraphics;
+import com.blackrook.gloop.opengl.math.Frustum;
+import com.blackrook.gloop.opengl.math.Matrix4F;
+
+/**
+ * A framebuffer node that culls a set of objects against the view frustum before drawing them.
+ * <p>
+ * On each display, the node fetches the current projection x view matrix via {@link #getViewProjection(OGLGraphics, Matrix4F)},
+ * sets its {@link Frustum} from it, has the subclass test its bounds via {@link #cull(Frustum, long[])}
+ * (usually one call to {@link Frustum#cullSpheres(float[], float[], float[], float[], int, int, long[])} or
+ * {@link Frustum#cullBoxes(float[], float[], float[], float[], float[], float[], int, int, long[])}),
+ * and then draws the visible objects via {@link #doCulledDisplay(OGLGraphics, long[], int)}.
+ * @author Matthew Tropiano
+ * @param <GL> the graphics object to call.
+ */
+public abstract class OGLCullingNode<GL extends OGLGraphics> implements OGLNode<GL>
+{
+	/** The view frustum. */
+	private Frustum frustum;
+	/** The combined projection x view matrix. */
+	private Matrix4F viewProjection;
+	/** The visibility bitset. */
+	private long[] visibility;
+	/** Amount of objects that were visible on the last display. */
+	private int visibleCount;
+	/** Time that culling took on the last display. */
+	private long cullTimeNanos;
+	/** Time that the full display took on the last display. */
+	private long renderTimeNanos;
+
+	/**
+	 * Creates a new culling node.
+	 * @param capacity the starting amount of objects that the visibility bitset holds.
+	 */
+	public OGLCullingNode(int capacity)
+	{
+		this.frustum = new Frustum();
+		this.viewProjection = new Matrix4F();
+		this.visibility = Frustum.createVisibilitySet(capacity);
+		this.visibleCount = 0;
+		this.cullTimeNanos = 0L;
+		this.renderTimeNanos = 0L;
+	}
+
+	@Override
+	public final void onDisplay(GL gl)
+	{
+		long startNanos = System.nanoTime();
+		int count = getObjectCount();
+		if (visibility.length < (count + 63) >> 6)
+			visibility = Frustum.createVisibilitySet(Math.max(count, visibility.length * 128));
+		getViewProjection(gl, viewProjection);
+		frustum.set(viewProjection);
+		visibleCount = cull(frustum, visibility);
+		cullTimeNanos = System.nanoTime() - startNanos;
+		doCulledDisplay(gl, visibility, visibleCount);
+		renderTimeNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * @return the frustum used for culling, as set on the last display.
+	 */
+	public Frustum getFrustum()
+	{
+		return frustum;
+	}
+
+	/**
+	 * @return the amount of objects that were visible on the last display.
+	 */
+	public int getVisibleCount()
+	{
+		return visibleCount;
+	}
+
+	/**
+	 * @return the length of time it took to cull on the last display, in nanoseconds.
+	 */
+	public long getCullTimeNanos()
+	{
+		return cullTimeNanos;
+	}
+
+	@Override
+	public long getRenderTimeNanos()
+	{
+		return renderTimeNanos;
+	}
+
+	/**
+	 * @return the amount of objects to cull. The visibility bitset is grown to fit it, if needed.
+	 */
+	public abstract int getObjectCount();
+
+	/**
+	 * Called by {@link #onDisplay(OGLGraphics)} to get the combined projection x view matrix to cull with.
+	 * @param gl the OGLGraphics context.
+	 * @param out the output matrix.
+	 */
+	public abstract void getViewProjection(GL gl, Matrix4F out);
+
+	/**
+	 * Called by {@link #onDisplay(OGLGraphics)} to test the objects' bounds against the frustum.
+	 * This may be called outside of the graphics thread, but is called on it by this node.
+	 * @param frustum the frustum to test against.
+	 * @param visibility the output visibility bitset, with at least one bit per object.
+	 * @return the amount of visible objects.
+	 */
+	public abstract int cull(Frustum frustum, long[] visibility);
+
+	/**
+	 * Called by {@link #onDisplay(OGLGraphics)} after culling to draw the visible objects.
+	 * @param gl the OGLGraphics context.
+	 * @param visibility the visibility bitset (see {@link Frustum#isVisible(long[], int)}).
+	 * @param visibleCount the amount of visible objects.
+	 */
+	public abstract void doCulledDisplay(GL gl, long[] visibility, int visibleCount);
+
+}
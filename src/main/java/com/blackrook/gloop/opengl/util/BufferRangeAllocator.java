@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An allocator for carving ranges out of a larger linear space, like a large buffer.
+ * Uses a best-fit free list with immediate coalescing of adjacent free ranges.
+ * <p> This class only does bookkeeping - it does not touch any OpenGL state, and can be used
+ * outside of the graphics thread (but it is not thread-safe).
+ * @author Matthew Tropiano
+ */
+public class BufferRangeAllocator
+{
+	/**
+	 * An allocated range.
+	 */
+	public static class Range
+	{
+		private long offset;
+		private long size;
+		private boolean allocated;
+
+		private Range(long offset, long size)
+		{
+			this.offset = offset;
+			this.size = size;
+			this.allocated = true;
+		}
+
+		/**
+		 * @return the starting offset of this range.
+		 */
+		public long getOffset()
+		{
+			return offset;
+		}
+
+		/**
+		 * @return the length of this range.
+		 */
+		public long getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * @return true if this range is still allocated, false if it was freed.
+		 */
+		public boolean isAllocated()
+		{
+			return allocated;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Range[offset=" + offset + ", size=" + size + "]";
+		}
+	}
+
+	/**
+	 * A listener for range moves during compaction.
+	 */
+	@FunctionalInterface
+	public interface MoveListener
+	{
+		/**
+		 * Called when a range is moved.
+		 * @param sourceOffset the previous offset.
+		 * @param targetOffset the new offset.
+		 * @param size the size of the range.
+		 */
+		void onMove(long sourceOffset, long targetOffset, long size);
+	}
+
+	/** Total capacity. */
+	private long capacity;
+	/** Range alignment. */
+	private long alignment;
+	/** Amount used. */
+	private long used;
+	/** Allocated ranges by offset. */
+	private TreeMap<Long, Range> allocatedByOffset;
+	/** Free blocks by offset (offset to size). */
+	private TreeMap<Long, Long> freeByOffset;
+	/** Free blocks by size, then offset (pairs of [size, offset]). */
+	private TreeSet<long[]> freeBySize;
+
+	/**
+	 * Creates a new allocator.
+	 * @param capacity the total capacity.
+	 * @param alignment the alignment of all ranges. All offsets and sizes will be multiples of this.
+	 * @throws IllegalArgumentException if capacity is negative, alignment is less than 1, or capacity is not a multiple of the alignment.
+	 */
+	public BufferRangeAllocator(long capacity, long alignment)
+	{
+		if (capacity < 0)
+			throw new IllegalArgumentException("Capacity cannot be negative.");
+		if (alignment < 1)
+			throw new IllegalArgumentException("Alignment must be 1 or greater.");
+		if (capacity % alignment != 0)
+			throw new IllegalArgumentException("Capacity must be a multiple of the alignment.");
+
+		this.capacity = capacity;
+		this.alignment = alignment;
+		this.used = 0L;
+		this.allocatedByOffset = new TreeMap<>();
+		this.freeByOffset = new TreeMap<>();
+		this.freeBySize = new TreeSet<>((a, b) -> a[0] == b[0] ? Long.compare(a[1], b[1]) : Long.compare(a[0], b[0]));
+		if (capacity > 0)
+			addFree(0L, capacity);
+	}
+
+	/**
+	 * @return the total capacity.
+	 */
+	public long getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the alignment of all ranges.
+	 */
+	public long getAlignment()
+	{
+		return alignment;
+	}
+
+	/**
+	 * @return the total amount allocated (including alignment padding).
+	 */
+	public long getUsed()
+	{
+		return used;
+	}
+
+	/**
+	 * @return the total amount free.
+	 */
+	public long getFree()
+	{
+		return capacity - used;
+	}
+
+	/**
+	 * @return the size of the largest free block.
+	 */
+	public long getLargestFreeBlock()
+	{
+		return freeBySize.isEmpty() ? 0L : freeBySize.last()[0];
+	}
+
+	/**
+	 * @return the amount of separate free blocks.
+	 */
+	public int getFreeBlockCount()
+	{
+		return freeByOffset.size();
+	}
+
+	/**
+	 * @return the amount of allocated ranges.
+	 */
+	public int getAllocatedCount()
+	{
+		return allocatedByOffset.size();
+	}
+
+	/**
+	 * Gets the fragmentation of the free space, from 0 (all free space is in one block) to 1 (heavily fragmented).
+	 * @return the fragmentation ratio.
+	 */
+	public double getFragmentation()
+	{
+		long free = getFree();
+		return free == 0L ? 0.0 : 1.0 - ((double)getLargestFreeBlock() / free);
+	}
+
+	/**
+	 * Rounds a size up to this allocator's alignment.
+	 * @param size the input size.
+	 * @return the aligned size.
+	 */
+	public long align(long size)
+	{
+		long r = size % alignment;
+		return r == 0 ? size : size + (alignment - r);
+	}
+
+	/**
+	 * Allocates a range.
+	 * @param size the size of the range. It will be rounded up to the alignment.
+	 * @return the new range, or null if no free block is large enough.
+	 * @throws IllegalArgumentException if size is less than 1.
+	 */
+	public Range allocate(long size)
+	{
+		if (size < 1)
+			throw new IllegalArgumentException("Size must be 1 or greater.");
+
+		size = align(size);
+		long[] block = freeBySize.ceiling(new long[]{size, Long.MIN_VALUE});
+		if (block == null)
+			return null;
+
+		long blockSize = block[0];
+		long blockOffset = block[1];
+		removeFree(blockOffset, blockSize);
+		if (blockSize > size)
+			addFree(blockOffset + size, blockSize - size);
+
+		Range out = new Range(blockOffset, size);
+		allocatedByOffset.put(blockOffset, out);
+		used += size;
+		return out;
+	}
+
+	/**
+	 * Frees a range, merging it with adjacent free blocks.
+	 * @param range the range to free.
+	 * @throws IllegalArgumentException if the range was not allocated by this allocator, or already freed.
+	 */
+	public void free(Range range)
+	{
+		if (!range.allocated || allocatedByOffset.get(range.offset) != range)
+			throw new IllegalArgumentException("Range was not allocated by this allocator.");
+
+		allocatedByOffset.remove(range.offset);
+		range.allocated = false;
+		used -= range.size;
+
+		long offset = range.offset;
+		long size = range.size;
+
+		Map.Entry<Long, Long> prev = freeByOffset.floorEntry(offset);
+		if (prev != null && prev.getKey() + prev.getValue() == offset)
+		{
+			removeFree(prev.getKey(), prev.getValue());
+			offset = prev.getKey();
+			size += prev.getValue();
+		}
+
+		Long nextSize = freeByOffset.get(offset + size);
+		if (nextSize != null)
+		{
+			removeFree(offset + size, nextSize);
+			size += nextSize;
+		}
+
+		addFree(offset, size);
+	}
+
+	/**
+	 * Grows the capacity of this allocator. New space is added to the end.
+	 * @param newCapacity the new capacity.
+	 * @throws IllegalArgumentException if the new capacity is less than the current one, or is not a multiple of the alignment.
+	 */
+	public void grow(long newCapacity)
+	{
+		if (newCapacity < capacity)
+			throw new IllegalArgumentException("New capacity cannot be smaller than the current capacity.");
+		if (newCapacity % alignment != 0)
+			throw new IllegalArgumentException("Capacity must be a multiple of the alignment.");
+		if (newCapacity == capacity)
+			return;
+
+		long offset = capacity;
+		long size = newCapacity - capacity;
+		Map.Entry<Long, Long> last = freeByOffset.lastEntry();
+		if (last != null && last.getKey() + last.getValue() == capacity)
+		{
+			removeFree(last.getKey(), last.getValue());
+			offset = last.getKey();
+			size += last.getValue();
+		}
+		addFree(offset, size);
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Compacts all allocated ranges to the start of the space, in offset order,
+	 * leaving one free block at the end. The offsets of the affected ranges are updated.
+	 * @param listener the listener to call for each range that moves (called in increasing offset order, before the range is updated).
+	 * @return the amount of ranges moved.
+	 */
+	public int compact(MoveListener listener)
+	{
+		List<Range> ranges = new ArrayList<>(allocatedByOffset.values());
+		allocatedByOffset.clear();
+		freeByOffset.clear();
+		freeBySize.clear();
+
+		int out = 0;
+		long offset = 0L;
+		for (Range range : ranges)
+		{
+			if (range.offset != offset)
+			{
+				if (listener != null)
+					listener.onMove(range.offset, offset, range.size);
+				range.offset = offset;
+				out++;
+			}
+			allocatedByOffset.put(offset, range);
+			offset += range.size;
+		}
+
+		if (offset < capacity)
+			addFree(offset, capacity - offset);
+		return out;
+	}
+
+	// Adds a free block.
+	private void addFree(long offset, long size)
+	{
+		freeByOffset.put(offset, size);
+		freeBySize.add(new long[]{size, offset});
+	}
+
+	// Removes a free block.
+	private void removeFree(long offset, long size)
+	{
+		freeByOffset.remove(offset);
+		freeBySize.remove(new long[]{size, offset});
+	}
+
+}
@@ -8,6 +8,7 @@
 package com.blackrook.gloop.opengl.util;
 
 import java.io.PrintStream;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
@@ -19,6 +20,12 @@ import java.nio.ShortBuffer;
 
 /**
  * Simple utility functions around buffers.
+ * <p> By default, the allocation functions allocate via {@link ByteBuffer#allocateDirect(int)}.
+ * If a {@link NativeAllocator} is set via {@link #setAllocator(NativeAllocator)}, they allocate from it
+ * instead, and the buffers should be returned via {@link #free(Buffer)} when they are no longer used.
+ * Buffers from an allocator are not cleared, so their contents must be written before they are read.
+ * <p> The encoders (like {@link #putHalfFloats(ByteBuffer, int, int, float[], int, int, int)}) write float data
+ * into strided byte buffers in compact vertex formats. See {@link VertexFormat}.
  * @author Matthew Tropiano
  */
 public final class BufferUtils
@@ -38,18 +45,63 @@ public final class BufferUtils
 	/** The size of a double in bytes. */
 	public static final int SIZEOF_DOUBLE = Double.SIZE/Byte.SIZE;
 
+	/** The allocator to use, or null for allocateDirect. */
+	private static volatile NativeAllocator allocator = null;
+
 	private BufferUtils() {}
 
+	/**
+	 * Sets the allocator that the allocation functions in this class use.
+	 * Buffers allocated before this is changed are still freed by the allocator that allocated them
+	 * (if it is still set when {@link #free(Buffer)} is called).
+	 * @param allocator the allocator to use, or null to allocate via {@link ByteBuffer#allocateDirect(int)}.
+	 */
+	public static void setAllocator(NativeAllocator allocator)
+	{
+		BufferUtils.allocator = allocator;
+	}
+
+	/**
+	 * @return the allocator that the allocation functions in this class use, or null if they use {@link ByteBuffer#allocateDirect(int)}.
+	 */
+	public static NativeAllocator getAllocator()
+	{
+		return allocator;
+	}
+
+	/**
+	 * Frees a buffer allocated by this class, if it was allocated from the current allocator.
+	 * If no allocator is set, or the buffer was not allocated from it, this does nothing
+	 * (the buffer is left to the garbage collector).
+	 * The buffer must not be used after it is freed.
+	 * @param buffer the buffer to free (can be a view of an allocated buffer that starts at its beginning).
+	 * @return true if the buffer was freed, false if not.
+	 */
+	public static boolean free(Buffer buffer)
+	{
+		NativeAllocator a = allocator;
+		return a != null && a.free(buffer);
+	}
+
+	// Allocates a native-order direct buffer (cleared only if there is no allocator).
+	private static ByteBuffer allocate(int bytes)
+	{
+		NativeAllocator a = allocator;
+		if (a != null)
+			return a.allocate(bytes);
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
 	/**
 	 * Allocates space for a DIRECT ByteBuffer in native byte order
 	 * (which really doesn't matter).
+	 * The contents are only cleared to zero if no {@link NativeAllocator} is set.
 	 * @param len the length (IN BYTES) of the buffer. 
 	 * @return a direct buffer that can hold <code>len</code> items.
 	 */
 	public static ByteBuffer allocDirectByteBuffer(int len)
 	{
-		ByteBuffer b = ByteBuffer.allocateDirect(len*SIZEOF_BYTE);
-		b.order(ByteOrder.nativeOrder());
+		ByteBuffer b = allocate(len*SIZEOF_BYTE);
 		return b;
 	}
 
@@ -60,8 +112,7 @@ public final class BufferUtils
 	 */
 	public static IntBuffer allocDirectIntBuffer(int len)
 	{
-		ByteBuffer b = ByteBuffer.allocateDirect(len*SIZEOF_INT);
-		b.order(ByteOrder.nativeOrder());
+		ByteBuffer b = allocate(len*SIZEOF_INT);
 		return b.asIntBuffer();
 	}
 
@@ -72,8 +123,7 @@ public final class BufferUtils
 	 */
 	public static FloatBuffer allocDirectFloatBuffer(int len)
 	{
-		ByteBuffer b = ByteBuffer.allocateDirect(len*SIZEOF_FLOAT);
-		b.order(ByteOrder.nativeOrder());
+		ByteBuffer b = allocate(len*SIZEOF_FLOAT);
 		return b.asFloatBuffer();
 	}
 
@@ -84,8 +134,7 @@ public final class BufferUtils
 	 */
 	public static LongBuffer allocDirectLongBuffer(int len)
 	{
-		ByteBuffer b = ByteBuffer.allocateDirect(len*SIZEOF_LONG);
-		b.order(ByteOrder.nativeOrder());
+		ByteBuffer b = allocate(len*SIZEOF_LONG);
 		return b.asLongBuffer();
 	}
 
@@ -96,8 +145,7 @@ public final class BufferUtils
 	 */
 	public static ShortBuffer allocDirectShortBuffer(int len)
 	{
-		ByteBuffer b = ByteBuffer.allocateDirect(len*SIZEOF_SHORT);
-		b.order(ByteOrder.nativeOrder());
+		ByteBuffer b = allocate(len*SIZEOF_SHORT);
 		return b.asShortBuffer();
 	}
 
@@ -108,8 +156,7 @@ public final class BufferUtils
 	 */
 	public static CharBuffer allocDirectCharBuffer(int len)
 	{
-		ByteBuffer b = ByteBuffer.allocateDirect(len*SIZEOF_CHAR);
-		b.order(ByteOrder.nativeOrder());
+		ByteBuffer b = allocate(len*SIZEOF_CHAR);
 		return b.asCharBuffer();
 	}
 
@@ -120,8 +167,7 @@ public final class BufferUtils
 	 */
 	public static DoubleBuffer allocDirectDoubleBuffer(int len)
 	{
-		ByteBuffer b = ByteBuffer.allocateDirect(len*SIZEOF_DOUBLE);
-		b.order(ByteOrder.nativeOrder());
+		ByteBuffer b = allocate(len*SIZEOF_DOUBLE);
 		return b.asDoubleBuffer();
 	}
 
@@ -209,6 +255,382 @@ public final class BufferUtils
 		return buf;
 	}
 
+	/**
+	 * Converts a float to a 16-bit (half precision) float, rounding to nearest even.
+	 * Values too large for a half float become infinity, and NaN stays NaN.
+	 * @param value the input value.
+	 * @return the half float bits.
+	 */
+	public static short toHalfFloat(float value)
+	{
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int abs = bits & 0x7fffffff;
+
+		// Infinity or NaN (keep NaN quiet).
+		if (abs >= 0x7f800000)
+			return (short)(sign | 0x7c00 | (abs > 0x7f800000 ? 0x200 | ((abs >>> 13) & 0x3ff) : 0));
+		// Overflow.
+		if (abs >= 0x47800000)
+			return (short)(sign | 0x7c00);
+		// Subnormal or zero.
+		if (abs < 0x38800000)
+		{
+			if (abs < 0x33000000)
+				return (short)sign;
+			int shift = 126 - (abs >>> 23);
+			int mantissa = (abs & 0x7fffff) | 0x800000;
+			int out = mantissa >>> shift;
+			int remainder = mantissa & ((1 << shift) - 1);
+			int half = 1 << (shift - 1);
+			if (remainder > half || (remainder == half && (out & 1) != 0))
+				out++;
+			return (short)(sign | out);
+		}
+
+		// Normal: rebias exponent, round off 13 mantissa bits (carry can roll into the exponent).
+		int out = (abs - 0x38000000) >>> 13;
+		int remainder = abs & 0x1fff;
+		if (remainder > 0x1000 || (remainder == 0x1000 && (out & 1) != 0))
+			out++;
+		return (short)(sign | out);
+	}
+
+	/**
+	 * Converts a 16-bit (half precision) float to a float.
+	 * @param value the half float bits.
+	 * @return the float value.
+	 */
+	public static float fromHalfFloat(short value)
+	{
+		int bits = value & 0xffff;
+		int sign = (bits & 0x8000) << 16;
+		int exponent = (bits >>> 10) & 0x1f;
+		int mantissa = bits & 0x3ff;
+
+		if (exponent == 0x1f)
+			return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+		if (exponent == 0)
+		{
+			float out = mantissa * 0x1p-24f;
+			return sign != 0 ? -out : out;
+		}
+		return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+	}
+
+	/**
+	 * Converts a float to a signed normalized integer: [-1, 1] maps to [-max, max].
+	 * Values outside of [-1, 1] are clamped.
+	 * @param value the input value.
+	 * @param max the largest integer value (127 for bytes, 32767 for shorts, 511 for 10 bits).
+	 * @return the normalized integer.
+	 */
+	public static int toNormalized(float value, int max)
+	{
+		if (!(value > -1f)) // includes NaN
+			return value == value ? -max : 0;
+		if (value >= 1f)
+			return max;
+		return Math.round(value * max);
+	}
+
+	/**
+	 * Converts a float to an unsigned normalized integer: [0, 1] maps to [0, max].
+	 * Values outside of [0, 1] are clamped.
+	 * @param value the input value.
+	 * @param max the largest integer value (255 for bytes, 65535 for shorts, 1023 for 10 bits).
+	 * @return the normalized integer.
+	 */
+	public static int toUnsignedNormalized(float value, int max)
+	{
+		if (!(value > 0f)) // includes NaN
+			return 0;
+		if (value >= 1f)
+			return max;
+		return Math.round(value * max);
+	}
+
+	/**
+	 * Packs four floats into a signed, normalized {@link com.blackrook.gloop.opengl.enums.DataType#INT_2_10_10_10_REV} value.
+	 * @param x the X component, from -1 to 1.
+	 * @param y the Y component, from -1 to 1.
+	 * @param z the Z component, from -1 to 1.
+	 * @param w the W component, from -1 to 1.
+	 * @return the packed value.
+	 */
+	public static int pack2101010(float x, float y, float z, float w)
+	{
+		return (toNormalized(x, 511) & 0x3ff)
+			| ((toNormalized(y, 511) & 0x3ff) << 10)
+			| ((toNormalized(z, 511) & 0x3ff) << 20)
+			| (toNormalized(w, 1) << 30);
+	}
+
+	/**
+	 * Packs four floats into an unsigned, normalized {@link com.blackrook.gloop.opengl.enums.DataType#UNSIGNED_INT_2_10_10_10_REV} value.
+	 * @param x the X component, from 0 to 1.
+	 * @param y the Y component, from 0 to 1.
+	 * @param z the Z component, from 0 to 1.
+	 * @param w the W component, from 0 to 1.
+	 * @return the packed value.
+	 */
+	public static int packUnsigned2101010(float x, float y, float z, float w)
+	{
+		return toUnsignedNormalized(x, 1023)
+			| (toUnsignedNormalized(y, 1023) << 10)
+			| (toUnsignedNormalized(z, 1023) << 20)
+			| (toUnsignedNormalized(w, 3) << 30);
+	}
+
+	/**
+	 * Encodes a unit vector into two octahedral coordinates, each from -1 to 1.
+	 * The vector does not need to be normalized. A zero vector encodes to (0, 0).
+	 * @param x the vector's X component.
+	 * @param y the vector's Y component.
+	 * @param z the vector's Z component.
+	 * @param out the output array.
+	 * @param outOffset the offset into the output array to write the two coordinates to.
+	 */
+	public static void encodeOctahedral(float x, float y, float z, float[] out, int outOffset)
+	{
+		float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+		if (length == 0f)
+		{
+			out[outOffset] = 0f;
+			out[outOffset + 1] = 0f;
+			return;
+		}
+
+		float u = x / length;
+		float v = y / length;
+		if (z < 0f)
+		{
+			float fu = (1f - Math.abs(v)) * (u >= 0f ? 1f : -1f);
+			float fv = (1f - Math.abs(u)) * (v >= 0f ? 1f : -1f);
+			u = fu;
+			v = fv;
+		}
+		out[outOffset] = u;
+		out[outOffset + 1] = v;
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as 32-bit floats.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element.
+	 * @param count the amount of elements.
+	 */
+	public static void putFloats(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride)
+			for (int c = 0; c < components; c++)
+				out.putFloat(o + c * SIZEOF_FLOAT, source[s++]);
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as 16-bit (half precision) floats.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element.
+	 * @param count the amount of elements.
+	 * @see #toHalfFloat(float)
+	 */
+	public static void putHalfFloats(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride)
+			for (int c = 0; c < components; c++)
+				out.putShort(o + c * SIZEOF_SHORT, toHalfFloat(source[s++]));
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as signed normalized bytes.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed, from -1 to 1.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element.
+	 * @param count the amount of elements.
+	 */
+	public static void putNormalizedBytes(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride)
+			for (int c = 0; c < components; c++)
+				out.put(o + c, (byte)toNormalized(source[s++], Byte.MAX_VALUE));
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as unsigned normalized bytes.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed, from 0 to 1.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element.
+	 * @param count the amount of elements.
+	 */
+	public static void putNormalizedUnsignedBytes(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride)
+			for (int c = 0; c < components; c++)
+				out.put(o + c, (byte)toUnsignedNormalized(source[s++], 0xff));
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as signed normalized shorts.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed, from -1 to 1.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element.
+	 * @param count the amount of elements.
+	 */
+	public static void putNormalizedShorts(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride)
+			for (int c = 0; c < components; c++)
+				out.putShort(o + c * SIZEOF_SHORT, (short)toNormalized(source[s++], Short.MAX_VALUE));
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as unsigned normalized shorts.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed, from 0 to 1.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element.
+	 * @param count the amount of elements.
+	 */
+	public static void putNormalizedUnsignedShorts(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride)
+			for (int c = 0; c < components; c++)
+				out.putShort(o + c * SIZEOF_SHORT, (short)toUnsignedNormalized(source[s++], 0xffff));
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as signed normalized 2_10_10_10 packed ints.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed, from -1 to 1.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element (3 or 4 - if 3, W is 1).
+	 * @param count the amount of elements.
+	 * @see #pack2101010(float, float, float, float)
+	 */
+	public static void putPacked2101010(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		boolean hasW = components > 3;
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride, s += components)
+			out.putInt(o, pack2101010(source[s], source[s + 1], source[s + 2], hasW ? source[s + 3] : 1f));
+	}
+
+	/**
+	 * Writes floats into a byte buffer, strided, as unsigned normalized 2_10_10_10 packed ints.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source data, tightly packed, from 0 to 1.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param components the amount of floats per element (3 or 4 - if 3, W is 1).
+	 * @param count the amount of elements.
+	 * @see #packUnsigned2101010(float, float, float, float)
+	 */
+	public static void putPackedUnsigned2101010(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int components, int count)
+	{
+		boolean hasW = components > 3;
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride, s += components)
+			out.putInt(o, packUnsigned2101010(source[s], source[s + 1], source[s + 2], hasW ? source[s + 3] : 1f));
+	}
+
+	/**
+	 * Writes 3-component vectors into a byte buffer, strided, octahedral-encoded as two signed normalized shorts.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source vectors, tightly packed (3 floats each).
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param count the amount of vectors.
+	 * @see #encodeOctahedral(float, float, float, float[], int)
+	 */
+	public static void putOctahedralShorts(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int count)
+	{
+		// Same as encodeOctahedral(), without an output array.
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride, s += 3)
+		{
+			float x = source[s], y = source[s + 1], z = source[s + 2];
+			float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+			float u = 0f, v = 0f;
+			if (length != 0f)
+			{
+				u = x / length;
+				v = y / length;
+				if (z < 0f)
+				{
+					float fu = (1f - Math.abs(v)) * (u >= 0f ? 1f : -1f);
+					v = (1f - Math.abs(u)) * (v >= 0f ? 1f : -1f);
+					u = fu;
+				}
+			}
+			out.putShort(o, (short)toNormalized(u, Short.MAX_VALUE));
+			out.putShort(o + SIZEOF_SHORT, (short)toNormalized(v, Short.MAX_VALUE));
+		}
+	}
+
+	/**
+	 * Writes 3-component vectors into a byte buffer, strided, octahedral-encoded as two signed normalized bytes.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer.
+	 * @param offset the byte offset of the first element.
+	 * @param stride the distance in bytes between each element.
+	 * @param source the source vectors, tightly packed (3 floats each).
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param count the amount of vectors.
+	 * @see #encodeOctahedral(float, float, float, float[], int)
+	 */
+	public static void putOctahedralBytes(ByteBuffer out, int offset, int stride, float[] source, int sourceOffset, int count)
+	{
+		// Same as encodeOctahedral(), without an output array.
+		for (int i = 0, s = sourceOffset, o = offset; i < count; i++, o += stride, s += 3)
+		{
+			float x = source[s], y = source[s + 1], z = source[s + 2];
+			float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+			float u = 0f, v = 0f;
+			if (length != 0f)
+			{
+				u = x / length;
+				v = y / length;
+				if (z < 0f)
+				{
+					float fu = (1f - Math.abs(v)) * (u >= 0f ? 1f : -1f);
+					v = (1f - Math.abs(u)) * (v >= 0f ? 1f : -1f);
+					u = fu;
+				}
+			}
+			out.put(o, (byte)toNormalized(u, Byte.MAX_VALUE));
+			out.put(o + 1, (byte)toNormalized(v, Byte.MAX_VALUE));
+		}
+	}
+
 	/**
 	 * Prints the contents of a buffer to an output print stream.
 	 * @param buffer the buffer to print.
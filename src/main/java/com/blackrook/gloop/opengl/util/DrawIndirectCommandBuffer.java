@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import org.lwjgl.PointerBuffer;
+
+/**
+ * A buffer of packed indirect draw commands, for submitting many draws in one call.
+ * Commands are packed into direct memory in the layout that OpenGL expects for
+ * <code>DrawArraysIndirectCommand</code> or <code>DrawElementsIndirectCommand</code> records,
+ * so the packed data can be uploaded to a {@link com.blackrook.gloop.opengl.enums.BufferTargetType#DRAW_INDIRECT} buffer as-is.
+ * <p> Adding commands does not allocate, except when the buffer needs to grow (the capacity doubles).
+ * Call {@link #clear()} to reuse it each frame.
+ * <p> This class does not touch any OpenGL state, and can be filled outside of the graphics thread
+ * (but it is not thread-safe).
+ * @author Matthew Tropiano
+ */
+public class DrawIndirectCommandBuffer
+{
+	/**
+	 * The types of commands.
+	 */
+	public enum Type
+	{
+		/** DrawArraysIndirectCommand: count, instanceCount, first, baseInstance. */
+		ARRAYS(16),
+		/** DrawElementsIndirectCommand: count, instanceCount, firstIndex, baseVertex, baseInstance. */
+		ELEMENTS(20);
+
+		/** Size of a single command in bytes. */
+		public final int stride;
+
+		private Type(int stride)
+		{
+			this.stride = stride;
+		}
+	}
+
+	/** The command type. */
+	private Type type;
+	/** The packed commands. */
+	private ByteBuffer data;
+	/** The amount of commands. */
+	private int count;
+	/** The amount of commands that need instancing (instance count other than 1 or base instance other than 0). */
+	private int instancedCount;
+
+	/** Unpacked counts, for non-indirect drawing. */
+	private IntBuffer unpackedCounts;
+	/** Unpacked first vertices (arrays) or base vertices (elements), for non-indirect drawing. */
+	private IntBuffer unpackedFirsts;
+	/** Unpacked index byte offsets (elements only), for non-indirect drawing. */
+	private PointerBuffer unpackedOffsets;
+
+	/**
+	 * Creates a new command buffer.
+	 * @param type the type of commands in this buffer.
+	 * @param capacity the initial capacity, in commands.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 */
+	public DrawIndirectCommandBuffer(Type type, int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be 1 or greater.");
+		this.type = type;
+		this.data = allocate(capacity * type.stride);
+		this.count = 0;
+		this.instancedCount = 0;
+		this.unpackedCounts = null;
+		this.unpackedFirsts = null;
+		this.unpackedOffsets = null;
+	}
+
+	/**
+	 * @return the type of commands in this buffer.
+	 */
+	public Type getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return the size of a single command in bytes.
+	 */
+	public int getStride()
+	{
+		return type.stride;
+	}
+
+	/**
+	 * @return the amount of commands added.
+	 */
+	public int getCommandCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the capacity, in commands.
+	 */
+	public int getCapacity()
+	{
+		return data.capacity() / type.stride;
+	}
+
+	/**
+	 * @return true if any command uses an instance count other than 1 or a base instance other than 0, false if not.
+	 */
+	public boolean isInstanced()
+	{
+		return instancedCount > 0;
+	}
+
+	/**
+	 * Gets the packed command data.
+	 * The returned buffer's position is 0 and its limit is the end of the last command.
+	 * It is only valid until the next command is added (which may grow the buffer).
+	 * @return the packed data, in native byte order.
+	 */
+	public ByteBuffer getBuffer()
+	{
+		data.limit(count * type.stride);
+		data.position(0);
+		return data;
+	}
+
+	/**
+	 * Removes all commands. The capacity stays the same.
+	 */
+	public void clear()
+	{
+		count = 0;
+		instancedCount = 0;
+	}
+
+	/**
+	 * Adds a non-instanced arrays command.
+	 * @param vertexCount the amount of vertices to draw.
+	 * @param first the first vertex.
+	 * @throws IllegalStateException if this is not an {@link Type#ARRAYS} buffer.
+	 */
+	public void addArrays(int vertexCount, int first)
+	{
+		addArrays(vertexCount, 1, first, 0);
+	}
+
+	/**
+	 * Adds an arrays command.
+	 * @param vertexCount the amount of vertices to draw.
+	 * @param instanceCount the amount of instances to draw.
+	 * @param first the first vertex.
+	 * @param baseInstance the first instance, for instanced vertex attributes.
+	 * @throws IllegalStateException if this is not an {@link Type#ARRAYS} buffer.
+	 */
+	public void addArrays(int vertexCount, int instanceCount, int first, int baseInstance)
+	{
+		if (type != Type.ARRAYS)
+			throw new IllegalStateException("Command buffer does not hold arrays commands.");
+		int o = next(instanceCount, baseInstance);
+		data.putInt(o, vertexCount);
+		data.putInt(o + 4, instanceCount);
+		data.putInt(o + 8, first);
+		data.putInt(o + 12, baseInstance);
+	}
+
+	/**
+	 * Adds a non-instanced elements command.
+	 * @param indexCount the amount of indices to draw.
+	 * @param firstIndex the first index in the index buffer (in elements, not bytes).
+	 * @param baseVertex the constant to add to each index.
+	 * @throws IllegalStateException if this is not an {@link Type#ELEMENTS} buffer.
+	 */
+	public void addElements(int indexCount, int firstIndex, int baseVertex)
+	{
+		addElements(indexCount, 1, firstIndex, baseVertex, 0);
+	}
+
+	/**
+	 * Adds an elements command.
+	 * @param indexCount the amount of indices to draw.
+	 * @param instanceCount the amount of instances to draw.
+	 * @param firstIndex the first index in the index buffer (in elements, not bytes).
+	 * @param baseVertex the constant to add to each index.
+	 * @param baseInstance the first instance, for instanced vertex attributes.
+	 * @throws IllegalStateException if this is not an {@link Type#ELEMENTS} buffer.
+	 */
+	public void addElements(int indexCount, int instanceCount, int firstIndex, int baseVertex, int baseInstance)
+	{
+		if (type != Type.ELEMENTS)
+			throw new IllegalStateException("Command buffer does not hold elements commands.");
+		int o = next(instanceCount, baseInstance);
+		data.putInt(o, indexCount);
+		data.putInt(o + 4, instanceCount);
+		data.putInt(o + 8, firstIndex);
+		data.putInt(o + 12, baseVertex);
+		data.putInt(o + 16, baseInstance);
+	}
+
+	/**
+	 * Unpacks the commands into separate count, first/base vertex, and index offset lists,
+	 * for drawing without indirect commands (via glMultiDrawArrays or glMultiDrawElementsBaseVertex).
+	 * Commands that draw nothing are skipped. Instancing is ignored: a command's instance count is treated as 1,
+	 * and its base instance as 0.
+	 * @param indexSize the size of a single index in bytes (ignored for {@link Type#ARRAYS} buffers).
+	 * @return the amount of unpacked commands.
+	 * @see #getUnpackedCounts()
+	 * @see #getUnpackedFirsts()
+	 * @see #getUnpackedOffsets()
+	 */
+	public int unpack(int indexSize)
+	{
+		if (unpackedCounts == null || unpackedCounts.capacity() < count)
+		{
+			int capacity = getCapacity();
+			unpackedCounts = allocate(capacity * 4).asIntBuffer();
+			unpackedFirsts = allocate(capacity * 4).asIntBuffer();
+			unpackedOffsets = type == Type.ELEMENTS ? PointerBuffer.allocateDirect(capacity) : null;
+		}
+
+		unpackedCounts.clear();
+		unpackedFirsts.clear();
+		if (unpackedOffsets != null)
+			unpackedOffsets.clear();
+
+		int stride = type.stride;
+		int out = 0;
+		for (int i = 0, o = 0; i < count; i++, o += stride)
+		{
+			int c = data.getInt(o);
+			if (c == 0 || data.getInt(o + 4) == 0)
+				continue;
+			unpackedCounts.put(c);
+			if (type == Type.ELEMENTS)
+			{
+				unpackedOffsets.put((long)data.getInt(o + 8) * indexSize);
+				unpackedFirsts.put(data.getInt(o + 12));
+			}
+			else
+			{
+				unpackedFirsts.put(data.getInt(o + 8));
+			}
+			out++;
+		}
+
+		unpackedCounts.flip();
+		unpackedFirsts.flip();
+		if (unpackedOffsets != null)
+			unpackedOffsets.flip();
+		return out;
+	}
+
+	/**
+	 * @return the unpacked counts from the last call to {@link #unpack(int)}, or null if never unpacked.
+	 */
+	public IntBuffer getUnpackedCounts()
+	{
+		return unpackedCounts;
+	}
+
+	/**
+	 * @return the unpacked first vertices (for arrays) or base vertices (for elements) from the last call to {@link #unpack(int)}, or null if never unpacked.
+	 */
+	public IntBuffer getUnpackedFirsts()
+	{
+		return unpackedFirsts;
+	}
+
+	/**
+	 * @return the unpacked index byte offsets from the last call to {@link #unpack(int)}, or null if never unpacked or this is an arrays buffer.
+	 */
+	public PointerBuffer getUnpackedOffsets()
+	{
+		return unpackedOffsets;
+	}
+
+	// Reserves the next command and returns its byte offset, growing the buffer if needed.
+	private int next(int instanceCount, int baseInstance)
+	{
+		int o = count * type.stride;
+		if (o + type.stride > data.capacity())
+		{
+			ByteBuffer grown = allocate(data.capacity() * 2);
+			data.limit(o);
+			data.position(0);
+			grown.put(data);
+			data = grown;
+		}
+		data.limit(data.capacity());
+		if (instanceCount != 1 || baseInstance != 0)
+			instancedCount++;
+		count++;
+		return o;
+	}
+
+	// Allocates a native-order direct buffer.
+	private static ByteBuffer allocate(int bytes)
+	{
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+}
@@ -7,7 +7,12 @@
  ******************************************************************************/
 package com.blackrook.gloop.opengl.util;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import com.blackrook.gloop.opengl.OGLGraphics;
 import com.blackrook.gloop.opengl.enums.BufferTargetType;
@@ -23,6 +28,13 @@ import com.blackrook.gloop.opengl.gl1.OGLBuffer;
  * <p>
  * All of these methods can be called outside of the graphics thread except {@link #create()}.
  * <p>
+ * The fixed-arity methods ({@link #add2(int, float, float)} and so on), {@link #addAll(int, float[], int, int)},
+ * and {@link #vertex(float[], int, int)} do not allocate anything per call, and should be preferred over
+ * {@link #add(int, float...)} for large meshes. Disjoint ranges of vertices can be filled from several threads
+ * at once via separate {@link Writer}s (see {@link #writer(int, int)} and {@link #fillParallel(int, Consumer)}).
+ * Implementations that do not override these methods fall back to {@link #add(int, float...)},
+ * and do not support writers.
+ * <p>
  * Depending on implementation version, some methods may not be supported or available,
  * and will throw {@link UnsupportedOperationException} if so.
  * @author Matthew Tropiano
@@ -40,6 +52,143 @@ public interface GeometryBuilder
 	 */
 	GeometryBuilder add(int attributeId, float ... values);
 	
+	/**
+	 * Adds the value for a one-component attribute.
+	 * Next call with the same attribute will write to the next vertex.
+	 * @param attributeId the attribute id.
+	 * @param x the first component value.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if bad attribute id, the attribute 
+	 * 		component count is incorrect, or no more vertices for this attribute.
+	 */
+	default GeometryBuilder add1(int attributeId, float x)
+	{
+		return add(attributeId, x);
+	}
+	
+	/**
+	 * Adds the values for a two-component attribute.
+	 * Next call with the same attribute will write to the next vertex.
+	 * @param attributeId the attribute id.
+	 * @param x the first component value.
+	 * @param y the second component value.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if bad attribute id, the attribute 
+	 * 		component count is incorrect, or no more vertices for this attribute.
+	 */
+	default GeometryBuilder add2(int attributeId, float x, float y)
+	{
+		return add(attributeId, x, y);
+	}
+	
+	/**
+	 * Adds the values for a three-component attribute.
+	 * Next call with the same attribute will write to the next vertex.
+	 * @param attributeId the attribute id.
+	 * @param x the first component value.
+	 * @param y the second component value.
+	 * @param z the third component value.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if bad attribute id, the attribute 
+	 * 		component count is incorrect, or no more vertices for this attribute.
+	 */
+	default GeometryBuilder add3(int attributeId, float x, float y, float z)
+	{
+		return add(attributeId, x, y, z);
+	}
+	
+	/**
+	 * Adds the values for a four-component attribute.
+	 * Next call with the same attribute will write to the next vertex.
+	 * @param attributeId the attribute id.
+	 * @param x the first component value.
+	 * @param y the second component value.
+	 * @param z the third component value.
+	 * @param w the fourth component value.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if bad attribute id, the attribute 
+	 * 		component count is incorrect, or no more vertices for this attribute.
+	 */
+	default GeometryBuilder add4(int attributeId, float x, float y, float z, float w)
+	{
+		return add(attributeId, x, y, z, w);
+	}
+	
+	/**
+	 * Adds the values of one attribute for several vertices at once.
+	 * @param attributeId the attribute id.
+	 * @param source the source values, tightly packed (the attribute's width per vertex).
+	 * @param offset the starting offset into the source array.
+	 * @param count the amount of vertices to add.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if bad attribute id, or not enough vertices left for this attribute.
+	 */
+	default GeometryBuilder addAll(int attributeId, float[] source, int offset, int count)
+	{
+		int width = getWidth(attributeId);
+		for (int v = 0; v < count; v++, offset += width)
+			add(attributeId, Arrays.copyOfRange(source, offset, offset + width));
+		return this;
+	}
+	
+	/**
+	 * Adds whole, interleaved vertices (all attributes) at once.
+	 * All attributes must be at the same vertex.
+	 * @param source the source values, interleaved in this builder's layout ({@link #getStrideSize()} per vertex).
+	 * @param offset the starting offset into the source array.
+	 * @param count the amount of vertices to add.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if not enough vertices left.
+	 * @throws IllegalStateException if the attributes are not all at the same vertex.
+	 */
+	default GeometryBuilder vertex(float[] source, int offset, int count)
+	{
+		int attributes = getAttributeCount();
+		int stride = getStrideSize();
+		for (int v = 0; v < count; v++, offset += stride)
+		{
+			for (int a = 0; a < attributes; a++)
+			{
+				int start = offset + getOffset(a);
+				add(a, Arrays.copyOfRange(source, start, start + getWidth(a)));
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Creates a writer for a range of vertices, which has its own position per attribute,
+	 * starting at the first vertex of the range.
+	 * Writers of disjoint ranges can be used from different threads at the same time.
+	 * Writing with a writer does not move this builder's own positions.
+	 * @param firstVertex the first vertex in the range.
+	 * @param vertexCount the amount of vertices in the range.
+	 * @return a new writer.
+	 * @throws IllegalArgumentException if the range is outside of this builder's vertices.
+	 * @throws UnsupportedOperationException if this builder does not support writers.
+	 */
+	default Writer writer(int firstVertex, int vertexCount)
+	{
+		throw new UnsupportedOperationException("Range writers are not supported by this builder.");
+	}
+	
+	/**
+	 * Fills all of this builder's vertices in parallel, by splitting them into ranges and handing a
+	 * {@link Writer} for each range to a filler function on the common fork/join pool.
+	 * The filler is called once per range, possibly on several threads at once.
+	 * This method returns after all ranges are filled. This builder's own positions are not moved.
+	 * @param chunkVertices the amount of vertices per range (the last range may be smaller).
+	 * @param filler the function to call per range.
+	 * @throws IllegalArgumentException if chunkVertices is less than 1.
+	 * @throws UnsupportedOperationException if this builder does not support writers.
+	 * @see Writer#getFirstVertex()
+	 * @see Writer#getVertexCount()
+	 */
+	default void fillParallel(int chunkVertices, Consumer<Writer> filler)
+	{
+		throw new UnsupportedOperationException("Range writers are not supported by this builder.");
+	}
+	
 	/**
 	 * @return the attribute count.
 	 */
@@ -70,6 +219,266 @@ public interface GeometryBuilder
 	 */
 	OGLBuffer create();
 	
+	/**
+	 * A writer of vertex data into a range of a builder's vertices.
+	 * Each attribute has its own position in the range, and each write moves that attribute to the next vertex.
+	 * <p>
+	 * A writer is not thread-safe, but writers of disjoint ranges of the same builder
+	 * can be used by different threads at the same time.
+	 */
+	public final class Writer
+	{
+		/** The buffer that holds the data. */
+		private FloatBuffer buffer;
+		/** Size of a full stride. */
+		private int strideSize;
+		/** Attribute sizes in components. */
+		private int[] attributeSizes;
+		/** Attribute offsets. */
+		private int[] attributeOffsets;
+		/** First vertex in range. */
+		private int firstVertex;
+		/** Vertex after the end of the range. */
+		private int endVertex;
+		/** Current vertex per attribute. */
+		private int[] currentVertex;
+		
+		Writer(FloatBuffer buffer, int strideSize, int[] attributeSizes, int[] attributeOffsets, int firstVertex, int endVertex, int[] currentVertex)
+		{
+			this.buffer = buffer;
+			this.strideSize = strideSize;
+			this.attributeSizes = attributeSizes;
+			this.attributeOffsets = attributeOffsets;
+			this.firstVertex = firstVertex;
+			this.endVertex = endVertex;
+			this.currentVertex = currentVertex;
+		}
+		
+		/**
+		 * @return the first vertex in this writer's range.
+		 */
+		public int getFirstVertex()
+		{
+			return firstVertex;
+		}
+		
+		/**
+		 * @return the amount of vertices in this writer's range.
+		 */
+		public int getVertexCount()
+		{
+			return endVertex - firstVertex;
+		}
+		
+		/**
+		 * Gets the vertex that the next write to an attribute goes to.
+		 * @param attributeId the attribute id.
+		 * @return the vertex index.
+		 */
+		public int getCurrentVertex(int attributeId)
+		{
+			return currentVertex[attributeId];
+		}
+		
+		/**
+		 * Adds the value for a one-component attribute.
+		 * @param attributeId the attribute id.
+		 * @param x the first component value.
+		 * @return this writer.
+		 * @throws IllegalArgumentException if bad attribute id, the attribute 
+		 * 		component count is incorrect, or no more vertices for this attribute.
+		 * @see GeometryBuilder#add1(int, float)
+		 */
+		public Writer add1(int attributeId, float x)
+		{
+			int index = next(attributeId, 1);
+			buffer.put(index, x);
+			return this;
+		}
+		
+		/**
+		 * Adds the values for a two-component attribute.
+		 * @param attributeId the attribute id.
+		 * @param x the first component value.
+		 * @param y the second component value.
+		 * @return this writer.
+		 * @throws IllegalArgumentException if bad attribute id, the attribute 
+		 * 		component count is incorrect, or no more vertices for this attribute.
+		 * @see GeometryBuilder#add2(int, float, float)
+		 */
+		public Writer add2(int attributeId, float x, float y)
+		{
+			int index = next(attributeId, 2);
+			buffer.put(index, x);
+			buffer.put(index + 1, y);
+			return this;
+		}
+		
+		/**
+		 * Adds the values for a three-component attribute.
+		 * @param attributeId the attribute id.
+		 * @param x the first component value.
+		 * @param y the second component value.
+		 * @param z the third component value.
+		 * @return this writer.
+		 * @throws IllegalArgumentException if bad attribute id, the attribute 
+		 * 		component count is incorrect, or no more vertices for this attribute.
+		 * @see GeometryBuilder#add3(int, float, float, float)
+		 */
+		public Writer add3(int attributeId, float x, float y, float z)
+		{
+			int index = next(attributeId, 3);
+			buffer.put(index, x);
+			buffer.put(index + 1, y);
+			buffer.put(index + 2, z);
+			return this;
+		}
+		
+		/**
+		 * Adds the values for a four-component attribute.
+		 * @param attributeId the attribute id.
+		 * @param x the first component value.
+		 * @param y the second component value.
+		 * @param z the third component value.
+		 * @param w the fourth component value.
+		 * @return this writer.
+		 * @throws IllegalArgumentException if bad attribute id, the attribute 
+		 * 		component count is incorrect, or no more vertices for this attribute.
+		 * @see GeometryBuilder#add4(int, float, float, float, float)
+		 */
+		public Writer add4(int attributeId, float x, float y, float z, float w)
+		{
+			int index = next(attributeId, 4);
+			buffer.put(index, x);
+			buffer.put(index + 1, y);
+			buffer.put(index + 2, z);
+			buffer.put(index + 3, w);
+			return this;
+		}
+		
+		/**
+		 * Adds the values of one attribute for several vertices at once.
+		 * @param attributeId the attribute id.
+		 * @param source the source values, tightly packed (the attribute's width per vertex).
+		 * @param offset the starting offset into the source array.
+		 * @param count the amount of vertices to add.
+		 * @return this writer.
+		 * @throws IllegalArgumentException if bad attribute id, or not enough vertices left for this attribute.
+		 * @see GeometryBuilder#addAll(int, float[], int, int)
+		 */
+		public Writer addAll(int attributeId, float[] source, int offset, int count)
+		{
+			checkAttribute(attributeId);
+			int vertex = currentVertex[attributeId];
+			checkRoom(attributeId, vertex, count);
+
+			int width = attributeSizes[attributeId];
+			int index = vertex * strideSize + attributeOffsets[attributeId];
+			if (width == strideSize)
+			{
+				FloatBuffer target = buffer.duplicate();
+				target.position(index);
+				target.put(source, offset, count * width);
+			}
+			else switch (width)
+			{
+				// Fixed widths are unrolled, which is much faster than the general loop.
+				case 1:
+					for (int v = 0; v < count; v++, index += strideSize)
+						buffer.put(index, source[offset++]);
+					break;
+				case 2:
+					for (int v = 0; v < count; v++, index += strideSize, offset += 2)
+					{
+						buffer.put(index, source[offset]);
+						buffer.put(index + 1, source[offset + 1]);
+					}
+					break;
+				case 3:
+					for (int v = 0; v < count; v++, index += strideSize, offset += 3)
+					{
+						buffer.put(index, source[offset]);
+						buffer.put(index + 1, source[offset + 1]);
+						buffer.put(index + 2, source[offset + 2]);
+					}
+					break;
+				case 4:
+					for (int v = 0; v < count; v++, index += strideSize, offset += 4)
+					{
+						buffer.put(index, source[offset]);
+						buffer.put(index + 1, source[offset + 1]);
+						buffer.put(index + 2, source[offset + 2]);
+						buffer.put(index + 3, source[offset + 3]);
+					}
+					break;
+				default:
+					for (int v = 0; v < count; v++, index += strideSize)
+					{
+						for (int c = 0; c < width; c++)
+							buffer.put(index + c, source[offset++]);
+					}
+					break;
+			}
+			currentVertex[attributeId] = vertex + count;
+			return this;
+		}
+		
+		/**
+		 * Adds whole, interleaved vertices (all attributes) at once.
+		 * All attributes must be at the same vertex.
+		 * @param source the source values, interleaved in the builder's layout (stride size per vertex).
+		 * @param offset the starting offset into the source array.
+		 * @param count the amount of vertices to add.
+		 * @return this writer.
+		 * @throws IllegalArgumentException if not enough vertices left.
+		 * @throws IllegalStateException if the attributes are not all at the same vertex.
+		 * @see GeometryBuilder#vertex(float[], int, int)
+		 */
+		public Writer vertex(float[] source, int offset, int count)
+		{
+			int vertex = currentVertex[0];
+			for (int i = 1; i < currentVertex.length; i++)
+				if (currentVertex[i] != vertex)
+					throw new IllegalStateException("Attributes are not all at the same vertex.");
+			checkRoom(0, vertex, count);
+
+			FloatBuffer target = buffer.duplicate();
+			target.position(vertex * strideSize);
+			target.put(source, offset, count * strideSize);
+			for (int i = 0; i < currentVertex.length; i++)
+				currentVertex[i] = vertex + count;
+			return this;
+		}
+		
+		// Checks an attribute and component count, and returns the next index to write to for the attribute. 
+		private int next(int attributeId, int componentCount)
+		{
+			checkAttribute(attributeId);
+			if (attributeSizes[attributeId] != componentCount)
+				throw new IllegalArgumentException("Attribute id " + attributeId + " requires " + attributeSizes[attributeId] + " components, not " + componentCount);
+			int vertex = currentVertex[attributeId];
+			if (vertex >= endVertex)
+				throw new IllegalArgumentException("No more attributes to add for attribute id " + attributeId);
+			currentVertex[attributeId] = vertex + 1;
+			return vertex * strideSize + attributeOffsets[attributeId];
+		}
+		
+		// Exception if id is less than 0 or greater or equal to attribute count.
+		private void checkAttribute(int attributeId)
+		{
+			if (attributeId < 0 || attributeId >= attributeSizes.length)
+				throw new IllegalArgumentException("Attribute id " + attributeId + " is out of range: [0, " + (attributeSizes.length - 1) + "]");
+		}
+		
+		// Exception if there is not enough room for an amount of vertices.
+		private void checkRoom(int attributeId, int vertex, int count)
+		{
+			if (count < 0 || vertex + count > endVertex)
+				throw new IllegalArgumentException("Not enough vertices left to add " + count + " for attribute id " + attributeId);
+		}
+		
+	}
+	
 	/**
 	 * Geometry builder utility class.
 	 * @param <GL> the graphics implementation that this executes on.
@@ -91,6 +500,8 @@ public interface GeometryBuilder
 		protected int[] currentVertex;
 		/** The buffer that holds the data. */
 		protected FloatBuffer buffer;
+		/** The writer that uses this builder's positions. */
+		private Writer writer;
 
 		protected Abstract(GL gl, int vertices, int ... attributeSizes)
 		{
@@ -111,7 +522,9 @@ public interface GeometryBuilder
 			}
 				
 			this.currentVertex = new int[attributeSizes.length];
-			buffer = BufferUtils.allocDirectFloatBuffer(vertices * strideSize);
+			// Not from BufferUtils: the builder has no point where it could free an allocator's memory.
+			buffer = ByteBuffer.allocateDirect(vertices * strideSize * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+			writer = new Writer(buffer, strideSize, this.attributeSizes, attributeOffsets, 0, vertices, currentVertex);
 		}
 		
 		// Exception if id is less than 0 or greater or equal to attribute count,
@@ -142,6 +555,72 @@ public interface GeometryBuilder
 			return this;
 		}
 		
+		@Override
+		public GeometryBuilder add1(int attributeId, float x)
+		{
+			writer.add1(attributeId, x);
+			return this;
+		}
+		
+		@Override
+		public GeometryBuilder add2(int attributeId, float x, float y)
+		{
+			writer.add2(attributeId, x, y);
+			return this;
+		}
+		
+		@Override
+		public GeometryBuilder add3(int attributeId, float x, float y, float z)
+		{
+			writer.add3(attributeId, x, y, z);
+			return this;
+		}
+		
+		@Override
+		public GeometryBuilder add4(int attributeId, float x, float y, float z, float w)
+		{
+			writer.add4(attributeId, x, y, z, w);
+			return this;
+		}
+		
+		@Override
+		public GeometryBuilder addAll(int attributeId, float[] source, int offset, int count)
+		{
+			writer.addAll(attributeId, source, offset, count);
+			return this;
+		}
+		
+		@Override
+		public GeometryBuilder vertex(float[] source, int offset, int count)
+		{
+			writer.vertex(source, offset, count);
+			return this;
+		}
+		
+		@Override
+		public Writer writer(int firstVertex, int vertexCount)
+		{
+			if (firstVertex < 0 || vertexCount < 0 || firstVertex + vertexCount > vertices)
+				throw new IllegalArgumentException("Vertex range [" + firstVertex + ", " + (firstVertex + vertexCount) + ") is out of range: [0, " + vertices + ")");
+			int[] start = new int[attributeSizes.length];
+			for (int i = 0; i < start.length; i++)
+				start[i] = firstVertex;
+			return new Writer(buffer, strideSize, attributeSizes, attributeOffsets, firstVertex, firstVertex + vertexCount, start);
+		}
+		
+		@Override
+		public void fillParallel(int chunkVertices, Consumer<Writer> filler)
+		{
+			if (chunkVertices < 1)
+				throw new IllegalArgumentException("Chunk size must be 1 or greater.");
+			int chunks = (vertices + chunkVertices - 1) / chunkVertices;
+			IntStream.range(0, chunks).parallel().forEach((chunk) ->
+			{
+				int first = chunk * chunkVertices;
+				filler.accept(writer(first, Math.min(chunkVertices, vertices - first)));
+			});
+		}
+		
 		@Override
 		public int getAttributeCount()
 		{
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.blackrook.gloop.opengl.OGLGraphics;
+import com.blackrook.gloop.opengl.OGLVersion;
+import com.blackrook.gloop.opengl.enums.BufferTargetType;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+
+/**
+ * A builder class that assists the building of triangle index data to later fill in an index buffer.
+ * <p>
+ * The index data type is picked from the largest index added: {@link DataType#UNSIGNED_BYTE},
+ * {@link DataType#UNSIGNED_SHORT}, or {@link DataType#UNSIGNED_INTEGER}, whichever is smallest.
+ * <p>
+ * If strips are turned on via {@link #setStrips(boolean)}, the triangle list is converted to triangle strips
+ * joined by a primitive restart index (the largest value of the data type), if that makes for fewer indices.
+ * Primitive restart must then be enabled with that index when drawing (OpenGL 3.1 and higher):
+ * <pre>
+ * if (builder.hasRestartIndex())
+ * {
+ *     gl.setPrimitiveRestartEnabled(true);
+ *     gl.setPrimitiveRestartIndex(builder.getRestartIndex());
+ * }
+ * gl.drawGeometryElements(builder);
+ * </pre>
+ * <p>
+ * All of these methods can be called outside of the graphics thread except {@link #create()}.
+ * <p>
+ * Depending on implementation version, some methods may not be supported or available,
+ * and will throw {@link UnsupportedOperationException} if so.
+ * @author Matthew Tropiano
+ */
+public interface IndexBuilder
+{
+	/**
+	 * Adds one index.
+	 * @param index the index to add.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if the index is negative.
+	 */
+	IndexBuilder add(int index);
+
+	/**
+	 * Adds the indices of one triangle.
+	 * @param a the first index.
+	 * @param b the second index.
+	 * @param c the third index.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if an index is negative.
+	 */
+	IndexBuilder addTriangle(int a, int b, int c);
+
+	/**
+	 * Adds several indices at once.
+	 * @param indices the source indices.
+	 * @param offset the starting offset into the source array.
+	 * @param count the amount of indices to add.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if an index is negative.
+	 */
+	IndexBuilder addAll(int[] indices, int offset, int count);
+
+	/**
+	 * Sets if the triangle list should be converted to primitive-restart-joined triangle strips.
+	 * Strips are only used if they have fewer indices than the list.
+	 * @param strips true to convert, false to keep a triangle list.
+	 * @return this builder.
+	 * @throws UnsupportedOperationException if primitive restart is not available in this version.
+	 * @see MeshOptimizer#generateStrips(int[], int, int)
+	 */
+	IndexBuilder setStrips(boolean strips);
+
+	/**
+	 * @return the geometry type to draw the built indices with:
+	 * 		{@link GeometryType#TRIANGLES} or {@link GeometryType#TRIANGLE_STRIP}.
+	 * @throws IllegalArgumentException if the amount of indices added is not a multiple of 3.
+	 */
+	GeometryType getGeometryType();
+
+	/**
+	 * @return the data type of the built indices.
+	 * @throws IllegalArgumentException if the amount of indices added is not a multiple of 3.
+	 */
+	DataType getDataType();
+
+	/**
+	 * @return the amount of built indices (including restart indices).
+	 * @throws IllegalArgumentException if the amount of indices added is not a multiple of 3.
+	 */
+	int getIndexCount();
+
+	/**
+	 * @return true if the built indices are strips joined by a primitive restart index, false if not.
+	 * @throws IllegalArgumentException if the amount of indices added is not a multiple of 3.
+	 */
+	boolean hasRestartIndex();
+
+	/**
+	 * Gets the primitive restart index used between strips, which is the largest value of the data type
+	 * (0xffffffff, or -1 as a signed int, for {@link DataType#UNSIGNED_INTEGER}).
+	 * @return the restart index. Only meaningful if {@link #hasRestartIndex()} is true.
+	 * @throws IllegalArgumentException if the amount of indices added is not a multiple of 3.
+	 */
+	int getRestartIndex();
+
+	/**
+	 * Gets the built index data, in the built data type.
+	 * @return a new direct buffer of the index data, in native byte order.
+	 * @throws IllegalArgumentException if the amount of indices added is not a multiple of 3.
+	 */
+	ByteBuffer getIndexData();
+
+	/**
+	 * Creates a new buffer object bindable to the {@link BufferTargetType#INDICES} target.
+	 * @return the buffer created using this builder's data.
+	 * @throws IllegalArgumentException if the amount of indices added is not a multiple of 3.
+	 */
+	OGLBuffer create();
+
+	/**
+	 * Index builder utility class.
+	 * @param <GL> the graphics implementation that this executes on.
+	 */
+	public abstract class Abstract<GL extends OGLGraphics> implements IndexBuilder
+	{
+		protected GL gl;
+
+		/** Added indices. */
+		protected int[] indices;
+		/** Amount of added indices. */
+		protected int indexCount;
+		/** Largest added index. */
+		protected int maxIndex;
+		/** If true, convert to strips. */
+		protected boolean strips;
+
+		/** Built indices, or null if they need to be built. */
+		private int[] built;
+		/** Built index count. */
+		private int builtCount;
+		/** Built data type. */
+		private DataType builtType;
+		/** If true, built indices are restart-joined strips. */
+		private boolean builtStrips;
+		/** Built restart index. */
+		private int builtRestartIndex;
+
+		protected Abstract(GL gl)
+		{
+			this.gl = gl;
+			this.indices = new int[48];
+			this.indexCount = 0;
+			this.maxIndex = 0;
+			this.strips = false;
+			this.built = null;
+		}
+
+		@Override
+		public IndexBuilder add(int index)
+		{
+			checkIndex(index);
+			ensureCapacity(1);
+			indices[indexCount++] = index;
+			maxIndex = Math.max(maxIndex, index);
+			built = null;
+			return this;
+		}
+
+		@Override
+		public IndexBuilder addTriangle(int a, int b, int c)
+		{
+			checkIndex(a);
+			checkIndex(b);
+			checkIndex(c);
+			ensureCapacity(3);
+			indices[indexCount++] = a;
+			indices[indexCount++] = b;
+			indices[indexCount++] = c;
+			maxIndex = Math.max(maxIndex, Math.max(a, Math.max(b, c)));
+			built = null;
+			return this;
+		}
+
+		@Override
+		public IndexBuilder addAll(int[] indices, int offset, int count)
+		{
+			for (int i = 0; i < count; i++)
+				checkIndex(indices[offset + i]);
+			ensureCapacity(count);
+			System.arraycopy(indices, offset, this.indices, indexCount, count);
+			for (int i = 0; i < count; i++)
+				maxIndex = Math.max(maxIndex, indices[offset + i]);
+			indexCount += count;
+			built = null;
+			return this;
+		}
+
+		@Override
+		public IndexBuilder setStrips(boolean strips)
+		{
+			if (strips && gl.getVersion().compareTo(OGLVersion.GL31) < 0)
+				throw new UnsupportedOperationException("Primitive restart requires version " + OGLVersion.GL31.name());
+			this.strips = strips;
+			built = null;
+			return this;
+		}
+
+		@Override
+		public GeometryType getGeometryType()
+		{
+			build();
+			return builtStrips ? GeometryType.TRIANGLE_STRIP : GeometryType.TRIANGLES;
+		}
+
+		@Override
+		public DataType getDataType()
+		{
+			build();
+			return builtType;
+		}
+
+		@Override
+		public int getIndexCount()
+		{
+			build();
+			return builtCount;
+		}
+
+		@Override
+		public boolean hasRestartIndex()
+		{
+			build();
+			return builtStrips;
+		}
+
+		@Override
+		public int getRestartIndex()
+		{
+			build();
+			return builtRestartIndex;
+		}
+
+		@Override
+		public ByteBuffer getIndexData()
+		{
+			build();
+			ByteBuffer out = BufferUtils.allocDirectByteBuffer(builtCount * builtType.size);
+			switch (builtType)
+			{
+				case UNSIGNED_BYTE:
+					for (int i = 0; i < builtCount; i++)
+						out.put(i, (byte)built[i]);
+					break;
+				case UNSIGNED_SHORT:
+					for (int i = 0; i < builtCount; i++)
+						out.putShort(i * 2, (short)built[i]);
+					break;
+				default:
+					out.asIntBuffer().put(built, 0, builtCount);
+					break;
+			}
+			return out;
+		}
+
+		/**
+		 * Gets the smallest unsigned index type that can hold an index.
+		 * @param maxIndex the largest index.
+		 * @param restart if true, reserve the largest value of the type for a primitive restart index.
+		 * @return the data type.
+		 */
+		protected static DataType getIndexDataType(int maxIndex, boolean restart)
+		{
+			int reserved = restart ? 1 : 0;
+			if (maxIndex + reserved <= 0xff)
+				return DataType.UNSIGNED_BYTE;
+			else if (maxIndex + reserved <= 0xffff)
+				return DataType.UNSIGNED_SHORT;
+			else
+				return DataType.UNSIGNED_INTEGER;
+		}
+
+		/**
+		 * Gets the primitive restart index for an index type (its largest value).
+		 * @param dataType the index data type.
+		 * @return the restart index.
+		 */
+		protected static int getRestartIndexValue(DataType dataType)
+		{
+			switch (dataType)
+			{
+				case UNSIGNED_BYTE:
+					return 0xff;
+				case UNSIGNED_SHORT:
+					return 0xffff;
+				default:
+					return 0xffffffff;
+			}
+		}
+
+		// Builds the final indices, if needed.
+		private void build()
+		{
+			if (built != null)
+				return;
+			if (indexCount % 3 != 0)
+				throw new IllegalArgumentException("Index count must be a multiple of 3 for triangles.");
+
+			if (strips)
+			{
+				DataType type = getIndexDataType(maxIndex, true);
+				int restartIndex = getRestartIndexValue(type);
+				int[] stripIndices = MeshOptimizer.generateStrips(indices, indexCount, restartIndex);
+				if (stripIndices.length < indexCount)
+				{
+					built = stripIndices;
+					builtCount = stripIndices.length;
+					builtType = type;
+					builtStrips = true;
+					builtRestartIndex = restartIndex;
+					return;
+				}
+			}
+
+			built = indices;
+			builtCount = indexCount;
+			builtType = getIndexDataType(maxIndex, false);
+			builtStrips = false;
+			builtRestartIndex = getRestartIndexValue(builtType);
+		}
+
+		// Exception if an index is negative.
+		private void checkIndex(int index)
+		{
+			if (index < 0)
+				throw new IllegalArgumentException("Index cannot be negative: " + index);
+		}
+
+		// Grows the index array to fit more indices.
+		private void ensureCapacity(int count)
+		{
+			if (indexCount + count > indices.length)
+				indices = Arrays.copyOf(indices, Math.max(indexCount + count, indices.length * 2));
+		}
+
+	}
+
+}
@@ -0,0 +1,555 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.util.Arrays;
+
+/**
+ * Mesh optimization utility class, for indexed triangle lists of interleaved float vertex data
+ * (like the data made by a {@link GeometryBuilder}), before they are uploaded.
+ * <p>
+ * The usual order of operations is:
+ * <ol>
+ * <li>{@link #weldVertices(float[], int, int, int[], int)} - remove duplicate vertices.</li>
+ * <li>{@link #optimizeVertexCache(int[], int, int)} - reorder triangles for the post-transform vertex cache.</li>
+ * <li>{@link #optimizeVertexFetch(float[], int, int, int[], int)} - reorder vertices in the order that they are first used.</li>
+ * </ol>
+ * ...which is what {@link #optimize(float[], int, int, int[], int)} does.
+ * <p>
+ * All of these methods change the arrays passed to them in place, and can be called outside of the graphics thread.
+ * @author Matthew Tropiano
+ */
+public final class MeshOptimizer
+{
+	/** Default simulated cache size for metrics. */
+	public static final int DEFAULT_CACHE_SIZE = 16;
+
+	/** Modeled cache size for vertex cache optimization. */
+	private static final int CACHE_SIZE = 32;
+	/** Score for the vertices of the last triangle added. */
+	private static final float LAST_TRIANGLE_SCORE = 0.75f;
+	/** Exponent of the cache position score falloff. */
+	private static final float CACHE_DECAY_POWER = 1.5f;
+	/** Scale of the remaining triangle count score. */
+	private static final float VALENCE_BOOST_SCALE = 2.0f;
+	/** Exponent of the remaining triangle count score. */
+	private static final float VALENCE_BOOST_POWER = -0.5f;
+
+	private MeshOptimizer() {}
+
+	/**
+	 * Welds, reorders for the vertex cache, and reorders for vertex fetch, in that order.
+	 * @param vertices the interleaved vertex data.
+	 * @param stride the amount of floats per vertex.
+	 * @param vertexCount the amount of vertices.
+	 * @param indices the triangle list indices.
+	 * @param indexCount the amount of indices (a multiple of 3).
+	 * @return the new amount of vertices.
+	 * @throws IllegalArgumentException if the index count is not a multiple of 3, or an index is out of range.
+	 */
+	public static int optimize(float[] vertices, int stride, int vertexCount, int[] indices, int indexCount)
+	{
+		vertexCount = weldVertices(vertices, stride, vertexCount, indices, indexCount);
+		optimizeVertexCache(indices, indexCount, vertexCount);
+		return optimizeVertexFetch(vertices, stride, vertexCount, indices, indexCount);
+	}
+
+	/**
+	 * Merges vertices that have the exact same data (all attributes), and remaps the indices to match.
+	 * The first occurrence of each distinct vertex is kept, in order, at the start of the vertex array.
+	 * Positive and negative zero are considered the same.
+	 * @param vertices the interleaved vertex data.
+	 * @param stride the amount of floats per vertex.
+	 * @param vertexCount the amount of vertices.
+	 * @param indices the indices.
+	 * @param indexCount the amount of indices.
+	 * @return the new amount of vertices.
+	 * @throws IllegalArgumentException if an index is out of range.
+	 */
+	public static int weldVertices(float[] vertices, int stride, int vertexCount, int[] indices, int indexCount)
+	{
+		checkIndices(indices, indexCount, vertexCount);
+
+		int tableSize = Integer.highestOneBit(Math.max(vertexCount, 1) * 2 - 1) << 1;
+		int mask = tableSize - 1;
+		int[] table = new int[tableSize];
+		Arrays.fill(table, -1);
+
+		int[] remap = new int[vertexCount];
+		int unique = 0;
+		for (int v = 0; v < vertexCount; v++)
+		{
+			int slot = hashVertex(vertices, v * stride, stride) & mask;
+			int found = -1;
+			while (table[slot] >= 0)
+			{
+				if (equalVertex(vertices, table[slot] * stride, v * stride, stride))
+				{
+					found = table[slot];
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			if (found >= 0)
+			{
+				remap[v] = found;
+			}
+			else
+			{
+				// Move the vertex down to the end of the unique ones - table entries always point at kept vertices.
+				if (unique != v)
+					System.arraycopy(vertices, v * stride, vertices, unique * stride, stride);
+				table[slot] = unique;
+				remap[v] = unique++;
+			}
+		}
+
+		for (int i = 0; i < indexCount; i++)
+			indices[i] = remap[indices[i]];
+		return unique;
+	}
+
+	/**
+	 * Reorders triangles so that consecutive triangles share vertices, for better use of the
+	 * post-transform vertex cache (Forsyth's linear-speed vertex cache optimization).
+	 * The vertices themselves are not changed.
+	 * @param indices the triangle list indices.
+	 * @param indexCount the amount of indices (a multiple of 3).
+	 * @param vertexCount the amount of vertices.
+	 * @throws IllegalArgumentException if the index count is not a multiple of 3, or an index is out of range.
+	 */
+	public static void optimizeVertexCache(int[] indices, int indexCount, int vertexCount)
+	{
+		checkTriangles(indexCount);
+		checkIndices(indices, indexCount, vertexCount);
+
+		int triangleCount = indexCount / 3;
+		if (triangleCount == 0)
+			return;
+
+		// Triangles per vertex.
+		int[] adjacencyOffsets = new int[vertexCount + 1];
+		for (int i = 0; i < indexCount; i++)
+			adjacencyOffsets[indices[i] + 1]++;
+		for (int v = 0; v < vertexCount; v++)
+			adjacencyOffsets[v + 1] += adjacencyOffsets[v];
+		int[] adjacency = new int[indexCount];
+		int[] liveTriangles = new int[vertexCount];
+		for (int i = 0; i < indexCount; i++)
+		{
+			int v = indices[i];
+			adjacency[adjacencyOffsets[v] + liveTriangles[v]++] = i / 3;
+		}
+
+		int[] cachePosition = new int[vertexCount];
+		Arrays.fill(cachePosition, -1);
+		float[] vertexScore = new float[vertexCount];
+		for (int v = 0; v < vertexCount; v++)
+			vertexScore[v] = getVertexScore(-1, liveTriangles[v]);
+
+		boolean[] emitted = new boolean[triangleCount];
+		int[] cache = new int[CACHE_SIZE + 3];
+		int[] nextCache = new int[CACHE_SIZE + 3];
+		int cacheCount = 0;
+		int[] out = new int[indexCount];
+
+		int best = 0;
+		int cursor = 0;
+		for (int t = 0; t < triangleCount; t++)
+		{
+			// Nothing adjacent to the cache: take the next triangle in input order.
+			if (best < 0)
+			{
+				while (emitted[cursor])
+					cursor++;
+				best = cursor;
+			}
+
+			emitted[best] = true;
+			int a = indices[best * 3], b = indices[best * 3 + 1], c = indices[best * 3 + 2];
+			out[t * 3] = a;
+			out[t * 3 + 1] = b;
+			out[t * 3 + 2] = c;
+
+			removeAdjacentTriangle(adjacency, adjacencyOffsets, liveTriangles, a, best);
+			removeAdjacentTriangle(adjacency, adjacencyOffsets, liveTriangles, b, best);
+			removeAdjacentTriangle(adjacency, adjacencyOffsets, liveTriangles, c, best);
+
+			// New triangle's vertices go to the front of the cache, the rest shift down.
+			int nextCount = 0;
+			nextCache[nextCount++] = a;
+			if (b != a)
+				nextCache[nextCount++] = b;
+			if (c != a && c != b)
+				nextCache[nextCount++] = c;
+			for (int i = 0; i < cacheCount; i++)
+			{
+				int v = cache[i];
+				if (v != a && v != b && v != c)
+				{
+					if (nextCount < nextCache.length)
+						nextCache[nextCount++] = v;
+					else
+						cachePosition[v] = -1;
+				}
+			}
+
+			for (int i = 0; i < nextCount; i++)
+			{
+				int v = nextCache[i];
+				cachePosition[v] = i < CACHE_SIZE ? i : -1;
+				vertexScore[v] = getVertexScore(cachePosition[v], liveTriangles[v]);
+			}
+			// Any vertex that fell off the end of the cache.
+			for (int i = 0; i < cacheCount; i++)
+			{
+				int v = cache[i];
+				if (cachePosition[v] < 0)
+					vertexScore[v] = getVertexScore(-1, liveTriangles[v]);
+			}
+
+			int[] swap = cache;
+			cache = nextCache;
+			nextCache = swap;
+			cacheCount = Math.min(nextCount, CACHE_SIZE);
+
+			// Best next triangle touches the cache.
+			best = -1;
+			float bestScore = -1f;
+			for (int i = 0; i < cacheCount; i++)
+			{
+				int v = cache[i];
+				for (int j = adjacencyOffsets[v], end = j + liveTriangles[v]; j < end; j++)
+				{
+					int triangle = adjacency[j];
+					float score = vertexScore[indices[triangle * 3]] + vertexScore[indices[triangle * 3 + 1]] + vertexScore[indices[triangle * 3 + 2]];
+					if (score > bestScore)
+					{
+						bestScore = score;
+						best = triangle;
+					}
+				}
+			}
+		}
+
+		System.arraycopy(out, 0, indices, 0, indexCount);
+	}
+
+	/**
+	 * Reorders vertices in the order that they are first referenced by the indices, and remaps the indices to match.
+	 * Vertices that are not referenced are removed.
+	 * @param vertices the interleaved vertex data.
+	 * @param stride the amount of floats per vertex.
+	 * @param vertexCount the amount of vertices.
+	 * @param indices the indices.
+	 * @param indexCount the amount of indices.
+	 * @return the new amount of vertices.
+	 * @throws IllegalArgumentException if an index is out of range.
+	 */
+	public static int optimizeVertexFetch(float[] vertices, int stride, int vertexCount, int[] indices, int indexCount)
+	{
+		checkIndices(indices, indexCount, vertexCount);
+
+		int[] remap = new int[vertexCount];
+		Arrays.fill(remap, -1);
+		float[] source = Arrays.copyOf(vertices, vertexCount * stride);
+		int next = 0;
+		for (int i = 0; i < indexCount; i++)
+		{
+			int v = indices[i];
+			if (remap[v] < 0)
+			{
+				System.arraycopy(source, v * stride, vertices, next * stride, stride);
+				remap[v] = next++;
+			}
+			indices[i] = remap[v];
+		}
+		return next;
+	}
+
+	/**
+	 * Gets the average cache miss ratio (ACMR) of a triangle list: the average amount of vertices
+	 * transformed per triangle, using a simulated FIFO post-transform cache.
+	 * Lower is better: 3.0 is the worst, and about 0.5 is the best possible for large regular meshes.
+	 * @param indices the triangle list indices.
+	 * @param indexCount the amount of indices (a multiple of 3).
+	 * @param vertexCount the amount of vertices.
+	 * @param cacheSize the simulated cache size, in vertices.
+	 * @return the ACMR, or 0 if there are no triangles.
+	 * @throws IllegalArgumentException if the index count is not a multiple of 3, or an index is out of range.
+	 */
+	public static float getACMR(int[] indices, int indexCount, int vertexCount, int cacheSize)
+	{
+		checkTriangles(indexCount);
+		if (indexCount == 0)
+			return 0f;
+		return (float)getCacheMisses(indices, indexCount, vertexCount, cacheSize) / (indexCount / 3);
+	}
+
+	/**
+	 * Gets the average transform to vertex ratio (ATVR) of a triangle list: the amount of vertices
+	 * transformed per referenced vertex, using a simulated FIFO post-transform cache.
+	 * Lower is better: 1.0 is the best (each vertex is transformed once).
+	 * @param indices the triangle list indices.
+	 * @param indexCount the amount of indices (a multiple of 3).
+	 * @param vertexCount the amount of vertices.
+	 * @param cacheSize the simulated cache size, in vertices.
+	 * @return the ATVR, or 0 if there are no triangles.
+	 * @throws IllegalArgumentException if the index count is not a multiple of 3, or an index is out of range.
+	 */
+	public static float getATVR(int[] indices, int indexCount, int vertexCount, int cacheSize)
+	{
+		checkTriangles(indexCount);
+		if (indexCount == 0)
+			return 0f;
+
+		boolean[] referenced = new boolean[vertexCount];
+		int unique = 0;
+		for (int i = 0; i < indexCount; i++)
+		{
+			if (!referenced[indices[i]])
+			{
+				referenced[indices[i]] = true;
+				unique++;
+			}
+		}
+		return (float)getCacheMisses(indices, indexCount, vertexCount, cacheSize) / unique;
+	}
+
+	/**
+	 * Converts a triangle list into triangle strips, joined into one index list by a primitive restart index.
+	 * Strips follow shared edges with matching winding, so triangles keep their facing.
+	 * The result can be drawn as {@link com.blackrook.gloop.opengl.enums.GeometryType#TRIANGLE_STRIP} with
+	 * primitive restart enabled (see {@link com.blackrook.gloop.opengl.gl3.OGL31Graphics#setPrimitiveRestartIndex(int)}).
+	 * @param indices the triangle list indices.
+	 * @param indexCount the amount of indices (a multiple of 3).
+	 * @param restartIndex the primitive restart index to put between strips.
+	 * @return the new strip indices.
+	 * @throws IllegalArgumentException if the index count is not a multiple of 3.
+	 */
+	public static int[] generateStrips(int[] indices, int indexCount, int restartIndex)
+	{
+		checkTriangles(indexCount);
+		int triangleCount = indexCount / 3;
+
+		// Directed edges by key - edge e goes from indices[e] to the next vertex in its triangle.
+		int tableSize = Integer.highestOneBit(Math.max(indexCount, 1) * 2 - 1) << 1;
+		int mask = tableSize - 1;
+		long[] keys = new long[tableSize];
+		int[] heads = new int[tableSize];
+		Arrays.fill(heads, -1);
+		int[] next = new int[indexCount];
+		for (int e = 0; e < indexCount; e++)
+		{
+			long key = getEdgeKey(indices[e], indices[e - e % 3 + (e + 1) % 3]);
+			int slot = findEdgeSlot(keys, heads, mask, key);
+			keys[slot] = key;
+			next[e] = heads[slot];
+			heads[slot] = e;
+		}
+
+		boolean[] emitted = new boolean[triangleCount];
+		int[] stamps = new int[triangleCount];
+		int[] out = new int[Math.max(indexCount, 16)];
+		int outCount = 0;
+		int[] seed = new int[3];
+		for (int t = 0; t < triangleCount; t++)
+		{
+			if (emitted[t])
+				continue;
+
+			// Start with the rotation that makes the longest strip.
+			int bestRotation = 0;
+			int bestLength = -1;
+			for (int r = 0; r < 3; r++)
+			{
+				rotateTriangle(indices, t, r, seed);
+				int stamp = t * 3 + r + 1;
+				stamps[t] = stamp;
+				int length = walkStrip(indices, keys, heads, next, mask, emitted, stamps, stamp, seed[1], seed[2], null, 0);
+				if (length > bestLength)
+				{
+					bestLength = length;
+					bestRotation = r;
+				}
+			}
+
+			int needed = outCount + (outCount > 0 ? 1 : 0) + 3 + bestLength;
+			if (needed > out.length)
+				out = Arrays.copyOf(out, Math.max(needed, out.length * 2));
+			if (outCount > 0)
+				out[outCount++] = restartIndex;
+			rotateTriangle(indices, t, bestRotation, seed);
+			out[outCount++] = seed[0];
+			out[outCount++] = seed[1];
+			out[outCount++] = seed[2];
+			emitted[t] = true;
+			outCount += walkStrip(indices, keys, heads, next, mask, emitted, null, 0, seed[1], seed[2], out, outCount);
+		}
+		return Arrays.copyOf(out, outCount);
+	}
+
+	// Extends a strip from its last two vertices. If "out" is null, it only measures, using stamps instead of marking triangles.
+	private static int walkStrip(int[] indices, long[] keys, int[] heads, int[] next, int mask, boolean[] emitted, int[] stamps, int stamp, int x, int y, int[] out, int outOffset)
+	{
+		int length = 0;
+		boolean odd = true;
+		while (true)
+		{
+			// Odd triangles in a strip are wound backwards.
+			long key = odd ? getEdgeKey(y, x) : getEdgeKey(x, y);
+			int slot = findEdgeSlot(keys, heads, mask, key);
+			int found = -1;
+			for (int e = heads[slot]; e >= 0; e = next[e])
+			{
+				int t = e / 3;
+				if (!emitted[t] && (stamps == null || stamps[t] != stamp))
+				{
+					found = e;
+					break;
+				}
+			}
+			if (found < 0)
+				return length;
+
+			int t = found / 3;
+			int z = indices[t * 3 + (found + 2) % 3];
+			if (out == null)
+			{
+				stamps[t] = stamp;
+			}
+			else
+			{
+				emitted[t] = true;
+				out[outOffset + length] = z;
+			}
+			length++;
+			x = y;
+			y = z;
+			odd = !odd;
+		}
+	}
+
+	// Gets a triangle's vertices, rotated.
+	private static void rotateTriangle(int[] indices, int triangle, int rotation, int[] out)
+	{
+		for (int k = 0; k < 3; k++)
+			out[k] = indices[triangle * 3 + (k + rotation) % 3];
+	}
+
+	// Gets the key for a directed edge.
+	private static long getEdgeKey(int from, int to)
+	{
+		return ((long)from << 32) | (to & 0xffffffffL);
+	}
+
+	// Finds the hash table slot for an edge key (either its slot or the empty slot for it).
+	private static int findEdgeSlot(long[] keys, int[] heads, int mask, long key)
+	{
+		int slot = (int)((key ^ (key >>> 29)) * 0x9e3779b97f4a7c15L >>> 40) & mask;
+		while (heads[slot] >= 0 && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	// Counts the cache misses of a simulated FIFO cache.
+	private static int getCacheMisses(int[] indices, int indexCount, int vertexCount, int cacheSize)
+	{
+		checkIndices(indices, indexCount, vertexCount);
+		if (cacheSize < 1)
+			throw new IllegalArgumentException("Cache size must be 1 or greater.");
+
+		// A vertex is in the cache if it was added within the last cacheSize misses.
+		int[] addedAt = new int[vertexCount];
+		Arrays.fill(addedAt, Integer.MIN_VALUE);
+		int misses = 0;
+		for (int i = 0; i < indexCount; i++)
+		{
+			int v = indices[i];
+			if (addedAt[v] == Integer.MIN_VALUE || misses - addedAt[v] >= cacheSize)
+				addedAt[v] = ++misses;
+		}
+		return misses;
+	}
+
+	// Forsyth's vertex score.
+	private static float getVertexScore(int cachePosition, int liveTriangles)
+	{
+		if (liveTriangles == 0)
+			return -1f;
+
+		float score = 0f;
+		if (cachePosition >= 0)
+		{
+			if (cachePosition < 3)
+				score = LAST_TRIANGLE_SCORE;
+			else
+				score = (float)Math.pow(1f - (float)(cachePosition - 3) / (CACHE_SIZE - 3), CACHE_DECAY_POWER);
+		}
+		return score + VALENCE_BOOST_SCALE * (float)Math.pow(liveTriangles, VALENCE_BOOST_POWER);
+	}
+
+	// Removes a triangle from a vertex's live triangles.
+	private static void removeAdjacentTriangle(int[] adjacency, int[] adjacencyOffsets, int[] liveTriangles, int vertex, int triangle)
+	{
+		int start = adjacencyOffsets[vertex];
+		int last = start + liveTriangles[vertex] - 1;
+		for (int j = start; j <= last; j++)
+		{
+			if (adjacency[j] == triangle)
+			{
+				adjacency[j] = adjacency[last];
+				adjacency[last] = triangle;
+				liveTriangles[vertex]--;
+				return;
+			}
+		}
+	}
+
+	// Hashes a vertex's data.
+	private static int hashVertex(float[] vertices, int offset, int stride)
+	{
+		int hash = 0x811c9dc5;
+		for (int i = 0; i < stride; i++)
+		{
+			float f = vertices[offset + i];
+			hash = (hash ^ Float.floatToIntBits(f == 0f ? 0f : f)) * 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	// Compares two vertices' data.
+	private static boolean equalVertex(float[] vertices, int offsetA, int offsetB, int stride)
+	{
+		for (int i = 0; i < stride; i++)
+		{
+			float a = vertices[offsetA + i];
+			float b = vertices[offsetB + i];
+			if (a != b && Float.floatToIntBits(a) != Float.floatToIntBits(b))
+				return false;
+		}
+		return true;
+	}
+
+	// Exception if the index count is not a whole amount of triangles.
+	private static void checkTriangles(int indexCount)
+	{
+		if (indexCount % 3 != 0)
+			throw new IllegalArgumentException("Index count must be a multiple of 3 for triangles.");
+	}
+
+	// Exception if any index is out of range.
+	private static void checkIndices(int[] indices, int indexCount, int vertexCount)
+	{
+		for (int i = 0; i < indexCount; i++)
+			if (indices[i] < 0 || indices[i] >= vertexCount)
+				throw new IllegalArgumentException("Index " + indices[i] + " at " + i + " is out of range: [0, " + (vertexCount - 1) + "]");
+	}
+
+}
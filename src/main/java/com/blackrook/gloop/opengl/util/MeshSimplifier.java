@@ -0,0 +1,765 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Mesh simplification utility class, for generating levels of detail from indexed triangle lists
+ * of interleaved float vertex data (like the data made by a {@link GeometryBuilder}).
+ * <p>
+ * Simplification collapses edges in order of least quadric error (Garland-Heckbert), where each collapse
+ * moves a vertex onto one of its neighbors. Since no new vertices are made, every level of detail is just
+ * a new index list into the original vertex data, so only index buffers need to be added per level.
+ * <p>
+ * Vertices on attribute seams (where vertices share a position but differ in other attributes),
+ * open borders, and non-manifold edges are never moved, so seams and silhouettes are kept intact.
+ * Vertices that share both a position and all other attributes are welded into one first, so duplicated
+ * vertices are simplified like any other (and the levels only reference one of each duplicate).
+ * <p>
+ * All of these methods can be called outside of the graphics thread.
+ * @author Matthew Tropiano
+ */
+public final class MeshSimplifier
+{
+	/**
+	 * Mesh data to simplify. The data is not changed by simplification.
+	 */
+	public static final class Mesh
+	{
+		private float[] vertices;
+		private int stride;
+		private int positionOffset;
+		private int vertexCount;
+		private int[] indices;
+		private int indexCount;
+
+		/**
+		 * Creates a new mesh description.
+		 * @param vertices the interleaved vertex data.
+		 * @param stride the amount of floats per vertex.
+		 * @param positionOffset the offset in each vertex of its 3-component position, in floats.
+		 * @param vertexCount the amount of vertices.
+		 * @param indices the triangle list indices.
+		 * @param indexCount the amount of indices (a multiple of 3).
+		 * @throws IllegalArgumentException if the index count is not a multiple of 3, the position does not fit in the stride,
+		 * 		the vertex data is not a multiple of the stride or is too short for the vertex count,
+		 * 		or an index is out of range.
+		 */
+		public Mesh(float[] vertices, int stride, int positionOffset, int vertexCount, int[] indices, int indexCount)
+		{
+			if (indexCount % 3 != 0)
+				throw new IllegalArgumentException("Index count must be a multiple of 3 for triangles.");
+			if (indexCount < 0 || indexCount > indices.length)
+				throw new IllegalArgumentException("Index count " + indexCount + " is out of range: [0, " + indices.length + "]");
+			if (positionOffset < 0 || positionOffset + 3 > stride)
+				throw new IllegalArgumentException("Position must fit in the vertex stride.");
+			if (vertices.length % stride != 0)
+				throw new IllegalArgumentException("Vertex data length " + vertices.length + " is not a multiple of the stride " + stride + ".");
+			if (vertexCount < 0 || vertexCount > vertices.length / stride)
+				throw new IllegalArgumentException("Vertex count " + vertexCount + " is out of range: [0, " + (vertices.length / stride) + "]");
+			for (int i = 0; i < indexCount; i++)
+				if (indices[i] < 0 || indices[i] >= vertexCount)
+					throw new IllegalArgumentException("Index " + indices[i] + " at " + i + " is out of range: [0, " + (vertexCount - 1) + "]");
+			this.vertices = vertices;
+			this.stride = stride;
+			this.positionOffset = positionOffset;
+			this.vertexCount = vertexCount;
+			this.indices = indices;
+			this.indexCount = indexCount;
+		}
+
+	}
+
+	/**
+	 * A single generated level of detail.
+	 */
+	public static final class LevelOfDetail
+	{
+		private int[] indices;
+		private float targetRatio;
+		private float error;
+		private long nanos;
+
+		private LevelOfDetail(int[] indices, float targetRatio, float error, long nanos)
+		{
+			this.indices = indices;
+			this.targetRatio = targetRatio;
+			this.error = error;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return the triangle list indices of this level, into the original vertex data.
+		 */
+		public int[] getIndices()
+		{
+			return indices;
+		}
+
+		/**
+		 * @return the amount of triangles in this level.
+		 */
+		public int getTriangleCount()
+		{
+			return indices.length / 3;
+		}
+
+		/**
+		 * @return the requested ratio of triangles (to the original amount) for this level.
+		 */
+		public float getTargetRatio()
+		{
+			return targetRatio;
+		}
+
+		/**
+		 * Gets the error of this level: the square root of the largest quadric error of any collapse
+		 * made so far, which approximates the largest distance that the surface moved, in position units.
+		 * @return the achieved error.
+		 */
+		public float getError()
+		{
+			return error;
+		}
+
+		/**
+		 * @return the time taken to simplify from the previous level (or the original mesh) to this one, in nanoseconds.
+		 */
+		public long getTimeNanos()
+		{
+			return nanos;
+		}
+
+	}
+
+	private MeshSimplifier() {}
+
+	/**
+	 * Generates a chain of levels of detail for a mesh.
+	 * Each level is simplified from the one before it, so the chain is generated in one pass.
+	 * If a target cannot be reached (too many vertices are locked), the level has as few triangles as could be made.
+	 * @param mesh the mesh to simplify.
+	 * @param ratios the target ratios of triangles to the original amount, per level, in descending order (each from 0 to 1).
+	 * @return the levels, one per ratio, in the same order.
+	 * @throws IllegalArgumentException if a ratio is not between 0 and 1, or the ratios are not in descending order.
+	 */
+	public static LevelOfDetail[] simplify(Mesh mesh, float ... ratios)
+	{
+		checkRatios(ratios);
+		return (new Simplifier(mesh)).run(ratios);
+	}
+
+	/**
+	 * Generates chains of levels of detail for several meshes in parallel, on the common fork/join pool.
+	 * @param meshes the meshes to simplify.
+	 * @param ratios the target ratios of triangles to the original amount, per level, in descending order (each from 0 to 1).
+	 * @return the level chains, one per mesh, in the same order as the meshes.
+	 * @throws IllegalArgumentException if a ratio is not between 0 and 1, or the ratios are not in descending order.
+	 * @see #simplify(Mesh, float...)
+	 */
+	public static List<LevelOfDetail[]> simplify(List<Mesh> meshes, float ... ratios)
+	{
+		checkRatios(ratios);
+		return meshes.parallelStream()
+			.map((mesh) -> (new Simplifier(mesh)).run(ratios))
+			.collect(Collectors.toList());
+	}
+
+	// Exception if ratios are out of range or order.
+	private static void checkRatios(float[] ratios)
+	{
+		for (int i = 0; i < ratios.length; i++)
+		{
+			if (!(ratios[i] >= 0f && ratios[i] <= 1f))
+				throw new IllegalArgumentException("Ratio " + ratios[i] + " must be between 0 and 1.");
+			if (i > 0 && ratios[i] > ratios[i - 1])
+				throw new IllegalArgumentException("Ratios must be in descending order.");
+		}
+	}
+
+	/** A candidate edge collapse. */
+	private static class Collapse implements Comparable<Collapse>
+	{
+		private double cost;
+		private int from;
+		private int to;
+		private int version;
+
+		private Collapse(double cost, int from, int to, int version)
+		{
+			this.cost = cost;
+			this.from = from;
+			this.to = to;
+			this.version = version;
+		}
+
+		@Override
+		public int compareTo(Collapse o)
+		{
+			return Double.compare(cost, o.cost);
+		}
+	}
+
+	/** The simplification state of one mesh. */
+	private static class Simplifier
+	{
+		private float[] vertices;
+		private int stride;
+		private int positionOffset;
+		private int vertexCount;
+
+		/** Triangle vertices (first is -1 if removed). */
+		private int[] triangles;
+		/** Amount of triangles at start. */
+		private int originalTriangleCount;
+		/** Amount of triangles left. */
+		private int triangleCount;
+
+		/** Triangles per vertex (may include removed triangles). */
+		private int[][] vertexTriangles;
+		private int[] vertexTriangleCounts;
+
+		/** Position group per vertex. */
+		private int[] group;
+		/** First vertex per group. */
+		private int[] groupHead;
+		/** Next vertex in the same group, or -1. */
+		private int[] groupNext;
+		/** Quadrics per group (10 values each). */
+		private double[] quadrics;
+
+		private boolean[] locked;
+		private boolean[] collapsed;
+		private int[] versions;
+		private PriorityQueue<Collapse> queue;
+		/** Marks for queued collapse targets. */
+		private int[] queued;
+		private int queueMark;
+
+		/** Marks for neighbor tests. */
+		private int[] marks;
+		private int[] seen;
+		private int mark;
+
+		/** Planes for flip tests. */
+		private double[] planeBefore;
+		private double[] planeAfter;
+
+		private double maxError;
+
+		private Simplifier(Mesh mesh)
+		{
+			this.vertices = mesh.vertices;
+			this.stride = mesh.stride;
+			this.positionOffset = mesh.positionOffset;
+			this.vertexCount = mesh.vertexCount;
+
+			this.triangles = Arrays.copyOf(mesh.indices, mesh.indexCount);
+			this.originalTriangleCount = mesh.indexCount / 3;
+			this.triangleCount = originalTriangleCount;
+			this.collapsed = new boolean[vertexCount];
+			this.locked = new boolean[vertexCount];
+			this.versions = new int[vertexCount];
+			this.queue = new PriorityQueue<>();
+			this.queued = new int[vertexCount];
+			this.queueMark = 0;
+			this.planeBefore = new double[4];
+			this.planeAfter = new double[4];
+			this.maxError = 0.0;
+
+			buildGroups();
+			weldDuplicates();
+			removeDegenerateTriangles();
+			buildVertexTriangles();
+			lockSeamsAndBorders();
+			buildQuadrics();
+
+			int groupCount = groupHead.length;
+			this.marks = new int[groupCount];
+			this.seen = new int[groupCount];
+			this.mark = 0;
+
+			for (int v = 0; v < vertexCount; v++)
+				pushCollapses(v);
+		}
+
+		// Runs the simplification, taking a snapshot at each ratio.
+		private LevelOfDetail[] run(float[] ratios)
+		{
+			LevelOfDetail[] out = new LevelOfDetail[ratios.length];
+			for (int i = 0; i < ratios.length; i++)
+			{
+				long start = System.nanoTime();
+				int target = (int)(originalTriangleCount * ratios[i]);
+				while (triangleCount > target && !queue.isEmpty())
+				{
+					Collapse c = queue.poll();
+					if (collapsed[c.from] || collapsed[c.to] || versions[c.from] != c.version)
+						continue;
+					if (!canCollapse(c.from, c.to))
+						continue;
+					collapse(c.from, c.to);
+					maxError = Math.max(maxError, c.cost);
+				}
+				out[i] = new LevelOfDetail(getIndices(), ratios[i], (float)Math.sqrt(maxError), System.nanoTime() - start);
+			}
+			return out;
+		}
+
+		// Groups vertices by exact position.
+		private void buildGroups()
+		{
+			int tableSize = Integer.highestOneBit(Math.max(vertexCount, 1) * 2 - 1) << 1;
+			int mask = tableSize - 1;
+			int[] table = new int[tableSize];
+			Arrays.fill(table, -1);
+
+			group = new int[vertexCount];
+			groupNext = new int[vertexCount];
+			int[] heads = new int[vertexCount];
+			int groupCount = 0;
+			for (int v = 0; v < vertexCount; v++)
+			{
+				int slot = hashPosition(v) & mask;
+				int found = -1;
+				while (table[slot] >= 0)
+				{
+					if (samePosition(table[slot], v))
+					{
+						found = group[table[slot]];
+						break;
+					}
+					slot = (slot + 1) & mask;
+				}
+
+				if (found >= 0)
+				{
+					group[v] = found;
+					groupNext[v] = heads[found];
+					heads[found] = v;
+				}
+				else
+				{
+					table[slot] = v;
+					group[v] = groupCount;
+					groupNext[v] = -1;
+					heads[groupCount++] = v;
+				}
+			}
+			groupHead = Arrays.copyOf(heads, groupCount);
+		}
+
+		// Welds vertices with the same position and attributes, so that only seam vertices are left in multi-vertex groups.
+		private void weldDuplicates()
+		{
+			int[] remap = null;
+			for (int g = 0; g < groupHead.length; g++)
+			{
+				int head = groupHead[g];
+				int tail = head;
+				int v = groupNext[head];
+				while (v >= 0)
+				{
+					int next = groupNext[v];
+					int same = findSameVertex(head, tail, v);
+					if (same >= 0)
+					{
+						if (remap == null)
+						{
+							remap = new int[vertexCount];
+							for (int i = 0; i < vertexCount; i++)
+								remap[i] = i;
+						}
+						remap[v] = same;
+						groupNext[v] = -1;
+					}
+					else
+					{
+						groupNext[tail] = v;
+						tail = v;
+					}
+					v = next;
+				}
+				groupNext[tail] = -1;
+			}
+
+			if (remap != null)
+				for (int i = 0; i < originalTriangleCount * 3; i++)
+					triangles[i] = remap[triangles[i]];
+		}
+
+		// Finds a vertex in a group chain (from head to tail) with the same data as another vertex, or -1 if none.
+		private int findSameVertex(int head, int tail, int v)
+		{
+			for (int u = head; ; u = groupNext[u])
+			{
+				if (sameVertex(u, v))
+					return u;
+				if (u == tail)
+					return -1;
+			}
+		}
+
+		// Removes triangles that use the same position more than once.
+		private void removeDegenerateTriangles()
+		{
+			for (int t = 0; t < originalTriangleCount; t++)
+			{
+				int a = group[triangles[t * 3]], b = group[triangles[t * 3 + 1]], c = group[triangles[t * 3 + 2]];
+				if (a == b || b == c || a == c)
+				{
+					triangles[t * 3] = -1;
+					triangleCount--;
+				}
+			}
+		}
+
+		// Builds the triangle lists per vertex.
+		private void buildVertexTriangles()
+		{
+			vertexTriangleCounts = new int[vertexCount];
+			for (int t = 0; t < originalTriangleCount; t++)
+				if (triangles[t * 3] >= 0)
+					for (int k = 0; k < 3; k++)
+						vertexTriangleCounts[triangles[t * 3 + k]]++;
+
+			vertexTriangles = new int[vertexCount][];
+			for (int v = 0; v < vertexCount; v++)
+			{
+				vertexTriangles[v] = new int[Math.max(vertexTriangleCounts[v], 4)];
+				vertexTriangleCounts[v] = 0;
+			}
+			for (int t = 0; t < originalTriangleCount; t++)
+				if (triangles[t * 3] >= 0)
+					for (int k = 0; k < 3; k++)
+						addVertexTriangle(triangles[t * 3 + k], t);
+		}
+
+		// Locks vertices on seams, borders, and non-manifold edges.
+		private void lockSeamsAndBorders()
+		{
+			// After welding, any group with more than one vertex has differing attributes.
+			for (int g = 0; g < groupHead.length; g++)
+				if (groupNext[groupHead[g]] >= 0)
+					lockGroup(g);
+
+			// Undirected position edges - any edge not shared by exactly two triangles is a border or non-manifold.
+			long[] edges = new long[triangleCount * 3];
+			int edgeCount = 0;
+			for (int t = 0; t < originalTriangleCount; t++)
+			{
+				if (triangles[t * 3] < 0)
+					continue;
+				for (int k = 0; k < 3; k++)
+				{
+					int a = group[triangles[t * 3 + k]];
+					int b = group[triangles[t * 3 + (k + 1) % 3]];
+					edges[edgeCount++] = ((long)Math.min(a, b) << 32) | Math.max(a, b);
+				}
+			}
+			Arrays.sort(edges, 0, edgeCount);
+			for (int i = 0; i < edgeCount;)
+			{
+				int j = i + 1;
+				while (j < edgeCount && edges[j] == edges[i])
+					j++;
+				if (j - i != 2)
+				{
+					lockGroup((int)(edges[i] >>> 32));
+					lockGroup((int)edges[i]);
+				}
+				i = j;
+			}
+		}
+
+		// Builds the plane quadrics per position group.
+		private void buildQuadrics()
+		{
+			quadrics = new double[groupHead.length * 10];
+			double[] plane = new double[4];
+			for (int t = 0; t < originalTriangleCount; t++)
+			{
+				if (triangles[t * 3] < 0)
+					continue;
+				if (!getPlane(triangles[t * 3], triangles[t * 3 + 1], triangles[t * 3 + 2], plane))
+					continue;
+				for (int k = 0; k < 3; k++)
+					addPlane(group[triangles[t * 3 + k]] * 10, plane);
+			}
+		}
+
+		// Queues a collapse out of a vertex along each of its edges, so if the cheapest one is rejected, the next one is still queued.
+		private void pushCollapses(int from)
+		{
+			if (locked[from] || collapsed[from])
+				return;
+
+			queueMark++;
+			for (int i = 0; i < vertexTriangleCounts[from]; i++)
+			{
+				int t = vertexTriangles[from][i];
+				if (triangles[t * 3] < 0)
+					continue;
+				for (int k = 0; k < 3; k++)
+				{
+					int to = triangles[t * 3 + k];
+					if (to == from || queued[to] == queueMark)
+						continue;
+					queued[to] = queueMark;
+					queue.add(new Collapse(getCollapseCost(from, to), from, to, versions[from]));
+				}
+			}
+		}
+
+		// Checks if a collapse keeps the mesh manifold and does not flip any triangles.
+		private boolean canCollapse(int from, int to)
+		{
+			int fromGroup = group[from];
+			int toGroup = group[to];
+
+			// Mark neighbors of "from" (which is not on a seam, so its triangles are its whole fan).
+			mark++;
+			int shared = 0;
+			for (int i = 0; i < vertexTriangleCounts[from]; i++)
+			{
+				int t = vertexTriangles[from][i];
+				if (triangles[t * 3] < 0)
+					continue;
+				boolean hasTo = false;
+				for (int k = 0; k < 3; k++)
+				{
+					int g = group[triangles[t * 3 + k]];
+					marks[g] = mark;
+					hasTo |= g == toGroup;
+				}
+				if (hasTo)
+					shared++;
+			}
+			if (shared != 2)
+				return false;
+
+			// Link condition: the two vertices may only share the two neighbors opposite the collapsed edge.
+			int common = 0;
+			for (int v = groupHead[toGroup]; v >= 0; v = groupNext[v])
+			{
+				for (int i = 0; i < vertexTriangleCounts[v]; i++)
+				{
+					int t = vertexTriangles[v][i];
+					if (triangles[t * 3] < 0)
+						continue;
+					for (int k = 0; k < 3; k++)
+					{
+						int g = group[triangles[t * 3 + k]];
+						if (g != fromGroup && g != toGroup && marks[g] == mark && seen[g] != mark)
+						{
+							seen[g] = mark;
+							common++;
+						}
+					}
+				}
+			}
+			if (common != 2)
+				return false;
+
+			// No flipped triangles.
+			for (int i = 0; i < vertexTriangleCounts[from]; i++)
+			{
+				int t = vertexTriangles[from][i];
+				if (triangles[t * 3] < 0)
+					continue;
+				int a = triangles[t * 3], b = triangles[t * 3 + 1], c = triangles[t * 3 + 2];
+				if (group[a] == toGroup || group[b] == toGroup || group[c] == toGroup)
+					continue;
+				if (flips(a, b, c, from, to))
+					return false;
+			}
+			return true;
+		}
+
+		// Moves a vertex onto another, removing the triangles between them.
+		private void collapse(int from, int to)
+		{
+			int toGroup = group[to];
+			for (int i = 0; i < vertexTriangleCounts[from]; i++)
+			{
+				int t = vertexTriangles[from][i];
+				if (triangles[t * 3] < 0)
+					continue;
+				if (group[triangles[t * 3]] == toGroup || group[triangles[t * 3 + 1]] == toGroup || group[triangles[t * 3 + 2]] == toGroup)
+				{
+					triangles[t * 3] = -1;
+					triangleCount--;
+				}
+				else
+				{
+					for (int k = 0; k < 3; k++)
+						if (triangles[t * 3 + k] == from)
+							triangles[t * 3 + k] = to;
+					addVertexTriangle(to, t);
+				}
+			}
+			collapsed[from] = true;
+			vertexTriangleCounts[from] = 0;
+
+			int src = group[from] * 10;
+			int dest = toGroup * 10;
+			for (int i = 0; i < 10; i++)
+				quadrics[dest + i] += quadrics[src + i];
+
+			// Requeue everything around the merged vertex.
+			versions[to]++;
+			pushCollapses(to);
+			for (int i = 0; i < vertexTriangleCounts[to]; i++)
+			{
+				int t = vertexTriangles[to][i];
+				if (triangles[t * 3] < 0)
+					continue;
+				for (int k = 0; k < 3; k++)
+				{
+					int v = triangles[t * 3 + k];
+					if (v != to)
+					{
+						versions[v]++;
+						pushCollapses(v);
+					}
+				}
+			}
+		}
+
+		// Gets the quadric error of moving a vertex onto another.
+		private double getCollapseCost(int from, int to)
+		{
+			int qa = group[from] * 10;
+			int qb = group[to] * 10;
+			double[] q = quadrics;
+			int p = to * stride + positionOffset;
+			double x = vertices[p], y = vertices[p + 1], z = vertices[p + 2];
+			double a2 = q[qa] + q[qb], ab = q[qa + 1] + q[qb + 1], ac = q[qa + 2] + q[qb + 2], ad = q[qa + 3] + q[qb + 3];
+			double b2 = q[qa + 4] + q[qb + 4], bc = q[qa + 5] + q[qb + 5], bd = q[qa + 6] + q[qb + 6];
+			double c2 = q[qa + 7] + q[qb + 7], cd = q[qa + 8] + q[qb + 8];
+			double d2 = q[qa + 9] + q[qb + 9];
+			double out = a2 * x * x + 2 * ab * x * y + 2 * ac * x * z + 2 * ad * x
+				+ b2 * y * y + 2 * bc * y * z + 2 * bd * y
+				+ c2 * z * z + 2 * cd * z
+				+ d2;
+			return Math.max(out, 0.0);
+		}
+
+		// Checks if replacing a vertex in a triangle flips (or collapses) its facing.
+		private boolean flips(int a, int b, int c, int from, int to)
+		{
+			double[] before = planeBefore;
+			double[] after = planeAfter;
+			if (!getPlane(a, b, c, before))
+				return false;
+			if (!getPlane(a == from ? to : a, b == from ? to : b, c == from ? to : c, after))
+				return true;
+			return before[0] * after[0] + before[1] * after[1] + before[2] * after[2] < 0.2;
+		}
+
+		// Gets the unit plane of a triangle. Returns false if the triangle has no area.
+		private boolean getPlane(int a, int b, int c, double[] out)
+		{
+			int pa = a * stride + positionOffset, pb = b * stride + positionOffset, pc = c * stride + positionOffset;
+			double ux = vertices[pb] - vertices[pa], uy = vertices[pb + 1] - vertices[pa + 1], uz = vertices[pb + 2] - vertices[pa + 2];
+			double vx = vertices[pc] - vertices[pa], vy = vertices[pc + 1] - vertices[pa + 1], vz = vertices[pc + 2] - vertices[pa + 2];
+			double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (length == 0.0)
+				return false;
+			out[0] = nx / length;
+			out[1] = ny / length;
+			out[2] = nz / length;
+			out[3] = -(out[0] * vertices[pa] + out[1] * vertices[pa + 1] + out[2] * vertices[pa + 2]);
+			return true;
+		}
+
+		// Adds a plane's quadric to a group quadric.
+		private void addPlane(int q, double[] plane)
+		{
+			double a = plane[0], b = plane[1], c = plane[2], d = plane[3];
+			quadrics[q] += a * a;
+			quadrics[q + 1] += a * b;
+			quadrics[q + 2] += a * c;
+			quadrics[q + 3] += a * d;
+			quadrics[q + 4] += b * b;
+			quadrics[q + 5] += b * c;
+			quadrics[q + 6] += b * d;
+			quadrics[q + 7] += c * c;
+			quadrics[q + 8] += c * d;
+			quadrics[q + 9] += d * d;
+		}
+
+		// Adds a triangle to a vertex's triangle list.
+		private void addVertexTriangle(int v, int t)
+		{
+			if (vertexTriangleCounts[v] == vertexTriangles[v].length)
+				vertexTriangles[v] = Arrays.copyOf(vertexTriangles[v], vertexTriangles[v].length * 2);
+			vertexTriangles[v][vertexTriangleCounts[v]++] = t;
+		}
+
+		// Locks all vertices at a position.
+		private void lockGroup(int g)
+		{
+			for (int v = groupHead[g]; v >= 0; v = groupNext[v])
+				locked[v] = true;
+		}
+
+		// Gets the indices of the remaining triangles.
+		private int[] getIndices()
+		{
+			int[] out = new int[triangleCount * 3];
+			int n = 0;
+			for (int t = 0; t < originalTriangleCount; t++)
+			{
+				if (triangles[t * 3] < 0)
+					continue;
+				out[n++] = triangles[t * 3];
+				out[n++] = triangles[t * 3 + 1];
+				out[n++] = triangles[t * 3 + 2];
+			}
+			return out;
+		}
+
+		// Hashes a vertex's position.
+		private int hashPosition(int v)
+		{
+			int p = v * stride + positionOffset;
+			int hash = 0x811c9dc5;
+			for (int i = 0; i < 3; i++)
+			{
+				float f = vertices[p + i];
+				hash = (hash ^ Float.floatToIntBits(f == 0f ? 0f : f)) * 0x01000193;
+			}
+			return hash ^ (hash >>> 16);
+		}
+
+		// Compares two vertices' data.
+		private boolean sameVertex(int a, int b)
+		{
+			int pa = a * stride, pb = b * stride;
+			for (int i = 0; i < stride; i++)
+				if (vertices[pa + i] != vertices[pb + i])
+					return false;
+			return true;
+		}
+
+		// Compares two vertices' positions.
+		private boolean samePosition(int a, int b)
+		{
+			int pa = a * stride + positionOffset, pb = b * stride + positionOffset;
+			return vertices[pa] == vertices[pb] && vertices[pa + 1] == vertices[pb + 1] && vertices[pa + 2] == vertices[pb + 2];
+		}
+
+	}
+
+}
@@ -0,0 +1,366 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.io.PrintStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * An explicit allocator of native (off-heap) memory, handed out as direct buffers.
+ * <p> Unlike {@link ByteBuffer#allocateDirect(int)}, memory from this allocator is not cleared,
+ * does not count against the JVM's direct memory limit, and is not released by the garbage collector:
+ * every buffer must be returned via {@link #free(Buffer)}.
+ * <p> Small allocations are served from size-classed pools (powers of two), which are carved out of
+ * larger slabs and reused after they are freed. Slabs are only released when the allocator is destroyed.
+ * Allocations larger than the largest size class are allocated and freed individually.
+ * <p> If leak tracking is on, the stack trace of each allocation is kept until it is freed,
+ * and the allocations still live can be reported via {@link #reportLeaks(PrintStream)} or {@link #destroy(PrintStream)}.
+ * <p> This class is thread-safe.
+ * @author Matthew Tropiano
+ * @see BufferUtils#setAllocator(NativeAllocator)
+ */
+public class NativeAllocator
+{
+	/** Smallest block size. */
+	private static final int MIN_BLOCK_SIZE = 16;
+	/** Default largest pooled block size. */
+	public static final int DEFAULT_MAX_POOLED_SIZE = 64 * 1024;
+	/** Default slab size. */
+	public static final int DEFAULT_SLAB_SIZE = 256 * 1024;
+
+	/** A live allocation. */
+	private static class Allocation
+	{
+		/** Size class index, or -1 if allocated individually. */
+		private int sizeClass;
+		/** Requested size in bytes. */
+		private int size;
+		/** Allocation site, if tracked. */
+		private StackTraceElement[] trace;
+
+		private Allocation(int sizeClass, int size, StackTraceElement[] trace)
+		{
+			this.sizeClass = sizeClass;
+			this.size = size;
+			this.trace = trace;
+		}
+	}
+
+	/** Slab size in bytes. */
+	private int slabSize;
+	/** Block sizes per size class. */
+	private int[] blockSizes;
+	/** Free block addresses per size class. */
+	private long[][] freeBlocks;
+	/** Free block counts per size class. */
+	private int[] freeCounts;
+	/** Slab addresses. */
+	private long[] slabs;
+	/** Amount of slabs. */
+	private int slabCount;
+
+	/** Live allocations by address. */
+	private Map<Long, Allocation> live;
+	/** If true, track allocation sites. */
+	private boolean trackLeaks;
+	/** True if destroyed. */
+	private boolean destroyed;
+
+	private long liveBytes;
+	private long reservedBytes;
+
+	/**
+	 * Creates a new allocator with default pool sizes and no leak tracking.
+	 */
+	public NativeAllocator()
+	{
+		this(DEFAULT_MAX_POOLED_SIZE, DEFAULT_SLAB_SIZE, false);
+	}
+
+	/**
+	 * Creates a new allocator with default pool sizes.
+	 * @param trackLeaks if true, track the allocation site of each allocation until it is freed.
+	 */
+	public NativeAllocator(boolean trackLeaks)
+	{
+		this(DEFAULT_MAX_POOLED_SIZE, DEFAULT_SLAB_SIZE, trackLeaks);
+	}
+
+	/**
+	 * Creates a new allocator.
+	 * @param maxPooledSize the largest allocation size, in bytes, served from the pools (rounded up to a power of two).
+	 * @param slabSize the size of each slab that pooled blocks are carved out of, in bytes.
+	 * @param trackLeaks if true, track the allocation site of each allocation until it is freed.
+	 * @throws IllegalArgumentException if maxPooledSize or slabSize is less than 1.
+	 */
+	public NativeAllocator(int maxPooledSize, int slabSize, boolean trackLeaks)
+	{
+		if (maxPooledSize < 1)
+			throw new IllegalArgumentException("Maximum pooled size must be 1 or greater.");
+		if (slabSize < 1)
+			throw new IllegalArgumentException("Slab size must be 1 or greater.");
+
+		int classes = sizeClassOf(maxPooledSize) + 1;
+		this.slabSize = slabSize;
+		this.blockSizes = new int[classes];
+		this.freeBlocks = new long[classes][];
+		this.freeCounts = new int[classes];
+		for (int i = 0; i < classes; i++)
+		{
+			this.blockSizes[i] = MIN_BLOCK_SIZE << i;
+			this.freeBlocks[i] = new long[16];
+			this.freeCounts[i] = 0;
+		}
+		this.slabs = new long[8];
+		this.slabCount = 0;
+		this.live = new HashMap<>();
+		this.trackLeaks = trackLeaks;
+		this.destroyed = false;
+		this.liveBytes = 0L;
+		this.reservedBytes = 0L;
+	}
+
+	/**
+	 * Allocates a buffer. The contents are not cleared.
+	 * @param bytes the size of the buffer in bytes.
+	 * @return a new direct buffer in native byte order, with a capacity of <code>bytes</code>.
+	 * @throws IllegalArgumentException if bytes is negative.
+	 * @throws IllegalStateException if this allocator was destroyed.
+	 * @throws OutOfMemoryError if the native memory could not be allocated.
+	 */
+	public synchronized ByteBuffer allocate(int bytes)
+	{
+		if (bytes < 0)
+			throw new IllegalArgumentException("Allocation size cannot be negative.");
+		if (destroyed)
+			throw new IllegalStateException("Allocator was destroyed.");
+
+		int sizeClass = sizeClassOf(Math.max(bytes, 1));
+		long address;
+		if (sizeClass < blockSizes.length)
+		{
+			if (freeCounts[sizeClass] == 0)
+				addSlab(sizeClass);
+			address = freeBlocks[sizeClass][--freeCounts[sizeClass]];
+		}
+		else
+		{
+			sizeClass = -1;
+			address = MemoryUtil.nmemAlloc(Math.max(bytes, 1));
+			if (address == MemoryUtil.NULL)
+				throw new OutOfMemoryError("Could not allocate " + bytes + " bytes of native memory.");
+			reservedBytes += bytes;
+		}
+
+		live.put(address, new Allocation(sizeClass, bytes, trackLeaks ? Thread.currentThread().getStackTrace() : null));
+		liveBytes += bytes;
+		return MemoryUtil.memByteBuffer(address, bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Allocates a buffer with its contents cleared to zero.
+	 * @param bytes the size of the buffer in bytes.
+	 * @return a new direct buffer in native byte order, with a capacity of <code>bytes</code>.
+	 * @throws IllegalArgumentException if bytes is negative.
+	 * @throws IllegalStateException if this allocator was destroyed.
+	 * @throws OutOfMemoryError if the native memory could not be allocated.
+	 */
+	public ByteBuffer allocateCleared(int bytes)
+	{
+		ByteBuffer out = allocate(bytes);
+		MemoryUtil.memSet(MemoryUtil.memAddress0(out), 0, bytes);
+		return out;
+	}
+
+	/**
+	 * Checks if a buffer was allocated by this allocator and not freed yet.
+	 * Views of an allocated buffer that start at its beginning (like via {@link ByteBuffer#asFloatBuffer()}) count as the buffer.
+	 * @param buffer the buffer to test.
+	 * @return true if so, false if not.
+	 */
+	public synchronized boolean owns(Buffer buffer)
+	{
+		return buffer != null && buffer.isDirect() && live.containsKey(MemoryUtil.memAddress0(buffer));
+	}
+
+	/**
+	 * Returns a buffer's memory to this allocator.
+	 * The buffer (and any view of it) must not be used afterward.
+	 * Views of an allocated buffer that start at its beginning (like via {@link ByteBuffer#asFloatBuffer()}) can be freed in its place.
+	 * @param buffer the buffer to free.
+	 * @return true if the buffer was freed, false if it was not allocated by this allocator (or was already freed).
+	 */
+	public synchronized boolean free(Buffer buffer)
+	{
+		if (buffer == null || !buffer.isDirect() || destroyed)
+			return false;
+
+		long address = MemoryUtil.memAddress0(buffer);
+		Allocation allocation = live.remove(address);
+		if (allocation == null)
+			return false;
+
+		liveBytes -= allocation.size;
+		if (allocation.sizeClass < 0)
+		{
+			MemoryUtil.nmemFree(address);
+			reservedBytes -= allocation.size;
+		}
+		else
+		{
+			pushFree(allocation.sizeClass, address);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the amount of allocations that were not freed yet.
+	 */
+	public synchronized int getLiveCount()
+	{
+		return live.size();
+	}
+
+	/**
+	 * @return the amount of bytes requested by allocations that were not freed yet.
+	 */
+	public synchronized long getLiveBytes()
+	{
+		return liveBytes;
+	}
+
+	/**
+	 * @return the amount of native memory held by this allocator (all slabs and individual allocations), in bytes.
+	 */
+	public synchronized long getReservedBytes()
+	{
+		return reservedBytes;
+	}
+
+	/**
+	 * @return true if this allocator tracks allocation sites, false if not.
+	 */
+	public boolean isTrackingLeaks()
+	{
+		return trackLeaks;
+	}
+
+	/**
+	 * Prints each allocation that was not freed yet to a print stream,
+	 * with its allocation site if leak tracking is on.
+	 * @param out the {@link PrintStream} to print to.
+	 * @return the amount of allocations reported.
+	 */
+	public synchronized int reportLeaks(PrintStream out)
+	{
+		for (Map.Entry<Long, Allocation> entry : live.entrySet())
+		{
+			Allocation allocation = entry.getValue();
+			out.println("Unfreed native allocation: " + allocation.size + " bytes at 0x" + Long.toHexString(entry.getKey()));
+			if (allocation.trace != null)
+			{
+				// Skip getStackTrace() and allocate().
+				for (int i = 2; i < allocation.trace.length; i++)
+					out.println("\tat " + allocation.trace[i]);
+			}
+		}
+		return live.size();
+	}
+
+	/**
+	 * Releases all of the memory held by this allocator, including allocations that were not freed.
+	 * Buffers from this allocator must not be used afterward.
+	 * @return the amount of allocations that were not freed.
+	 */
+	public int destroy()
+	{
+		return destroy(null);
+	}
+
+	/**
+	 * Releases all of the memory held by this allocator, including allocations that were not freed.
+	 * The allocations that were not freed are reported first, like {@link #reportLeaks(PrintStream)}.
+	 * Buffers from this allocator must not be used afterward.
+	 * @param out the {@link PrintStream} to report unfreed allocations to, or null to not report them.
+	 * @return the amount of allocations that were not freed.
+	 */
+	public synchronized int destroy(PrintStream out)
+	{
+		if (destroyed)
+			return 0;
+
+		int leaks = out != null ? reportLeaks(out) : live.size();
+
+		for (Map.Entry<Long, Allocation> entry : live.entrySet())
+		{
+			if (entry.getValue().sizeClass < 0)
+				MemoryUtil.nmemFree(entry.getKey());
+		}
+		for (int i = 0; i < slabCount; i++)
+			MemoryUtil.nmemFree(slabs[i]);
+
+		live.clear();
+		slabCount = 0;
+		liveBytes = 0L;
+		reservedBytes = 0L;
+		destroyed = true;
+		return leaks;
+	}
+
+	// Allocates a new slab and splits it into free blocks for a size class.
+	private void addSlab(int sizeClass)
+	{
+		int blockSize = blockSizes[sizeClass];
+		int blocks = Math.max(1, slabSize / blockSize);
+		long size = (long)blocks * blockSize;
+		long address = MemoryUtil.nmemAlloc(size);
+		if (address == MemoryUtil.NULL)
+			throw new OutOfMemoryError("Could not allocate " + size + " bytes of native memory.");
+
+		if (slabCount == slabs.length)
+		{
+			long[] grown = new long[slabs.length * 2];
+			System.arraycopy(slabs, 0, grown, 0, slabCount);
+			slabs = grown;
+		}
+		slabs[slabCount++] = address;
+		reservedBytes += size;
+
+		// Push in reverse so that blocks are handed out in address order.
+		for (int i = blocks - 1; i >= 0; i--)
+			pushFree(sizeClass, address + (long)i * blockSize);
+	}
+
+	// Adds a block to a size class's free list.
+	private void pushFree(int sizeClass, long address)
+	{
+		long[] list = freeBlocks[sizeClass];
+		if (freeCounts[sizeClass] == list.length)
+		{
+			long[] grown = new long[list.length * 2];
+			System.arraycopy(list, 0, grown, 0, list.length);
+			freeBlocks[sizeClass] = list = grown;
+		}
+		list[freeCounts[sizeClass]++] = address;
+	}
+
+	// Gets the size class for an allocation size.
+	private static int sizeClassOf(int bytes)
+	{
+		if (bytes <= MIN_BLOCK_SIZE)
+			return 0;
+		return (32 - Integer.numberOfLeadingZeros(bytes - 1)) - (32 - Integer.numberOfLeadingZeros(MIN_BLOCK_SIZE - 1));
+	}
+
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * A linear (bump) allocator of native scratch memory.
+ * Allocations are carved out of one large block in order, and are all released at once by {@link #reset()}.
+ * Nothing is freed individually, and the contents are not cleared.
+ * <p> If the block runs out of room, overflow blocks are allocated for the rest of the cycle,
+ * and on the next reset, the main block grows to fit everything that was allocated,
+ * so a steady workload stops overflowing after one cycle.
+ * <p> This class is not thread-safe.
+ * @author Matthew Tropiano
+ * @see com.blackrook.gloop.opengl.gl1.OGL11Graphics#getFrameArena()
+ */
+public class NativeArena
+{
+	/** Default allocation alignment. */
+	public static final int DEFAULT_ALIGNMENT = 16;
+
+	/** Main block address. */
+	private long address;
+	/** Main block capacity. */
+	private int capacity;
+	/** Current offset into the main block. */
+	private int position;
+
+	/** Overflow block addresses. */
+	private long[] overflow;
+	/** Amount of overflow blocks. */
+	private int overflowCount;
+	/** Total bytes allocated in overflow blocks. */
+	private int overflowBytes;
+
+	/** Most bytes used in one cycle. */
+	private int highWaterMark;
+	/** Amount of resets. */
+	private long resets;
+
+	/**
+	 * Creates a new arena.
+	 * @param capacity the initial capacity of the main block, in bytes.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 * @throws OutOfMemoryError if the native memory could not be allocated.
+	 */
+	public NativeArena(int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be 1 or greater.");
+		this.address = alloc(capacity);
+		this.capacity = capacity;
+		this.position = 0;
+		this.overflow = new long[4];
+		this.overflowCount = 0;
+		this.overflowBytes = 0;
+		this.highWaterMark = 0;
+		this.resets = 0L;
+	}
+
+	/**
+	 * Allocates a buffer, aligned to {@link #DEFAULT_ALIGNMENT}.
+	 * The buffer is only valid until the next {@link #reset()}.
+	 * @param bytes the size of the buffer in bytes.
+	 * @return a new direct buffer in native byte order, with a capacity of <code>bytes</code>.
+	 * @throws IllegalArgumentException if bytes is negative.
+	 * @throws IllegalStateException if this arena was destroyed.
+	 */
+	public ByteBuffer allocate(int bytes)
+	{
+		return allocate(bytes, DEFAULT_ALIGNMENT);
+	}
+
+	/**
+	 * Allocates a buffer.
+	 * The buffer is only valid until the next {@link #reset()}.
+	 * @param bytes the size of the buffer in bytes.
+	 * @param alignment the alignment of the buffer's address, in bytes (a power of two).
+	 * @return a new direct buffer in native byte order, with a capacity of <code>bytes</code>.
+	 * @throws IllegalArgumentException if bytes is negative or the alignment is not a power of two.
+	 * @throws IllegalStateException if this arena was destroyed.
+	 */
+	public ByteBuffer allocate(int bytes, int alignment)
+	{
+		if (bytes < 0)
+			throw new IllegalArgumentException("Allocation size cannot be negative.");
+		if (alignment < 1 || (alignment & (alignment - 1)) != 0)
+			throw new IllegalArgumentException("Alignment must be a power of two.");
+		if (address == MemoryUtil.NULL)
+			throw new IllegalStateException("Arena was destroyed.");
+
+		long base = address + position;
+		long aligned = (base + alignment - 1) & -alignment;
+		long end = aligned + bytes;
+		long out;
+		if (end <= address + capacity)
+		{
+			position = (int)(end - address);
+			out = aligned;
+		}
+		else
+		{
+			out = addOverflow(bytes + alignment - 1);
+			out = (out + alignment - 1) & -alignment;
+		}
+
+		highWaterMark = Math.max(highWaterMark, getUsed());
+		return MemoryUtil.memByteBuffer(out, bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Allocates a short buffer.
+	 * The buffer is only valid until the next {@link #reset()}.
+	 * @param count the amount of shorts.
+	 * @return a new direct buffer in native byte order, with a capacity of <code>count</code>.
+	 */
+	public ShortBuffer allocateShorts(int count)
+	{
+		return allocate(count * BufferUtils.SIZEOF_SHORT).asShortBuffer();
+	}
+
+	/**
+	 * Allocates an int buffer.
+	 * The buffer is only valid until the next {@link #reset()}.
+	 * @param count the amount of ints.
+	 * @return a new direct buffer in native byte order, with a capacity of <code>count</code>.
+	 */
+	public IntBuffer allocateInts(int count)
+	{
+		return allocate(count * BufferUtils.SIZEOF_INT).asIntBuffer();
+	}
+
+	/**
+	 * Allocates a float buffer.
+	 * The buffer is only valid until the next {@link #reset()}.
+	 * @param count the amount of floats.
+	 * @return a new direct buffer in native byte order, with a capacity of <code>count</code>.
+	 */
+	public FloatBuffer allocateFloats(int count)
+	{
+		return allocate(count * BufferUtils.SIZEOF_FLOAT).asFloatBuffer();
+	}
+
+	/**
+	 * Releases all allocations at once. Buffers allocated before this call must not be used afterward.
+	 * If any overflow blocks were needed since the last reset, the main block is grown to fit them.
+	 */
+	public void reset()
+	{
+		if (address == MemoryUtil.NULL)
+			return;
+
+		if (overflowCount > 0)
+		{
+			for (int i = 0; i < overflowCount; i++)
+				MemoryUtil.nmemFree(overflow[i]);
+			int grown = (int)Math.min(Integer.MAX_VALUE, (long)position + overflowBytes);
+			MemoryUtil.nmemFree(address);
+			address = alloc(grown);
+			capacity = grown;
+			overflowCount = 0;
+			overflowBytes = 0;
+		}
+		position = 0;
+		resets++;
+	}
+
+	/**
+	 * @return the amount of bytes allocated since the last reset, including alignment padding and overflow.
+	 */
+	public int getUsed()
+	{
+		return position + overflowBytes;
+	}
+
+	/**
+	 * @return the capacity of the main block, in bytes.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the most bytes used between two resets.
+	 */
+	public int getHighWaterMark()
+	{
+		return highWaterMark;
+	}
+
+	/**
+	 * @return true if allocations overflowed the main block since the last reset, false if not.
+	 */
+	public boolean isOverflowing()
+	{
+		return overflowCount > 0;
+	}
+
+	/**
+	 * @return the amount of times this arena was reset.
+	 */
+	public long getResetCount()
+	{
+		return resets;
+	}
+
+	/**
+	 * Releases all of this arena's memory.
+	 * Neither this arena nor any buffer allocated from it can be used afterward.
+	 */
+	public void destroy()
+	{
+		if (address == MemoryUtil.NULL)
+			return;
+		for (int i = 0; i < overflowCount; i++)
+			MemoryUtil.nmemFree(overflow[i]);
+		MemoryUtil.nmemFree(address);
+		address = MemoryUtil.NULL;
+		overflowCount = 0;
+		overflowBytes = 0;
+		position = 0;
+	}
+
+	// Allocates an overflow block.
+	private long addOverflow(int bytes)
+	{
+		long out = alloc(bytes);
+		if (overflowCount == overflow.length)
+		{
+			long[] grown = new long[overflow.length * 2];
+			System.arraycopy(overflow, 0, grown, 0, overflowCount);
+			overflow = grown;
+		}
+		overflow[overflowCount++] = out;
+		overflowBytes += bytes;
+		return out;
+	}
+
+	// Allocates native memory.
+	private static long alloc(long bytes)
+	{
+		long out = MemoryUtil.nmemAlloc(Math.max(bytes, 1));
+		if (out == MemoryUtil.NULL)
+			throw new OutOfMemoryError("Could not allocate " + bytes + " bytes of native memory.");
+		return out;
+	}
+
+}
@@ -136,10 +136,12 @@ public interface ProgramBuilder
 	
 	/**
 	 * Sets a shader program and a shader source. 
+	 * A {@link ShaderType#COMPUTE} shader must be the only shader in its program.
 	 * @param type the shader type.
 	 * @param source the source code supplier.
 	 * @return this builder.
 	 * @throws UnsupportedOperationException if the provided shader type is unavailable in this version.
+	 * @throws IllegalArgumentException if a compute shader would be combined with other shader types.
 	 */
 	ProgramBuilder setShader(ShaderType type, Supplier<String> source);
 
@@ -304,6 +306,8 @@ public interface ProgramBuilder
 		public ProgramBuilder setShader(ShaderType type, Supplier<String> source)
 		{
 			gl.verifyFeatureSupport(type);
+			if (type == ShaderType.COMPUTE ? hasShaderOtherThan(ShaderType.COMPUTE) : shaderPrograms.containsKey(ShaderType.COMPUTE))
+				throw new IllegalArgumentException("A compute shader cannot be combined with other shader types in the same program.");
 			shaderPrograms.put(type, source);
 			return this;
 		}
@@ -315,6 +319,15 @@ public interface ProgramBuilder
 			return this;
 		}
 		
+		// Checks if a shader type other than the provided one was set.
+		private boolean hasShaderOtherThan(ShaderType type)
+		{
+			for (ShaderType t : shaderPrograms.keySet())
+				if (t != type)
+					return true;
+			return false;
+		}
+		
 		/**
 		 * Fires a log event to the listener, if attached.
 		 * @param type the shader type.
@@ -26,6 +26,7 @@ import com.blackrook.gloop.opengl.gl1.OGL11Graphics;
 import com.blackrook.gloop.opengl.gl1.OGL12Graphics;
 import com.blackrook.gloop.opengl.gl1.OGL13Graphics;
 import com.blackrook.gloop.opengl.gl1.OGLTexture;
+import com.blackrook.gloop.opengl.gl4.OGL42Graphics;
 
 /**
  * Texture builder utility class.
@@ -275,13 +276,15 @@ public interface TextureBuilder
 			gl.setTextureWrapping(targetType, wrapS);
 			for (BufferedImage[] imageArray : imageLevels)
 			{
+				ByteBuffer data = dataFunc.apply(imageArray[0]);
 				gl.setTextureData(
 					targetType, 
-					dataFunc.apply(imageArray[0]), 
+					data, 
 					colorFormat, 
 					textureFormat, 
 					i, imageArray[0].getWidth(), border
 				);
+				BufferUtils.free(data);
 				i++;
 			}
 		}
@@ -292,13 +295,15 @@ public interface TextureBuilder
 			gl.setTextureWrapping(targetType, wrapS, wrapT);
 			for (BufferedImage[] imageArray : imageLevels)
 			{
+				ByteBuffer data = dataFunc.apply(imageArray[0]);
 				gl.setTextureData(
 					targetType, 
-					dataFunc.apply(imageArray[0]), 
+					data, 
 					colorFormat, 
 					textureFormat, 
 					i, imageArray[0].getWidth(), imageArray[0].getHeight(), border
 				);
+				BufferUtils.free(data);
 				i++;
 			}
 		}
@@ -309,13 +314,15 @@ public interface TextureBuilder
 			gl.setTextureWrapping(targetType, wrapS, wrapT);
 			for (BufferedImage[] imageArray : imageLevels)
 			{
+				ByteBuffer data = dataArrayFunc.apply(imageArray);
 				gl.setTextureData(
 					targetType, 
-					dataArrayFunc.apply(imageArray), 
+					data, 
 					colorFormat, 
 					textureFormat, 
 					i, imageArray[0].getWidth(), imageArray.length, border
 				);
+				BufferUtils.free(data);
 				i++;
 			}
 		}
@@ -326,13 +333,15 @@ public interface TextureBuilder
 			gl.setTextureWrapping(targetType, wrapS, wrapT);
 			for (BufferedImage[] imageArray : imageLevels)
 			{
+				ByteBuffer data = dataArrayFunc.apply(imageArray);
 				gl.setTextureData(
 					targetType, 
-					dataArrayFunc.apply(imageArray), 
+					data, 
 					colorFormat, 
 					textureFormat, 
 					i, imageArray[0].getWidth(), imageArray[0].getHeight(), imageArray.length, border
 				);
+				BufferUtils.free(data);
 				i++;
 			}
 		}
@@ -348,31 +357,158 @@ public interface TextureBuilder
 					throw new GraphicsException("Texture target is " + targetType.name() + ", and provided image array is less than 6 elements.");
 				for (int x = 0; x < 6; x++)
 				{
+					ByteBuffer data = dataFunc.apply(imageArray[x]);
 					gl.setTextureData(
 						faces[x], 
-						dataFunc.apply(imageArray[x]), 
+						data, 
 						colorFormat, 
 						textureFormat, 
 						i, imageArray[x].getWidth(), imageArray[x].getHeight(), border
 					);
+					BufferUtils.free(data);
 				}
 				i++;
 			}
 		}
 
+		/**
+		 * Gets the amount of levels to allocate for immutable storage:
+		 * a complete mipmap chain if mipmaps are generated, or the amount of added levels if not.
+		 * @param width the width of the topmost level.
+		 * @param height the height of the topmost level (1 for one-dimensional textures).
+		 * @param depth the depth of the topmost level (1 for non-three-dimensional textures).
+		 * @return the amount of levels.
+		 */
+		protected int getStorageLevelCount(int width, int height, int depth)
+		{
+			return autoGenerateMipMaps 
+				? TextureUtils.getMipmapLevelCount(width, height, depth) 
+				: imageLevels.size();
+		}
+
+		/**
+		 * Allocates immutable storage for all levels of the texture bound to the target type,
+		 * then sends each added level into it.
+		 * @param gl the graphics instance.
+		 * @param dataFunc the function for getting single image data.
+		 * @param dataArrayFunc the function for getting layered image data.
+		 * @param colorFormat the pixel storage format of the image data.
+		 * @param textureFormat the internal format (must have a sized equivalent).
+		 */
+		protected void storeImmutable(OGL42Graphics gl, Function<BufferedImage, ByteBuffer> dataFunc, Function<BufferedImage[], ByteBuffer> dataArrayFunc, ColorFormat colorFormat, TextureFormat textureFormat)
+		{
+			BufferedImage top = imageLevels.get(0)[0];
+			int width = top.getWidth();
+			int height = top.getHeight();
+			int layers = imageLevels.get(0).length;
+			int i = 0;
+			switch (targetType)
+			{
+				case TEXTURE_1D:
+				{
+					gl.setTextureWrapping(targetType, wrapS);
+					gl.setTextureStorage(targetType, textureFormat, getStorageLevelCount(width, 1, 1), width);
+					for (BufferedImage[] imageArray : imageLevels)
+					{
+						ByteBuffer data = dataFunc.apply(imageArray[0]);
+						gl.setTextureSubData(targetType, data, colorFormat, i, imageArray[0].getWidth(), 0);
+						BufferUtils.free(data);
+						i++;
+					}
+					break;
+				}
+				
+				case TEXTURE_2D:
+				case TEXTURE_RECTANGLE:
+				{
+					gl.setTextureWrapping(targetType, wrapS, wrapT);
+					gl.setTextureStorage(targetType, textureFormat, getStorageLevelCount(width, height, 1), width, height);
+					for (BufferedImage[] imageArray : imageLevels)
+					{
+						ByteBuffer data = dataFunc.apply(imageArray[0]);
+						gl.setTextureSubData(targetType, data, colorFormat, i, imageArray[0].getWidth(), imageArray[0].getHeight(), 0, 0);
+						BufferUtils.free(data);
+						i++;
+					}
+					break;
+				}
+				
+				case TEXTURE_CUBE:
+				{
+					TextureCubeFace[] faces = TextureCubeFace.values();
+					gl.setTextureWrapping(targetType, wrapS, wrapT, wrapR);
+					gl.setTextureStorage(targetType, textureFormat, getStorageLevelCount(width, height, 1), width, height);
+					for (BufferedImage[] imageArray : imageLevels)
+					{
+						if (imageArray.length < 6)
+							throw new GraphicsException("Texture target is " + targetType.name() + ", and provided image array is less than 6 elements.");
+						for (int x = 0; x < 6; x++)
+						{
+							ByteBuffer data = dataFunc.apply(imageArray[x]);
+							gl.setTextureSubData(faces[x], data, colorFormat, i, imageArray[x].getWidth(), imageArray[x].getHeight(), 0, 0);
+							BufferUtils.free(data);
+						}
+						i++;
+					}
+					break;
+				}
+				
+				case TEXTURE_1D_ARRAY:
+				{
+					gl.setTextureWrapping(targetType, wrapS);
+					gl.setTextureStorage(targetType, textureFormat, getStorageLevelCount(width, 1, 1), width, layers);
+					for (BufferedImage[] imageArray : imageLevels)
+					{
+						ByteBuffer data = dataArrayFunc.apply(imageArray);
+						gl.setTextureSubData(targetType, data, colorFormat, i, imageArray[0].getWidth(), imageArray.length, 0, 0);
+						BufferUtils.free(data);
+						i++;
+					}
+					break;
+				}
+				
+				case TEXTURE_2D_ARRAY:
+				case TEXTURE_3D:
+				{
+					if (targetType == TextureTargetType.TEXTURE_3D)
+						gl.setTextureWrapping(targetType, wrapS, wrapT, wrapR);
+					else
+						gl.setTextureWrapping(targetType, wrapS, wrapT);
+					int levels = targetType == TextureTargetType.TEXTURE_3D 
+						? getStorageLevelCount(width, height, layers) 
+						: getStorageLevelCount(width, height, 1)
+					;
+					gl.setTextureStorage(targetType, textureFormat, levels, width, height, layers);
+					for (BufferedImage[] imageArray : imageLevels)
+					{
+						ByteBuffer data = dataArrayFunc.apply(imageArray);
+						gl.setTextureSubData(targetType, data, colorFormat, i, imageArray[0].getWidth(), imageArray[0].getHeight(), imageArray.length, 0, 0, 0);
+						BufferUtils.free(data);
+						i++;
+					}
+					break;
+				}
+				
+				default:
+					throw new GraphicsException("Unsupported texture target: " + targetType.name());
+			}
+		}
+
 		protected void store3D(OGL12Graphics gl, Function<BufferedImage[], ByteBuffer> dataArrayFunc, ColorFormat colorFormat, TextureFormat textureFormat)
 		{
 			int i = 0;
 			gl.setTextureWrapping(targetType, wrapS, wrapT, wrapR);
 			for (BufferedImage[] imageArray : imageLevels)
 			{
+				ByteBuffer data = dataArrayFunc.apply(imageArray);
 				gl.setTextureData(
 					targetType, 
-					dataArrayFunc.apply(imageArray), 
+					data, 
 					colorFormat, 
 					textureFormat, 
 					i, imageArray[0].getWidth(), imageArray[0].getHeight(), imageArray.length, border
 				);
+				BufferUtils.free(data);
 				i++;
 			}
 		}
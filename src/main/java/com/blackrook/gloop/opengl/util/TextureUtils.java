@@ -58,6 +58,28 @@ public final class TextureUtils
 		return (x & (x-1)) == 0;
 	}
 
+	/**
+	 * Gets the amount of levels in a complete mipmap chain for a texture,
+	 * including the topmost level, down to a 1x1x1 level.
+	 * <p>Examples:</p>
+	 * <ul>
+	 * <li>If the size is 256x256x1, this returns 9.</li>
+	 * <li>If the size is 300x20x1, this returns 9.</li>
+	 * <li>If the size is 1x1x1, this returns 1.</li>
+	 * </ul>
+	 * @param width the texture width in texels.
+	 * @param height the texture height in texels (1 for one-dimensional textures).
+	 * @param depth the texture depth in texels (1 for non-three-dimensional textures).
+	 * @return the amount of levels.
+	 */
+	public static int getMipmapLevelCount(int width, int height, int depth)
+	{
+		int max = Math.max(width, Math.max(height, depth));
+		if (max <= 1)
+			return 1;
+		return 32 - Integer.numberOfLeadingZeros(max);
+	}
+
 	/**
 	 * Checks if a texture has power-of-two dimensions.
 	 * @param image the image to check.
@@ -0,0 +1,607 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled memory layout of a uniform block (or shader storage block),
+ * following the std140 or std430 layout rules.
+ * <p> Layouts are built via {@link #build(Standard)}, by declaring the block's members
+ * in the same order as they are declared in the shader. Members of nested structs are also
+ * available by their dotted names (for example, <code>"light.color"</code>), and members of
+ * struct arrays keep every enclosing array as a dimension (see {@link Member#getElementOffset(int)}).
+ * <p> This class does not touch any OpenGL state, and can be used outside of the graphics thread.
+ * @author Matthew Tropiano
+ * @see UniformBlockWriter
+ */
+public class UniformBlockLayout
+{
+	/**
+	 * Layout standards.
+	 */
+	public enum Standard
+	{
+		/** Layout for uniform blocks. Arrays and structs are aligned to vec4. */
+		STD140,
+		/** Layout for shader storage blocks. Arrays and structs are aligned to their members. */
+		STD430;
+	}
+
+	/**
+	 * Member data types. All scalar types are 4 bytes.
+	 */
+	public enum Type
+	{
+		FLOAT(1, 1),
+		VEC2(1, 2),
+		VEC3(1, 3),
+		VEC4(1, 4),
+		INT(1, 1),
+		IVEC2(1, 2),
+		IVEC3(1, 3),
+		IVEC4(1, 4),
+		UINT(1, 1),
+		UVEC2(1, 2),
+		UVEC3(1, 3),
+		UVEC4(1, 4),
+		BOOL(1, 1),
+		BVEC2(1, 2),
+		BVEC3(1, 3),
+		BVEC4(1, 4),
+		MAT2(2, 2),
+		MAT2X3(2, 3),
+		MAT2X4(2, 4),
+		MAT3X2(3, 2),
+		MAT3(3, 3),
+		MAT3X4(3, 4),
+		MAT4X2(4, 2),
+		MAT4X3(4, 3),
+		MAT4(4, 4);
+
+		/** Amount of columns (1 for non-matrices). */
+		public final int columns;
+		/** Amount of components per column. */
+		public final int rows;
+
+		private Type(int columns, int rows)
+		{
+			this.columns = columns;
+			this.rows = rows;
+		}
+
+		/**
+		 * @return true if this is a matrix type, false if not.
+		 */
+		public boolean isMatrix()
+		{
+			return columns > 1;
+		}
+	}
+
+	/**
+	 * A single member of a block.
+	 */
+	public static class Member
+	{
+		private String name;
+		private Type type;
+		private UniformBlockLayout struct;
+		private int arrayLength;
+		private int offset;
+		private int size;
+		private int alignment;
+		private int arrayStride;
+		private int matrixStride;
+		/** Array dimension lengths, outermost first (includes enclosing struct arrays). */
+		private int[] dimensionLengths;
+		/** Array dimension strides, outermost first (includes enclosing struct arrays). */
+		private int[] dimensionStrides;
+
+		private Member(String name, Type type, UniformBlockLayout struct, int arrayLength)
+		{
+			this.name = name;
+			this.type = type;
+			this.struct = struct;
+			this.arrayLength = arrayLength;
+		}
+
+		private Member(String name, Member parent, Member child)
+		{
+			this.name = name;
+			this.type = child.type;
+			this.struct = child.struct;
+			this.offset = parent.offset + child.offset;
+			this.size = child.size;
+			this.alignment = child.alignment;
+			this.matrixStride = child.matrixStride;
+			
+			int outer = parent.dimensionLengths.length;
+			int inner = child.dimensionLengths.length;
+			this.dimensionLengths = new int[outer + inner];
+			this.dimensionStrides = new int[outer + inner];
+			System.arraycopy(parent.dimensionLengths, 0, dimensionLengths, 0, outer);
+			System.arraycopy(parent.dimensionStrides, 0, dimensionStrides, 0, outer);
+			System.arraycopy(child.dimensionLengths, 0, dimensionLengths, outer, inner);
+			System.arraycopy(child.dimensionStrides, 0, dimensionStrides, outer, inner);
+			
+			int length = dimensionLengths.length > 0 ? 1 : 0;
+			for (int i = 0; i < dimensionLengths.length; i++)
+				length *= dimensionLengths[i];
+			this.arrayLength = length;
+			this.arrayStride = dimensionStrides.length > 0 ? dimensionStrides[dimensionStrides.length - 1] : 0;
+		}
+
+		/**
+		 * @return the member's full name.
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return the member's type, or null if the member is a struct.
+		 */
+		public Type getType()
+		{
+			return type;
+		}
+
+		/**
+		 * @return the member's struct layout, or null if the member is not a struct.
+		 */
+		public UniformBlockLayout getStruct()
+		{
+			return struct;
+		}
+
+		/**
+		 * Gets the amount of array elements of this member. For members of struct arrays
+		 * (or arrays in struct arrays), this is the total amount of elements across all array dimensions.
+		 * @return the member's array length, or 0 if not an array.
+		 */
+		public int getArrayLength()
+		{
+			return arrayLength;
+		}
+
+		/**
+		 * Gets the amount of array dimensions of this member.
+		 * For members of struct arrays, the enclosing arrays count as dimensions (outermost first).
+		 * @return the amount of array dimensions, or 0 if not an array.
+		 */
+		public int getArrayDimensions()
+		{
+			return dimensionLengths.length;
+		}
+
+		/**
+		 * Gets the length of a single array dimension.
+		 * @param dimension the dimension index (0 is outermost).
+		 * @return the length of the dimension.
+		 * @throws ArrayIndexOutOfBoundsException if the dimension is out of range.
+		 */
+		public int getArrayLength(int dimension)
+		{
+			return dimensionLengths[dimension];
+		}
+
+		/**
+		 * Gets the distance in bytes between the elements of a single array dimension.
+		 * @param dimension the dimension index (0 is outermost).
+		 * @return the stride of the dimension.
+		 * @throws ArrayIndexOutOfBoundsException if the dimension is out of range.
+		 */
+		public int getArrayStride(int dimension)
+		{
+			return dimensionStrides[dimension];
+		}
+
+		/**
+		 * Gets the offset of an element of this member from the start of the block.
+		 * If the member has more than one array dimension, the index is the flattened
+		 * index across all dimensions, with the innermost dimension varying fastest
+		 * (for example, element <code>[i][j]</code> of a <code>[n][m]</code> member is <code>i * m + j</code>).
+		 * @param index the flattened element index.
+		 * @return the offset in bytes.
+		 */
+		public int getElementOffset(int index)
+		{
+			int last = dimensionLengths.length - 1;
+			if (last <= 0)
+				return offset + index * arrayStride;
+			int out = offset;
+			for (int i = last; i >= 0; i--)
+			{
+				int length = dimensionLengths[i];
+				out += (index % length) * dimensionStrides[i];
+				index /= length;
+			}
+			return out;
+		}
+
+		/**
+		 * @return the member's offset from the start of the block in bytes.
+		 */
+		public int getOffset()
+		{
+			return offset;
+		}
+
+		/**
+		 * @return the size in bytes of one element of this member (not including array padding).
+		 */
+		public int getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * @return the member's base alignment in bytes.
+		 */
+		public int getAlignment()
+		{
+			return alignment;
+		}
+
+		/**
+		 * Gets the distance in bytes between array elements of the innermost array dimension.
+		 * For non-array members of struct arrays, this is the distance between the struct elements.
+		 * @return the array stride, or 0 if not an array.
+		 * @see #getArrayStride(int)
+		 */
+		public int getArrayStride()
+		{
+			return arrayStride;
+		}
+
+		/**
+		 * @return the distance in bytes between matrix columns, or 0 if not a matrix.
+		 */
+		public int getMatrixStride()
+		{
+			return matrixStride;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder();
+			sb.append(name).append(' ').append(type != null ? type.name() : "struct");
+			for (int i = 0; i < dimensionLengths.length; i++)
+				sb.append('[').append(dimensionLengths[i]).append(']');
+			sb.append(" offset=").append(offset).append(" size=").append(size);
+			sb.append(" arrayStride=").append(arrayStride).append(" matrixStride=").append(matrixStride);
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Builder for layouts.
+	 */
+	public static class Builder
+	{
+		private Standard standard;
+		private List<Member> members;
+
+		private Builder(Standard standard)
+		{
+			this.standard = standard;
+			this.members = new ArrayList<>();
+		}
+
+		/**
+		 * Adds a member.
+		 * @param name the member name.
+		 * @param type the member type.
+		 * @return this builder.
+		 */
+		public Builder add(String name, Type type)
+		{
+			members.add(new Member(name, type, null, 0));
+			return this;
+		}
+
+		/**
+		 * Adds an array member.
+		 * @param name the member name.
+		 * @param type the member type.
+		 * @param length the array length.
+		 * @return this builder.
+		 * @throws IllegalArgumentException if length is less than 1.
+		 */
+		public Builder addArray(String name, Type type, int length)
+		{
+			if (length < 1)
+				throw new IllegalArgumentException("Array length must be 1 or greater.");
+			members.add(new Member(name, type, null, length));
+			return this;
+		}
+
+		/**
+		 * Adds a struct member.
+		 * @param name the member name.
+		 * @param struct the struct layout.
+		 * @return this builder.
+		 * @throws IllegalArgumentException if the struct layout uses a different standard.
+		 */
+		public Builder addStruct(String name, UniformBlockLayout struct)
+		{
+			if (struct.standard != standard)
+				throw new IllegalArgumentException("Struct layout must use the same standard.");
+			members.add(new Member(name, null, struct, 0));
+			return this;
+		}
+
+		/**
+		 * Adds a struct array member.
+		 * @param name the member name.
+		 * @param struct the struct layout.
+		 * @param length the array length.
+		 * @return this builder.
+		 * @throws IllegalArgumentException if the struct layout uses a different standard, or length is less than 1.
+		 */
+		public Builder addStructArray(String name, UniformBlockLayout struct, int length)
+		{
+			if (struct.standard != standard)
+				throw new IllegalArgumentException("Struct layout must use the same standard.");
+			if (length < 1)
+				throw new IllegalArgumentException("Array length must be 1 or greater.");
+			members.add(new Member(name, null, struct, length));
+			return this;
+		}
+
+		/**
+		 * Compiles the layout.
+		 * @return the new layout.
+		 */
+		public UniformBlockLayout create()
+		{
+			return new UniformBlockLayout(standard, members);
+		}
+	}
+
+	/** Dimensions for non-array members. */
+	private static final int[] NO_DIMENSIONS = new int[0];
+
+	/** Layout standard. */
+	private Standard standard;
+	/** All members, including flattened struct members. */
+	private Member[] members;
+	/** Member name to index. */
+	private Map<String, Integer> memberIndexMap;
+	/** The layout alignment. */
+	private int alignment;
+	/** The layout size. */
+	private int size;
+
+	// Compiles a layout.
+	private UniformBlockLayout(Standard standard, List<Member> declared)
+	{
+		this.standard = standard;
+
+		List<Member> all = new ArrayList<>();
+		int offset = 0;
+		int maxAlignment = 4;
+		for (Member member : declared)
+		{
+			compile(standard, member);
+			member.offset = offset = alignUp(offset, member.alignment);
+			offset += member.arrayLength > 0 ? member.arrayStride * member.arrayLength : member.size;
+			maxAlignment = Math.max(maxAlignment, member.alignment);
+
+			all.add(member);
+			if (member.struct != null)
+			{
+				for (Member child : member.struct.members)
+					all.add(new Member(member.name + "." + child.name, member, child));
+			}
+		}
+
+		this.alignment = standard == Standard.STD140 ? alignUp(maxAlignment, 16) : maxAlignment;
+		this.size = alignUp(offset, this.alignment);
+		this.members = all.toArray(new Member[all.size()]);
+		this.memberIndexMap = new HashMap<>();
+		for (int i = 0; i < this.members.length; i++)
+			memberIndexMap.put(this.members[i].name, i);
+	}
+
+	/**
+	 * Starts building a new layout.
+	 * @param standard the layout standard to use.
+	 * @return a new builder.
+	 */
+	public static Builder build(Standard standard)
+	{
+		return new Builder(standard);
+	}
+
+	/**
+	 * @return the layout standard.
+	 */
+	public Standard getStandard()
+	{
+		return standard;
+	}
+
+	/**
+	 * @return the total size of the block in bytes, including trailing padding.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the base alignment of this layout, if used as a struct.
+	 */
+	public int getAlignment()
+	{
+		return alignment;
+	}
+
+	/**
+	 * @return the amount of members, including flattened struct members.
+	 */
+	public int getMemberCount()
+	{
+		return members.length;
+	}
+
+	/**
+	 * Gets the index of a member, for use with {@link UniformBlockWriter}.
+	 * @param name the member name (struct members are separated by dots).
+	 * @return the member index, or -1 if no such member.
+	 */
+	public int getMemberIndex(String name)
+	{
+		Integer out = memberIndexMap.get(name);
+		return out != null ? out : -1;
+	}
+
+	/**
+	 * Gets a member by index.
+	 * @param index the member index.
+	 * @return the corresponding member.
+	 * @throws ArrayIndexOutOfBoundsException if the index is out of range.
+	 */
+	public Member getMember(int index)
+	{
+		return members[index];
+	}
+
+	/**
+	 * Gets a member by name.
+	 * @param name the member name (struct members are separated by dots).
+	 * @return the corresponding member, or null if no such member.
+	 */
+	public Member getMember(String name)
+	{
+		int index = getMemberIndex(name);
+		return index >= 0 ? members[index] : null;
+	}
+
+	/**
+	 * Gets the offset of a member by path, which may include array subscripts,
+	 * like <code>"lights[2].color"</code> or <code>"weights[3]"</code>.
+	 * @param path the member path.
+	 * @return the offset in bytes from the start of the block.
+	 * @throws IllegalArgumentException if the path does not refer to a member, or an array index is out of bounds.
+	 */
+	public int getOffset(String path)
+	{
+		int out = 0;
+		UniformBlockLayout layout = this;
+		for (String segment : path.split("\\."))
+		{
+			if (layout == null)
+				throw new IllegalArgumentException("Member is not a struct: " + path);
+
+			int index = 0;
+			boolean subscript = false;
+			int bracket = segment.indexOf('[');
+			if (bracket >= 0)
+			{
+				if (!segment.endsWith("]"))
+					throw new IllegalArgumentException("Bad array subscript: " + path);
+				try {
+					index = Integer.parseInt(segment.substring(bracket + 1, segment.length() - 1));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Bad array subscript: " + path);
+				}
+				segment = segment.substring(0, bracket);
+				subscript = true;
+			}
+
+			Member member = layout.getMember(segment);
+			if (member == null)
+				throw new IllegalArgumentException("No such member: " + path);
+			if (subscript && (index < 0 || index >= member.arrayLength))
+				throw new IllegalArgumentException("Array index out of bounds: " + path);
+
+			out += member.offset + index * member.arrayStride;
+			layout = member.struct;
+		}
+		return out;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(standard.name()).append(" size=").append(size).append(" alignment=").append(alignment);
+		for (Member member : members)
+			sb.append('\n').append(member.toString());
+		return sb.toString();
+	}
+
+	// Computes alignment, size, and strides for a declared member.
+	private static void compile(Standard standard, Member member)
+	{
+		if (member.struct != null)
+		{
+			member.alignment = member.struct.alignment;
+			member.size = member.struct.size;
+			member.matrixStride = 0;
+		}
+		else if (member.type.isMatrix())
+		{
+			int columnAlignment = standard == Standard.STD140 ? 16 : vectorAlignment(member.type.rows);
+			member.alignment = columnAlignment;
+			member.size = columnAlignment * member.type.columns;
+			member.matrixStride = columnAlignment;
+		}
+		else
+		{
+			member.alignment = vectorAlignment(member.type.rows);
+			member.size = member.type.rows * 4;
+			member.matrixStride = 0;
+		}
+
+		if (member.arrayLength > 0)
+		{
+			if (standard == Standard.STD140)
+				member.alignment = alignUp(member.alignment, 16);
+			member.arrayStride = alignUp(member.size, member.alignment);
+			member.dimensionLengths = new int[]{member.arrayLength};
+			member.dimensionStrides = new int[]{member.arrayStride};
+		}
+		else
+		{
+			member.arrayStride = 0;
+			member.dimensionLengths = NO_DIMENSIONS;
+			member.dimensionStrides = NO_DIMENSIONS;
+		}
+	}
+
+	// Base alignment of a vector of 4-byte components.
+	private static int vectorAlignment(int components)
+	{
+		switch (components)
+		{
+			case 1:
+				return 4;
+			case 2:
+				return 8;
+			default:
+				return 16;
+		}
+	}
+
+	// Rounds up to an alignment.
+	private static int alignUp(int value, int alignment)
+	{
+		int r = value % alignment;
+		return r == 0 ? value : value + (alignment - r);
+	}
+
+}
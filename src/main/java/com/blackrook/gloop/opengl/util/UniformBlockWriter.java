@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+
+import com.blackrook.gloop.opengl.math.Matrix4F;
+
+/**
+ * A writer that packs values into a buffer according to a {@link UniformBlockLayout}.
+ * <p> Members are addressed by their index (see {@link UniformBlockLayout#getMemberIndex(String)}),
+ * which should be looked up once and kept. Writes use absolute buffer positions and
+ * do not allocate, nor do they change the buffer's position or limit.
+ * The target buffer should be in native byte order.
+ * <p> This class does not touch any OpenGL state, and can be used outside of the graphics thread
+ * (but a single writer should not be shared between threads).
+ * @author Matthew Tropiano
+ */
+public class UniformBlockWriter
+{
+	/** The layout. */
+	private UniformBlockLayout layout;
+	/** The current buffer. */
+	private ByteBuffer buffer;
+	/** The offset of the block in the buffer. */
+	private int baseOffset;
+
+	/**
+	 * Creates a new writer for a layout.
+	 * @param layout the layout to use.
+	 */
+	public UniformBlockWriter(UniformBlockLayout layout)
+	{
+		this.layout = layout;
+		this.buffer = null;
+		this.baseOffset = 0;
+	}
+
+	/**
+	 * @return the layout used by this writer.
+	 */
+	public UniformBlockLayout getLayout()
+	{
+		return layout;
+	}
+
+	/**
+	 * Sets the buffer to write to.
+	 * @param buffer the target buffer.
+	 * @param baseOffset the byte offset of the start of the block in the buffer.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setBuffer(ByteBuffer buffer, int baseOffset)
+	{
+		this.buffer = buffer;
+		this.baseOffset = baseOffset;
+		return this;
+	}
+
+	/**
+	 * @return the current target buffer.
+	 */
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * @return the byte offset of the start of the block in the buffer.
+	 */
+	public int getBaseOffset()
+	{
+		return baseOffset;
+	}
+
+	/**
+	 * Zeroes the entire block in the buffer (including padding).
+	 * @return this writer.
+	 */
+	public UniformBlockWriter clear()
+	{
+		int end = baseOffset + layout.getSize();
+		int i = baseOffset;
+		for (; i + 8 <= end; i += 8)
+			buffer.putLong(i, 0L);
+		for (; i < end; i++)
+			buffer.put(i, (byte)0);
+		return this;
+	}
+
+	/**
+	 * Sets a float member.
+	 * @param member the member index.
+	 * @param value the value.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setFloat(int member, float value)
+	{
+		return setFloat(member, 0, value);
+	}
+
+	/**
+	 * Sets a float member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param value the value.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setFloat(int member, int index, float value)
+	{
+		buffer.putFloat(offset(member, index), value);
+		return this;
+	}
+
+	/**
+	 * Sets a vec2 member.
+	 * @param member the member index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setVec2(int member, float x, float y)
+	{
+		return setVec2(member, 0, x, y);
+	}
+
+	/**
+	 * Sets a vec2 member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setVec2(int member, int index, float x, float y)
+	{
+		int o = offset(member, index);
+		buffer.putFloat(o, x);
+		buffer.putFloat(o + 4, y);
+		return this;
+	}
+
+	/**
+	 * Sets a vec3 member.
+	 * @param member the member index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setVec3(int member, float x, float y, float z)
+	{
+		return setVec3(member, 0, x, y, z);
+	}
+
+	/**
+	 * Sets a vec3 member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setVec3(int member, int index, float x, float y, float z)
+	{
+		int o = offset(member, index);
+		buffer.putFloat(o, x);
+		buffer.putFloat(o + 4, y);
+		buffer.putFloat(o + 8, z);
+		return this;
+	}
+
+	/**
+	 * Sets a vec4 member.
+	 * @param member the member index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @param w the fourth component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setVec4(int member, float x, float y, float z, float w)
+	{
+		return setVec4(member, 0, x, y, z, w);
+	}
+
+	/**
+	 * Sets a vec4 member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @param w the fourth component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setVec4(int member, int index, float x, float y, float z, float w)
+	{
+		int o = offset(member, index);
+		buffer.putFloat(o, x);
+		buffer.putFloat(o + 4, y);
+		buffer.putFloat(o + 8, z);
+		buffer.putFloat(o + 12, w);
+		return this;
+	}
+
+	/**
+	 * Sets an int (or uint) member.
+	 * @param member the member index.
+	 * @param value the value.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setInt(int member, int value)
+	{
+		return setInt(member, 0, value);
+	}
+
+	/**
+	 * Sets an int (or uint) member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param value the value.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setInt(int member, int index, int value)
+	{
+		buffer.putInt(offset(member, index), value);
+		return this;
+	}
+
+	/**
+	 * Sets an ivec2 (or uvec2) member.
+	 * @param member the member index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setIVec2(int member, int x, int y)
+	{
+		return setIVec2(member, 0, x, y);
+	}
+
+	/**
+	 * Sets an ivec2 (or uvec2) member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setIVec2(int member, int index, int x, int y)
+	{
+		int o = offset(member, index);
+		buffer.putInt(o, x);
+		buffer.putInt(o + 4, y);
+		return this;
+	}
+
+	/**
+	 * Sets an ivec3 (or uvec3) member.
+	 * @param member the member index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setIVec3(int member, int x, int y, int z)
+	{
+		return setIVec3(member, 0, x, y, z);
+	}
+
+	/**
+	 * Sets an ivec3 (or uvec3) member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setIVec3(int member, int index, int x, int y, int z)
+	{
+		int o = offset(member, index);
+		buffer.putInt(o, x);
+		buffer.putInt(o + 4, y);
+		buffer.putInt(o + 8, z);
+		return this;
+	}
+
+	/**
+	 * Sets an ivec4 (or uvec4) member.
+	 * @param member the member index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @param w the fourth component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setIVec4(int member, int x, int y, int z, int w)
+	{
+		return setIVec4(member, 0, x, y, z, w);
+	}
+
+	/**
+	 * Sets an ivec4 (or uvec4) member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param x the first component.
+	 * @param y the second component.
+	 * @param z the third component.
+	 * @param w the fourth component.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setIVec4(int member, int index, int x, int y, int z, int w)
+	{
+		int o = offset(member, index);
+		buffer.putInt(o, x);
+		buffer.putInt(o + 4, y);
+		buffer.putInt(o + 8, z);
+		buffer.putInt(o + 12, w);
+		return this;
+	}
+
+	/**
+	 * Sets a bool member.
+	 * @param member the member index.
+	 * @param value the value.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setBoolean(int member, boolean value)
+	{
+		return setInt(member, 0, value ? 1 : 0);
+	}
+
+	/**
+	 * Sets a bool member array element.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param value the value.
+	 * @return this writer.
+	 */
+	public UniformBlockWriter setBoolean(int member, int index, boolean value)
+	{
+		return setInt(member, index, value ? 1 : 0);
+	}
+
+	/**
+	 * Sets a matrix member from a tightly-packed, column-major array of values.
+	 * The amount of values read is the member type's columns times rows.
+	 * @param member the member index.
+	 * @param values the column-major values.
+	 * @return this writer.
+	 * @throws IllegalArgumentException if the member is not a matrix.
+	 */
+	public UniformBlockWriter setMatrix(int member, float[] values)
+	{
+		return setMatrix(member, 0, values);
+	}
+
+	/**
+	 * Sets a matrix member array element from a tightly-packed, column-major array of values.
+	 * The amount of values read is the member type's columns times rows.
+	 * For members with more than one array dimension, the index is flattened (see {@link UniformBlockLayout.Member#getElementOffset(int)}).
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param values the column-major values.
+	 * @return this writer.
+	 * @throws IllegalArgumentException if the member is not a matrix.
+	 */
+	public UniformBlockWriter setMatrix(int member, int index, float[] values)
+	{
+		UniformBlockLayout.Member m = layout.getMember(member);
+		UniformBlockLayout.Type type = m.getType();
+		if (type == null || !type.isMatrix())
+			throw new IllegalArgumentException("Member is not a matrix: " + m.getName());
+
+		int o = baseOffset + m.getElementOffset(index);
+		int stride = m.getMatrixStride();
+		int v = 0;
+		for (int c = 0; c < type.columns; c++)
+		{
+			int co = o + c * stride;
+			for (int r = 0; r < type.rows; r++)
+				buffer.putFloat(co + r * 4, values[v++]);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a matrix member from a 4x4 matrix.
+	 * If the member type is smaller than a mat4 (for example, a mat3 or mat4x3), only the
+	 * matching upper-left columns and rows of the matrix are written.
+	 * @param member the member index.
+	 * @param matrix the matrix.
+	 * @return this writer.
+	 * @throws IllegalArgumentException if the member is not a matrix.
+	 */
+	public UniformBlockWriter setMatrix4(int member, Matrix4F matrix)
+	{
+		return setMatrix4(member, 0, matrix);
+	}
+
+	/**
+	 * Sets a matrix member array element from a 4x4 matrix.
+	 * If the member type is smaller than a mat4 (for example, a mat3 or mat4x3), only the
+	 * matching upper-left columns and rows of the matrix are written.
+	 * @param member the member index.
+	 * @param index the array index.
+	 * @param matrix the matrix.
+	 * @return this writer.
+	 * @throws IllegalArgumentException if the member is not a matrix.
+	 */
+	public UniformBlockWriter setMatrix4(int member, int index, Matrix4F matrix)
+	{
+		UniformBlockLayout.Member m = layout.getMember(member);
+		UniformBlockLayout.Type type = m.getType();
+		if (type == null || !type.isMatrix())
+			throw new IllegalArgumentException("Member is not a matrix: " + m.getName());
+
+		float[] values = matrix.getArray();
+		int o = baseOffset + m.getElementOffset(index);
+		int stride = m.getMatrixStride();
+		for (int c = 0; c < type.columns; c++)
+		{
+			int co = o + c * stride;
+			for (int r = 0; r < type.rows; r++)
+				buffer.putFloat(co + r * 4, values[c * 4 + r]);
+		}
+		return this;
+	}
+
+	// Gets the absolute offset of a member element.
+	private int offset(int member, int index)
+	{
+		return baseOffset + layout.getMember(member).getElementOffset(index);
+	}
+
+}
@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.blackrook.gloop.opengl.enums.DataType;
+
+/**
+ * A description of an interleaved vertex layout, where each attribute can be stored in a compact encoding
+ * (half floats, normalized integers, packed 2_10_10_10 values, or octahedral normals) instead of full floats.
+ * <p> Each attribute starts on a 4-byte boundary, and the stride is padded to a multiple of 4 bytes.
+ * Offsets and strides are in bytes.
+ * <p> Vertex data is written via {@link #put(ByteBuffer, int, int, float[], int, int)}, which encodes float
+ * data with the encoders in {@link BufferUtils}, and is bound via
+ * {@link com.blackrook.gloop.opengl.gl2.OGL20Graphics#setVertexAttribBufferPointer(int, VertexFormat, int)}.
+ * <p> Octahedral normals are read in the shader as a normalized <code>vec2</code>, and are decoded like so:
+ * <pre>
+ * vec3 decodeOctahedral(vec2 e)
+ * {
+ *     vec3 n = vec3(e.xy, 1.0 - abs(e.x) - abs(e.y));
+ *     float t = max(-n.z, 0.0);
+ *     n.xy += mix(vec2(t), vec2(-t), greaterThanEqual(n.xy, vec2(0.0)));
+ *     return normalize(n);
+ * }
+ * </pre>
+ * @author Matthew Tropiano
+ */
+public final class VertexFormat
+{
+	/**
+	 * Attribute storage encodings.
+	 */
+	public enum Encoding
+	{
+		/** 32-bit floats. */
+		FLOAT(DataType.FLOAT, false),
+		/** 16-bit floats. Requires OpenGL 3.0. */
+		HALF_FLOAT(DataType.HALF_FLOAT, false),
+		/** Signed bytes, normalized to [-1, 1]. */
+		NORMALIZED_BYTE(DataType.BYTE, true),
+		/** Unsigned bytes, normalized to [0, 1]. */
+		NORMALIZED_UNSIGNED_BYTE(DataType.UNSIGNED_BYTE, true),
+		/** Signed shorts, normalized to [-1, 1]. */
+		NORMALIZED_SHORT(DataType.SHORT, true),
+		/** Unsigned shorts, normalized to [0, 1]. */
+		NORMALIZED_UNSIGNED_SHORT(DataType.UNSIGNED_SHORT, true),
+		/** Four signed components packed into one int, normalized to [-1, 1]. Always 4 components. Requires OpenGL 3.3. */
+		PACKED_2_10_10_10(DataType.INT_2_10_10_10_REV, true),
+		/** Four unsigned components packed into one int, normalized to [0, 1]. Always 4 components. Requires OpenGL 3.3. */
+		PACKED_UNSIGNED_2_10_10_10(DataType.UNSIGNED_INT_2_10_10_10_REV, true),
+		/** Unit vectors, octahedral-encoded into two signed shorts, normalized to [-1, 1]. Takes 3 components. */
+		OCTAHEDRAL_SHORT(DataType.SHORT, true),
+		/** Unit vectors, octahedral-encoded into two signed bytes, normalized to [-1, 1]. Takes 3 components. */
+		OCTAHEDRAL_BYTE(DataType.BYTE, true);
+
+		private final DataType dataType;
+		private final boolean normalized;
+
+		private Encoding(DataType dataType, boolean normalized)
+		{
+			this.dataType = dataType;
+			this.normalized = normalized;
+		}
+
+		/**
+		 * @return the data type that this encoding is stored as.
+		 */
+		public DataType getDataType()
+		{
+			return dataType;
+		}
+
+		/**
+		 * @return true if the stored values are normalized on read, false if not.
+		 */
+		public boolean isNormalized()
+		{
+			return normalized;
+		}
+
+	}
+
+	/**
+	 * A single attribute in a vertex format.
+	 */
+	public static final class Attribute
+	{
+		private Encoding encoding;
+		private int components;
+		private int offset;
+
+		private Attribute(Encoding encoding, int components, int offset)
+		{
+			this.encoding = encoding;
+			this.components = components;
+			this.offset = offset;
+		}
+
+		/**
+		 * @return the encoding of this attribute.
+		 */
+		public Encoding getEncoding()
+		{
+			return encoding;
+		}
+
+		/**
+		 * @return the data type of this attribute.
+		 */
+		public DataType getDataType()
+		{
+			return encoding.dataType;
+		}
+
+		/**
+		 * @return true if this attribute's values are normalized on read, false if not.
+		 */
+		public boolean isNormalized()
+		{
+			return encoding.normalized;
+		}
+
+		/**
+		 * @return the amount of float components per vertex that are encoded into this attribute.
+		 */
+		public int getComponents()
+		{
+			return components;
+		}
+
+		/**
+		 * @return the amount of components per vertex that this attribute is stored (and read) as.
+		 */
+		public int getStoredComponents()
+		{
+			switch (encoding)
+			{
+				case PACKED_2_10_10_10:
+				case PACKED_UNSIGNED_2_10_10_10:
+					return 4;
+				case OCTAHEDRAL_SHORT:
+				case OCTAHEDRAL_BYTE:
+					return 2;
+				default:
+					return components;
+			}
+		}
+
+		/**
+		 * @return the offset of this attribute from the start of each vertex, in bytes.
+		 */
+		public int getOffset()
+		{
+			return offset;
+		}
+
+		/**
+		 * @return the size of this attribute, in bytes, not including padding.
+		 */
+		public int getSize()
+		{
+			if (encoding.dataType.isPacked())
+				return encoding.dataType.size;
+			return getStoredComponents() * encoding.dataType.size;
+		}
+
+	}
+
+	/**
+	 * A builder for vertex formats.
+	 * Attributes are laid out in the order that they are added.
+	 */
+	public static final class Builder
+	{
+		private List<Attribute> attributes;
+		private int offset;
+
+		private Builder()
+		{
+			this.attributes = new ArrayList<>(4);
+			this.offset = 0;
+		}
+
+		/**
+		 * Adds an attribute.
+		 * @param encoding the attribute's encoding.
+		 * @param components the amount of float components per vertex (1 to 4).
+		 * 		Packed encodings take 3 or 4 (W is 1 if 3), and octahedral encodings take only 3.
+		 * @return this builder.
+		 * @throws IllegalArgumentException if the amount of components is invalid for the encoding.
+		 */
+		public Builder add(Encoding encoding, int components)
+		{
+			switch (encoding)
+			{
+				case PACKED_2_10_10_10:
+				case PACKED_UNSIGNED_2_10_10_10:
+					if (components < 3 || components > 4)
+						throw new IllegalArgumentException("Packed attributes must have 3 or 4 components.");
+					break;
+				case OCTAHEDRAL_SHORT:
+				case OCTAHEDRAL_BYTE:
+					if (components != 3)
+						throw new IllegalArgumentException("Octahedral attributes must have 3 components.");
+					break;
+				default:
+					if (components < 1 || components > 4)
+						throw new IllegalArgumentException("Attributes must have 1 to 4 components.");
+					break;
+			}
+			Attribute attribute = new Attribute(encoding, components, offset);
+			attributes.add(attribute);
+			offset = align4(offset + attribute.getSize());
+			return this;
+		}
+
+		/**
+		 * @return a new vertex format from the added attributes.
+		 * @throws IllegalStateException if no attributes were added.
+		 */
+		public VertexFormat build()
+		{
+			if (attributes.isEmpty())
+				throw new IllegalStateException("Vertex format needs at least one attribute.");
+			return new VertexFormat(attributes.toArray(new Attribute[attributes.size()]), offset);
+		}
+
+	}
+
+	private Attribute[] attributes;
+	private int stride;
+
+	private VertexFormat(Attribute[] attributes, int stride)
+	{
+		this.attributes = attributes;
+		this.stride = stride;
+	}
+
+	/**
+	 * @return a new builder for a vertex format.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	/**
+	 * @return the amount of attributes in this format.
+	 */
+	public int getAttributeCount()
+	{
+		return attributes.length;
+	}
+
+	/**
+	 * Gets an attribute in this format.
+	 * @param attribute the attribute index.
+	 * @return the corresponding attribute.
+	 * @throws ArrayIndexOutOfBoundsException if the index is out of range.
+	 */
+	public Attribute getAttribute(int attribute)
+	{
+		return attributes[attribute];
+	}
+
+	/**
+	 * @return the size of a full vertex, in bytes.
+	 */
+	public int getStride()
+	{
+		return stride;
+	}
+
+	/**
+	 * Allocates a buffer for vertices of this format.
+	 * The buffer is allocated via {@link ByteBuffer#allocateDirect(int)} (not a {@link BufferUtils} allocator),
+	 * so it is freed by the garbage collector.
+	 * @param vertexCount the amount of vertices.
+	 * @return a new direct buffer in native byte order, cleared to zero.
+	 */
+	public ByteBuffer allocate(int vertexCount)
+	{
+		return ByteBuffer.allocateDirect(vertexCount * stride).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Encodes and writes float data for one attribute of a run of vertices.
+	 * The buffer's position is not changed.
+	 * @param out the output buffer (must be in native byte order for OpenGL to read it).
+	 * @param attribute the attribute index.
+	 * @param firstVertex the index of the first vertex to write to.
+	 * @param source the source data, tightly packed, with {@link Attribute#getComponents()} floats per vertex.
+	 * @param sourceOffset the starting offset into the source data.
+	 * @param count the amount of vertices to write.
+	 * @throws IndexOutOfBoundsException if the source or output buffer is too small.
+	 */
+	public void put(ByteBuffer out, int attribute, int firstVertex, float[] source, int sourceOffset, int count)
+	{
+		Attribute attrib = attributes[attribute];
+		int offset = firstVertex * stride + attrib.offset;
+		int components = attrib.components;
+		switch (attrib.encoding)
+		{
+			case FLOAT:
+				BufferUtils.putFloats(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case HALF_FLOAT:
+				BufferUtils.putHalfFloats(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case NORMALIZED_BYTE:
+				BufferUtils.putNormalizedBytes(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case NORMALIZED_UNSIGNED_BYTE:
+				BufferUtils.putNormalizedUnsignedBytes(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case NORMALIZED_SHORT:
+				BufferUtils.putNormalizedShorts(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case NORMALIZED_UNSIGNED_SHORT:
+				BufferUtils.putNormalizedUnsignedShorts(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case PACKED_2_10_10_10:
+				BufferUtils.putPacked2101010(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case PACKED_UNSIGNED_2_10_10_10:
+				BufferUtils.putPackedUnsigned2101010(out, offset, stride, source, sourceOffset, components, count);
+				break;
+			case OCTAHEDRAL_SHORT:
+				BufferUtils.putOctahedralShorts(out, offset, stride, source, sourceOffset, count);
+				break;
+			case OCTAHEDRAL_BYTE:
+				BufferUtils.putOctahedralBytes(out, offset, stride, source, sourceOffset, count);
+				break;
+		}
+	}
+
+	// Rounds up to a multiple of 4.
+	private static int align4(int value)
+	{
+		return (value + 3) & ~3;
+	}
+
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures {@link BoundingVolumeHierarchy} build, refit, frustum query, and raycast times on random boxes,
+ * against testing every box on one thread with {@link Frustum#cullBoxes(float[], float[], float[], float[], float[], float[], int, int, long[])}.
+ * Frustum queries must find the same amount of visible boxes as the batched test.
+ * Heap allocation per query is reported where the JVM can measure it per thread. No OpenGL context is needed.
+ * <p> Run from the test classpath, with optional box count and query count arguments:
+ * <pre>java com.blackrook.gloop.opengl.math.BoundingVolumeHierarchyBenchmark [boxes] [queries]</pre>
+ * Each case is warmed up once before it is timed, and the best time out of 5 runs is reported.
+ * @author Matthew Tropiano
+ */
+public final class BoundingVolumeHierarchyBenchmark
+{
+	private static final int RUNS = 5;
+
+	public static void main(String[] args)
+	{
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		final int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		final Random random = new Random(0x42564848L);
+		final float[] minX = new float[count], minY = new float[count], minZ = new float[count];
+		final float[] maxX = new float[count], maxY = new float[count], maxZ = new float[count];
+		for (int i = 0; i < count; i++)
+		{
+			minX[i] = random.nextFloat() * 1000f - 500f;
+			minY[i] = random.nextFloat() * 1000f - 500f;
+			minZ[i] = random.nextFloat() * 1000f - 500f;
+			maxX[i] = minX[i] + random.nextFloat() * 4f;
+			maxY[i] = minY[i] + random.nextFloat() * 4f;
+			maxZ[i] = minZ[i] + random.nextFloat() * 4f;
+		}
+
+		final BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(count);
+		bvh.setBoxes(minX, minY, minZ, maxX, maxY, maxZ, count);
+		long bestBuild = Long.MAX_VALUE;
+		for (int n = 0; n < RUNS; n++)
+		{
+			bvh.build();
+			bestBuild = Math.min(bestBuild, bvh.getBuildTimeNanos());
+		}
+
+		long bestRefit = Long.MAX_VALUE;
+		for (int n = 0; n < RUNS; n++)
+		{
+			for (int i = 0; i < count; i += 100)
+			{
+				float dx = random.nextFloat() - 0.5f;
+				bvh.setBox(i, minX[i] + dx, minY[i], minZ[i], maxX[i] + dx, maxY[i], maxZ[i]);
+			}
+			bvh.refit();
+			bestRefit = Math.min(bestRefit, bvh.getRefitTimeNanos());
+		}
+		bvh.setBoxes(minX, minY, minZ, maxX, maxY, maxZ, count);
+		bvh.build();
+
+		System.out.printf("%d boxes, %d nodes%n", count, bvh.getNodeCount());
+		System.out.printf("%-22s %10.3f ms%n", "build", bestBuild / 1000000.0);
+		System.out.printf("%-22s %10.3f ms%n", "refit (1% moved)", bestRefit / 1000000.0);
+
+		// A narrow camera, looking at a few of the boxes, from several angles.
+		final Frustum[] frustums = new Frustum[queries];
+		for (int q = 0; q < queries; q++)
+		{
+			Matrix4F viewProjection = new Matrix4F();
+			viewProjection.setPerspective(30f, 16f / 9f, 1f, 400f);
+			viewProjection.rotateY(q * 360f / queries).translate(0f, 0f, -600f);
+			frustums[q] = new Frustum();
+			frustums[q].set(viewProjection);
+			frustums[q].setParallelThreshold(0);
+		}
+		final long[] visibility = Frustum.createVisibilitySet(count);
+
+		final int expected = run("cullBoxes (all)", queries, -1, () ->
+		{
+			int visible = 0;
+			for (int q = 0; q < queries; q++)
+				visible += frustums[q].cullBoxes(minX, minY, minZ, maxX, maxY, maxZ, 0, count, visibility);
+			return visible;
+		});
+		run("queryFrustum", queries, expected, () ->
+		{
+			int visible = 0;
+			for (int q = 0; q < queries; q++)
+				visible += bvh.queryFrustum(frustums[q], visibility);
+			return visible;
+		});
+
+		final int rays = queries * 100;
+		final float[] rayData = new float[rays * 6];
+		for (int i = 0; i < rayData.length; i++)
+			rayData[i] = random.nextFloat() * 1000f - 500f;
+		final float[] distance = new float[1];
+		run("raycast", rays, -1, () ->
+		{
+			int hits = 0;
+			for (int r = 0; r < rays; r++)
+			{
+				int d = r * 6;
+				if (bvh.raycast(rayData[d], rayData[d + 1], rayData[d + 2], rayData[d + 3], rayData[d + 4], rayData[d + 5], 2f, distance) >= 0)
+					hits++;
+			}
+			return hits;
+		});
+	}
+
+	// Times a case, checks its result (if expected is not negative), and returns its result.
+	private static int run(String name, int operations, int expected, IntSupplier test)
+	{
+		long best = Long.MAX_VALUE;
+		long bytes = -1L;
+		int result = 0;
+		test.getAsInt();
+		for (int n = 0; n < RUNS; n++)
+		{
+			long startBytes = getAllocatedBytes();
+			long start = System.nanoTime();
+			result = test.getAsInt();
+			best = Math.min(best, System.nanoTime() - start);
+			long endBytes = getAllocatedBytes();
+			if (startBytes >= 0L && endBytes >= 0L)
+				bytes = bytes < 0L ? endBytes - startBytes : Math.min(bytes, endBytes - startBytes);
+		}
+		if (expected >= 0 && result != expected)
+			throw new IllegalStateException(name + " returned " + result + ", expected " + expected + ".");
+		System.out.printf("%-22s %10.3f ms  %10.2f us/op  %s  (result %d)%n", name, best / 1000000.0, best / 1000.0 / operations,
+			bytes < 0L ? "allocation unknown" : String.format("%8.1f bytes/op", (double)bytes / operations), result);
+		return result;
+	}
+
+	// Gets the bytes allocated by this thread so far, or -1 if unsupported.
+	private static long getAllocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1L;
+	}
+
+}
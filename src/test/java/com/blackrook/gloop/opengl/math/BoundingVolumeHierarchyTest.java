@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hierarchy queries are checked against testing every primitive.
+ */
+public class BoundingVolumeHierarchyTest
+{
+	private static final int COUNT = 20000;
+
+	private Random random;
+	private float[] minX, minY, minZ, maxX, maxY, maxZ;
+	private Frustum frustum;
+
+	@BeforeEach
+	public void setUp()
+	{
+		random = new Random(0x42564848L);
+		minX = new float[COUNT];
+		minY = new float[COUNT];
+		minZ = new float[COUNT];
+		maxX = new float[COUNT];
+		maxY = new float[COUNT];
+		maxZ = new float[COUNT];
+		for (int i = 0; i < COUNT; i++)
+			randomBox(i);
+
+		Matrix4F viewProjection = new Matrix4F();
+		viewProjection.setPerspective(70f, 16f / 9f, 0.5f, 200f);
+		viewProjection.rotateX(10f).rotateY(-15f).translate(-10f, -5f, -30f);
+		frustum = new Frustum();
+		frustum.set(viewProjection);
+	}
+
+	private void randomBox(int i)
+	{
+		minX[i] = random.nextFloat() * 200f - 100f;
+		minY[i] = random.nextFloat() * 200f - 100f;
+		minZ[i] = random.nextFloat() * 200f - 100f;
+		maxX[i] = minX[i] + random.nextFloat() * 4f;
+		maxY[i] = minY[i] + random.nextFloat() * 4f;
+		maxZ[i] = minZ[i] + random.nextFloat() * 4f;
+	}
+
+	private BoundingVolumeHierarchy build()
+	{
+		BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy();
+		bvh.setBoxes(minX, minY, minZ, maxX, maxY, maxZ, COUNT);
+		bvh.build();
+		return bvh;
+	}
+
+	private void assertFrustumQuery(BoundingVolumeHierarchy bvh)
+	{
+		long[] visibility = Frustum.createVisibilitySet(COUNT);
+		int visible = bvh.queryFrustum(frustum, visibility);
+		int expected = 0;
+		for (int i = 0; i < COUNT; i++)
+		{
+			boolean in = frustum.testBox(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]);
+			if (in)
+				expected++;
+			assertEquals(in, Frustum.isVisible(visibility, i), "primitive " + i);
+		}
+		assertEquals(expected, visible);
+		assertTrue(expected > 0 && expected < COUNT);
+	}
+
+	// Gets the entry distance of a ray into a box, the same way that the hierarchy does.
+	private float rayBox(int i, float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance)
+	{
+		float near = 0f, far = maxDistance;
+		float[] min = {minX[i], minY[i], minZ[i]}, max = {maxX[i], maxY[i], maxZ[i]};
+		float[] o = {ox, oy, oz}, inv = {1f / dx, 1f / dy, 1f / dz};
+		for (int axis = 0; axis < 3; axis++)
+		{
+			float t0 = (min[axis] - o[axis]) * inv[axis];
+			float t1 = (max[axis] - o[axis]) * inv[axis];
+			if (t0 > t1) { float t = t0; t0 = t1; t1 = t; }
+			if (t0 > near) near = t0;
+			if (t1 < far) far = t1;
+		}
+		return near <= far ? near : Float.NaN;
+	}
+
+	@Test
+	public void frustumQuery()
+	{
+		assertFrustumQuery(build());
+	}
+
+	@Test
+	public void frustumQueryAfterRefit()
+	{
+		BoundingVolumeHierarchy bvh = build();
+		for (int i = 0; i < COUNT; i += 7)
+		{
+			randomBox(i);
+			bvh.setBox(i, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]);
+		}
+		bvh.refit();
+		assertFrustumQuery(bvh);
+
+		for (int i = 0; i < COUNT; i++)
+			randomBox(i);
+		bvh.setBoxes(minX, minY, minZ, maxX, maxY, maxZ, COUNT);
+		bvh.refit();
+		assertFrustumQuery(bvh);
+	}
+
+	@Test
+	public void raycast()
+	{
+		BoundingVolumeHierarchy bvh = build();
+		float[] distance = new float[1];
+		int hits = 0;
+		for (int n = 0; n < 500; n++)
+		{
+			float ox = random.nextFloat() * 200f - 100f, oy = random.nextFloat() * 200f - 100f, oz = random.nextFloat() * 200f - 100f;
+			float dx = random.nextFloat() * 2f - 1f, dy = random.nextFloat() * 2f - 1f, dz = random.nextFloat() * 2f - 1f;
+			float maxDistance = random.nextFloat() * 100f;
+
+			float nearest = Float.NaN;
+			for (int i = 0; i < COUNT; i++)
+			{
+				float t = rayBox(i, ox, oy, oz, dx, dy, dz, maxDistance);
+				if (t <= maxDistance && !(t >= nearest))
+					nearest = t;
+			}
+
+			int hit = bvh.raycast(ox, oy, oz, dx, dy, dz, maxDistance, distance);
+			if (Float.isNaN(nearest))
+			{
+				assertEquals(-1, hit, "ray " + n);
+			}
+			else
+			{
+				hits++;
+				assertTrue(hit >= 0, "ray " + n);
+				assertEquals(nearest, distance[0], 0f, "ray " + n);
+				assertEquals(nearest, rayBox(hit, ox, oy, oz, dx, dy, dz, maxDistance), 0f, "ray " + n);
+			}
+		}
+		assertTrue(hits > 0 && hits < 500);
+	}
+
+	@Test
+	public void notBuilt()
+	{
+		BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy();
+		bvh.setPrimitiveCount(10);
+		assertThrows(IllegalStateException.class, () -> bvh.queryFrustum(frustum, new long[1]));
+		assertThrows(IllegalStateException.class, () -> bvh.raycast(0f, 0f, 0f, 1f, 0f, 0f, 10f, null));
+		bvh.build();
+		bvh.setPrimitiveCount(11);
+		assertFalse(bvh.isBuilt());
+	}
+
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures {@link Frustum} culling throughput on random spheres and boxes around a perspective camera:
+ * one {@link Frustum#testSphere(float, float, float, float)} or {@link Frustum#testBox(float, float, float, float, float, float)}
+ * call per object, and the batched {@link Frustum#cullSpheres(float[], float[], float[], float[], int, int, long[])}
+ * and {@link Frustum#cullBoxes(float[], float[], float[], float[], float[], float[], int, int, long[])} calls,
+ * serially and in parallel. Every batched run must find the same amount of visible objects as the single tests.
+ * No OpenGL context is needed.
+ * <p> Run from the test classpath, with optional object count and iteration count arguments:
+ * <pre>java com.blackrook.gloop.opengl.math.FrustumBenchmark [objects] [iterations]</pre>
+ * Each case is warmed up once per iteration before it is timed, and the best time is reported,
+ * with throughput in objects per second, and per core for the parallel cases.
+ * @author Matthew Tropiano
+ */
+public final class FrustumBenchmark
+{
+	public static void main(String[] args)
+	{
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		Random random = new Random(0x46727573L);
+		final float[] x = new float[count], y = new float[count], z = new float[count], radius = new float[count];
+		final float[] maxX = new float[count], maxY = new float[count], maxZ = new float[count];
+		for (int i = 0; i < count; i++)
+		{
+			x[i] = random.nextFloat() * 200f - 100f;
+			y[i] = random.nextFloat() * 200f - 100f;
+			z[i] = random.nextFloat() * 200f - 100f;
+			radius[i] = random.nextFloat() * 5f;
+			maxX[i] = x[i] + radius[i];
+			maxY[i] = y[i] + radius[i];
+			maxZ[i] = z[i] + radius[i];
+		}
+
+		Matrix4F projection = new Matrix4F();
+		projection.setPerspective(70f, 16f / 9f, 0.5f, 200f);
+		Matrix4F view = Matrix4F.newIdentity();
+		view.rotateX(10f).rotateY(-15f).translate(-10f, -5f, -30f);
+		final Frustum frustum = new Frustum();
+		frustum.set(projection, view);
+		final long[] visibility = Frustum.createVisibilitySet(count);
+
+		System.out.printf("%d objects, %d cores%n", count, cores);
+
+		int spheres = run("testSphere", count, iterations, 1, -1, () ->
+		{
+			int visible = 0;
+			for (int i = 0; i < count; i++)
+				if (frustum.testSphere(x[i], y[i], z[i], radius[i]))
+					visible++;
+			return visible;
+		});
+		frustum.setParallelThreshold(0);
+		run("cullSpheres", count, iterations, 1, spheres, () -> frustum.cullSpheres(x, y, z, radius, 0, count, visibility));
+		frustum.setParallelThreshold(1);
+		run("cullSpheres parallel", count, iterations, cores, spheres, () -> frustum.cullSpheres(x, y, z, radius, 0, count, visibility));
+
+		int boxes = run("testBox", count, iterations, 1, -1, () ->
+		{
+			int visible = 0;
+			for (int i = 0; i < count; i++)
+				if (frustum.testBox(x[i], y[i], z[i], maxX[i], maxY[i], maxZ[i]))
+					visible++;
+			return visible;
+		});
+		frustum.setParallelThreshold(0);
+		run("cullBoxes", count, iterations, 1, boxes, () -> frustum.cullBoxes(x, y, z, maxX, maxY, maxZ, 0, count, visibility));
+		frustum.setParallelThreshold(1);
+		run("cullBoxes parallel", count, iterations, cores, boxes, () -> frustum.cullBoxes(x, y, z, maxX, maxY, maxZ, 0, count, visibility));
+	}
+
+	// Times a case, checks its visible count (if expected is not negative), and returns its visible count.
+	private static int run(String name, int count, int iterations, int cores, int expected, IntSupplier cull)
+	{
+		long best = Long.MAX_VALUE;
+		int visible = 0;
+		for (int n = 0; n < iterations; n++)
+		{
+			cull.getAsInt();
+			long start = System.nanoTime();
+			visible = cull.getAsInt();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		if (expected >= 0 && visible != expected)
+			throw new IllegalStateException(name + " found " + visible + " visible objects, expected " + expected + ".");
+		double perSecond = count / (best / 1000000000.0);
+		System.out.printf("%-22s %8.3f ms  %8.1f Mobjects/s  %8.1f Mobjects/s/core  (%d visible)%n", name,
+			best / 1000000.0, perSecond / 1000000.0, perSecond / cores / 1000000.0, visible);
+		return visible;
+	}
+
+}
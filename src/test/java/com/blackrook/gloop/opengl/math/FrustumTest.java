@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batched culling is checked against the single-object tests, serially and in parallel.
+ */
+public class FrustumTest
+{
+	private static final int COUNT = 100000;
+
+	private Random random;
+	private Frustum frustum;
+
+	@BeforeEach
+	public void setUp()
+	{
+		random = new Random(0x46727573L);
+		Matrix4F projection = new Matrix4F();
+		projection.setPerspective(70f, 16f / 9f, 0.5f, 200f);
+		Matrix4F view = Matrix4F.newIdentity();
+		view.rotateX(10f).rotateY(-15f).translate(-10f, -5f, -30f);
+		frustum = new Frustum();
+		frustum.set(projection, view);
+	}
+
+	private float[] values(float range)
+	{
+		float[] out = new float[COUNT];
+		for (int i = 0; i < COUNT; i++)
+			out[i] = (random.nextFloat() * 2f - 1f) * range;
+		return out;
+	}
+
+	@Test
+	public void orthoPlanes()
+	{
+		Matrix4F ortho = new Matrix4F();
+		ortho.setOrtho(-2f, 2f, -1f, 1f, 1f, 10f);
+		Frustum box = new Frustum();
+		box.set(ortho);
+
+		float[] plane = new float[4];
+		box.getPlane(Frustum.PLANE_LEFT, plane);
+		assertArrayEquals(new float[]{1f, 0f, 0f, 2f}, plane, 1e-6f);
+		box.getPlane(Frustum.PLANE_TOP, plane);
+		assertArrayEquals(new float[]{0f, -1f, 0f, 1f}, plane, 1e-6f);
+		box.getPlane(Frustum.PLANE_NEAR, plane);
+		assertArrayEquals(new float[]{0f, 0f, -1f, -1f}, plane, 1e-6f);
+		box.getPlane(Frustum.PLANE_FAR, plane);
+		assertArrayEquals(new float[]{0f, 0f, 1f, 10f}, plane, 1e-6f);
+
+		assertTrue(box.testPoint(0f, 0f, -5f));
+		assertFalse(box.testPoint(0f, 0f, -0.5f));
+		assertFalse(box.testPoint(2.5f, 0f, -5f));
+		assertTrue(box.testSphere(2.5f, 0f, -5f, 0.6f));
+		assertTrue(box.testBox(1.5f, -3f, -20f, 3f, 3f, -9f));
+		assertFalse(box.testBox(-5f, 1.5f, -5f, 5f, 2f, -4f));
+		assertThrows(ArrayIndexOutOfBoundsException.class, () -> box.getPlane(6, new float[4]));
+	}
+
+	@Test
+	public void emptyUntilSet()
+	{
+		Frustum empty = new Frustum();
+		assertFalse(empty.testPoint(0f, 0f, 0f));
+		assertFalse(empty.testBox(-1f, -1f, -1f, 1f, 1f, 1f));
+	}
+
+	@Test
+	public void combinedMatrix()
+	{
+		Matrix4F combined = new Matrix4F();
+		combined.setPerspective(70f, 16f / 9f, 0.5f, 200f);
+		combined.rotateX(10f).rotateY(-15f).translate(-10f, -5f, -30f);
+		Frustum other = new Frustum();
+		other.set(combined);
+
+		float[] expected = new float[4], actual = new float[4];
+		for (int p = 0; p < 6; p++)
+		{
+			frustum.getPlane(p, expected);
+			other.getPlane(p, actual);
+			assertArrayEquals(expected, actual, 0f);
+		}
+	}
+
+	@Test
+	public void cullSpheres()
+	{
+		float[] x = values(100f), y = values(100f), z = values(100f), radius = values(5f);
+		for (int i = 0; i < COUNT; i++)
+			radius[i] = Math.abs(radius[i]);
+
+		int expected = 0;
+		for (int i = 0; i < COUNT; i++)
+			if (frustum.testSphere(x[i], y[i], z[i], radius[i]))
+				expected++;
+		assertTrue(expected > 0 && expected < COUNT);
+
+		for (int threshold : new int[]{0, 1})
+		{
+			frustum.setParallelThreshold(threshold);
+			long[] visibility = Frustum.createVisibilitySet(COUNT);
+			assertEquals(expected, frustum.cullSpheres(x, y, z, radius, 0, COUNT, visibility));
+			for (int i = 0; i < COUNT; i++)
+				assertEquals(frustum.testSphere(x[i], y[i], z[i], radius[i]), Frustum.isVisible(visibility, i), "sphere " + i);
+		}
+	}
+
+	@Test
+	public void cullBoxes()
+	{
+		float[] minX = values(100f), minY = values(100f), minZ = values(100f);
+		float[] maxX = values(5f), maxY = values(5f), maxZ = values(5f);
+		for (int i = 0; i < COUNT; i++)
+		{
+			maxX[i] = minX[i] + Math.abs(maxX[i]);
+			maxY[i] = minY[i] + Math.abs(maxY[i]);
+			maxZ[i] = minZ[i] + Math.abs(maxZ[i]);
+		}
+
+		int expected = 0;
+		for (int i = 0; i < COUNT; i++)
+			if (frustum.testBox(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]))
+				expected++;
+		assertTrue(expected > 0 && expected < COUNT);
+
+		for (int threshold : new int[]{0, 1})
+		{
+			frustum.setParallelThreshold(threshold);
+			long[] visibility = Frustum.createVisibilitySet(COUNT);
+			assertEquals(expected, frustum.cullBoxes(minX, minY, minZ, maxX, maxY, maxZ, 0, COUNT, visibility));
+			for (int i = 0; i < COUNT; i++)
+				assertEquals(frustum.testBox(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]), Frustum.isVisible(visibility, i), "box " + i);
+		}
+	}
+
+	@Test
+	public void cullRangeKeepsOtherBits()
+	{
+		float[] x = values(100f), y = values(100f), z = values(100f), radius = new float[COUNT];
+		int start = 4095, count = COUNT - 5000;
+		for (int threshold : new int[]{0, 1})
+		{
+			frustum.setParallelThreshold(threshold);
+			long[] visibility = Frustum.createVisibilitySet(COUNT);
+			Arrays.fill(visibility, 0x5555555555555555L);
+			int visible = frustum.cullSpheres(x, y, z, radius, start, count, visibility);
+
+			int expected = 0;
+			for (int i = 0; i < COUNT; i++)
+			{
+				boolean set;
+				if (i >= start && i < start + count)
+				{
+					set = frustum.testPoint(x[i], y[i], z[i]);
+					if (set)
+						expected++;
+				}
+				else
+				{
+					set = (i & 1) == 0;
+				}
+				assertEquals(set, Frustum.isVisible(visibility, i), "object " + i);
+			}
+			assertEquals(expected, visible);
+		}
+		assertEquals(0, frustum.cullSpheres(x, y, z, radius, 0, 0, new long[0]));
+		assertThrows(IllegalArgumentException.class, () -> frustum.setParallelThreshold(-1));
+	}
+
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Compares {@link Matrix4F} against {@link Matrix4FReference} (the implementation before transforms were applied in place)
+ * on common transform sequences: a model transform (translate, three axis rotations, scale), a general multiply,
+ * a camera (perspective and look-at), and <code>setRotation</code>. No OpenGL context is needed.
+ * <p> Run from the test classpath, with optional operation count and iteration count arguments:
+ * <pre>java com.blackrook.gloop.opengl.math.Matrix4FBenchmark [operations] [iterations]</pre>
+ * Each case is warmed up once per iteration before it is timed, and the best time is reported.
+ * Both implementations must produce the same checksum.
+ * @author Matthew Tropiano
+ */
+public final class Matrix4FBenchmark
+{
+	private static float angle(int i) {return (i * 7) % 360;}
+	private static float offset(int i) {return (i & 1023) * 0.01f;}
+
+	public static void main(String[] args)
+	{
+		final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		final Matrix4F matrix = new Matrix4F();
+		final Matrix4F other = Matrix4F.newIdentity();
+		other.rotateY(30f).translate(1f, 2f, 3f);
+		final Matrix4FReference reference = new Matrix4FReference();
+		final Matrix4FReference otherReference = Matrix4FReference.newIdentity();
+		otherReference.rotateY(30f).translate(1f, 2f, 3f);
+
+		compare("model transform", operations, iterations, (count) ->
+		{
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+			{
+				matrix.reset().translate(offset(i), 1f, -offset(i)).rotateX(angle(i)).rotateY(angle(i + 1)).rotateZ(angle(i + 2)).scale(2f);
+				sum += matrix.getArray()[12];
+			}
+			return sum;
+		}, (count) ->
+		{
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+			{
+				reference.reset().translate(offset(i), 1f, -offset(i)).rotateX(angle(i)).rotateY(angle(i + 1)).rotateZ(angle(i + 2)).scale(2f);
+				sum += reference.getArray()[12];
+			}
+			return sum;
+		});
+
+		compare("multiplyRight", operations, iterations, (count) ->
+		{
+			matrix.setTranslation(1f, 1f, 1f);
+			for (int i = 0; i < count; i++)
+				matrix.multiplyRight(other);
+			return matrix.getArray()[0];
+		}, (count) ->
+		{
+			reference.setTranslation(1f, 1f, 1f);
+			for (int i = 0; i < count; i++)
+				reference.multiplyRight(otherReference);
+			return reference.getArray()[0];
+		});
+
+		compare("camera", operations, iterations, (count) ->
+		{
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+			{
+				matrix.reset().perspective(60f, 1.5f, 0.1f, 100f).lookAt(offset(i), 2f, 5f, 0f, 0f, 0f, 0f, 1f, 0f);
+				sum += matrix.getArray()[14];
+			}
+			return sum;
+		}, (count) ->
+		{
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+			{
+				reference.reset().perspective(60f, 1.5f, 0.1f, 100f).lookAt(offset(i), 2f, 5f, 0f, 0f, 0f, 0f, 1f, 0f);
+				sum += reference.getArray()[14];
+			}
+			return sum;
+		});
+
+		compare("setRotation", operations, iterations, (count) ->
+		{
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+			{
+				matrix.setRotation(angle(i), angle(i + 1), angle(i + 2));
+				sum += matrix.getArray()[2];
+			}
+			return sum;
+		}, (count) ->
+		{
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+			{
+				reference.setRotation(angle(i), angle(i + 1), angle(i + 2));
+				sum += reference.getArray()[2];
+			}
+			return sum;
+		});
+	}
+
+	// Times a case on both implementations and checks that they agree.
+	private static void compare(String name, int operations, int iterations, IntToDoubleFunction current, IntToDoubleFunction previous)
+	{
+		double currentSum = 0.0, previousSum = 0.0;
+		long currentBest = Long.MAX_VALUE, previousBest = Long.MAX_VALUE;
+		for (int n = 0; n < iterations; n++)
+		{
+			previous.applyAsDouble(operations);
+			long start = System.nanoTime();
+			previousSum = previous.applyAsDouble(operations);
+			previousBest = Math.min(previousBest, System.nanoTime() - start);
+
+			current.applyAsDouble(operations);
+			start = System.nanoTime();
+			currentSum = current.applyAsDouble(operations);
+			currentBest = Math.min(currentBest, System.nanoTime() - start);
+		}
+		if (Double.doubleToLongBits(currentSum) != Double.doubleToLongBits(previousSum))
+			throw new IllegalStateException(name + " checksum differs: " + currentSum + " != " + previousSum);
+		System.out.printf("%-16s previous %8.2f ms  current %8.2f ms  %5.2fx%n", name,
+			previousBest / 1000000.0, currentBest / 1000000.0, (double)previousBest / currentBest);
+	}
+
+}
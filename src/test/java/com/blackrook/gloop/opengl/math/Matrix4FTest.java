@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.nio.BufferOverflowException;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link Matrix4F} gives the same bits as {@link Matrix4FReference}, from random starting matrices
+ * and random arguments. Zero cells may differ in sign only.
+ */
+public class Matrix4FTest
+{
+	private static final int ITERATIONS = 2000;
+
+	private Random random;
+
+	@BeforeEach
+	public void setUp()
+	{
+		random = new Random(0x4d345846L);
+	}
+
+	private float value()
+	{
+		return random.nextFloat() * 20f - 10f;
+	}
+
+	private float positive()
+	{
+		return random.nextFloat() * 10f + 0.5f;
+	}
+
+	private float angle()
+	{
+		return random.nextFloat() * 720f - 360f;
+	}
+
+	// Applies an operation to the same random matrix in both implementations, and compares the results.
+	private void check(String name, Consumer<Matrix4F> actual, Consumer<Matrix4FReference> expected)
+	{
+		float[] start = new float[16];
+		for (int i = 0; i < 16; i++)
+			start[i] = value();
+
+		Matrix4F matrix = new Matrix4F();
+		matrix.set(start);
+		Matrix4FReference reference = new Matrix4FReference();
+		reference.set(start);
+
+		actual.accept(matrix);
+		expected.accept(reference);
+		assertSameBits(name, reference.getArray(), matrix.getArray());
+	}
+
+	// Compares two matrices bit for bit, except for the sign of zero.
+	private static void assertSameBits(String name, float[] expected, float[] actual)
+	{
+		for (int i = 0; i < 16; i++)
+		{
+			boolean same = Float.floatToIntBits(expected[i]) == Float.floatToIntBits(actual[i])
+				|| (expected[i] == 0f && actual[i] == 0f);
+			assertTrue(same, name + ": cell " + i + " expected " + expected[i] + " but was " + actual[i]);
+		}
+	}
+
+	@Test
+	public void translate()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float x = value(), y = value(), z = value();
+			check("translate", (m) -> m.translate(x, y, z), (r) -> r.translate(x, y, z));
+		}
+	}
+
+	@Test
+	public void scaleAndShear()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float x = value(), y = value(), z = value();
+			check("scale", (m) -> m.scale(x, y, z), (r) -> r.scale(x, y, z));
+			check("scale uniform", (m) -> m.scale(x), (r) -> r.scale(x));
+			check("shear", (m) -> m.shear(y), (r) -> r.shear(y));
+		}
+	}
+
+	@Test
+	public void axisRotations()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float degrees = angle();
+			check("rotateX", (m) -> m.rotateX(degrees), (r) -> r.rotateX(degrees));
+			check("rotateY", (m) -> m.rotateY(degrees), (r) -> r.rotateY(degrees));
+			check("rotateZ", (m) -> m.rotateZ(degrees), (r) -> r.rotateZ(degrees));
+		}
+	}
+
+	@Test
+	public void projections()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float fov = random.nextFloat() * 170f + 5f, aspect = positive();
+			float left = -positive(), right = positive(), bottom = -positive(), top = positive();
+			float near = random.nextFloat() + 0.01f, far = near + positive();
+			check("perspective", (m) -> m.perspective(fov, aspect, near, far), (r) -> r.perspective(fov, aspect, near, far));
+			check("frustum", (m) -> m.frustum(left, right, bottom, top, near, far), (r) -> r.frustum(left, right, bottom, top, near, far));
+			check("ortho", (m) -> m.ortho(left, right, bottom, top, near, far), (r) -> r.ortho(left, right, bottom, top, near, far));
+			check("aspectOrtho", (m) -> m.aspectOrtho(aspect, left, right, bottom, top, near, far), (r) -> r.aspectOrtho(aspect, left, right, bottom, top, near, far));
+		}
+	}
+
+	@Test
+	public void lookAt()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float ex = value(), ey = value(), ez = value();
+			float cx = value(), cy = value(), cz = value();
+			float ux = value(), uy = value(), uz = value();
+			check("lookAt", (m) -> m.lookAt(ex, ey, ez, cx, cy, cz, ux, uy, uz), (r) -> r.lookAt(ex, ey, ez, cx, cy, cz, ux, uy, uz));
+			check("setLookAt", (m) -> m.setLookAt(ex, ey, ez, cx, cy, cz, ux, uy, uz), (r) -> r.setLookAt(ex, ey, ez, cx, cy, cz, ux, uy, uz));
+		}
+	}
+
+	@Test
+	public void multiply()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float[] values = new float[16];
+			for (int i = 0; i < 16; i++)
+				values[i] = value();
+			Matrix4F other = new Matrix4F();
+			other.set(values);
+			Matrix4FReference otherReference = new Matrix4FReference();
+			otherReference.set(values);
+
+			check("multiplyRight", (m) -> m.multiplyRight(other), (r) -> r.multiplyRight(otherReference));
+			check("multiplyLeft", (m) -> m.multiplyLeft(other), (r) -> r.multiplyLeft(otherReference));
+			check("multiplyRight array", (m) -> m.multiplyRight(values), (r) -> r.multiplyRight(otherReference));
+			check("multiplyLeft array", (m) -> m.multiplyLeft(values), (r) -> r.multiplyLeft(otherReference));
+			check("multiplyRight self", (m) -> m.multiplyRight(m), (r) -> r.multiplyRight(r));
+			check("multiplyLeft self", (m) -> m.multiplyLeft(m), (r) -> r.multiplyLeft(r));
+		}
+	}
+
+	@Test
+	public void setters()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float x = value(), y = value(), z = value();
+			float ax = angle(), ay = angle(), az = angle();
+			float fov = random.nextFloat() * 170f + 5f, aspect = positive();
+			float left = -positive(), right = positive(), bottom = -positive(), top = positive();
+			float near = random.nextFloat() + 0.01f, far = near + positive();
+			check("setTranslation", (m) -> m.setTranslation(x, y, z), (r) -> r.setTranslation(x, y, z));
+			check("setScale", (m) -> m.setScale(x, y, z), (r) -> r.setScale(x, y, z));
+			check("setShear", (m) -> m.setShear(x), (r) -> r.setShear(x));
+			check("setRotateX", (m) -> m.setRotateX(ax), (r) -> r.setRotateX(ax));
+			check("setRotateY", (m) -> m.setRotateY(ay), (r) -> r.setRotateY(ay));
+			check("setRotateZ", (m) -> m.setRotateZ(az), (r) -> r.setRotateZ(az));
+			check("setRotation", (m) -> m.setRotation(ax, ay, az), (r) -> r.setRotation(ax, ay, az));
+			check("setPerspective", (m) -> m.setPerspective(fov, aspect, near, far), (r) -> r.setPerspective(fov, aspect, near, far));
+			check("setFrustum", (m) -> m.setFrustum(left, right, bottom, top, near, far), (r) -> r.setFrustum(left, right, bottom, top, near, far));
+			check("setOrtho", (m) -> m.setOrtho(left, right, bottom, top, near, far), (r) -> r.setOrtho(left, right, bottom, top, near, far));
+			check("setAspectOrtho", (m) -> m.setAspectOrtho(aspect, left, right, bottom, top, near, far), (r) -> r.setAspectOrtho(aspect, left, right, bottom, top, near, far));
+		}
+	}
+
+	@Test
+	public void chains()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			float x = value(), y = value(), z = value();
+			float ax = angle(), ay = angle(), az = angle(), s = positive();
+			check("chain",
+				(m) -> m.reset().perspective(60f, s, 0.1f, 100f).translate(x, y, z).rotateX(ax).rotateY(ay).rotateZ(az).scale(s),
+				(r) -> r.reset().perspective(60f, s, 0.1f, 100f).translate(x, y, z).rotateX(ax).rotateY(ay).rotateZ(az).scale(s)
+			);
+		}
+	}
+
+	// Makes a random invertible transform: a translation, rotation, and non-zero scale.
+	private Matrix4F randomTransform()
+	{
+		Matrix4F out = Matrix4F.newIdentity();
+		float sx = positive(), sy = positive(), sz = positive();
+		out.translate(value(), value(), value()).rotateX(angle()).rotateY(angle()).rotateZ(angle())
+			.scale(random.nextBoolean() ? sx : -sx, sy, sz);
+		return out;
+	}
+
+	private static float[] product(Matrix4F a, Matrix4F b)
+	{
+		Matrix4F out = a.copy();
+		out.multiplyRight(b);
+		return out.getArray();
+	}
+
+	@Test
+	public void invert()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			Matrix4F matrix = randomTransform();
+			if (random.nextBoolean())
+				matrix.multiplyLeft(Matrix4F.newIdentity().perspective(random.nextFloat() * 120f + 30f, positive(), 0.5f, 50f));
+			Matrix4F inverse = new Matrix4F();
+			matrix.getInverse(inverse);
+			assertArrayEquals(Matrix4F.IDENTITY, product(matrix, inverse), 1e-4f, "m x inverse");
+			assertArrayEquals(Matrix4F.IDENTITY, product(inverse, matrix), 1e-4f, "inverse x m");
+
+			Matrix4F inPlace = matrix.copy().invert();
+			assertArrayEquals(inverse.getArray(), inPlace.getArray(), 0f, "invert()");
+		}
+
+		// (translate x scale)^-1 = scale^-1 x translate^-1, all exact in binary.
+		Matrix4F matrix = Matrix4F.newIdentity();
+		matrix.translate(1f, 2f, 3f).scale(2f, 4f, 8f);
+		Matrix4F expected = Matrix4F.newIdentity();
+		expected.scale(0.5f, 0.25f, 0.125f).translate(-1f, -2f, -3f);
+		assertArrayEquals(expected.getArray(), matrix.invert().getArray(), 0f);
+		// A swap of the Y and Z axes is its own inverse.
+		matrix.set(new float[]{1f, 0f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 0f, 1f});
+		assertArrayEquals(matrix.copy().getArray(), matrix.invert().getArray(), 0f);
+	}
+
+	@Test
+	public void invertSingular()
+	{
+		// The third column is twice the first.
+		float[] singular = {1f, 2f, 3f, 0f, 4f, 5f, 6f, 0f, 2f, 4f, 6f, 0f, 7f, 8f, 9f, 1f};
+		Matrix4F matrix = new Matrix4F();
+		matrix.set(singular);
+		Matrix4F out = Matrix4F.newIdentity();
+		assertThrows(ArithmeticException.class, () -> matrix.invert());
+		assertThrows(ArithmeticException.class, () -> matrix.getInverse(out));
+		assertArrayEquals(singular, matrix.getArray(), 0f);
+		assertArrayEquals(Matrix4F.IDENTITY, out.getArray(), 0f);
+		assertThrows(ArithmeticException.class, () -> new Matrix4F().invert());
+	}
+
+	@Test
+	public void invertAffine()
+	{
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			Matrix4F matrix = randomTransform();
+			Matrix4F inverse = new Matrix4F();
+			matrix.getAffineInverse(inverse);
+			assertArrayEquals(Matrix4F.IDENTITY, product(matrix, inverse), 1e-4f, "m x inverse");
+			assertArrayEquals(Matrix4F.IDENTITY, product(inverse, matrix), 1e-4f, "inverse x m");
+			assertArrayEquals(matrix.copy().invert().getArray(), inverse.getArray(), 1e-4f, "invert()");
+			assertArrayEquals(inverse.getArray(), matrix.copy().invertAffine().getArray(), 0f, "invertAffine()");
+		}
+
+		Matrix4F matrix = Matrix4F.newIdentity();
+		matrix.translate(1f, 2f, 3f).scale(2f, 4f, 8f);
+		Matrix4F expected = Matrix4F.newIdentity();
+		expected.scale(0.5f, 0.25f, 0.125f).translate(-1f, -2f, -3f);
+		assertArrayEquals(expected.getArray(), matrix.invertAffine().getArray(), 0f);
+
+		// A flat axis cannot be inverted.
+		Matrix4F flat = Matrix4F.newIdentity();
+		flat.translate(1f, 2f, 3f).scale(1f, 0f, 1f);
+		float[] before = flat.copy().getArray();
+		assertThrows(ArithmeticException.class, () -> flat.invertAffine());
+		assertArrayEquals(before, flat.getArray(), 0f);
+	}
+
+	@Test
+	public void normalMatrix()
+	{
+		float[] normal = new float[9];
+		for (int n = 0; n < ITERATIONS; n++)
+		{
+			// The normal matrix is the inverse transpose, so its transpose times the upper 3x3 is the identity.
+			Matrix4F matrix = randomTransform();
+			matrix.getNormalMatrix(normal);
+			float[] m = matrix.getArray();
+			for (int row = 0; row < 3; row++)
+				for (int col = 0; col < 3; col++)
+				{
+					float sum = 0f;
+					for (int k = 0; k < 3; k++)
+						sum += normal[row * 3 + k] * m[col * 4 + k];
+					assertEquals(row == col ? 1f : 0f, sum, 1e-4f, "cell " + row + ", " + col);
+				}
+
+			// All output forms agree.
+			float[] offset = new float[12];
+			matrix.getNormalMatrix(offset, 3);
+			assertArrayEquals(normal, Arrays.copyOfRange(offset, 3, 12), 0f);
+			FloatBuffer buffer = FloatBuffer.allocate(10);
+			buffer.put(0f);
+			matrix.getNormalMatrix(buffer);
+			assertEquals(10, buffer.position());
+			float[] fromBuffer = new float[9];
+			buffer.position(1);
+			buffer.get(fromBuffer);
+			assertArrayEquals(normal, fromBuffer, 0f);
+		}
+
+		// Rotations and translations: the normal matrix is the rotation itself.
+		Matrix4F rotation = Matrix4F.newIdentity();
+		rotation.translate(5f, 6f, 7f).rotateZ(90f);
+		rotation.getNormalMatrix(normal);
+		assertArrayEquals(new float[]{0f, 1f, 0f, -1f, 0f, 0f, 0f, 0f, 1f}, normal, 1e-6f);
+		// Scales are inverted.
+		Matrix4F scale = Matrix4F.newIdentity();
+		scale.scale(2f, 4f, 8f);
+		scale.getNormalMatrix(normal);
+		assertArrayEquals(new float[]{0.5f, 0f, 0f, 0f, 0.25f, 0f, 0f, 0f, 0.125f}, normal, 0f);
+
+		Matrix4F flat = Matrix4F.newIdentity();
+		flat.scale(1f, 1f, 0f);
+		assertThrows(ArithmeticException.class, () -> flat.getNormalMatrix(new float[9]));
+		assertThrows(ArithmeticException.class, () -> flat.getNormalMatrix(FloatBuffer.allocate(9)));
+		assertThrows(ArrayIndexOutOfBoundsException.class, () -> scale.getNormalMatrix(new float[9], 1));
+		assertThrows(BufferOverflowException.class, () -> scale.getNormalMatrix(FloatBuffer.allocate(8)));
+	}
+
+}
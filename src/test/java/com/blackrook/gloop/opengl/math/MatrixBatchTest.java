@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link MatrixBatch} operations give the same bits as the same operations
+ * done one {@link Matrix4F} at a time, both split across threads and not.
+ */
+public class MatrixBatchTest
+{
+	/** More than one block, with a partial last block. */
+	private static final int COUNT = 2500;
+
+	private Random random;
+
+	@BeforeEach
+	public void setUp()
+	{
+		random = new Random(0x42617463L);
+	}
+
+	private MatrixBatch randomBatch()
+	{
+		MatrixBatch out = new MatrixBatch(COUNT);
+		float[] data = out.getArray();
+		for (int i = 0; i < data.length; i++)
+			data[i] = random.nextFloat() * 20f - 10f;
+		return out;
+	}
+
+	private Matrix4F randomMatrix()
+	{
+		Matrix4F out = new Matrix4F();
+		for (int i = 0; i < 16; i++)
+			out.set(i, random.nextFloat() * 20f - 10f);
+		return out;
+	}
+
+	private static Matrix4F get(MatrixBatch batch, int index)
+	{
+		Matrix4F out = new Matrix4F();
+		batch.get(index, out);
+		return out;
+	}
+
+	private static float[] cells(MatrixBatch batch, int index)
+	{
+		return Arrays.copyOfRange(batch.getArray(), index * 16, index * 16 + 16);
+	}
+
+	@Test
+	public void multiply()
+	{
+		MatrixBatch a = randomBatch();
+		MatrixBatch b = randomBatch();
+		for (int threshold : new int[]{0, 1})
+		{
+			MatrixBatch out = new MatrixBatch(COUNT);
+			out.setParallelThreshold(threshold);
+			out.multiply(a, 0, b, 0, 0, COUNT);
+			for (int i = 0; i < COUNT; i++)
+			{
+				Matrix4F expected = get(a, i);
+				expected.multiplyRight(get(b, i));
+				assertArrayEquals(expected.getArray(), cells(out, i), "matrix " + i);
+			}
+		}
+
+		// Offset ranges, and output over one of the sources.
+		MatrixBatch out = new MatrixBatch(COUNT);
+		out.multiply(a, 10, b, 20, 30, 100);
+		MatrixBatch inPlace = new MatrixBatch(COUNT);
+		System.arraycopy(b.getArray(), 0, inPlace.getArray(), 0, COUNT * 16);
+		inPlace.multiply(a, 0, inPlace, 0, 0, COUNT);
+		for (int i = 0; i < 100; i++)
+		{
+			Matrix4F expected = get(a, 10 + i);
+			expected.multiplyRight(get(b, 20 + i));
+			assertArrayEquals(expected.getArray(), cells(out, 30 + i), "matrix " + i);
+		}
+		for (int i = 0; i < COUNT; i++)
+		{
+			Matrix4F expected = get(a, i);
+			expected.multiplyRight(get(b, i));
+			assertArrayEquals(expected.getArray(), cells(inPlace, i), "matrix " + i);
+		}
+	}
+
+	@Test
+	public void multiplyLeftAndRight()
+	{
+		MatrixBatch source = randomBatch();
+		Matrix4F matrix = randomMatrix();
+		for (int threshold : new int[]{0, 1})
+		{
+			MatrixBatch left = new MatrixBatch(COUNT);
+			MatrixBatch right = new MatrixBatch(COUNT);
+			left.setParallelThreshold(threshold);
+			right.setParallelThreshold(threshold);
+			System.arraycopy(source.getArray(), 0, left.getArray(), 0, COUNT * 16);
+			System.arraycopy(source.getArray(), 0, right.getArray(), 0, COUNT * 16);
+			left.multiplyLeft(matrix, 0, COUNT);
+			right.multiplyRight(matrix, 0, COUNT);
+			for (int i = 0; i < COUNT; i++)
+			{
+				Matrix4F expected = get(source, i);
+				expected.multiplyLeft(matrix);
+				assertArrayEquals(expected.getArray(), cells(left, i), "matrix " + i);
+				expected = get(source, i);
+				expected.multiplyRight(matrix);
+				assertArrayEquals(expected.getArray(), cells(right, i), "matrix " + i);
+			}
+		}
+	}
+
+	@Test
+	public void setTRS()
+	{
+		// Rotations about Y, which Matrix4F can build from an angle.
+		int count = 200;
+		float[] translations = new float[count * 3], rotations = new float[count * 4], scales = new float[count * 3];
+		float[] angles = new float[count];
+		for (int i = 0; i < count; i++)
+		{
+			for (int c = 0; c < 3; c++)
+			{
+				translations[i * 3 + c] = random.nextFloat() * 20f - 10f;
+				scales[i * 3 + c] = random.nextFloat() * 4f + 0.25f;
+			}
+			angles[i] = random.nextFloat() * 360f - 180f;
+			double half = Math.toRadians(angles[i]) / 2.0;
+			rotations[i * 4 + 1] = (float)Math.sin(half);
+			rotations[i * 4 + 3] = (float)Math.cos(half);
+		}
+
+		MatrixBatch batch = new MatrixBatch(count + 1);
+		batch.setTRS(1, count, translations, rotations, scales);
+		for (int i = 0; i < count; i++)
+		{
+			Matrix4F expected = Matrix4F.newIdentity();
+			expected.translate(translations[i * 3], translations[i * 3 + 1], translations[i * 3 + 2])
+				.rotateY(angles[i])
+				.scale(scales[i * 3], scales[i * 3 + 1], scales[i * 3 + 2]);
+			assertArrayEquals(expected.getArray(), cells(batch, i + 1), 1e-5f, "matrix " + i);
+		}
+		assertArrayEquals(new float[16], cells(batch, 0));
+
+		batch.setTRS(0, 1, new float[]{1f, 2f, 3f}, new float[]{0f, 0f, 0f, 1f}, null);
+		Matrix4F expected = Matrix4F.newIdentity();
+		expected.translate(1f, 2f, 3f);
+		assertArrayEquals(expected.getArray(), cells(batch, 0));
+	}
+
+	@Test
+	public void ranges()
+	{
+		MatrixBatch batch = new MatrixBatch(4);
+		assertThrows(IllegalArgumentException.class, () -> new MatrixBatch(0));
+		assertThrows(IllegalArgumentException.class, () -> batch.setParallelThreshold(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> batch.setIdentity(2, 3));
+		assertThrows(IndexOutOfBoundsException.class, () -> batch.multiply(new MatrixBatch(2), 0, batch, 0, 0, 3));
+		assertThrows(IndexOutOfBoundsException.class, () -> batch.multiplyLeft(new Matrix4F(), -1, 2));
+		assertThrows(IndexOutOfBoundsException.class, () -> batch.get(4, new Matrix4F()));
+	}
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stack results are checked against the same transforms on a {@link Matrix4F}.
+ */
+public class MatrixStackTest
+{
+	private static float[] floats(MatrixStack stack)
+	{
+		float[] out = new float[16];
+		stack.get(out);
+		return out;
+	}
+
+	@Test
+	public void copiesDoNotShareTop()
+	{
+		MatrixStack stack = new MatrixStack(4);
+		stack.translate(1f, 2f, 3f);
+		Matrix4F copy = new Matrix4F();
+		stack.get(copy);
+		copy.setIdentity();
+		float[] array = floats(stack);
+		array[12] = 99f;
+
+		Matrix4F expected = Matrix4F.newIdentity();
+		expected.translate(1f, 2f, 3f);
+		assertArrayEquals(expected.getArray(), floats(stack), 0f);
+		assertThrows(ArrayIndexOutOfBoundsException.class, () -> stack.get(new float[15]));
+	}
+
+	@Test
+	public void pushAndPop()
+	{
+		MatrixStack stack = new MatrixStack(4);
+		stack.rotateY(30f);
+		float[] base = floats(stack);
+		long baseVersion = stack.getVersion();
+
+		stack.push();
+		stack.push();
+		assertEquals(3, stack.getLevels());
+		assertEquals(baseVersion, stack.getVersion());
+		stack.scale(2f, 2f, 2f);
+		assertNotEquals(baseVersion, stack.getVersion());
+
+		Matrix4F expected = Matrix4F.newIdentity();
+		expected.rotateY(30f).scale(2f, 2f, 2f);
+		assertArrayEquals(expected.getArray(), floats(stack), 0f);
+
+		stack.pop();
+		assertEquals(2, stack.getLevels());
+		assertEquals(baseVersion, stack.getVersion());
+		assertArrayEquals(base, floats(stack), 0f);
+		stack.pop();
+		assertArrayEquals(base, floats(stack), 0f);
+		assertThrows(ArrayIndexOutOfBoundsException.class, () -> stack.pop());
+
+		for (int i = 0; i < 3; i++)
+			stack.push();
+		assertThrows(ArrayIndexOutOfBoundsException.class, () -> stack.push());
+	}
+
+	@Test
+	public void multiplyInto()
+	{
+		MatrixStack stack = new MatrixStack(4);
+		stack.perspective(60f, 1.5f, 0.1f, 100f);
+		float[] before = floats(stack);
+		long version = stack.getVersion();
+
+		Matrix4F matrix = Matrix4F.newIdentity();
+		matrix.rotateX(20f).translate(0f, 0f, -5f);
+		Matrix4F expected = matrix.copy();
+		expected.perspective(60f, 1.5f, 0.1f, 100f);
+		stack.multiplyInto(matrix);
+
+		assertArrayEquals(expected.getArray(), matrix.getArray(), 0f);
+		assertArrayEquals(before, floats(stack), 0f);
+		assertEquals(version, stack.getVersion());
+	}
+
+	@Test
+	public void directChanges()
+	{
+		MatrixStack stack = new MatrixStack(4);
+		Matrix4F top = stack.translate(1f, 2f, 3f);
+		assertSame(top, stack.peek());
+		float[] base = floats(stack);
+		long baseVersion = stack.getVersion();
+
+		// Changing a pushed level directly keeps the level below it.
+		assertSame(top, stack.push());
+		top.rotateZ(45f).scale(2f, 2f, 2f);
+		Matrix4F expected = Matrix4F.newIdentity();
+		expected.translate(1f, 2f, 3f).rotateZ(45f).scale(2f, 2f, 2f);
+		assertArrayEquals(expected.getArray(), floats(stack), 0f);
+		assertNotEquals(baseVersion, stack.getVersion());
+		assertSame(top, stack.pop());
+		assertArrayEquals(base, floats(stack), 0f);
+		assertEquals(baseVersion, stack.getVersion());
+
+		// Same, without reading the version in between.
+		stack.push();
+		stack.peek().setIdentity();
+		stack.pop();
+		assertArrayEquals(base, floats(stack), 0f);
+		assertEquals(baseVersion, stack.getVersion());
+
+		// A direct change after a change through the stack.
+		stack.push();
+		stack.scale(3f, 3f, 3f).translate(1f, 0f, 0f);
+		long scaledVersion = stack.getVersion();
+		stack.peek().rotateX(10f);
+		assertNotEquals(scaledVersion, stack.getVersion());
+		stack.pop();
+		assertArrayEquals(base, floats(stack), 0f);
+		assertEquals(baseVersion, stack.getVersion());
+	}
+
+}
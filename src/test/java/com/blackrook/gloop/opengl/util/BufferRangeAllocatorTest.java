@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.blackrook.gloop.opengl.util.BufferRangeAllocator.Range;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferRangeAllocatorTest
+{
+	@Test
+	public void alignment()
+	{
+		BufferRangeAllocator allocator = new BufferRangeAllocator(64, 4);
+		Range a = allocator.allocate(1);
+		Range b = allocator.allocate(6);
+		assertEquals(0, a.getOffset());
+		assertEquals(4, a.getSize());
+		assertEquals(4, b.getOffset());
+		assertEquals(8, b.getSize());
+		assertEquals(12, allocator.getUsed());
+		assertEquals(52, allocator.getFree());
+		assertThrows(IllegalArgumentException.class, () -> allocator.allocate(0));
+		assertThrows(IllegalArgumentException.class, () -> new BufferRangeAllocator(10, 4));
+	}
+
+	@Test
+	public void bestFit()
+	{
+		BufferRangeAllocator allocator = new BufferRangeAllocator(100, 1);
+		Range a = allocator.allocate(10);
+		allocator.allocate(5);
+		Range c = allocator.allocate(30);
+		allocator.allocate(5);
+		Range e = allocator.allocate(20);
+		allocator.allocate(5);
+		// Free blocks: 10 at 0, 30 at 15, 20 at 50, 25 at 75.
+		allocator.free(a);
+		allocator.free(c);
+		allocator.free(e);
+		assertEquals(4, allocator.getFreeBlockCount());
+
+		assertEquals(50, allocator.allocate(18).getOffset());
+		assertEquals(0, allocator.allocate(10).getOffset());
+		assertEquals(75, allocator.allocate(25).getOffset());
+		assertEquals(15, allocator.allocate(26).getOffset());
+		assertNull(allocator.allocate(5));
+		assertEquals(2, allocator.getFreeBlockCount());
+		assertEquals(4, allocator.getLargestFreeBlock());
+	}
+
+	@Test
+	public void coalescing()
+	{
+		BufferRangeAllocator allocator = new BufferRangeAllocator(40, 1);
+		Range a = allocator.allocate(10);
+		Range b = allocator.allocate(10);
+		Range c = allocator.allocate(10);
+		Range d = allocator.allocate(10);
+		assertEquals(0, allocator.getFreeBlockCount());
+
+		allocator.free(a);
+		allocator.free(c);
+		assertEquals(2, allocator.getFreeBlockCount());
+		assertEquals(0.5, allocator.getFragmentation(), 0.0);
+
+		// Merges with both neighbors.
+		allocator.free(b);
+		assertEquals(1, allocator.getFreeBlockCount());
+		assertEquals(30, allocator.getLargestFreeBlock());
+		assertEquals(0.0, allocator.getFragmentation(), 0.0);
+
+		allocator.free(d);
+		assertEquals(1, allocator.getFreeBlockCount());
+		assertEquals(40, allocator.getLargestFreeBlock());
+		assertEquals(0, allocator.getUsed());
+		assertFalse(d.isAllocated());
+		assertThrows(IllegalArgumentException.class, () -> allocator.free(d));
+		assertThrows(IllegalArgumentException.class, () -> new BufferRangeAllocator(40, 1).free(a));
+	}
+
+	@Test
+	public void grow()
+	{
+		BufferRangeAllocator allocator = new BufferRangeAllocator(32, 8);
+		Range a = allocator.allocate(16);
+		allocator.allocate(8);
+		assertNull(allocator.allocate(16));
+
+		// The new space merges with the free block at the end.
+		allocator.grow(48);
+		assertEquals(48, allocator.getCapacity());
+		assertEquals(1, allocator.getFreeBlockCount());
+		assertEquals(24, allocator.getLargestFreeBlock());
+		assertEquals(24, allocator.allocate(16).getOffset());
+
+		allocator.free(a);
+		allocator.grow(64);
+		assertEquals(2, allocator.getFreeBlockCount());
+		assertEquals(24, allocator.getLargestFreeBlock());
+		assertThrows(IllegalArgumentException.class, () -> allocator.grow(32));
+		assertThrows(IllegalArgumentException.class, () -> allocator.grow(68));
+
+		BufferRangeAllocator empty = new BufferRangeAllocator(0, 4);
+		assertNull(empty.allocate(4));
+		empty.grow(8);
+		assertEquals(0, empty.allocate(8).getOffset());
+	}
+
+	@Test
+	public void compact()
+	{
+		BufferRangeAllocator allocator = new BufferRangeAllocator(100, 1);
+		Range a = allocator.allocate(10);
+		Range b = allocator.allocate(20);
+		Range c = allocator.allocate(30);
+		Range d = allocator.allocate(15);
+		allocator.free(a);
+		allocator.free(c);
+
+		List<long[]> moves = new ArrayList<>();
+		int moved = allocator.compact((sourceOffset, targetOffset, size) -> moves.add(new long[]{sourceOffset, targetOffset, size}));
+		assertEquals(2, moved);
+		assertEquals(2, moves.size());
+		assertArrayEquals(new long[]{10, 0, 20}, moves.get(0));
+		assertArrayEquals(new long[]{60, 20, 15}, moves.get(1));
+
+		assertEquals(0, b.getOffset());
+		assertEquals(20, d.getOffset());
+		assertEquals(1, allocator.getFreeBlockCount());
+		assertEquals(65, allocator.getLargestFreeBlock());
+		assertEquals(35, allocator.getUsed());
+
+		// Ranges are still tracked at their new offsets.
+		allocator.free(b);
+		assertEquals(35, allocator.allocate(35).getOffset());
+		assertEquals(2, allocator.compact(null));
+	}
+
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Encoded values are decoded the way OpenGL reads them and compared against the input.
+ */
+public class BufferUtilsTest
+{
+	private static final int COUNT = 10000;
+
+	// Decodes a signed normalized integer.
+	private static float fromNormalized(int value, int max)
+	{
+		return Math.max((float)value / max, -1f);
+	}
+
+	// Decodes octahedral coordinates to a unit vector (like the shader in VertexFormat's documentation).
+	private static float[] decodeOctahedral(float u, float v)
+	{
+		float x = u, y = v, z = 1f - Math.abs(u) - Math.abs(v);
+		float t = Math.max(-z, 0f);
+		x += x >= 0f ? -t : t;
+		y += y >= 0f ? -t : t;
+		float length = (float)Math.sqrt(x * x + y * y + z * z);
+		return new float[]{x / length, y / length, z / length};
+	}
+
+	private static float[] randomUnitVectors(Random random)
+	{
+		float[] out = new float[COUNT * 3];
+		for (int i = 0; i < out.length; i += 3)
+		{
+			float x, y, z, length;
+			do {
+				x = random.nextFloat() * 2f - 1f;
+				y = random.nextFloat() * 2f - 1f;
+				z = random.nextFloat() * 2f - 1f;
+				length = (float)Math.sqrt(x * x + y * y + z * z);
+			} while (length < 0.01f || length > 1f);
+			out[i] = x / length;
+			out[i + 1] = y / length;
+			out[i + 2] = z / length;
+		}
+		return out;
+	}
+
+	private static ByteBuffer buffer(int bytes)
+	{
+		return ByteBuffer.allocate(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	@Test
+	public void halfFloatRoundTrip()
+	{
+		// Every half float that is not NaN converts to a float and back unchanged.
+		for (int bits = 0; bits < 0x10000; bits++)
+		{
+			short half = (short)bits;
+			float value = BufferUtils.fromHalfFloat(half);
+			if (Float.isNaN(value))
+				assertTrue(Float.isNaN(BufferUtils.fromHalfFloat(BufferUtils.toHalfFloat(value))));
+			else
+				assertEquals(half, BufferUtils.toHalfFloat(value), "half 0x" + Integer.toHexString(bits));
+		}
+
+		Random random = new Random(0x48616c66L);
+		for (int i = 0; i < COUNT; i++)
+		{
+			float value = (random.nextFloat() * 2f - 1f) * 60000f;
+			float decoded = BufferUtils.fromHalfFloat(BufferUtils.toHalfFloat(value));
+			assertEquals(value, decoded, Math.abs(value) * 0x1p-11f, "value " + value);
+		}
+
+		assertEquals(Float.POSITIVE_INFINITY, BufferUtils.fromHalfFloat(BufferUtils.toHalfFloat(70000f)));
+		assertEquals(Float.NEGATIVE_INFINITY, BufferUtils.fromHalfFloat(BufferUtils.toHalfFloat(-1e10f)));
+		// Halfway between 1 and the next half float rounds to even (down), above it rounds up.
+		assertEquals(1f, BufferUtils.fromHalfFloat(BufferUtils.toHalfFloat(1f + 0x1p-11f)));
+		assertEquals(1f + 0x1p-10f, BufferUtils.fromHalfFloat(BufferUtils.toHalfFloat(1f + 0x1p-11f + 0x1p-20f)));
+	}
+
+	@Test
+	public void normalizedRoundTrip()
+	{
+		Random random = new Random(0x4e6f726dL);
+		float[] signed = new float[COUNT], unsigned = new float[COUNT];
+		for (int i = 0; i < COUNT; i++)
+		{
+			signed[i] = random.nextFloat() * 2f - 1f;
+			unsigned[i] = random.nextFloat();
+		}
+
+		ByteBuffer bytes = buffer(COUNT * 4);
+		BufferUtils.putNormalizedBytes(bytes, 0, 4, signed, 0, 1, COUNT);
+		BufferUtils.putNormalizedUnsignedBytes(bytes, 1, 4, unsigned, 0, 1, COUNT);
+		BufferUtils.putNormalizedShorts(bytes, 2, 4, signed, 0, 1, COUNT);
+		for (int i = 0; i < COUNT; i++)
+		{
+			int o = i * 4;
+			assertEquals(signed[i], fromNormalized(bytes.get(o), 127), 0.501f / 127);
+			assertEquals(unsigned[i], (bytes.get(o + 1) & 0xff) / 255f, 0.501f / 255);
+			assertEquals(signed[i], fromNormalized(bytes.getShort(o + 2), 32767), 0.501f / 32767);
+		}
+
+		ByteBuffer shorts = buffer(COUNT * 2);
+		BufferUtils.putNormalizedUnsignedShorts(shorts, 0, 2, unsigned, 0, 1, COUNT);
+		for (int i = 0; i < COUNT; i++)
+			assertEquals(unsigned[i], (shorts.getShort(i * 2) & 0xffff) / 65535f, 0.501f / 65535);
+
+		assertEquals(127, BufferUtils.toNormalized(2f, 127));
+		assertEquals(-127, BufferUtils.toNormalized(-2f, 127));
+		assertEquals(0, BufferUtils.toNormalized(Float.NaN, 127));
+		assertEquals(255, BufferUtils.toUnsignedNormalized(1.5f, 255));
+		assertEquals(0, BufferUtils.toUnsignedNormalized(-0.5f, 255));
+	}
+
+	@Test
+	public void packed2101010RoundTrip()
+	{
+		Random random = new Random(0x32313031L);
+		float[] signed = new float[COUNT * 4], unsigned = new float[COUNT * 3];
+		for (int i = 0; i < signed.length; i++)
+			signed[i] = i % 4 == 3 ? (random.nextBoolean() ? 1f : -1f) : random.nextFloat() * 2f - 1f;
+		for (int i = 0; i < unsigned.length; i++)
+			unsigned[i] = random.nextFloat();
+
+		ByteBuffer out = buffer(COUNT * 8);
+		BufferUtils.putPacked2101010(out, 0, 8, signed, 0, 4, COUNT);
+		BufferUtils.putPackedUnsigned2101010(out, 4, 8, unsigned, 0, 3, COUNT);
+		for (int i = 0; i < COUNT; i++)
+		{
+			int packed = out.getInt(i * 8);
+			for (int c = 0; c < 3; c++)
+			{
+				// Sign-extend each 10-bit field.
+				int field = (packed << (22 - c * 10)) >> 22;
+				assertEquals(signed[i * 4 + c], fromNormalized(field, 511), 0.501f / 511, "vector " + i);
+			}
+			assertEquals(signed[i * 4 + 3], fromNormalized(packed >> 30, 1), 0f, "vector " + i);
+
+			int packedUnsigned = out.getInt(i * 8 + 4);
+			for (int c = 0; c < 3; c++)
+				assertEquals(unsigned[i * 3 + c], ((packedUnsigned >>> (c * 10)) & 0x3ff) / 1023f, 0.501f / 1023, "vector " + i);
+			// W is 1 if not provided.
+			assertEquals(3, packedUnsigned >>> 30);
+		}
+	}
+
+	@Test
+	public void octahedralRoundTrip()
+	{
+		float[] vectors = randomUnitVectors(new Random(0x4f637461L));
+		float[] uv = new float[2];
+		ByteBuffer out = buffer(COUNT * 8);
+		BufferUtils.putOctahedralShorts(out, 0, 8, vectors, 0, COUNT);
+		BufferUtils.putOctahedralBytes(out, 4, 8, vectors, 0, COUNT);
+		for (int i = 0; i < COUNT; i++)
+		{
+			int o = i * 8, s = i * 3;
+			BufferUtils.encodeOctahedral(vectors[s], vectors[s + 1], vectors[s + 2], uv, 0);
+			float[] exact = decodeOctahedral(uv[0], uv[1]);
+			assertArrayEquals(new float[]{vectors[s], vectors[s + 1], vectors[s + 2]}, exact, 1e-5f, "vector " + i);
+
+			// The batched encoders match the single encoder.
+			assertEquals(BufferUtils.toNormalized(uv[0], Short.MAX_VALUE), out.getShort(o), "vector " + i);
+			assertEquals(BufferUtils.toNormalized(uv[1], Short.MAX_VALUE), out.getShort(o + 2), "vector " + i);
+			assertEquals(BufferUtils.toNormalized(uv[0], Byte.MAX_VALUE), out.get(o + 4), "vector " + i);
+			assertEquals(BufferUtils.toNormalized(uv[1], Byte.MAX_VALUE), out.get(o + 5), "vector " + i);
+
+			float[] fromShorts = decodeOctahedral(fromNormalized(out.getShort(o), 32767), fromNormalized(out.getShort(o + 2), 32767));
+			float[] fromBytes = decodeOctahedral(fromNormalized(out.get(o + 4), 127), fromNormalized(out.get(o + 5), 127));
+			assertArrayEquals(exact, fromShorts, 1e-4f, "vector " + i);
+			assertArrayEquals(exact, fromBytes, 0.02f, "vector " + i);
+		}
+
+		ByteBuffer zero = buffer(4);
+		BufferUtils.putOctahedralShorts(zero, 0, 4, new float[3], 0, 1);
+		assertEquals(0, zero.getInt(0));
+	}
+
+	@Test
+	public void vertexFormatRoundTrip()
+	{
+		VertexFormat format = VertexFormat.builder()
+			.add(VertexFormat.Encoding.FLOAT, 3)
+			.add(VertexFormat.Encoding.OCTAHEDRAL_SHORT, 3)
+			.add(VertexFormat.Encoding.HALF_FLOAT, 2)
+			.add(VertexFormat.Encoding.NORMALIZED_UNSIGNED_BYTE, 4)
+		.build();
+		assertEquals(12 + 4 + 4 + 4, format.getStride());
+
+		Random random = new Random(0x56657274L);
+		int count = 100;
+		float[] positions = new float[count * 3], normals = randomUnitVectors(random), texcoords = new float[count * 2], colors = new float[count * 4];
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = random.nextFloat() * 100f;
+		for (int i = 0; i < texcoords.length; i++)
+			texcoords[i] = random.nextFloat();
+		for (int i = 0; i < colors.length; i++)
+			colors[i] = random.nextFloat();
+
+		ByteBuffer out = format.allocate(count);
+		format.put(out, 0, 0, positions, 0, count);
+		format.put(out, 1, 0, normals, 0, count);
+		format.put(out, 2, 0, texcoords, 0, count);
+		format.put(out, 3, 0, colors, 0, count);
+		assertEquals(0, out.position());
+
+		for (int i = 0; i < count; i++)
+		{
+			int o = i * format.getStride();
+			for (int c = 0; c < 3; c++)
+				assertEquals(positions[i * 3 + c], out.getFloat(o + c * 4), 0f);
+			float[] normal = decodeOctahedral(fromNormalized(out.getShort(o + 12), 32767), fromNormalized(out.getShort(o + 14), 32767));
+			assertArrayEquals(new float[]{normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]}, normal, 1e-4f);
+			for (int c = 0; c < 2; c++)
+				assertEquals(texcoords[i * 2 + c], BufferUtils.fromHalfFloat(out.getShort(o + 16 + c * 2)), 0x1p-11f);
+			for (int c = 0; c < 4; c++)
+				assertEquals(colors[i * 4 + c], (out.get(o + 20 + c) & 0xff) / 255f, 0.501f / 255);
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.blackrook.gloop.opengl.util.DrawIndirectCommandBuffer.Type;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DrawIndirectCommandBufferTest
+{
+	@Test
+	public void arraysPacking()
+	{
+		DrawIndirectCommandBuffer buffer = new DrawIndirectCommandBuffer(Type.ARRAYS, 4);
+		buffer.addArrays(3, 0);
+		buffer.addArrays(6, 2, 3, 5);
+		assertEquals(2, buffer.getCommandCount());
+		assertTrue(buffer.isInstanced());
+
+		ByteBuffer data = buffer.getBuffer();
+		assertEquals(ByteOrder.nativeOrder(), data.order());
+		assertEquals(0, data.position());
+		assertEquals(32, data.limit());
+		assertArrayEquals(new int[]{3, 1, 0, 0, 6, 2, 3, 5}, ints(data));
+	}
+
+	@Test
+	public void elementsPacking()
+	{
+		DrawIndirectCommandBuffer buffer = new DrawIndirectCommandBuffer(Type.ELEMENTS, 4);
+		buffer.addElements(36, 0, 0);
+		buffer.addElements(12, 36, 24);
+		assertFalse(buffer.isInstanced());
+
+		ByteBuffer data = buffer.getBuffer();
+		assertEquals(40, data.limit());
+		assertArrayEquals(new int[]{36, 1, 0, 0, 0, 12, 1, 36, 24, 0}, ints(data));
+	}
+
+	@Test
+	public void wrongType()
+	{
+		DrawIndirectCommandBuffer arrays = new DrawIndirectCommandBuffer(Type.ARRAYS, 1);
+		DrawIndirectCommandBuffer elements = new DrawIndirectCommandBuffer(Type.ELEMENTS, 1);
+		assertThrows(IllegalStateException.class, () -> arrays.addElements(3, 0, 0));
+		assertThrows(IllegalStateException.class, () -> elements.addArrays(3, 0));
+		assertThrows(IllegalArgumentException.class, () -> new DrawIndirectCommandBuffer(Type.ARRAYS, 0));
+	}
+
+	@Test
+	public void growthKeepsCommands()
+	{
+		DrawIndirectCommandBuffer buffer = new DrawIndirectCommandBuffer(Type.ELEMENTS, 1);
+		for (int i = 0; i < 100; i++)
+			buffer.addElements(i + 1, i * 3, i * 2);
+		assertEquals(100, buffer.getCommandCount());
+		assertEquals(128, buffer.getCapacity());
+
+		int[] values = ints(buffer.getBuffer());
+		assertEquals(500, values.length);
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i + 1, values[i * 5]);
+			assertEquals(1, values[i * 5 + 1]);
+			assertEquals(i * 3, values[i * 5 + 2]);
+			assertEquals(i * 2, values[i * 5 + 3]);
+			assertEquals(0, values[i * 5 + 4]);
+		}
+	}
+
+	@Test
+	public void clearKeepsCapacity()
+	{
+		DrawIndirectCommandBuffer buffer = new DrawIndirectCommandBuffer(Type.ARRAYS, 2);
+		for (int i = 0; i < 5; i++)
+			buffer.addArrays(3, 1, i, 1);
+		assertEquals(8, buffer.getCapacity());
+		assertTrue(buffer.isInstanced());
+
+		buffer.clear();
+		assertEquals(0, buffer.getCommandCount());
+		assertEquals(8, buffer.getCapacity());
+		assertFalse(buffer.isInstanced());
+		assertEquals(0, buffer.getBuffer().limit());
+
+		buffer.addArrays(4, 9);
+		assertArrayEquals(new int[]{4, 1, 9, 0}, ints(buffer.getBuffer()));
+	}
+
+	@Test
+	public void unpackArrays()
+	{
+		DrawIndirectCommandBuffer buffer = new DrawIndirectCommandBuffer(Type.ARRAYS, 1);
+		buffer.addArrays(3, 0);
+		buffer.addArrays(0, 3);
+		buffer.addArrays(6, 0, 3, 0);
+		buffer.addArrays(9, 4, 12, 2);
+
+		assertEquals(2, buffer.unpack(4));
+		assertArrayEquals(new int[]{3, 9}, ints(buffer.getUnpackedCounts()));
+		assertArrayEquals(new int[]{0, 12}, ints(buffer.getUnpackedFirsts()));
+		assertNull(buffer.getUnpackedOffsets());
+	}
+
+	// Reads the remaining bytes of a buffer as ints without changing its position.
+	private static int[] ints(ByteBuffer data)
+	{
+		return ints(data.duplicate().order(data.order()).asIntBuffer());
+	}
+
+	// Reads the remaining ints of a buffer without changing its position.
+	private static int[] ints(IntBuffer data)
+	{
+		int[] out = new int[data.remaining()];
+		data.duplicate().get(out);
+		return out;
+	}
+
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import com.blackrook.gloop.opengl.OGLGraphics;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+
+/**
+ * Compares the {@link GeometryBuilder} write paths by filling a mesh with a position (3) and texture coordinate (2)
+ * attribute per vertex: varargs <code>add</code>, fixed-arity <code>add3</code>/<code>add2</code>, bulk <code>addAll</code>,
+ * interleaved <code>vertex</code>, and <code>fillParallel</code>. Every path is checked against the <code>add</code> output.
+ * No OpenGL context is needed.
+ * <p> Run from the test classpath, with optional vertex count and iteration count arguments:
+ * <pre>java com.blackrook.gloop.opengl.util.GeometryBuilderBenchmark [vertices] [iterations]</pre>
+ * Each path is warmed up once per iteration before it is timed, and the best time is reported.
+ * @author Matthew Tropiano
+ */
+public final class GeometryBuilderBenchmark
+{
+	private static final int POSITION = 0;
+	private static final int TEXCOORD = 1;
+
+	/** Builder that exposes its buffer and cannot create OpenGL buffers. */
+	private static class TestBuilder extends GeometryBuilder.Abstract<OGLGraphics>
+	{
+		private TestBuilder(int vertices)
+		{
+			super(null, vertices, 3, 2);
+		}
+
+		@Override
+		public OGLBuffer create()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		private float[] contents()
+		{
+			FloatBuffer data = buffer.duplicate();
+			data.clear();
+			float[] out = new float[data.remaining()];
+			data.get(out);
+			return out;
+		}
+	}
+
+	private static float px(int i) {return i * 0.5f;}
+	private static float py(int i) {return i * 0.25f;}
+	private static float pz(int i) {return -i;}
+	private static float tu(int i) {return (i & 255) / 255f;}
+	private static float tv(int i) {return (i >> 8 & 255) / 255f;}
+
+	public static void main(String[] args)
+	{
+		final int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		final float[] positions = new float[vertices * 3];
+		final float[] texcoords = new float[vertices * 2];
+		final float[] interleaved = new float[vertices * 5];
+		for (int i = 0; i < vertices; i++)
+		{
+			positions[i * 3] = interleaved[i * 5] = px(i);
+			positions[i * 3 + 1] = interleaved[i * 5 + 1] = py(i);
+			positions[i * 3 + 2] = interleaved[i * 5 + 2] = pz(i);
+			texcoords[i * 2] = interleaved[i * 5 + 3] = tu(i);
+			texcoords[i * 2 + 1] = interleaved[i * 5 + 4] = tv(i);
+		}
+
+		float[] expected = run("add (varargs)", vertices, iterations, null, (builder) ->
+		{
+			for (int i = 0; i < vertices; i++)
+			{
+				builder.add(POSITION, px(i), py(i), pz(i));
+				builder.add(TEXCOORD, tu(i), tv(i));
+			}
+		});
+
+		run("add3/add2", vertices, iterations, expected, (builder) ->
+		{
+			for (int i = 0; i < vertices; i++)
+			{
+				builder.add3(POSITION, px(i), py(i), pz(i));
+				builder.add2(TEXCOORD, tu(i), tv(i));
+			}
+		});
+
+		run("addAll", vertices, iterations, expected, (builder) ->
+		{
+			builder.addAll(POSITION, positions, 0, vertices);
+			builder.addAll(TEXCOORD, texcoords, 0, vertices);
+		});
+
+		run("vertex (interleaved)", vertices, iterations, expected, (builder) ->
+		{
+			builder.vertex(interleaved, 0, vertices);
+		});
+
+		run("fillParallel", vertices, iterations, expected, (builder) ->
+		{
+			builder.fillParallel(16384, (writer) ->
+			{
+				int end = writer.getFirstVertex() + writer.getVertexCount();
+				for (int i = writer.getFirstVertex(); i < end; i++)
+				{
+					writer.add3(POSITION, px(i), py(i), pz(i));
+					writer.add2(TEXCOORD, tu(i), tv(i));
+				}
+			});
+		});
+	}
+
+	// Times a fill, checks it against the expected contents, and returns its contents.
+	private static float[] run(String name, int vertices, int iterations, float[] expected, Consumer<GeometryBuilder> fill)
+	{
+		long best = Long.MAX_VALUE;
+		float[] out = null;
+		for (int n = 0; n < iterations; n++)
+		{
+			fill.accept(new TestBuilder(vertices));
+			TestBuilder builder = new TestBuilder(vertices);
+			long start = System.nanoTime();
+			fill.accept(builder);
+			best = Math.min(best, System.nanoTime() - start);
+			out = builder.contents();
+		}
+		if (expected != null && !Arrays.equals(expected, out))
+			throw new IllegalStateException(name + " produced different contents than add.");
+		System.out.printf("%-22s %8.2f ms  %8.1f Mvertices/s%n", name, best / 1000000.0, vertices / (best / 1000.0));
+		return out;
+	}
+
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.blackrook.gloop.opengl.OGLGraphics;
+import com.blackrook.gloop.opengl.enums.DataType;
+import com.blackrook.gloop.opengl.enums.GeometryType;
+import com.blackrook.gloop.opengl.gl1.OGLBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The builder in this test has no graphics context, so it only builds index data.
+ */
+public class IndexBuilderTest
+{
+	private static class Builder extends IndexBuilder.Abstract<OGLGraphics>
+	{
+		private Builder(boolean strips)
+		{
+			super(null);
+			this.strips = strips;
+		}
+
+		@Override
+		public OGLBuffer create()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	// Triangle list indices for a grid of quads, with all triangles wound the same way.
+	private static int[] grid(int width, int height)
+	{
+		int[] out = new int[width * height * 6];
+		int i = 0;
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+			{
+				int v = y * (width + 1) + x;
+				int down = v + width + 1;
+				out[i++] = v;
+				out[i++] = down;
+				out[i++] = v + 1;
+				out[i++] = v + 1;
+				out[i++] = down;
+				out[i++] = down + 1;
+			}
+		return out;
+	}
+
+	// Reads the built index data back as ints.
+	private static int[] read(IndexBuilder builder)
+	{
+		ByteBuffer data = builder.getIndexData();
+		int count = builder.getIndexCount();
+		assertEquals(count * builder.getDataType().size, data.capacity());
+		int[] out = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			switch (builder.getDataType())
+			{
+				case UNSIGNED_BYTE:
+					out[i] = data.get(i) & 0xff;
+					break;
+				case UNSIGNED_SHORT:
+					out[i] = data.getShort(i * 2) & 0xffff;
+					break;
+				default:
+					out[i] = data.getInt(i * 4);
+					break;
+			}
+		}
+		return out;
+	}
+
+	@Test
+	public void dataTypeReservesRestartIndex()
+	{
+		assertEquals(DataType.UNSIGNED_BYTE, IndexBuilder.Abstract.getIndexDataType(0, false));
+		assertEquals(DataType.UNSIGNED_BYTE, IndexBuilder.Abstract.getIndexDataType(0xff, false));
+		assertEquals(DataType.UNSIGNED_BYTE, IndexBuilder.Abstract.getIndexDataType(0xfe, true));
+		assertEquals(DataType.UNSIGNED_SHORT, IndexBuilder.Abstract.getIndexDataType(0xff, true));
+		assertEquals(DataType.UNSIGNED_SHORT, IndexBuilder.Abstract.getIndexDataType(0x100, false));
+		assertEquals(DataType.UNSIGNED_SHORT, IndexBuilder.Abstract.getIndexDataType(0xffff, false));
+		assertEquals(DataType.UNSIGNED_SHORT, IndexBuilder.Abstract.getIndexDataType(0xfffe, true));
+		assertEquals(DataType.UNSIGNED_INTEGER, IndexBuilder.Abstract.getIndexDataType(0xffff, true));
+		assertEquals(DataType.UNSIGNED_INTEGER, IndexBuilder.Abstract.getIndexDataType(0x10000, false));
+
+		assertEquals(0xff, IndexBuilder.Abstract.getRestartIndexValue(DataType.UNSIGNED_BYTE));
+		assertEquals(0xffff, IndexBuilder.Abstract.getRestartIndexValue(DataType.UNSIGNED_SHORT));
+		assertEquals(-1, IndexBuilder.Abstract.getRestartIndexValue(DataType.UNSIGNED_INTEGER));
+	}
+
+	@Test
+	public void triangleListData()
+	{
+		// 16 x 16 vertices: the largest index is 255, which fits a byte without a restart index.
+		int[] indices = grid(15, 15);
+		IndexBuilder builder = new Builder(false).addAll(indices, 0, indices.length);
+		assertEquals(GeometryType.TRIANGLES, builder.getGeometryType());
+		assertEquals(DataType.UNSIGNED_BYTE, builder.getDataType());
+		assertFalse(builder.hasRestartIndex());
+		assertArrayEquals(indices, read(builder));
+
+		builder.addTriangle(255, 256, 0);
+		assertEquals(DataType.UNSIGNED_SHORT, builder.getDataType());
+		assertEquals(indices.length + 3, builder.getIndexCount());
+
+		assertThrows(IllegalArgumentException.class, () -> new Builder(false).add(-1));
+		assertThrows(IllegalArgumentException.class, () -> new Builder(false).add(0).add(1).getIndexCount());
+	}
+
+	@Test
+	public void stripDataReservesRestartIndex()
+	{
+		// Same grid, but the byte restart index would collide with vertex 255.
+		int[] indices = grid(15, 15);
+		IndexBuilder builder = new Builder(true).addAll(indices, 0, indices.length);
+		assertEquals(GeometryType.TRIANGLE_STRIP, builder.getGeometryType());
+		assertEquals(DataType.UNSIGNED_SHORT, builder.getDataType());
+		assertTrue(builder.hasRestartIndex());
+		assertEquals(0xffff, builder.getRestartIndex());
+		assertTrue(builder.getIndexCount() < indices.length);
+
+		int[] data = read(builder);
+		assertArrayEquals(MeshOptimizer.generateStrips(indices, indices.length, 0xffff), data);
+		assertEquals(MeshOptimizerTest.triangles(indices), MeshOptimizerTest.triangles(MeshOptimizerTest.decodeStrips(data, 0xffff)));
+	}
+
+	@Test
+	public void stripsOnlyWhenShorter()
+	{
+		// Disjoint triangles: every strip is one triangle, plus a restart index between them.
+		IndexBuilder builder = new Builder(true)
+			.addTriangle(0, 1, 2)
+			.addTriangle(3, 4, 5)
+			.addTriangle(6, 7, 8);
+		assertEquals(GeometryType.TRIANGLES, builder.getGeometryType());
+		assertFalse(builder.hasRestartIndex());
+		assertEquals(9, builder.getIndexCount());
+		assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8}, read(builder));
+
+		// One quad: a strip of 4 is shorter than the list of 6.
+		builder = new Builder(true).addTriangle(0, 1, 2).addTriangle(2, 1, 3);
+		assertEquals(GeometryType.TRIANGLE_STRIP, builder.getGeometryType());
+		assertEquals(DataType.UNSIGNED_BYTE, builder.getDataType());
+		assertEquals(0xff, builder.getRestartIndex());
+		assertArrayEquals(new int[]{0, 1, 2, 3}, read(builder));
+
+		// A single triangle is the same length either way, so the list is kept.
+		builder = new Builder(true).addTriangle(0, 1, 2);
+		assertEquals(GeometryType.TRIANGLES, builder.getGeometryType());
+	}
+
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cache miss counts in this test are computed by hand with a FIFO cache of 3 vertices.
+ */
+public class MeshOptimizerTest
+{
+	// Triangle list indices for a grid of quads, in row order.
+	private static int[] grid(int width, int height)
+	{
+		int[] out = new int[width * height * 6];
+		int i = 0;
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+			{
+				int v = y * (width + 1) + x;
+				int down = v + width + 1;
+				out[i++] = v;
+				out[i++] = down;
+				out[i++] = v + 1;
+				out[i++] = v + 1;
+				out[i++] = down;
+				out[i++] = down + 1;
+			}
+		return out;
+	}
+
+	// Triangles as sorted "a b c" strings, keeping each triangle's winding (rotated to start at its smallest index).
+	static List<String> triangles(int[] indices)
+	{
+		List<String> out = new ArrayList<>();
+		for (int i = 0; i < indices.length; i += 3)
+		{
+			int a = indices[i], b = indices[i + 1], c = indices[i + 2];
+			if (b < a && b < c)
+				out.add(b + " " + c + " " + a);
+			else if (c < a && c < b)
+				out.add(c + " " + a + " " + b);
+			else
+				out.add(a + " " + b + " " + c);
+		}
+		Collections.sort(out);
+		return out;
+	}
+
+	// Decodes restart-joined triangle strips into a triangle list, the way OpenGL draws them.
+	static int[] decodeStrips(int[] strips, int restartIndex)
+	{
+		int[] out = new int[strips.length * 3];
+		int n = 0;
+		int start = 0;
+		for (int i = 0; i <= strips.length; i++)
+		{
+			if (i < strips.length && strips[i] != restartIndex)
+				continue;
+			// Odd triangles in a strip have their first two vertices swapped.
+			for (int t = 0; start + t + 2 < i; t++)
+			{
+				int a = strips[start + t], b = strips[start + t + 1], c = strips[start + t + 2];
+				out[n++] = t % 2 == 0 ? a : b;
+				out[n++] = t % 2 == 0 ? b : a;
+				out[n++] = c;
+			}
+			start = i + 1;
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	// Shuffles the triangles of a triangle list.
+	private static void shuffleTriangles(int[] indices, Random random)
+	{
+		for (int t = indices.length / 3 - 1; t > 0; t--)
+		{
+			int s = random.nextInt(t + 1);
+			for (int k = 0; k < 3; k++)
+			{
+				int swap = indices[t * 3 + k];
+				indices[t * 3 + k] = indices[s * 3 + k];
+				indices[s * 3 + k] = swap;
+			}
+		}
+	}
+
+	@Test
+	public void acmrEvictsOldestVertex()
+	{
+		// 0 1 2 miss [0 1 2], 3 misses and evicts 0 [1 2 3], 0 misses [2 3 0], 4 misses [3 0 4].
+		int[] indices = {0, 1, 2, 3, 0, 4};
+		assertEquals(3.0f, MeshOptimizer.getACMR(indices, 6, 5, 3), 0f);
+		assertEquals(6f / 5f, MeshOptimizer.getATVR(indices, 6, 5, 3), 0f);
+	}
+
+	@Test
+	public void acmrHitsCachedVertices()
+	{
+		// 0 1 2 miss [0 1 2], 2 and 1 hit, 3 misses [1 2 3].
+		assertEquals(2.0f, MeshOptimizer.getACMR(new int[]{0, 1, 2, 2, 1, 3}, 6, 4, 3), 0f);
+		// 0 1 2 miss [0 1 2], 3 misses [1 2 3], 1 and 2 hit.
+		assertEquals(2.0f, MeshOptimizer.getACMR(new int[]{0, 1, 2, 3, 1, 2}, 6, 4, 3), 0f);
+	}
+
+	@Test
+	public void acmrHitsDoNotRefresh()
+	{
+		// 0 1 2 miss [0 1 2], 0 hits, 3 misses [1 2 3], 0 misses [2 3 0].
+		assertEquals(2.5f, MeshOptimizer.getACMR(new int[]{0, 1, 2, 0, 3, 0}, 6, 4, 3), 0f);
+	}
+
+	@Test
+	public void acmrEmptyAndInvalid()
+	{
+		assertEquals(0f, MeshOptimizer.getACMR(new int[0], 0, 0, 3), 0f);
+		assertThrows(IllegalArgumentException.class, () -> MeshOptimizer.getACMR(new int[]{0, 1}, 2, 2, 3));
+		assertThrows(IllegalArgumentException.class, () -> MeshOptimizer.getACMR(new int[]{0, 1, 5}, 3, 3, 3));
+		assertThrows(IllegalArgumentException.class, () -> MeshOptimizer.getACMR(new int[]{0, 1, 2}, 3, 3, 0));
+	}
+
+	@Test
+	public void weldVerticesMergesExactDuplicates()
+	{
+		float[] vertices = {
+			0f, 0f,
+			1f, 0f,
+			0f, 0f,
+			-0f, 0f,
+			1f, 1f,
+			1f, 0.5f,
+		};
+		int[] indices = {0, 1, 4, 2, 1, 4, 3, 4, 1, 5, 4, 1};
+		assertEquals(4, MeshOptimizer.weldVertices(vertices, 2, 6, indices, indices.length));
+		assertArrayEquals(new float[]{0f, 0f, 1f, 0f, 1f, 1f, 1f, 0.5f}, Arrays.copyOf(vertices, 8), 0f);
+		assertArrayEquals(new int[]{0, 1, 2, 0, 1, 2, 0, 2, 1, 3, 2, 1}, indices);
+		assertThrows(IllegalArgumentException.class, () -> MeshOptimizer.weldVertices(new float[4], 2, 2, new int[]{0, 2}, 2));
+	}
+
+	@Test
+	public void optimizeVertexCacheKeepsTrianglesAndDoesNotRaiseACMR()
+	{
+		int width = 40, height = 40;
+		int vertexCount = (width + 1) * (height + 1);
+
+		int[] rows = grid(width, height);
+		int[] optimized = rows.clone();
+		MeshOptimizer.optimizeVertexCache(optimized, optimized.length, vertexCount);
+		assertEquals(triangles(rows), triangles(optimized));
+		float before = MeshOptimizer.getACMR(rows, rows.length, vertexCount, MeshOptimizer.DEFAULT_CACHE_SIZE);
+		float after = MeshOptimizer.getACMR(optimized, optimized.length, vertexCount, MeshOptimizer.DEFAULT_CACHE_SIZE);
+		assertTrue(after <= before, "ACMR " + before + " -> " + after);
+
+		int[] shuffled = rows.clone();
+		shuffleTriangles(shuffled, new Random(0x47726964L));
+		optimized = shuffled.clone();
+		MeshOptimizer.optimizeVertexCache(optimized, optimized.length, vertexCount);
+		assertEquals(triangles(shuffled), triangles(optimized));
+		before = MeshOptimizer.getACMR(shuffled, shuffled.length, vertexCount, MeshOptimizer.DEFAULT_CACHE_SIZE);
+		after = MeshOptimizer.getACMR(optimized, optimized.length, vertexCount, MeshOptimizer.DEFAULT_CACHE_SIZE);
+		assertTrue(after < before * 0.6f, "ACMR " + before + " -> " + after);
+	}
+
+	@Test
+	public void optimizeVertexFetchOrdersByFirstUse()
+	{
+		int vertexCount = 8;
+		float[] vertices = new float[vertexCount * 2];
+		for (int v = 0; v < vertexCount; v++)
+		{
+			vertices[v * 2] = v;
+			vertices[v * 2 + 1] = v * 10f;
+		}
+		float[] original = vertices.clone();
+		int[] indices = {6, 2, 4, 4, 2, 0, 7, 6, 0};
+		int[] before = indices.clone();
+
+		// Vertices 1, 3, and 5 are not referenced.
+		assertEquals(5, MeshOptimizer.optimizeVertexFetch(vertices, 2, vertexCount, indices, indices.length));
+		int next = 0;
+		for (int i = 0; i < indices.length; i++)
+		{
+			assertTrue(indices[i] <= next, "index " + i);
+			if (indices[i] == next)
+				next++;
+			// Every index still points at the same vertex data.
+			assertEquals(original[before[i] * 2], vertices[indices[i] * 2], 0f);
+			assertEquals(original[before[i] * 2 + 1], vertices[indices[i] * 2 + 1], 0f);
+		}
+		assertEquals(5, next);
+		assertArrayEquals(new int[]{0, 1, 2, 2, 1, 3, 4, 0, 3}, indices);
+	}
+
+	@Test
+	public void stripsDecodeToSameTriangles()
+	{
+		int[] rows = grid(12, 9);
+		int[] strips = MeshOptimizer.generateStrips(rows, rows.length, -1);
+		assertEquals(triangles(rows), triangles(decodeStrips(strips, -1)));
+		assertTrue(strips.length < rows.length, strips.length + " strip indices");
+
+		int[] shuffled = rows.clone();
+		shuffleTriangles(shuffled, new Random(0x53747269L));
+		strips = MeshOptimizer.generateStrips(shuffled, shuffled.length, 0xffff);
+		assertEquals(triangles(shuffled), triangles(decodeStrips(strips, 0xffff)));
+	}
+
+	@Test
+	public void stripsRestartBetweenDisjointTriangles()
+	{
+		// Two triangles sharing an edge (wound the same way), and one alone.
+		int[] indices = {0, 1, 2, 2, 1, 3, 4, 5, 6};
+		int[] strips = MeshOptimizer.generateStrips(indices, indices.length, 99);
+		assertArrayEquals(new int[]{0, 1, 2, 3, 99, 4, 5, 6}, strips);
+		assertEquals(triangles(indices), triangles(decodeStrips(strips, 99)));
+
+		// Opposite winding across the shared edge: not joined, since that would flip one of them.
+		indices = new int[]{0, 1, 2, 1, 2, 3};
+		strips = MeshOptimizer.generateStrips(indices, indices.length, 99);
+		assertArrayEquals(new int[]{0, 1, 2, 99, 1, 2, 3}, strips);
+
+		assertEquals(0, MeshOptimizer.generateStrips(new int[0], 0, 99).length);
+		assertThrows(IllegalArgumentException.class, () -> MeshOptimizer.generateStrips(new int[4], 4, 99));
+	}
+
+}
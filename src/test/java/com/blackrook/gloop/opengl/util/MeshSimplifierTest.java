@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.blackrook.gloop.opengl.util.MeshSimplifier.LevelOfDetail;
+import com.blackrook.gloop.opengl.util.MeshSimplifier.Mesh;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Meshes in this test are flat grids of quads on the XY plane, with a position (3) and texture coordinate (2) per vertex.
+ */
+public class MeshSimplifierTest
+{
+	private static final int STRIDE = 5;
+	private static final int SIZE = 8;
+
+	// Index of a grid vertex.
+	private static int gridIndex(int x, int y)
+	{
+		return y * (SIZE + 1) + x;
+	}
+
+	// Writes a vertex.
+	private static void vertex(float[] out, int v, float x, float y, float u)
+	{
+		out[v * STRIDE] = x;
+		out[v * STRIDE + 1] = y;
+		out[v * STRIDE + 2] = 0f;
+		out[v * STRIDE + 3] = u;
+		out[v * STRIDE + 4] = y / SIZE;
+	}
+
+	// Makes the indices of a grid, two triangles per quad.
+	private static int[] gridIndices()
+	{
+		int[] out = new int[SIZE * SIZE * 6];
+		int n = 0;
+		for (int y = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++)
+			{
+				int a = gridIndex(x, y), b = gridIndex(x + 1, y), c = gridIndex(x + 1, y + 1), d = gridIndex(x, y + 1);
+				out[n++] = a; out[n++] = b; out[n++] = c;
+				out[n++] = a; out[n++] = c; out[n++] = d;
+			}
+		}
+		return out;
+	}
+
+	// Makes the vertices of a grid, one per position.
+	private static float[] gridVertices()
+	{
+		float[] out = new float[(SIZE + 1) * (SIZE + 1) * STRIDE];
+		for (int y = 0; y <= SIZE; y++)
+			for (int x = 0; x <= SIZE; x++)
+				vertex(out, gridIndex(x, y), x, y, (float)x / SIZE);
+		return out;
+	}
+
+	// Makes a grid with one vertex per position.
+	private static Mesh weldedGrid()
+	{
+		int[] indices = gridIndices();
+		return new Mesh(gridVertices(), STRIDE, 0, (SIZE + 1) * (SIZE + 1), indices, indices.length);
+	}
+
+	@Test
+	public void duplicatesAreWelded()
+	{
+		LevelOfDetail welded = MeshSimplifier.simplify(weldedGrid(), 0.25f)[0];
+
+		// The same grid with three unique vertices per triangle (like an unindexed mesh).
+		float[] gridVertices = gridVertices();
+		int[] gridIndices = gridIndices();
+		float[] vertices = new float[gridIndices.length * STRIDE];
+		int[] indices = new int[gridIndices.length];
+		for (int i = 0; i < indices.length; i++)
+		{
+			System.arraycopy(gridVertices, gridIndices[i] * STRIDE, vertices, i * STRIDE, STRIDE);
+			indices[i] = i;
+		}
+		Mesh mesh = new Mesh(vertices, STRIDE, 0, indices.length, indices, indices.length);
+		LevelOfDetail unwelded = MeshSimplifier.simplify(mesh, 0.25f)[0];
+
+		assertTrue(welded.getTriangleCount() < SIZE * SIZE * 2);
+		assertEquals(welded.getTriangleCount(), unwelded.getTriangleCount());
+		assertEquals(0f, unwelded.getError(), 1e-6f);
+
+		// One vertex per remaining position.
+		boolean[] positions = new boolean[(SIZE + 1) * (SIZE + 1)];
+		int[] used = new int[(SIZE + 1) * (SIZE + 1)];
+		for (int v : unwelded.getIndices())
+		{
+			int p = gridIndex((int)vertices[v * STRIDE], (int)vertices[v * STRIDE + 1]);
+			if (!positions[p])
+			{
+				positions[p] = true;
+				used[p] = v;
+			}
+			assertEquals(used[p], v);
+		}
+	}
+
+	@Test
+	public void seamsAreKept()
+	{
+		// Split the grid at x = SIZE / 2, with different texture coordinates on each side.
+		int seam = SIZE / 2;
+		int gridVertices = (SIZE + 1) * (SIZE + 1);
+		float[] vertices = new float[(gridVertices + SIZE + 1) * STRIDE];
+		for (int y = 0; y <= SIZE; y++)
+		{
+			for (int x = 0; x <= SIZE; x++)
+				vertex(vertices, gridIndex(x, y), x, y, (float)x / SIZE);
+			vertex(vertices, gridVertices + y, seam, y, 1f);
+		}
+		int[] indices = gridIndices();
+		for (int i = 0; i < indices.length; i += 3)
+		{
+			boolean right = false;
+			for (int k = 0; k < 3; k++)
+				right |= vertices[indices[i + k] * STRIDE] > seam;
+			for (int k = 0; right && k < 3; k++)
+				if (vertices[indices[i + k] * STRIDE] == seam)
+					indices[i + k] = gridVertices + (int)vertices[indices[i + k] * STRIDE + 1];
+		}
+		Mesh mesh = new Mesh(vertices, STRIDE, 0, gridVertices + SIZE + 1, indices, indices.length);
+
+		LevelOfDetail level = MeshSimplifier.simplify(mesh, 0f)[0];
+		assertTrue(level.getTriangleCount() < SIZE * SIZE * 2);
+
+		boolean[] used = new boolean[gridVertices + SIZE + 1];
+		for (int v : level.getIndices())
+			used[v] = true;
+		for (int y = 0; y <= SIZE; y++)
+		{
+			assertTrue(used[gridIndex(seam, y)], "left seam vertex " + y);
+			assertTrue(used[gridVertices + y], "right seam vertex " + y);
+		}
+	}
+
+	@Test
+	public void levelsAreChained()
+	{
+		LevelOfDetail[] levels = MeshSimplifier.simplify(weldedGrid(), 1f, 0.5f, 0f);
+		assertEquals(3, levels.length);
+		assertEquals(SIZE * SIZE * 2, levels[0].getTriangleCount());
+		assertTrue(levels[1].getTriangleCount() <= SIZE * SIZE);
+		assertTrue(levels[2].getTriangleCount() <= levels[1].getTriangleCount());
+		for (LevelOfDetail level : levels)
+			for (int v : level.getIndices())
+				assertTrue(v >= 0 && v < (SIZE + 1) * (SIZE + 1));
+	}
+
+	@Test
+	public void interiorIsFullyRemoved()
+	{
+		// A bumpy interior: the cheapest collapses of many vertices are rejected on the way down, and the next ones must still be tried.
+		float[] vertices = gridVertices();
+		Random random = new Random(1);
+		for (int y = 1; y < SIZE; y++)
+			for (int x = 1; x < SIZE; x++)
+				vertices[gridIndex(x, y) * STRIDE + 2] = random.nextFloat() * 0.3f;
+		int[] indices = gridIndices();
+		LevelOfDetail level = MeshSimplifier.simplify(new Mesh(vertices, STRIDE, 0, (SIZE + 1) * (SIZE + 1), indices, indices.length), 0f)[0];
+		assertEquals(SIZE * 4 - 2, level.getTriangleCount());
+		for (int v : level.getIndices())
+		{
+			int x = v % (SIZE + 1), y = v / (SIZE + 1);
+			assertTrue(x == 0 || y == 0 || x == SIZE || y == SIZE, "interior vertex " + v);
+		}
+	}
+
+	@Test
+	public void badArguments()
+	{
+		Mesh mesh = weldedGrid();
+		assertThrows(IllegalArgumentException.class, () -> MeshSimplifier.simplify(mesh, 1.5f));
+		assertThrows(IllegalArgumentException.class, () -> MeshSimplifier.simplify(mesh, 0.25f, 0.5f));
+		assertThrows(IllegalArgumentException.class, () -> new Mesh(new float[5], STRIDE, 3, 1, new int[3], 3));
+		assertThrows(IllegalArgumentException.class, () -> new Mesh(new float[5], STRIDE, 0, 1, new int[2], 2));
+		assertThrows(IllegalArgumentException.class, () -> new Mesh(new float[5], STRIDE, 0, 1, new int[]{0, 0, 1}, 3));
+		assertThrows(IllegalArgumentException.class, () -> new Mesh(new float[5], STRIDE, 0, 1, new int[]{0, 0, 0}, 6));
+		assertThrows(IllegalArgumentException.class, () -> new Mesh(new float[7], STRIDE, 0, 1, new int[]{0, 0, 0}, 3));
+		assertThrows(IllegalArgumentException.class, () -> new Mesh(new float[10], STRIDE, 0, 3, new int[]{0, 1, 2}, 3));
+	}
+
+}
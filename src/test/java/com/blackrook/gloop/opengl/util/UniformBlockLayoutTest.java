@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2021-2024 Black Rook Software
+ * This program and the accompanying materials are made available under the
+ * terms of the GNU Lesser Public License v2.1 which accompanies this
+ * distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.gloop.opengl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.blackrook.gloop.opengl.math.Matrix4F;
+import com.blackrook.gloop.opengl.util.UniformBlockLayout.Standard;
+import com.blackrook.gloop.opengl.util.UniformBlockLayout.Type;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Offsets in this test are computed by hand from the std140/std430 rules.
+ * <pre>
+ * struct Light
+ * {
+ *     vec3 color;      // offset 0, size 12
+ *     float intensity; // offset 12
+ *     float w[2];      // std140: offset 16, stride 16 (std430: offset 16, stride 4)
+ * };                   // std140: size 48, alignment 16 (std430: size 32, alignment 16)
+ *
+ * layout(std140) uniform Block
+ * {
+ *     float a;         // offset 0
+ *     Light lights[2]; // offset 16, stride 48
+ *     mat3 m;          // offset 112, matrix stride 16
+ *     vec2 v;          // offset 160
+ * };                   // size 176
+ * </pre>
+ */
+public class UniformBlockLayoutTest
+{
+	private static UniformBlockLayout light(Standard standard)
+	{
+		return UniformBlockLayout.build(standard)
+			.add("color", Type.VEC3)
+			.add("intensity", Type.FLOAT)
+			.addArray("w", Type.FLOAT, 2)
+		.create();
+	}
+
+	private static UniformBlockLayout block(Standard standard)
+	{
+		return UniformBlockLayout.build(standard)
+			.add("a", Type.FLOAT)
+			.addStructArray("lights", light(standard), 2)
+			.add("m", Type.MAT3)
+			.add("v", Type.VEC2)
+		.create();
+	}
+
+	@Test
+	public void std140StructOffsets()
+	{
+		UniformBlockLayout light = light(Standard.STD140);
+		assertEquals(48, light.getSize());
+		assertEquals(16, light.getAlignment());
+		assertEquals(0, light.getMember("color").getOffset());
+		assertEquals(12, light.getMember("intensity").getOffset());
+		assertEquals(16, light.getMember("w").getOffset());
+		assertEquals(16, light.getMember("w").getArrayStride());
+	}
+
+	@Test
+	public void std140BlockOffsets()
+	{
+		UniformBlockLayout block = block(Standard.STD140);
+		assertEquals(176, block.getSize());
+		assertEquals(0, block.getMember("a").getOffset());
+		assertEquals(16, block.getMember("lights").getOffset());
+		assertEquals(48, block.getMember("lights").getArrayStride());
+		assertEquals(112, block.getMember("m").getOffset());
+		assertEquals(16, block.getMember("m").getMatrixStride());
+		assertEquals(160, block.getMember("v").getOffset());
+
+		assertEquals(16, block.getOffset("lights[0].color"));
+		assertEquals(76, block.getOffset("lights[1].intensity"));
+		assertEquals(96, block.getOffset("lights[1].w[1]"));
+	}
+
+	@Test
+	public void std140NestedArrayFlattening()
+	{
+		UniformBlockLayout block = block(Standard.STD140);
+
+		UniformBlockLayout.Member intensity = block.getMember("lights.intensity");
+		assertEquals(1, intensity.getArrayDimensions());
+		assertEquals(2, intensity.getArrayLength());
+		assertEquals(48, intensity.getArrayStride());
+		assertEquals(28, intensity.getElementOffset(0));
+		assertEquals(76, intensity.getElementOffset(1));
+
+		UniformBlockLayout.Member w = block.getMember("lights.w");
+		assertEquals(2, w.getArrayDimensions());
+		assertEquals(4, w.getArrayLength());
+		assertEquals(2, w.getArrayLength(0));
+		assertEquals(48, w.getArrayStride(0));
+		assertEquals(2, w.getArrayLength(1));
+		assertEquals(16, w.getArrayStride(1));
+		assertEquals(32, w.getElementOffset(0)); // lights[0].w[0]
+		assertEquals(48, w.getElementOffset(1)); // lights[0].w[1]
+		assertEquals(80, w.getElementOffset(2)); // lights[1].w[0]
+		assertEquals(96, w.getElementOffset(3)); // lights[1].w[1]
+		for (int i = 0; i < 2; i++)
+			for (int j = 0; j < 2; j++)
+				assertEquals(block.getOffset("lights[" + i + "].w[" + j + "]"), w.getElementOffset(i * 2 + j));
+	}
+
+	@Test
+	public void std430NestedArrayFlattening()
+	{
+		UniformBlockLayout block = block(Standard.STD430);
+		// Light: color 0, intensity 12, w 16 (stride 4), size 24 -> aligned to 16 = 32.
+		// Block: a 0, lights 16 (stride 32), m 80 (matrix stride 16), v 128, size 136 -> 144.
+		assertEquals(144, block.getSize());
+		UniformBlockLayout.Member w = block.getMember("lights.w");
+		assertEquals(32, w.getElementOffset(0));
+		assertEquals(36, w.getElementOffset(1));
+		assertEquals(64, w.getElementOffset(2));
+		assertEquals(68, w.getElementOffset(3));
+		assertEquals(80, block.getMember("m").getOffset());
+		assertEquals(128, block.getMember("v").getOffset());
+	}
+
+	@Test
+	public void writerNestedArray()
+	{
+		UniformBlockLayout block = block(Standard.STD140);
+		UniformBlockWriter writer = new UniformBlockWriter(block);
+		ByteBuffer buffer = ByteBuffer.allocate(block.getSize() + 32).order(ByteOrder.nativeOrder());
+		writer.setBuffer(buffer, 32).clear();
+
+		int w = block.getMemberIndex("lights.w");
+		for (int i = 0; i < 4; i++)
+			writer.setFloat(w, i, i + 1);
+
+		assertEquals(1f, buffer.getFloat(32 + 32), 0f);
+		assertEquals(2f, buffer.getFloat(32 + 48), 0f);
+		assertEquals(3f, buffer.getFloat(32 + 80), 0f);
+		assertEquals(4f, buffer.getFloat(32 + 96), 0f);
+	}
+
+	@Test
+	public void writerMatrix4IntoMat3()
+	{
+		UniformBlockLayout block = block(Standard.STD140);
+		UniformBlockWriter writer = new UniformBlockWriter(block);
+		ByteBuffer buffer = ByteBuffer.allocate(block.getSize()).order(ByteOrder.nativeOrder());
+		writer.setBuffer(buffer, 0).clear();
+
+		float[] values = new float[16];
+		for (int i = 0; i < 16; i++)
+			values[i] = i + 1;
+		Matrix4F matrix = new Matrix4F();
+		matrix.set(values);
+		writer.setMatrix4(block.getMemberIndex("m"), matrix);
+
+		for (int c = 0; c < 3; c++)
+		{
+			for (int r = 0; r < 3; r++)
+				assertEquals(values[c * 4 + r], buffer.getFloat(112 + c * 16 + r * 4), 0f);
+			assertEquals(0f, buffer.getFloat(112 + c * 16 + 12), 0f);
+		}
+		assertEquals(0f, buffer.getFloat(160), 0f);
+	}
+
+	@Test
+	public void writerMatrix4NotMatrix()
+	{
+		UniformBlockLayout block = block(Standard.STD140);
+		UniformBlockWriter writer = new UniformBlockWriter(block);
+		writer.setBuffer(ByteBuffer.allocate(block.getSize()), 0);
+		assertThrows(IllegalArgumentException.class, () -> writer.setMatrix4(block.getMemberIndex("v"), new Matrix4F()));
+	}
+
+}